@@ -10,6 +10,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 
 import net.eureka.couchcast.Static;
+import net.eureka.couchcast.foundation.file.media.MediaVerifier;
 import net.eureka.couchcast.foundation.init.ApplicationGlobals;
 import net.eureka.couchcast.foundation.init.Bootstrap;
 import net.eureka.couchcast.foundation.init.NetworkGlobals;
@@ -30,6 +31,9 @@ import net.eureka.couchcast.gui.tray.Tray;
  *		Search delay.
  *		Update delay.
  *		Network interface name. 
+ *		Media extensions.
+ *		Content sniffing.
+ *		Memory budget.
  * </pre>
  * 
  * @author Owen McMonagle.
@@ -39,7 +43,7 @@ import net.eureka.couchcast.gui.tray.Tray;
  * @see NetworkGlobals
  * @see Logger
  * 
- * @version 0.1
+ * @version 0.2
  */
 public final class Configuration
 {
@@ -125,8 +129,8 @@ public final class Configuration
 	
 	/**
 	 * Reads the Server name, Monitored directories, Process id, Minimized windows, Deep search, Music mode, Search delay, 
-	 * Update delay and Network interface name from the configuration file to update {@link ApplicationGlobals} and
-	 * {@link NetworkGlobals}.
+	 * Update delay, Network interface name, Media extensions, Content sniffing and Memory budget from the configuration file to update 
+	 * {@link ApplicationGlobals}, {@link NetworkGlobals} and {@link MediaVerifier}.
 	 */
 	private static void readFromConfigurationFile()
 	{
@@ -149,9 +153,11 @@ public final class Configuration
 					is_music_mode = Boolean.parseBoolean(buffered_reader.readLine());
 			
 			String search_delay_str = buffered_reader.readLine(), update_delay_str = buffered_reader.readLine(),
-					dhcp_network_str = buffered_reader.readLine();
+					dhcp_network_str = buffered_reader.readLine(), extensions_str = buffered_reader.readLine();
+			boolean is_content_sniffing = Boolean.parseBoolean(buffered_reader.readLine());
+			String memory_budget_str = buffered_reader.readLine();
 			
-			int search_delay = 500, update_delay = 2000;
+			int search_delay = 500, update_delay = 2000, memory_budget = 0;
 			if(search_delay_str != null && !search_delay_str.isEmpty())
 				search_delay = Integer.parseInt(search_delay_str);
 			if(update_delay_str != null && !update_delay_str.isEmpty())
@@ -160,6 +166,9 @@ public final class Configuration
 				if(update_delay < 1000)
 					update_delay = 1000;
 			}
+			// Missing from older configuration files.
+			if(memory_budget_str != null && !memory_budget_str.isEmpty())
+				memory_budget = Integer.parseInt(memory_budget_str);
 			
 			// Set new server name.
 			NetworkGlobals.setServerName(server_name);
@@ -179,6 +188,13 @@ public final class Configuration
 			NetworkGlobals.setDhcpNetwork(Static.getInetAddressFromName(dhcp_network_str));
 			// Set DHCP interface name.
 			NetworkGlobals.setDhcpNetworkName(dhcp_network_str);
+			// Set media extensions, missing from older configuration files.
+			if(extensions_str != null && !extensions_str.isEmpty())
+				MediaVerifier.setExtensionList(extensions_str);
+			// Set content sniffing.
+			ApplicationGlobals.setContentSniffing(is_content_sniffing);
+			// Set memory budget.
+			ApplicationGlobals.setMemoryBudget(memory_budget);
 			// Update ToolTip Title on the Tray.
 			Tray.updateToolTipTitle();
 			// Close file stream.
@@ -213,7 +229,8 @@ public final class Configuration
 	
 	/**
 	 * Writes the Server name, Monitored directories, Process id, Minimized windows, Deep search, Music mode, Search delay, 
-	 * Update delay and Network interface name to the configuration file as to be loaded in later sessions.
+	 * Update delay, Network interface name, Media extensions, Content sniffing and Memory budget to the configuration file as to be loaded
+	 * in later sessions.
 	 * 
 	 * @param File file - Configuration file to write to.
 	 */
@@ -241,7 +258,13 @@ public final class Configuration
 				// Update Delay.
 				String.valueOf(ApplicationGlobals.getUpdateDelay()),
 				// Interface name.
-				NetworkGlobals.getDhcpNetworkName()
+				NetworkGlobals.getDhcpNetworkName(),
+				// Media extensions.
+				MediaVerifier.getCombinedExtensionList(),
+				// Content sniffing.
+				String.valueOf(ApplicationGlobals.isContentSniffing()),
+				// Memory budget.
+				String.valueOf(ApplicationGlobals.getMemoryBudget())
 		};
 		try
 		{
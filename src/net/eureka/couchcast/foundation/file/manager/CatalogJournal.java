@@ -0,0 +1,735 @@
+package net.eureka.couchcast.foundation.file.manager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import net.eureka.couchcast.foundation.file.manager.sorting.SortKey;
+import net.eureka.couchcast.foundation.init.ApplicationGlobals;
+
+/**
+ * Append only journal of every change made to the {@link FileFactory} since the last {@link CatalogSnapshot}. Each
+ * addition, removal and modification is encoded into memory under the lock of the factory and written by a single thread, which
+ * takes every record appended since its last write, writes them as one and forces them to disk with a single sync.
+ * Changes made while a sync is under way are committed together on the next, so a scan adding thousands of media
+ * files costs a handful of syncs rather than one for each, and the catalog on disk is never more than a sync behind.
+ * <br>
+ * <br>
+ * On start up the journal is replayed on top of the snapshot, skipping the changes the snapshot already holds.
+ * Each record carries the catalog generation it moved the catalog to, so the generation carries on across restarts.
+ * Once a newer snapshot has been written the journal is compacted in the background, keeping only the changes after
+ * it. A journal of another version is dropped and started again.
+ * <br>
+ * <br>
+ * The journal begins with a magic number and a version as big endian integers. Each record is then framed by the
+ * length of its body and a CRC32 of the body, both as integers. The body is a byte for the type of change, followed
+ * by the generation and media ID as longs. Additions go on with the file size and modification time as longs, a
+ * byte of flags and the path as an integer length followed by the encoded path, the name the same way if it is
+ * not the last segment of the path and the monitored directory it was found under the same way if it has one.
+ * Modifications go on with the new file size and modification time as longs. A record cut short or failing its checksum, such as one torn by a crash part way
+ * through a write, ends the journal and is cut off when the journal is next opened.
+ * <br>
+ * <br>
+ * A commit that fails part way through is cut back off the journal, so no torn record is left for later records to
+ * be written behind, and its records are kept ahead of any appended since to be committed again after a delay.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see FileFactory
+ * @see CatalogSnapshot
+ * @see DirectoryFactory
+ *
+ * @version 0.4
+ */
+public final class CatalogJournal implements Runnable
+{
+	/**
+	 * "CCJN", marks the file as a catalog journal.
+	 */
+	private static final int MAGIC = 0x43434A4E;
+
+	/**
+	 * Version of the journal format, moved on with any change to it.
+	 */
+	private static final int VERSION = 3;
+
+	private static final String JOURNAL_FILE_NAME = "catalog.journal", TEMPORARY_EXTENSION = ".tmp";
+
+	/**
+	 * Bytes of the header and of the frame around each record.
+	 */
+	private static final int HEADER_SIZE = 8, FRAME_SIZE = 8;
+
+	/**
+	 * Types of change.
+	 */
+	private static final byte ADDED = 1, REMOVED = 2, MODIFIED = 3;
+
+	/**
+	 * Flags of an addition, whether the media file was found by deep search, whether its name is written apart
+	 * from its path and whether a monitored directory is written.
+	 */
+	private static final byte DEEP_SEARCH_FLAG = 1, NAME_FLAG = 2, ROOT_FLAG = 4;
+
+	private static final byte SEPARATOR = (byte) File.separatorChar;
+
+	/**
+	 * Buffers grown past this many bytes by a large commit are let go once it has been written.
+	 */
+	private static final int SHRINK_SIZE = 1 << 20;
+
+	/**
+	 * Milliseconds to wait before committing again after a failed commit.
+	 */
+	private static final long RETRY_DELAY = 5000L;
+
+	private static final Object LOCK = new Object();
+
+	/**
+	 * Records appended since the last commit, and the records being committed.
+	 */
+	private static RecordBuffer pending = new RecordBuffer(), committing = new RecordBuffer();
+
+	/**
+	 * Generation up to which the journal is to be compacted, -1 if no compaction is due.
+	 */
+	private static long compactGeneration = -1L;
+
+	/**
+	 * Journal being appended to, null until opened.
+	 */
+	private static FileChannel channel = null;
+
+	private CatalogJournal()
+	{
+	}
+
+	/**
+	 * Replays the journal on top of the catalog loaded from the {@link CatalogSnapshot}, then opens it for appending.
+	 * Changes made before the journal is opened are not journalled, so this must be called before any directory is
+	 * scanned.
+	 * @param long snapshot_generation - Catalog generation of the snapshot loaded, zero if none was.
+	 */
+	public static void open(long snapshot_generation)
+	{
+		synchronized (LOCK)
+		{
+			if(channel != null)
+				return;
+		}
+
+		final File journal_file = getJournalFile();
+		long valid_length = 0L;
+		try
+		{
+			final ByteBuffer journal = read(journal_file);
+			if(journal != null && journal.getInt(0) == MAGIC && journal.getInt(4) == VERSION)
+			{
+				final List<Change> changes = new ArrayList<Change>();
+				valid_length = readChanges(journal, snapshot_generation, changes, null);
+				FileFactory.replayJournal(changes);
+			}
+			else if(journal != null)
+				System.err.println("Catalog journal is out of date or damaged, starting a new one.");
+		}
+		catch (IOException e)
+		{
+			System.err.println("Catalog journal not replayed.\nReason: "+e.getLocalizedMessage());
+		}
+
+		try
+		{
+			final FileChannel journal_channel = FileChannel.open(journal_file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+																 StandardOpenOption.WRITE);
+			if(valid_length == 0L)
+				writeHeader(journal_channel);
+			else
+				// Cut off any record torn by a crash.
+				journal_channel.truncate(valid_length);
+			journal_channel.position(journal_channel.size());
+
+			synchronized (LOCK)
+			{
+				channel = journal_channel;
+			}
+			final Thread writer = new Thread(new CatalogJournal(), "Catalog Journal");
+			writer.setDaemon(true);
+			writer.start();
+		}
+		catch (IOException e)
+		{
+			System.err.println("Catalog journal not opened, changes will only be kept by snapshots.\nReason: "+e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Appends the addition of a media file, called under the lock of the {@link FileFactory}. Dropped if the journal
+	 * is not open.
+	 * @param long generation - Catalog generation after the addition.
+	 * @param long id - Media ID given out.
+	 * @param byte[] name - Encoded name.
+	 * @param byte[] path - Encoded path.
+	 * @param byte[] file_size - File size bytes.
+	 * @param byte[] modified_time - Modification time bytes.
+	 * @param boolean deep_search - True if found by deep search.
+	 * @param String root - Monitored directory found under, null if none.
+	 */
+	static void appendAdded(long generation, long id, byte[] name, byte[] path, byte[] file_size, byte[] modified_time, boolean deep_search, String root)
+	{
+		synchronized (LOCK)
+		{
+			if(channel == null)
+				return;
+			final boolean name_is_leaf = isLeaf(name, path);
+			final int start = pending.beginRecord();
+			try
+			{
+				final DataOutputStream output = pending.getOutput();
+				output.writeByte(ADDED);
+				output.writeLong(generation);
+				output.writeLong(id);
+				output.writeLong(ByteBuffer.wrap(file_size).getLong());
+				output.writeLong(ByteBuffer.wrap(modified_time).getLong());
+				output.writeByte((deep_search ? DEEP_SEARCH_FLAG : 0) | (name_is_leaf ? 0 : NAME_FLAG) | ((root != null) ? ROOT_FLAG : 0));
+				output.writeInt(path.length);
+				output.write(path);
+				if(!name_is_leaf)
+				{
+					output.writeInt(name.length);
+					output.write(name);
+				}
+				if(root != null)
+				{
+					final byte[] encoded_root = root.getBytes(StandardCharsets.UTF_8);
+					output.writeInt(encoded_root.length);
+					output.write(encoded_root);
+				}
+			}
+			catch (IOException e)
+			{
+				// Never thrown, written to memory.
+			}
+			pending.endRecord(start);
+			LOCK.notify();
+		}
+	}
+
+	/**
+	 * Appends the removal of a media file, called under the lock of the {@link FileFactory}. Dropped if the journal
+	 * is not open.
+	 * @param long generation - Catalog generation after the removal.
+	 * @param long id - Media ID of the media file removed.
+	 */
+	static void appendRemoved(long generation, long id)
+	{
+		synchronized (LOCK)
+		{
+			if(channel == null)
+				return;
+			final int start = pending.beginRecord();
+			try
+			{
+				final DataOutputStream output = pending.getOutput();
+				output.writeByte(REMOVED);
+				output.writeLong(generation);
+				output.writeLong(id);
+			}
+			catch (IOException e)
+			{
+				// Never thrown, written to memory.
+			}
+			pending.endRecord(start);
+			LOCK.notify();
+		}
+	}
+
+	/**
+	 * Appends the modification of a media file, called under the lock of the {@link FileFactory}. Dropped if the
+	 * journal is not open.
+	 * @param long generation - Catalog generation after the modification.
+	 * @param long id - Media ID of the media file modified.
+	 * @param byte[] file_size - New file size bytes.
+	 * @param byte[] modified_time - New modification time bytes.
+	 */
+	static void appendModified(long generation, long id, byte[] file_size, byte[] modified_time)
+	{
+		synchronized (LOCK)
+		{
+			if(channel == null)
+				return;
+			final int start = pending.beginRecord();
+			try
+			{
+				final DataOutputStream output = pending.getOutput();
+				output.writeByte(MODIFIED);
+				output.writeLong(generation);
+				output.writeLong(id);
+				output.writeLong(ByteBuffer.wrap(file_size).getLong());
+				output.writeLong(ByteBuffer.wrap(modified_time).getLong());
+			}
+			catch (IOException e)
+			{
+				// Never thrown, written to memory.
+			}
+			pending.endRecord(start);
+			LOCK.notify();
+		}
+	}
+
+	/**
+	 * Asks for the journal to be compacted in the background, keeping only the changes after the passed generation.
+	 * Called once a {@link CatalogSnapshot} holding every change up to that generation has been written.
+	 * @param long generation - Catalog generation of the snapshot written.
+	 */
+	static void compact(long generation)
+	{
+		synchronized (LOCK)
+		{
+			if(channel == null)
+				return;
+			compactGeneration = Math.max(compactGeneration, generation);
+			LOCK.notify();
+		}
+	}
+
+	@Override
+	public void run()
+	{
+		while(true)
+		{
+			final long compact_generation;
+			synchronized (LOCK)
+			{
+				try
+				{
+					while(pending.size() == 0 && compactGeneration < 0)
+						LOCK.wait();
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+				// Take every record appended so far, appends carry on into the other buffer.
+				final RecordBuffer records = pending;
+				pending = committing;
+				committing = records;
+				compact_generation = compactGeneration;
+				compactGeneration = -1L;
+			}
+
+			try
+			{
+				commit(committing);
+			}
+			catch (IOException e)
+			{
+				System.err.println("Catalog journal not written.\nReason: "+e.getLocalizedMessage());
+				retry(compact_generation);
+				continue;
+			}
+
+			committing.reset();
+			// Let go of the room taken by a large commit.
+			if(committing.capacity() > SHRINK_SIZE)
+				committing = new RecordBuffer();
+
+			try
+			{
+				// Records are committed before any compaction, so the compaction never drops a record.
+				if(compact_generation >= 0)
+					compact(compact_generation, getJournalFile());
+			}
+			catch (IOException e)
+			{
+				System.err.println("Catalog journal not compacted.\nReason: "+e.getLocalizedMessage());
+			}
+		}
+	}
+
+	/**
+	 * Puts the records of a failed commit back ahead of those appended since, along with any compaction due, and
+	 * waits before they are committed again.
+	 * @param long compact_generation - Generation the journal was to be compacted up to, -1 if none.
+	 */
+	private static void retry(long compact_generation)
+	{
+		synchronized (LOCK)
+		{
+			committing.append(pending);
+			final RecordBuffer records = committing;
+			committing = pending;
+			pending = records;
+			committing.reset();
+			compactGeneration = Math.max(compactGeneration, compact_generation);
+		}
+		// Sleep rather than wait on the lock, appends would wake it straight away.
+		try
+		{
+			Thread.sleep(RETRY_DELAY);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes the passed records and forces them to disk with one sync. Anything written by a failed commit is cut
+	 * back off the journal.
+	 * @param RecordBuffer records - Records to commit.
+	 * @throws IOException - If the journal could not be written.
+	 */
+	private static void commit(RecordBuffer records) throws IOException
+	{
+		if(records.size() == 0)
+			return;
+		final long start = channel.position();
+		try
+		{
+			final ByteBuffer buffer = records.toByteBuffer();
+			while(buffer.hasRemaining())
+				channel.write(buffer);
+			channel.force(false);
+		}
+		catch (IOException e)
+		{
+			try
+			{
+				// Written over again by the next commit even if the journal cannot be cut.
+				channel.position(start);
+				channel.truncate(start);
+			}
+			catch (IOException truncate_exception)
+			{
+				// Ignore, the journal is cut when next opened.
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Rewrites the journal without the changes up to the passed generation, then moves it over the old journal.
+	 * Only called from the writer, so no records are appended to the file while it is rewritten. The old journal is
+	 * only let go once the move has succeeded, until then it is kept and appended to as before.
+	 * @param long generation - Catalog generation of the snapshot written.
+	 * @param File journal_file - Journal to compact.
+	 * @throws IOException - If the journal could not be rewritten.
+	 */
+	private static void compact(long generation, File journal_file) throws IOException
+	{
+		final ByteBuffer journal = ByteBuffer.allocate((int) channel.size());
+		channel.position(0);
+		while(journal.hasRemaining() && channel.read(journal) >= 0);
+		journal.flip();
+		final long[] first_kept = new long[] { -1L };
+		final long valid_length = readChanges(journal, generation, null, first_kept);
+
+		final File temporary_file = new File(journal_file.getPath()+TEMPORARY_EXTENSION);
+		// Kept open through the move, so the compacted journal is appended to without being opened again.
+		final FileChannel compacted_channel = FileChannel.open(temporary_file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+															   StandardOpenOption.READ, StandardOpenOption.WRITE);
+		boolean moved = false;
+		try
+		{
+			writeHeader(compacted_channel);
+			// Changes are in generation order, copy from the first one kept onwards.
+			if(first_kept[0] >= 0)
+			{
+				journal.limit((int) valid_length).position((int) first_kept[0]);
+				while(journal.hasRemaining())
+					compacted_channel.write(journal);
+			}
+			compacted_channel.force(false);
+			compacted_channel.position(compacted_channel.size());
+			Files.move(temporary_file.toPath(), journal_file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			moved = true;
+		}
+		finally
+		{
+			if(!moved)
+			{
+				compacted_channel.close();
+				temporary_file.delete();
+				// Carry on appending to the old journal.
+				channel.position(channel.size());
+			}
+		}
+
+		final FileChannel old_channel;
+		synchronized (LOCK)
+		{
+			old_channel = channel;
+			channel = compacted_channel;
+		}
+		old_channel.close();
+	}
+
+	/**
+	 * Reads each whole record of a journal, stopping at the first record cut short or failing its checksum.
+	 * @param ByteBuffer journal - Whole journal, header included.
+	 * @param long generation - Changes up to this catalog generation are skipped.
+	 * @param List of Change changes - List to add each change after the generation to, or null to only scan.
+	 * @param long[] first_kept - Holds the offset of the first change after the generation, or null.
+	 * @return long - Length of the journal up to the end of its last whole record.
+	 */
+	private static long readChanges(ByteBuffer journal, long generation, List<Change> changes, long[] first_kept)
+	{
+		final CRC32 checksum = new CRC32();
+		int position = HEADER_SIZE;
+		while(journal.limit() - position >= FRAME_SIZE)
+		{
+			final int length = journal.getInt(position), expected_checksum = journal.getInt(position + 4);
+			if(length <= 0 || length > journal.limit() - position - FRAME_SIZE)
+				break;
+
+			final ByteBuffer body = journal.duplicate();
+			body.limit(position + FRAME_SIZE + length).position(position + FRAME_SIZE);
+			checksum.reset();
+			checksum.update(body.duplicate());
+			if((int) checksum.getValue() != expected_checksum)
+				break;
+
+			final Change change;
+			try
+			{
+				change = readChange(body);
+			}
+			catch (BufferUnderflowException | NegativeArraySizeException e)
+			{
+				break;
+			}
+			if(change.generation > generation)
+			{
+				if(first_kept != null && first_kept[0] < 0)
+					first_kept[0] = position;
+				if(changes != null)
+					changes.add(change);
+			}
+			position += FRAME_SIZE + length;
+		}
+		return position;
+	}
+
+	private static Change readChange(ByteBuffer body)
+	{
+		final byte type = body.get();
+		final long generation = body.getLong(), id = body.getLong();
+		if(type == MODIFIED)
+			return new Change(generation, id, longToBytes(body.getLong()), longToBytes(body.getLong()));
+		if(type != ADDED)
+			return new Change(generation, id);
+
+		final byte[] file_size = longToBytes(body.getLong()), modified_time = longToBytes(body.getLong());
+		final byte flags = body.get();
+		final byte[] path = readBytes(body), name = ((flags & NAME_FLAG) != 0) ? readBytes(body) : Arrays.copyOfRange(path, lastSeparator(path) + 1, path.length);
+		final String root = ((flags & ROOT_FLAG) != 0) ? new String(readBytes(body), StandardCharsets.UTF_8) : null;
+		return new Change(generation, id, name, path, file_size, modified_time, (flags & DEEP_SEARCH_FLAG) != 0, root);
+	}
+
+	private static ByteBuffer read(File journal_file) throws IOException
+	{
+		if(!journal_file.isFile() || journal_file.length() < HEADER_SIZE)
+			return null;
+
+		final FileChannel journal_channel = FileChannel.open(journal_file.toPath(), StandardOpenOption.READ);
+		try
+		{
+			final ByteBuffer journal = ByteBuffer.allocate((int) journal_channel.size());
+			while(journal.hasRemaining() && journal_channel.read(journal) >= 0);
+			journal.flip();
+			return journal;
+		}
+		finally
+		{
+			journal_channel.close();
+		}
+	}
+
+	private static void writeHeader(FileChannel journal_channel) throws IOException
+	{
+		journal_channel.truncate(0);
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+		header.flip();
+		journal_channel.write(header, 0);
+		journal_channel.force(false);
+	}
+
+	private static File getJournalFile()
+	{
+		return new File(ApplicationGlobals.getApplicationDirectory()+JOURNAL_FILE_NAME);
+	}
+
+	private static byte[] readBytes(ByteBuffer buffer)
+	{
+		final byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	private static byte[] longToBytes(long value)
+	{
+		return ByteBuffer.allocate(8).putLong(value).array();
+	}
+
+	private static boolean isLeaf(byte[] name, byte[] path)
+	{
+		final int from = lastSeparator(path) + 1;
+		if(path.length - from != name.length)
+			return false;
+		for(int i = 0; i < name.length; i++)
+			if(path[from + i] != name[i])
+				return false;
+		return true;
+	}
+
+	private static int lastSeparator(byte[] path)
+	{
+		for(int i = path.length - 1; i >= 0; i--)
+			if(path[i] == SEPARATOR)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * A single change read back from the journal.
+	 */
+	static final class Change
+	{
+		final long generation, id;
+
+		/**
+		 * Fields of an addition, null for a removal. Only the file size and modification time are held for a
+		 * modification.
+		 */
+		final byte[] name, sortKey, path, fileSize, modifiedTime;
+
+		final boolean deepSearch;
+
+		/**
+		 * Monitored directory of an addition, null if none or for a removal.
+		 */
+		final String root;
+
+		private Change(long generation, long id)
+		{
+			this.generation = generation;
+			this.id = id;
+			this.name = this.sortKey = this.path = this.fileSize = this.modifiedTime = null;
+			this.deepSearch = false;
+			this.root = null;
+		}
+
+		private Change(long generation, long id, byte[] file_size, byte[] modified_time)
+		{
+			this.generation = generation;
+			this.id = id;
+			this.name = this.sortKey = this.path = null;
+			this.fileSize = file_size;
+			this.modifiedTime = modified_time;
+			this.deepSearch = false;
+			this.root = null;
+		}
+
+		private Change(long generation, long id, byte[] name, byte[] path, byte[] file_size, byte[] modified_time, boolean deep_search, String root)
+		{
+			this.generation = generation;
+			this.id = id;
+			this.name = name;
+			// Created while replaying, outside the lock of the factory.
+			this.sortKey = SortKey.create(name);
+			this.path = path;
+			this.fileSize = file_size;
+			this.modifiedTime = modified_time;
+			this.deepSearch = deep_search;
+			this.root = root;
+		}
+
+		boolean isAddition()
+		{
+			return path != null;
+		}
+
+		boolean isModification()
+		{
+			return path == null && fileSize != null;
+		}
+	}
+
+	/**
+	 * Growable buffer of framed records. Each record is written through 'getOutput()' between 'beginRecord()' and
+	 * 'endRecord()', which fills in its frame.
+	 */
+	private static final class RecordBuffer extends ByteArrayOutputStream
+	{
+		private static final byte[] EMPTY_FRAME = new byte[FRAME_SIZE];
+
+		private final DataOutputStream output = new DataOutputStream(this);
+
+		private final CRC32 checksum = new CRC32();
+
+		RecordBuffer()
+		{
+			super(4096);
+		}
+
+		DataOutputStream getOutput()
+		{
+			return output;
+		}
+
+		int beginRecord()
+		{
+			final int start = count;
+			// Room for the frame, filled in once the body is written.
+			write(EMPTY_FRAME, 0, FRAME_SIZE);
+			return start;
+		}
+
+		void endRecord(int start)
+		{
+			final int body = start + FRAME_SIZE, length = count - body;
+			checksum.reset();
+			checksum.update(buf, body, length);
+			putInt(start, length);
+			putInt(start + 4, (int) checksum.getValue());
+		}
+
+		/**
+		 * Appends the records of another buffer after those of this one.
+		 */
+		void append(RecordBuffer records)
+		{
+			write(records.buf, 0, records.count);
+		}
+
+		ByteBuffer toByteBuffer()
+		{
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+
+		int capacity()
+		{
+			return buf.length;
+		}
+
+		private void putInt(int position, int value)
+		{
+			buf[position] = (byte) (value >>> 24);
+			buf[position + 1] = (byte) (value >>> 16);
+			buf[position + 2] = (byte) (value >>> 8);
+			buf[position + 3] = (byte) value;
+		}
+	}
+}
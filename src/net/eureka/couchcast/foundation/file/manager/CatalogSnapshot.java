@@ -0,0 +1,428 @@
+package net.eureka.couchcast.foundation.file.manager;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import net.eureka.couchcast.foundation.file.manager.sorting.SortKey;
+import net.eureka.couchcast.foundation.file.media.MediaPath;
+import net.eureka.couchcast.foundation.init.ApplicationGlobals;
+
+/**
+ * Runs every thirty seconds from the DirectoryFactory class. Writes the live media files of the {@link FileFactory}
+ * to a versioned binary snapshot within the application directory whenever the catalog generation has moved on
+ * since the last write. On start up the snapshot is loaded through a memory mapped {@link FileChannel} before any
+ * directory is scanned, so the full play-list is served straight away instead of once the scanners have found
+ * everything again. Media IDs are kept, so clients holding IDs from before a restart still find their media files.
+ * <br>
+ * <br>
+ * Loaded media files are checked against the disk in the background as usual. The {@link FileFactoryVerifier}
+ * lists each directory it has not seen before, removing media files that have gone, while the scanners skip the
+ * loaded media files as duplicates and add anything new.
+ * <br>
+ * <br>
+ * The snapshot is written to a temporary file and moved over the last one, so a crash part way through a write
+ * leaves the last snapshot intact. It begins with a magic number and a version, followed by the catalog generation,
+ * the next media ID and the number of directories, monitored directories and media files, all as big endian integers
+ * and longs, and then the language tag of the default locale as a UTF string. Each monitored directory and each
+ * directory is written once as an integer length followed by its encoded path. Each media file is then written as its
+ * media ID, file size and modification time as longs, the index of its directory and of the monitored directory it
+ * was found under as integers and a byte of flags, followed by its name and its {@link SortKey}, each as an integer
+ * length followed by the bytes. Paths not ending with the name carry their last segment the same way. Sort keys
+ * follow the collation of the locale, so they are only kept if the locale is unchanged and created again otherwise.
+ * A CRC32 of everything before it ends the snapshot as a long. Snapshots of another version, or that fail the
+ * checksum, are ignored and the catalog is scanned from scratch.
+ * <br>
+ * <br>
+ * Changes made since the snapshot are kept by the {@link CatalogJournal}, which is replayed on top of it. Once a
+ * snapshot has been written the journal is compacted down to the changes after it.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see DirectoryFactory
+ * @see FileFactory
+ * @see FileFactoryVerifier
+ * @see CatalogJournal
+ *
+ * @version 0.3
+ */
+public final class CatalogSnapshot implements Runnable
+{
+	/**
+	 * "CCSN", marks the file as a catalog snapshot.
+	 */
+	private static final int MAGIC = 0x4343534E;
+
+	/**
+	 * Version of the snapshot format, moved on with any change to it.
+	 */
+	private static final int VERSION = 3;
+
+	private static final String SNAPSHOT_FILE_NAME = "catalog.snapshot", TEMPORARY_EXTENSION = ".tmp";
+
+	/**
+	 * Bytes of the header and of the checksum trailing the snapshot.
+	 */
+	private static final int HEADER_SIZE = 38, CHECKSUM_SIZE = 8;
+
+	/**
+	 * Flags of each media file, whether it was found by deep search and whether its path ends with a segment other
+	 * than its name.
+	 */
+	private static final byte DEEP_SEARCH_FLAG = 1, LEAF_FLAG = 2;
+
+	private static final byte SEPARATOR = (byte) File.separatorChar;
+
+	/**
+	 * Directory index of paths without a directory, and monitored directory index of media files found under none.
+	 */
+	private static final int NO_DIRECTORY = -1, NO_ROOT = -1;
+
+	/**
+	 * Catalog generation last written, or loaded.
+	 */
+	private long writtenGeneration;
+
+	public CatalogSnapshot()
+	{
+		// Anything loaded is already on disk.
+		this.writtenGeneration = FileFactory.getGeneration();
+	}
+
+	@Override
+	public void run()
+	{
+		if(FileFactory.getGeneration() == writtenGeneration)
+			return;
+
+		// Capture under the lock, write after it is let go.
+		final Entries entries = FileFactory.captureSnapshot();
+		try
+		{
+			write(entries);
+			writtenGeneration = entries.generation;
+			// Changes up to the snapshot are no longer needed in the journal.
+			CatalogJournal.compact(entries.generation);
+		}
+		catch (IOException e)
+		{
+			// Tried again on the next run.
+			System.err.println("Catalog snapshot not written.\nReason: "+e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Loads the snapshot into the {@link FileFactory}, if there is one and the catalog is still empty. Must be called
+	 * before any directory is scanned.
+	 * @return long - Catalog generation of the snapshot loaded, zero if none was.
+	 */
+	public static long load()
+	{
+		final File snapshot_file = getSnapshotFile();
+		if(!snapshot_file.isFile())
+			return 0L;
+
+		FileChannel channel = null;
+		try
+		{
+			channel = FileChannel.open(snapshot_file.toPath(), StandardOpenOption.READ);
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			final Entries entries = read(buffer);
+			if(entries == null)
+			{
+				System.err.println("Catalog snapshot is out of date or damaged, scanning from scratch.");
+				return 0L;
+			}
+			return (FileFactory.restoreSnapshot(entries)) ? entries.generation : 0L;
+		}
+		catch (IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException | NegativeArraySizeException e)
+		{
+			System.err.println("Catalog snapshot not loaded.\nReason: "+e.getLocalizedMessage());
+		}
+		finally
+		{
+			try
+			{
+				if(channel != null)
+					channel.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+		return 0L;
+	}
+
+	private static File getSnapshotFile()
+	{
+		return new File(ApplicationGlobals.getApplicationDirectory()+SNAPSHOT_FILE_NAME);
+	}
+
+	/**
+	 * Writes the passed media files to a temporary file, then moves it over the last snapshot.
+	 * @param Entries entries - Live media files of the catalog.
+	 * @throws IOException - If the snapshot could not be written or moved.
+	 */
+	private static void write(Entries entries) throws IOException
+	{
+		final File snapshot_file = getSnapshotFile(), temporary_file = new File(snapshot_file.getPath()+TEMPORARY_EXTENSION);
+
+		// Split each path into its directory, written once, and its last segment.
+		final Map<MediaPath, Integer> directory_indexes = new HashMap<MediaPath, Integer>();
+		final List<byte[]> directories = new ArrayList<byte[]>();
+		final int[] entry_directories = new int[entries.count];
+		for(int i = 0; i < entries.count; i++)
+		{
+			final byte[] path = entries.paths[i];
+			final int separator = lastSeparator(path);
+			if(separator < 0)
+			{
+				entry_directories[i] = NO_DIRECTORY;
+				continue;
+			}
+			final MediaPath directory = MediaPath.wrap(Arrays.copyOf(path, separator));
+			Integer directory_index = directory_indexes.get(directory);
+			if(directory_index == null)
+			{
+				directory_index = directories.size();
+				directory_indexes.put(directory, directory_index);
+				directories.add(directory.getBytes());
+			}
+			entry_directories[i] = directory_index;
+		}
+
+		// Monitored directories are few, each is written once.
+		final List<String> roots = new ArrayList<String>();
+		final int[] entry_roots = new int[entries.count];
+		for(int i = 0; i < entries.count; i++)
+		{
+			final String root = entries.roots[i];
+			if(root == null)
+				entry_roots[i] = NO_ROOT;
+			else if((entry_roots[i] = roots.indexOf(root)) < 0)
+			{
+				entry_roots[i] = roots.size();
+				roots.add(root);
+			}
+		}
+
+		final CRC32 checksum = new CRC32();
+		final FileOutputStream file_output = new FileOutputStream(temporary_file);
+		try
+		{
+			final DataOutputStream output = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(file_output, 1 << 16), checksum));
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeLong(entries.generation);
+			output.writeLong(entries.nextId);
+			output.writeInt(directories.size());
+			output.writeInt(roots.size());
+			output.writeInt(entries.count);
+			output.writeUTF(Locale.getDefault().toLanguageTag());
+
+			for(String root : roots)
+				writeBytes(output, root.getBytes(StandardCharsets.UTF_8));
+			for(byte[] directory : directories)
+				writeBytes(output, directory);
+
+			for(int i = 0; i < entries.count; i++)
+			{
+				final byte[] name = entries.names[i], path = entries.paths[i];
+				// The last segment is only written when it is not the name.
+				final int leaf_start = lastSeparator(path) + 1;
+				final boolean leaf_is_name = regionEquals(path, leaf_start, name);
+				output.writeLong(entries.ids[i]);
+				output.writeLong(ByteBuffer.wrap(entries.fileSizes[i]).getLong());
+				output.writeLong(ByteBuffer.wrap(entries.modifiedTimes[i]).getLong());
+				output.writeInt(entry_directories[i]);
+				output.writeInt(entry_roots[i]);
+				output.writeByte((entries.deepSearch.get(i) ? DEEP_SEARCH_FLAG : 0) | (leaf_is_name ? 0 : LEAF_FLAG));
+				writeBytes(output, name);
+				writeBytes(output, entries.sortKeys[i]);
+				if(!leaf_is_name)
+					writeBytes(output, Arrays.copyOfRange(path, leaf_start, path.length));
+			}
+
+			// The checksum covers everything written before it.
+			output.flush();
+			final long value = checksum.getValue();
+			output.writeLong(value);
+			output.flush();
+			// Make sure the snapshot is on disk before it replaces the last one.
+			file_output.getFD().sync();
+		}
+		finally
+		{
+			file_output.close();
+		}
+
+		Files.move(temporary_file.toPath(), snapshot_file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads the media files of a snapshot.
+	 * @param ByteBuffer buffer - Whole snapshot.
+	 * @return Entries - Media files of the snapshot, null if it is of another version or fails the checksum.
+	 */
+	private static Entries read(ByteBuffer buffer)
+	{
+		final int length = buffer.limit();
+		if(length < HEADER_SIZE + CHECKSUM_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+			return null;
+
+		// Check the whole snapshot before reading any of it.
+		final CRC32 checksum = new CRC32();
+		final ByteBuffer checked = buffer.duplicate();
+		checked.limit(length - CHECKSUM_SIZE);
+		checksum.update(checked);
+		if(checksum.getValue() != buffer.getLong(length - CHECKSUM_SIZE))
+			return null;
+
+		buffer.position(8);
+		final long generation = buffer.getLong(), next_id = buffer.getLong();
+		final int directory_count = buffer.getInt(), root_count = buffer.getInt(), entry_count = buffer.getInt();
+		if(directory_count < 0 || root_count < 0 || entry_count < 0)
+			return null;
+		final byte[] locale = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(locale);
+		final boolean same_locale = Locale.getDefault().toLanguageTag().equals(new String(locale, StandardCharsets.UTF_8));
+
+		final String[] roots = new String[root_count];
+		for(int i = 0; i < root_count; i++)
+			roots[i] = new String(readBytes(buffer), StandardCharsets.UTF_8);
+		final byte[][] directories = new byte[directory_count][];
+		for(int i = 0; i < directory_count; i++)
+			directories[i] = readBytes(buffer);
+
+		final Entries entries = new Entries(entry_count, next_id, generation);
+		for(int i = 0; i < entry_count; i++)
+		{
+			final long id = buffer.getLong();
+			final byte[] file_size = longToBytes(buffer.getLong()), modified_time = longToBytes(buffer.getLong());
+			final int directory = buffer.getInt(), root = buffer.getInt();
+			final byte flags = buffer.get();
+			final byte[] name = readBytes(buffer), sort_key = readBytes(buffer), leaf = ((flags & LEAF_FLAG) != 0) ? readBytes(buffer) : name;
+			entries.add(id, name, (same_locale) ? sort_key : SortKey.create(name), joinPath((directory != NO_DIRECTORY) ? directories[directory] : null, leaf),
+						file_size, modified_time, (flags & DEEP_SEARCH_FLAG) != 0, (root != NO_ROOT) ? roots[root] : null);
+		}
+		return entries;
+	}
+
+	private static byte[] joinPath(byte[] directory, byte[] leaf)
+	{
+		if(directory == null)
+			return leaf;
+		final byte[] path = Arrays.copyOf(directory, directory.length + 1 + leaf.length);
+		path[directory.length] = SEPARATOR;
+		System.arraycopy(leaf, 0, path, directory.length + 1, leaf.length);
+		return path;
+	}
+
+	private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException
+	{
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private static byte[] readBytes(ByteBuffer buffer)
+	{
+		final byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	private static byte[] longToBytes(long value)
+	{
+		return ByteBuffer.allocate(8).putLong(value).array();
+	}
+
+	private static int lastSeparator(byte[] path)
+	{
+		for(int i = path.length - 1; i >= 0; i--)
+			if(path[i] == SEPARATOR)
+				return i;
+		return -1;
+	}
+
+	private static boolean regionEquals(byte[] path, int from, byte[] name)
+	{
+		if(path.length - from != name.length)
+			return false;
+		for(int i = 0; i < name.length; i++)
+			if(path[from + i] != name[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Live media files of the catalog, as captured from or restored to the {@link FileFactory}. Each column is held by
+	 * reference, the encoded fields are shared with the lists.
+	 */
+	static final class Entries
+	{
+		final byte[][] names, sortKeys, paths, fileSizes, modifiedTimes;
+
+		final long[] ids;
+
+		final BitSet deepSearch;
+
+		/**
+		 * Monitored directory of each media file, null if none. Shared between the media files of a directory.
+		 */
+		final String[] roots;
+
+		/**
+		 * Next media ID to be given out and the catalog generation captured.
+		 */
+		final long nextId, generation;
+
+		int count = 0;
+
+		Entries(int capacity, long next_id, long generation)
+		{
+			this.names = new byte[capacity][];
+			this.sortKeys = new byte[capacity][];
+			this.paths = new byte[capacity][];
+			this.fileSizes = new byte[capacity][];
+			this.modifiedTimes = new byte[capacity][];
+			this.ids = new long[capacity];
+			this.deepSearch = new BitSet(capacity);
+			this.roots = new String[capacity];
+			this.nextId = next_id;
+			this.generation = generation;
+		}
+
+		void add(long id, byte[] name, byte[] sort_key, byte[] path, byte[] file_size, byte[] modified_time, boolean deep_search, String root)
+		{
+			names[count] = name;
+			sortKeys[count] = sort_key;
+			paths[count] = path;
+			fileSizes[count] = file_size;
+			modifiedTimes[count] = modified_time;
+			ids[count] = id;
+			deepSearch.set(count, deep_search);
+			roots[count] = root;
+			count++;
+		}
+	}
+}
@@ -7,12 +7,16 @@ import java.util.BitSet;
  * if a media file is within a deep search directory or not when we need to disable that feature in
  * settings. A {@link BitSet} is used to efficiently store each boolean as a bit instead of a primitive
  * or boxed primitive boolean.  
+ * <br>
+ * <br>
+ * The flags are never used to remove media files. The {@link FileFactory} applies them as a filter over its view
+ * while deep search is disabled, so the flags are kept in step with its lists through compaction.
  * 
  * @author Owen McMonagle.
  * 
  * @see FileFactory
  * 
- * @version 0.1
+ * @version 0.3
  */
 public class DeepSearchIndex
 {
@@ -28,6 +32,36 @@ public class DeepSearchIndex
 		INDEXES.set(index, deep_searched);
 	}
 	
+	/**
+	 * Sets the deep search flag of a range of indexes in one go.
+	 * @param from_index - First index of the range.
+	 * @param to_index - Index after the last of the range.
+	 * @param deep_searched - Flag value to be set over the range.
+	 */
+	public synchronized static void add(final int from_index, final int to_index, final boolean deep_searched)
+	{
+		INDEXES.set(from_index, to_index, deep_searched);
+	}
+	
+	/**
+	 * Drops the flags of each tombstoned index, shifting the remaining flags down to match the compacted lists.
+	 * @param tombstones - Indexes removed from the lists.
+	 * @param list_size - Size of the lists before compaction.
+	 */
+	public synchronized static void compact(final BitSet tombstones, final int list_size)
+	{
+		final BitSet compacted = new BitSet(list_size);
+		for(int i = 0, compacted_index = 0; i < list_size; i++)
+			if(!tombstones.get(i))
+			{
+				if(INDEXES.get(i))
+					compacted.set(compacted_index);
+				compacted_index++;
+			}
+		INDEXES.clear();
+		INDEXES.or(compacted);
+	}
+	
 	/**
 	 * Returns whether or not a media file is deep searched or not.
 	 * @param index - Index of file you wish to retrieve. 
@@ -1,35 +1,67 @@
 package net.eureka.couchcast.foundation.file.manager;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.Executors;
 
-import net.eureka.couchcast.foundation.file.manager.sorting.AlphaSort;
-import net.eureka.couchcast.foundation.file.manager.sorting.SizeSort;
-import net.eureka.couchcast.foundation.file.manager.sorting.SortImpl;
-import net.eureka.couchcast.foundation.file.manager.sorting.Sorter;
+import net.eureka.couchcast.foundation.file.manager.event.CatalogEvents;
 import net.eureka.couchcast.foundation.file.media.MediaFile;
+import net.eureka.couchcast.foundation.file.media.MediaPath;
 import net.eureka.couchcast.foundation.init.ApplicationGlobals;
 import net.eureka.couchcast.gui.tray.Tray;
 import net.eureka.couchcast.mediaserver.NetworkHandler;
+import net.eureka.couchcast.mediaserver.player.Receiver;
 
 /**
- * Handles the monitoring of each saved directory. Does this by creating a fixed thread pool based upon the number
- * of available processors minus one, the factory itself used a {@link Thread} too. Each monitored directory is 
- * managed by a {@link DirectoryScanner}, these scanners are worked upon by the thread pool. This allows for 
- * a multithreaded search pattern using a Observer pattern along with a Producer/Consumer pattern. 
+ * Handles the monitoring of each saved directory. Each monitored directory is managed by a {@link DirectoryScanner}, 
+ * these scanners are grouped by the {@link FileStore} they are located on and worked upon by the {@link FileStoreWorkers}
+ * of that store. A slow or hung mount can then only hold up its own scanners. This allows for a multithreaded search 
+ * pattern using a Observer pattern along with a Producer/Consumer pattern. The factory itself uses a {@link Thread} too.
  * <br>
  * <br>
  * A while loop constantly manages the observer pattern and assigns any directory not being scanned, as a job 
  * to be run in the future.
  * <br>
  * <br>
- * Sorting of the media files is also a responsibility of the thread pool and uses another observer pattern.
+ * Sorting of the media files is kept up to date by the {@link FileFactory} itself. The GUI and clients subscribe to
+ * the changes published through {@link CatalogEvents}.
+ * <br>
+ * <br>
+ * Scan progress of each monitored directory is kept as a {@link ScanJob}, which can be retrieved or cancelled from here.
+ * <br>
+ * <br>
+ * The {@link FileStore} of the media file currently being played is tracked here. Scanners on that store are not
+ * scheduled while playback is active, running scanners are throttled and the {@link FileFactoryVerifier} skips the 
+ * store until playback stops. This stops the scanning from stuttering playback on slow disks.
+ * <br>
+ * <br>
+ * A monitored directory can be added or removed on its own. Adding one only schedules a scanner for it, removing one
+ * cancels its scanners and removes every media file found under it from the {@link FileFactory} in one go.
+ * <br>
+ * <br>
+ * The catalog is restored from its {@link CatalogSnapshot} and {@link CatalogJournal} when the factory is created,
+ * and written back to the snapshot periodically.
  * <br>
  * <br>
  * Shaving and refactoring needs to occur for the next directory factory version as SRP is getting trampled
@@ -39,38 +71,109 @@ import net.eureka.couchcast.mediaserver.NetworkHandler;
  * @author Owen McMonagle.
  * 
  * @see DirectoryScanner
+ * @see ScanJob
+ * @see FileStoreWorkers
  * @see FileFactory
  * @see NetworkHandler
  * @see Tray
+ * @see Receiver
+ * @see CatalogSnapshot
+ * @see CatalogJournal
  * 
- * @version 0.2
+ * @version 0.12
  */
 public final class DirectoryFactory extends Thread
 {
-	private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
-	private static final int WORKER_POOL_SIZE = (PROCESSORS > 1) ? PROCESSORS - 1: PROCESSORS , SCHEDULED_WORKER_SIZE = 1;
+	private static final int SCHEDULED_WORKER_SIZE = 1;
 	
+	/**
+	 * Seconds between each run of the {@link FileFactoryVerifier}, each run verifies a portion of the directories.
+	 * The {@link FileFactoryCompactor} runs on the same delay.
+	 */
+	private static final int VERIFIER_DELAY = 2;
 	
 	/**
-	 *  Flag for indicating change to the play-list.
+	 * Seconds between each run of the {@link CatalogSnapshot}, the snapshot is only written if the catalog changed.
 	 */
-	private static boolean playlistChanged = false;
+	private static final int SNAPSHOT_DELAY = 30;
+	
 	
-	private static final ExecutorService WORKERS = Executors.newFixedThreadPool(WORKER_POOL_SIZE);
 	private static final ScheduledExecutorService SCHEDULED_WORKER = Executors.newScheduledThreadPool(SCHEDULED_WORKER_SIZE);
 	
 	private static final List<DirectoryScanner> SCANNERS = Collections.synchronizedList(new ArrayList<DirectoryScanner>());
-	private static final List<SortImpl> SORTERS = Collections.synchronizedList(new ArrayList<SortImpl>());
-	private static final List<byte[]> PATHS_TO_REMOVE = Collections.synchronizedList(new ArrayList<byte[]>());
+	private static final List<MediaPath> PATHS_TO_REMOVE = Collections.synchronizedList(new ArrayList<MediaPath>());
+	
+	/**
+	 * Number of directories whose store is cached, least recently used are dropped first.
+	 */
+	private static final int FILE_STORE_CACHE_LIMIT = 4096;
+	
+	/**
+	 * Store of each directory looked up. Directories within a monitored directory are dropped when it is monitored
+	 * again, and those on a store when it is parked, so a remounted disk is looked up afresh.
+	 */
+	private static final Map<String, FileStore> FILE_STORES = Collections.synchronizedMap(new LinkedHashMap<String, FileStore>(64, 0.75f, true)
+	{
+		private static final long serialVersionUID = 4061528378264370183L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, FileStore> eldest)
+		{
+			return size() > FILE_STORE_CACHE_LIMIT;
+		}
+	});
+	
+	/**
+	 * Maximum number of store lookups run at once for threads that must not block, lookups hung on a stalled mount
+	 * hold a thread each until they return.
+	 */
+	private static final int STORE_LOOKUP_SIZE = 4;
+	
+	/**
+	 * Milliseconds the update cycle waits on the store lookup of a scanner, scanners still waiting after are left
+	 * queued until the next cycle.
+	 */
+	private static final long SCANNER_STORE_WAIT = 20L;
+	
+	/**
+	 * Store lookups still running for threads that must not block, by directory.
+	 */
+	private static final Map<String, Future<FileStore>> STORE_LOOKUPS = new HashMap<String, Future<FileStore>>();
+	
+	private static final ThreadPoolExecutor STORE_LOOKUP_WORKER = new ThreadPoolExecutor(0, STORE_LOOKUP_SIZE, 30L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory()
+	{
+		private int count = 0;
+
+		@Override
+		public Thread newThread(Runnable runnable)
+		{
+			count++;
+			Thread thread = new Thread(runnable);
+			thread.setName("File Store Lookup "+count);
+			// Never keep the application alive for a hung mount.
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	/**
+	 * Scan progress of each monitored directory.
+	 */
+	private static final Map<String, ScanJob> SCAN_JOBS = new HashMap<String, ScanJob>();
 	
 	private static ArrayList<String> monitoredDirectories = ApplicationGlobals.getMonitoredList();
 	
+	/**
+	 * File store of the media file currently being played. Null when nothing is being played from disk.
+	 */
+	private static FileStore playbackStore = null;
+	
 	private boolean discovery = true;
 	
 	public DirectoryFactory()
 	{
 		this.setName("File Fetcher V2");
-		SCHEDULED_WORKER.scheduleWithFixedDelay(new FileFactoryVerifier(), 20, 20, TimeUnit.SECONDS);
+		scheduleWorkers();
 		initialise();
 		this.start();
 	}
@@ -78,12 +181,29 @@ public final class DirectoryFactory extends Thread
 	public DirectoryFactory(ArrayList<String> monitored_directories)
 	{
 		this.setName("File Fetcher V2");
-		SCHEDULED_WORKER.scheduleWithFixedDelay(new FileFactoryVerifier(), 20, 20, TimeUnit.SECONDS);
+		scheduleWorkers();
 		monitoredDirectories = monitored_directories;
 		initialise();
 		this.start();
 	}
 	
+	/**
+	 * Loads the last {@link CatalogSnapshot} and replays the {@link CatalogJournal} on top, so the play-list is served 
+	 * before any directory is scanned, then schedules the verifier, compactor and snapshot.
+	 */
+	private static void scheduleWorkers()
+	{
+		// Filter the restored media files by the deep search setting from the start.
+		FileFactory.setDeepSearchShown(ApplicationGlobals.isDeepSearch());
+		final long snapshot_generation = CatalogSnapshot.load();
+		// Created before the replay, so a replayed journal is written to the next snapshot and compacted.
+		final CatalogSnapshot snapshot = new CatalogSnapshot();
+		CatalogJournal.open(snapshot_generation);
+		SCHEDULED_WORKER.scheduleWithFixedDelay(new FileFactoryVerifier(), VERIFIER_DELAY, VERIFIER_DELAY, TimeUnit.SECONDS);
+		SCHEDULED_WORKER.scheduleWithFixedDelay(new FileFactoryCompactor(), VERIFIER_DELAY, VERIFIER_DELAY, TimeUnit.SECONDS);
+		SCHEDULED_WORKER.scheduleWithFixedDelay(snapshot, SNAPSHOT_DELAY, SNAPSHOT_DELAY, TimeUnit.SECONDS);
+	}
+	
 	@Override
 	public void run() 
 	{
@@ -92,8 +212,6 @@ public final class DirectoryFactory extends Thread
 		{
 			handleCleanUp();
 			handleScanners();
-			handleSorters();
-			attemptGuiUpdate();
 			this.waitFor(false);
 		}
 	}
@@ -125,7 +243,11 @@ public final class DirectoryFactory extends Thread
 	{
 		for(String directory : monitoredDirectories)
 			if(!isScannerDuplicate(directory))
+			{
+				// Monitored again, the directory may have been remounted since its store was cached.
+				invalidateFileStores(directory);
 				SCANNERS.add(new DirectoryScanner(directory));
+			}
 	}
 	
 	
@@ -134,13 +256,12 @@ public final class DirectoryFactory extends Thread
 		int clean_up_size = PATHS_TO_REMOVE.size();
 		if(clean_up_size > 0)
 		{
-			FileFactory.removeByPaths(new ArrayList<byte[]>(PATHS_TO_REMOVE));
+			FileFactory.removeByPaths(new ArrayList<MediaPath>(PATHS_TO_REMOVE));
 			PATHS_TO_REMOVE.clear();
-			playlistChanged = true;
 		}
 		
-		if(FileFactory.validateInternalFileStructure(ApplicationGlobals.isDeepSearch()))
-			playlistChanged = true;
+		// Only switches the view filter if deep search was toggled, nothing is purged.
+		FileFactory.setDeepSearchShown(ApplicationGlobals.isDeepSearch());
 	}
 	
 	private static void handleScanners()
@@ -162,161 +283,314 @@ public final class DirectoryFactory extends Thread
 		}
 	}
 	
-	private static void handleSorters()
+	private static void handleScanner(DirectoryScanner scanner, ArrayList<DirectoryScanner> finished_scanners)
 	{
-		ArrayList<SortImpl> finished_sorters = new ArrayList<SortImpl>();
-		synchronized (SORTERS) 
-		{
-			for(int i = 0; i < SORTERS.size(); i++)
+		if(!scanner.isScanning() && !scanner.isScheduled() && !scanner.isFinished())
+			try
 			{
-				Sorter sorter = (Sorter) SORTERS.get(i);
-				if(!sorter.isFinished() && !sorter.isExecuted())
-				{
-					if(sorter instanceof AlphaSort)
-						WORKERS.execute(sorter);
-					else if(sorter instanceof SizeSort)
-						WORKERS.execute(sorter);
-				}
-				else if(sorter.isFinished())
-					finished_sorters.add(sorter);
+				// Never block the update cycle on a stalled mount.
+				final FileStore store = scanner.getFileStore(SCANNER_STORE_WAIT);
+				// Scanners on the disk being played from are left until playback stops, they catch up after.
+				if(!isPlaybackStore(store))
+					// Run on the workers of the scanners store, refused if the store is parked.
+					if(FileStoreWorkers.get(store).execute(scanner))
+						scanner.setScheduled(true);
+					// Refused while parked, the store is looked up again in case the disk was remounted.
+					else
+						scanner.resetFileStore();
 			}
-			
-			if(finished_sorters.size() > 0)
+			catch (TimeoutException e)
 			{
-				SORTERS.removeAll(finished_sorters);
-				finished_sorters.clear();
+				// Left queued, the lookup is waited on again by the next cycle.
 			}
-		}
+		if(scanner.isFinished())
+			finished_scanners.add(scanner);
+	}
+	
+	/**
+	 * Retrieves the File a MediaFile is associated with, using the path.
+	 * @param MediaFile media_file_info - Media file representation of the file wanted.
+	 * @return File - Returns File if a media file is associated, null otherwise.
+	 */
+	public static File getMediaFile(final MediaFile media_file_info)
+	{
+		// Attempt to retrieve file associated with the media file object.
+		final File media_file = media_file_info.getMediaPath().toFile();
+		// Returns the file if it is not a folder and not null. Null otherwise.
+		return (media_file != null && media_file.isFile()) ? media_file : null ;
+	}
+	
+	private synchronized static boolean isScannerDuplicate(String dir)
+	{
+		for(int i = 0; i < SCANNERS.size(); i++)
+			if(dir.equals(SCANNERS.get(i).getDir()))
+				return true;
 		
+		return false;
 	}
 	
-	private static void handleScanner(DirectoryScanner scanner, ArrayList<DirectoryScanner> finished_scanners)
+	public synchronized static void addNewScanner(String dir, List<File> passed_dir_files, ScanJob root_job)
 	{
-		if(!scanner.isScanning() && !scanner.isScheduled() && !scanner.isFinished())
-		{
-			WORKERS.execute(scanner);
-			scanner.setScheduled(true);
-		}
-		if(scanner.isFinished())
-			finished_scanners.add(scanner);
+		final boolean deep_search_directory = true;
+		if(!isScannerDuplicate(dir) && !root_job.isCancelled())
+			SCANNERS.add(new DirectoryScanner(dir, passed_dir_files, deep_search_directory, root_job));
+	}
+	
+	public synchronized static void addNewScanner(String dir)
+	{
+		if(!isScannerDuplicate(dir))
+			SCANNERS.add(new DirectoryScanner(dir));
 	}
 	
 	/**
-	 * Attempts to update the GUI, once a play-list change has been detected.
+	 * Queues paths for removal on the next update cycle. Paths are immutable, so are queued without copying.
+	 * @param List of MediaPath paths - Paths of the media files to remove.
 	 */
-	private static void attemptGuiUpdate()
+	public synchronized static void addPathsForCleanUp(List<MediaPath> paths)
 	{
-		// If the play-list has been changed...
-		if(playlistChanged)
+		PATHS_TO_REMOVE.addAll(paths);
+	}
+	
+	/**
+	 * Called by the {@link Receiver} when a media file starts playing. Stores the {@link FileStore} of the 
+	 * file so scanning on that store can be held back until playback stops.
+	 * @param MediaPath media_path - Path of the media file being played.
+	 */
+	public static void signalPlaybackStarted(MediaPath media_path)
+	{
+		// Retrieve the store of the directory the media file is in.
+		final FileStore store = getFileStore(media_path.getParent());
+		synchronized (DirectoryFactory.class)
 		{
-			// Attempt to update the advanced Play-list. 
-			Tray.updatePlaylist();
-			// Set play-list changed to false after update.
-			playlistChanged = false;
-			// Handle sorting.
-			handleSortScheduling();
-			// Signal to the FileServer that each FileHandler needs an update.
-			NetworkHandler.signalPlaylistUpdate();
+			playbackStore = store;
 		}
 	}
 	
-	public static void handleSortScheduling()
+	/**
+	 * Called by the {@link Receiver} when playback has stopped or the OOP has disconnected. Scanning resumes 
+	 * at full speed on the next update cycle.
+	 */
+	public synchronized static void signalPlaybackStopped()
+	{
+		playbackStore = null;
+	}
+	
+	/**
+	 * Checks if the passed {@link FileStore} is the one the currently playing media file is located on.
+	 * @param FileStore store - Store to check.
+	 * @return boolean - True if media is being played from the store, false otherwise.
+	 */
+	public synchronized static boolean isPlaybackStore(FileStore store)
 	{
-		//System.out.println("Is sorting:"+isAlphaSorting() + "\nIs synced:" + FileFactory.isAlphaSynced());
-		//System.out.println("Path size:"+ FileFactory.getNameList().size() + "\nSort size" + FileFactory.getAlphaList().size());
-		if(!isAlphaSorting() && !FileFactory.isAlphaSynced())
-			// Schedule new sort.
-			SORTERS.add(new AlphaSort());
-		if(!isSizeSorting() && !FileFactory.isSizeSynced())
-			SORTERS.add(new SizeSort());
+		return (playbackStore != null && playbackStore.equals(store));
+	}
+	
+	/**
+	 * Retrieves the {@link FileStore} a directory is located on. Stores are cached per directory
+	 * so the file system is only asked once, until the cache entry is dropped.
+	 * @param String directory - Directory to retrieve the store of.
+	 * @return FileStore - Store of the directory, null if it cannot be retrieved.
+	 */
+	public static FileStore getFileStore(String directory)
+	{
+		if(directory == null)
+			return null;
+		
+		FileStore store = FILE_STORES.get(directory);
+		if(store == null)
+			try
+			{
+				store = Files.getFileStore(FileSystems.getDefault().getPath(directory));
+				FILE_STORES.put(directory, store);
+			}
+			catch (IOException | InvalidPathException e)
+			{
+				// Ignore, directory is missing or not mounted.
+			}
+		return store;
 	}
 	
-	private static boolean isAlphaSorting()
+	/**
+	 * Retrieves the {@link FileStore} a directory is located on without blocking for longer than the passed wait.
+	 * Uncached stores are looked up on a separate thread, a lookup still running after the wait is left to finish
+	 * and waited on again by the next call for the directory.
+	 * @param String directory - Directory to retrieve the store of.
+	 * @param long wait - Milliseconds to wait for the lookup.
+	 * @return FileStore - Store of the directory, null if it cannot be retrieved.
+	 * @throws TimeoutException - If the lookup did not finish within the wait, or no lookup thread is free.
+	 */
+	public static FileStore getFileStore(final String directory, long wait) throws TimeoutException
 	{
-		boolean has_alpha = false;
-		synchronized (SORTERS) 
+		if(directory == null)
+			return null;
+		
+		final FileStore cached = FILE_STORES.get(directory);
+		if(cached != null)
+			return cached;
+		
+		Future<FileStore> lookup;
+		synchronized (STORE_LOOKUPS)
 		{
-			for(int i = 0; i < SORTERS.size(); i ++)
-				if(SORTERS.get(i) instanceof AlphaSort)
-					has_alpha = true;
+			lookup = STORE_LOOKUPS.get(directory);
+			if(lookup == null)
+			{
+				try
+				{
+					lookup = STORE_LOOKUP_WORKER.submit(new Callable<FileStore>()
+					{
+						@Override
+						public FileStore call() throws Exception
+						{
+							return getFileStore(directory);
+						}
+					});
+				}
+				catch (RejectedExecutionException e)
+				{
+					// Every lookup thread is held, try again later.
+					throw new TimeoutException();
+				}
+				STORE_LOOKUPS.put(directory, lookup);
+			}
 		}
 		
-		return has_alpha;
+		try
+		{
+			final FileStore store = lookup.get(wait, TimeUnit.MILLISECONDS);
+			synchronized (STORE_LOOKUPS)
+			{
+				STORE_LOOKUPS.remove(directory);
+			}
+			return store;
+		}
+		catch (InterruptedException | ExecutionException e)
+		{
+			synchronized (STORE_LOOKUPS)
+			{
+				STORE_LOOKUPS.remove(directory);
+			}
+			return null;
+		}
 	}
 	
-	private static boolean isSizeSorting()
+	/**
+	 * Drops the cached store of a directory and of every directory within it.
+	 * @param String root - Directory to drop the stores of.
+	 */
+	public static void invalidateFileStores(String root)
 	{
-		boolean has_size = false;
-		synchronized (SORTERS) 
+		final String root_prefix = (root.endsWith(File.separator)) ? root : root + File.separator;
+		synchronized (FILE_STORES)
 		{
-			for(int i = 0; i < SORTERS.size(); i ++)
-				if(SORTERS.get(i) instanceof SizeSort)
-					has_size = true;
+			final Iterator<String> iterator = FILE_STORES.keySet().iterator();
+			while(iterator.hasNext())
+			{
+				final String directory = iterator.next();
+				if(directory.equals(root) || directory.startsWith(root_prefix))
+					iterator.remove();
+			}
 		}
-		
-		return has_size;
 	}
-
+	
 	/**
-	 * Retrieves the File a MediaFile is associated with, using the path.
-	 * @param MediaFile media_file_info - Media file representation of the file wanted.
-	 * @return File - Returns File if a media file is associated, null otherwise.
+	 * Drops every directory cached as being on the passed store, called once the store is parked.
+	 * @param FileStore store - Store to drop.
 	 */
-	public static File getMediaFile(final MediaFile media_file_info)
+	public static void invalidateFileStore(FileStore store)
 	{
-		// Attempt to retrieve file associated with the media file object.
-		final File media_file = new File(media_file_info.getLocation().toString());
-		// Returns the file if it is not a folder and not null. Null otherwise.
-		return (media_file != null && media_file.isFile()) ? media_file : null ;
+		synchronized (FILE_STORES)
+		{
+			FILE_STORES.values().removeAll(Collections.singleton(store));
+		}
 	}
 	
-	public synchronized static void signalPlaylistChanged()
+	/**
+	 * Retrieves the {@link ScanJob} of a monitored directory, a new job is created if there is none or 
+	 * the last one was cancelled.
+	 * @param String root - Monitored directory.
+	 * @return ScanJob - Scan progress of the monitored directory.
+	 */
+	public static ScanJob getScanJob(String root)
 	{
-		playlistChanged = true;
+		synchronized (SCAN_JOBS)
+		{
+			ScanJob job = SCAN_JOBS.get(root);
+			if(job == null || job.isCancelled())
+				SCAN_JOBS.put(root, (job = new ScanJob(root)));
+			return job;
+		}
 	}
 	
-	private synchronized static boolean isScannerDuplicate(String dir)
+	/**
+	 * Retrieves the scan progress of each monitored directory.
+	 * @return ArrayList of ScanJob - Scan progress of each monitored directory.
+	 */
+	public static ArrayList<ScanJob> getScanJobs()
 	{
-		for(int i = 0; i < SCANNERS.size(); i++)
-			if(dir.equals(SCANNERS.get(i).getDir()))
-				return true;
-		
-		return false;
+		synchronized (SCAN_JOBS)
+		{
+			return new ArrayList<ScanJob>(SCAN_JOBS.values());
+		}
 	}
 	
-	public synchronized static void addNewScanner(String dir, List<File> passed_dir_files)
+	/**
+	 * Cancels the scanning of a monitored directory straight away. Scanners waiting on the search delay 
+	 * are woken, running scanners stop before their next file and all scanners of the directory are removed. 
+	 * The directory is scanned again once re-initialised.
+	 * @param String root - Monitored directory to stop scanning.
+	 */
+	public static void cancelScan(String root)
 	{
-		final boolean deep_search_directory = true;
-		if(!isScannerDuplicate(dir))
-			SCANNERS.add(new DirectoryScanner(dir, passed_dir_files, deep_search_directory));
+		final ScanJob job;
+		synchronized (SCAN_JOBS)
+		{
+			job = SCAN_JOBS.remove(root);
+		}
+		if(job != null)
+			cancelScanners(job);
 	}
 	
-	public synchronized static void addNewScanner(String dir)
+	/**
+	 * Cancels the scanning of every monitored directory straight away.
+	 */
+	public static void cancelScans()
 	{
-		if(!isScannerDuplicate(dir))
-			SCANNERS.add(new DirectoryScanner(dir));
+		for(ScanJob job : getScanJobs())
+			cancelScan(job.getRoot());
 	}
 	
-	public synchronized static void addPathsForCleanUp(List<byte[]> paths)
+	private static void cancelScanners(ScanJob job)
 	{
-		for(int i = 0; i < paths.size(); i ++)
+		job.cancel();
+		synchronized (SCANNERS)
 		{
-			int length = 0;
-			byte[] to_copy = paths.get(i), copy_into = new byte[(length = to_copy.length)];
-			
-			System.arraycopy(to_copy, 0, copy_into, 0, length);
-			PATHS_TO_REMOVE.add(copy_into);
+			for(int i = SCANNERS.size()-1; i >= 0; i--)
+				if(SCANNERS.get(i).getJob() == job)
+					SCANNERS.remove(i);
 		}
 	}
 	
 	public static void resetScanners()
 	{
+		cancelScans();
 		SCANNERS.clear();
 	}
 	
+	/**
+	 * Brings the scanners and the catalog in line with the monitored directories. Directories no longer monitored have
+	 * their scanners cancelled and their media files removed, newly monitored directories are given a scanner. 
+	 * Directories still monitored carry on where they are, none are scanned again.
+	 */
 	public static void reinitialize()
 	{
-		SCANNERS.clear();
+		// Stop scanning directories that are no longer monitored.
+		for(ScanJob job : getScanJobs())
+			if(!monitoredDirectories.contains(job.getRoot()))
+				cancelScan(job.getRoot());
+		// Drop their media files in one go, rather than waiting for them to be found missing.
+		for(String root : FileFactory.getRoots())
+			if(!monitoredDirectories.contains(root))
+				FileFactory.removeRoot(root);
 		initialise();
 	}
 }
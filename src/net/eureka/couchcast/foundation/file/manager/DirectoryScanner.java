@@ -2,18 +2,23 @@ package net.eureka.couchcast.foundation.file.manager;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
 import java.nio.file.FileSystemException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.DirectoryStream.Filter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeoutException;
 
 import net.eureka.couchcast.Static;
 import net.eureka.couchcast.foundation.file.media.MediaFile;
+import net.eureka.couchcast.foundation.file.media.MediaPath;
+import net.eureka.couchcast.foundation.file.media.MediaSniffer;
 import net.eureka.couchcast.foundation.file.media.MediaVerifier;
 import net.eureka.couchcast.foundation.init.ApplicationGlobals;
 import net.eureka.couchcast.foundation.logging.Logger;
@@ -25,39 +30,41 @@ import net.eureka.couchcast.gui.lang.Languages;
  * by the {@link DirectoryFactory} and doubles as a observer and producer/consumer pattern. Any found
  * media files is added to the {@link FileFactory} and any media files that no longer exist are added
  * to the {@link DirectoryFactory} for removal at the next update cycle.
+ * <br>
+ * <br>
+ * Progress is reported to the {@link ScanJob} of the monitored directory the scanner belongs to.
  * 
  * @author Owen McMonagle.
  * 
  * @see DirectoryFactory
  * @see FileFactory
+ * @see ScanJob
  *
- * @version 0.2
+ * @version 0.12
  */
 public final class DirectoryScanner implements Runnable
 {
-	private static final DirectoryStream.Filter<Path> DIRECTORY_FILTER = new Filter<Path>()
+	private final DirectoryStream.Filter<Path> directoryFilter = new Filter<Path>()
     {
-		private final String ENCODING = ApplicationGlobals.getEncoding();
-		
 		@Override
 		public boolean accept(Path entry) throws IOException 
 		{
+			// Count each file visited.
+			job.addVisited();
 			// Get file to verify.
 			File entry_file = entry.toFile();
 			// If the file is not a directory...
 			if(!entry_file.isDirectory())
-				// If the file is not a duplicate...
-				if(!FileFactory.isDuplicate(entry_file.getAbsolutePath().getBytes(ENCODING)))
-				{
-					// Get file name.
-					final String file_name = entry.getFileName().toString();
-					// Return true or false depending if the Media extension is valid.
-					return MediaVerifier.isFileValid(file_name);
-				}
-				// If the file is a duplicate...
-				else
-					// Return false to ignore file.
-					return false;
+			{
+				// Get file name.
+				final String file_name = entry.getFileName().toString();
+				// Return true or false depending if the Media extension is valid, or the content if sniffing.
+				// Duplicates are checked once the path is encoded, before any delay, see 'handleNewFile()'.
+				final boolean valid = MediaVerifier.isFileValid(file_name) || (ApplicationGlobals.isContentSniffing() && MediaSniffer.isMedia(entry_file));
+				if(!valid)
+					job.addSkipped();
+				return valid;
+			}
 			// If the file is a directory...
 			else
 				// Return true to retrieve file directory.
@@ -67,21 +74,39 @@ public final class DirectoryScanner implements Runnable
 	
 	
 	private static final String VALID_EXTENSION_LIST = MediaVerifier.getExtensionList();
+	
+	/**
+	 * Minimum delay between each file while media is being played from the same {@link FileStore}.
+	 */
+	private static final int PLAYBACK_SEARCH_DELAY = 1000;
+	
 	private static int globalSerial = 0;
 	
 	private int serial = 0;
 	
-	private ArrayList<byte[]> validationPaths = new ArrayList<byte[]>();
-	private ArrayList<byte[]> fileLengths = new ArrayList<byte[]>();
+	private ArrayList<MediaPath> validationPaths = new ArrayList<MediaPath>();
+	private ArrayList<byte[]> fileLengths = new ArrayList<byte[]>(), fileModifiedTimes = new ArrayList<byte[]>();
 	private ArrayList<MediaFile> foundMediaFiles = new ArrayList<MediaFile>();
 	private List<File> passedFiles = null;
 	private boolean scanning = false, finished = false, scheduled = false, isDeepSearchDir = false;
 	private String directory = "";
+	private FileStore fileStore = null;
+	
+	/**
+	 * Progress of the monitored directory this scanner belongs to.
+	 */
+	private ScanJob job = null;
+	
+	/**
+	 * Last pass of the job this scanner took part in, and the pass it was registered to when created beneath another.
+	 */
+	private int lastPass = ScanJob.NO_PASS, registeredPass = ScanJob.NO_PASS;
 	
 	
 	public DirectoryScanner(String dir_to_scan) 
 	{
 		this.directory = dir_to_scan;
+		this.job = DirectoryFactory.getScanJob(dir_to_scan);
 		globalSerial++;
 		this.serial = globalSerial;
 	}
@@ -90,6 +115,7 @@ public final class DirectoryScanner implements Runnable
 	{
 		this.isDeepSearchDir = is_deep_search_dir;
 		this.directory = dir_to_scan;
+		this.job = DirectoryFactory.getScanJob(dir_to_scan);
 		globalSerial++;
 		this.serial = globalSerial;
 	}
@@ -98,15 +124,19 @@ public final class DirectoryScanner implements Runnable
 	{
 		this.directory = dir_to_scan;
 		this.passedFiles = passed_files_to_scan;
+		this.job = DirectoryFactory.getScanJob(dir_to_scan);
 		globalSerial++;
 		this.serial = globalSerial;
 	}
 	
-	public DirectoryScanner(String dir_to_scan, List<File> passed_files_to_scan, boolean is_deep_search_dir)
+	public DirectoryScanner(String dir_to_scan, List<File> passed_files_to_scan, boolean is_deep_search_dir, ScanJob root_job)
 	{
 		this.isDeepSearchDir = is_deep_search_dir;
 		this.directory = dir_to_scan;
 		this.passedFiles = passed_files_to_scan;
+		this.job = root_job;
+		// The pass of the scanner this one was created beneath waits for it.
+		this.registeredPass = root_job.register();
 		globalSerial++;
 		this.serial = globalSerial;
 	}
@@ -114,6 +144,7 @@ public final class DirectoryScanner implements Runnable
 	public DirectoryScanner(String dir_to_scan, boolean start) 
 	{
 		this.directory = dir_to_scan;
+		this.job = DirectoryFactory.getScanJob(dir_to_scan);
 		globalSerial++;
 		this.serial = globalSerial;
 		if(start)
@@ -124,32 +155,55 @@ public final class DirectoryScanner implements Runnable
 	{
 		// DEBUG System.out.println("Scanner No. " + serial + " running."+"\n"+this.directory);
 		boolean deep_search = ApplicationGlobals.isDeepSearch();
-		if(deep_search || (!deep_search && !this.isDeepSearchDir))
+		// Cancelled scanners are finished and dropped by the factory.
+		if(job.isCancelled())
+			this.release();
+		else if(deep_search || (!deep_search && !this.isDeepSearchDir))
 		{
-			
-			this.scanning = true;
-			if(this.passedFiles != null)
-				scanFiles();
-			else if(doesFileExist(directory.getBytes()))
-				scanDir();
-			else
-				this.clean();
-			this.scanning = false;
-			
-			if(!foundMediaFiles.isEmpty())
+			final int pass = job.begin(lastPass, registeredPass);
+			this.registeredPass = ScanJob.NO_PASS;
+			// Scanners that already took part in the current pass run again on the next one.
+			if(pass != ScanJob.NO_PASS)
 			{
-				for(int i = 0; i < foundMediaFiles.size(); i++)
-					FileFactory.addMediaFile(foundMediaFiles.get(i).getName(), foundMediaFiles.get(i).getLocation(), foundMediaFiles.get(i).getSize(), fileLengths.get(i), this.isDeepSearchDir);
+				this.lastPass = pass;
+				this.scanning = true;
+				if(this.passedFiles != null)
+					scanFiles();
+				else if(new File(directory).exists())
+					scanDir();
+				else
+					this.clean();
 				
-				foundMediaFiles.clear();
+				// Commit the media files found in one batch, under the monitored directory of the job, before the
+				// pass ends so anything waiting on it sees them. Dropped by the factory if the job was cancelled.
+				if(!foundMediaFiles.isEmpty())
+				{
+					FileFactory.addMediaFiles(foundMediaFiles, fileLengths, fileModifiedTimes, this.isDeepSearchDir, job);
+					foundMediaFiles.clear();
+					fileLengths.clear();
+					fileModifiedTimes.clear();
+				}
+				this.scanning = false;
+				job.end();
 			}
 		}
+		// Media files found by deep search are only filtered out while it is disabled, so are left in place.
 		else
-			this.clean();
+			this.release();
 		
 		this.scheduled = false;
 	}
 	
+	/**
+	 * Finishes the scanner without scanning, releasing it from any pass it was registered to.
+	 */
+	private void release()
+	{
+		job.release(registeredPass);
+		this.registeredPass = ScanJob.NO_PASS;
+		this.finished = true;
+	}
+	
 	private void scanDir()
 	{
 		this.load();
@@ -193,6 +247,44 @@ public final class DirectoryScanner implements Runnable
 		return finished;
 	}
 	
+	public ScanJob getJob()
+	{
+		return this.job;
+	}
+	
+	/**
+	 * Retrieves the {@link FileStore} the scanned directory is located on.
+	 * @return FileStore - Store of the directory, null if it cannot be retrieved.
+	 */
+	public FileStore getFileStore()
+	{
+		if(this.fileStore == null)
+			this.fileStore = DirectoryFactory.getFileStore(this.directory);
+		return this.fileStore;
+	}
+	
+	/**
+	 * Retrieves the {@link FileStore} the scanned directory is located on, without blocking for longer than the
+	 * passed wait.
+	 * @param long wait - Milliseconds to wait for the lookup.
+	 * @return FileStore - Store of the directory, null if it cannot be retrieved.
+	 * @throws TimeoutException - If the lookup did not finish within the wait.
+	 */
+	public FileStore getFileStore(long wait) throws TimeoutException
+	{
+		if(this.fileStore == null)
+			this.fileStore = DirectoryFactory.getFileStore(this.directory, wait);
+		return this.fileStore;
+	}
+	
+	/**
+	 * Drops the {@link FileStore} of the scanned directory, so it is looked up again before the next run.
+	 */
+	public void resetFileStore()
+	{
+		this.fileStore = null;
+	}
+	
 	public void setScheduled(boolean is_scheduled)
 	{
 		this.scheduled = is_scheduled;
@@ -240,43 +332,40 @@ public final class DirectoryScanner implements Runnable
 		// Create file instance.
 		File potential_media_file = null;
 		// Create list limit.
-		int potential_media_files_limit = potential_media_files.size(), scan_count = 0;
-		// Flag to indicate whether or not files were added to FileFactory.
-		boolean files_added = false;
-		// Iterate through each file gathered...
-		for(int i = 0; i < potential_media_files_limit; i++)
+		int potential_media_files_limit = potential_media_files.size();
+		// Iterate through each file gathered, until cancelled...
+		final FileStoreWorkers store_workers = FileStoreWorkers.get(getFileStore());
+		// Only new media files and directories are delayed, see 'handleNewFile()' and 'handleNewDirectory()'.
+		// Stops once the store is parked, the rest are checked when the scanner is run again.
+		for(int i = 0; i < potential_media_files_limit && !job.isCancelled() && !store_workers.isParked(); i++)
 		{
-			//Delay
-			delay();
 			// Get a potential media file.
 			potential_media_file = potential_media_files.get(i);
 			// Perform media file checks.
-			files_added = handlePotentialMediaFile(potential_media_file, scan_count);
-			// Check if the number of files scanned equal to 25.
-			handleScanCount(scan_count);
+			handlePotentialMediaFile(potential_media_file, store_workers);
 		}
-		// If files were added...
-		if(files_added)
-			// Display that a change has been made to the playlist.
-			DirectoryFactory.signalPlaylistChanged();
 		
 		//System.out.println("List size: "+FileFactory.getListSize());
 	}
 	
-	private boolean handlePotentialMediaFile(File potential_media_file, int scan_count)
+	private boolean handlePotentialMediaFile(File potential_media_file, FileStoreWorkers store_workers)
 	{
+		// Time the reads against the store, reads hung on a stalled mount count towards parking it.
+		store_workers.beginOperation();
+		final boolean is_directory = potential_media_file.isDirectory();
+		final long modified_time = (is_directory) ? 0L : potential_media_file.lastModified();
+		store_workers.endOperation(true);
+		
 		// If the file is not a directory, a file vlc can play and not a duplicate....
 		// && MediaVerifier.isFileValid(potential_media_file)
-		if(!potential_media_file.isDirectory()) // //&& isCompletelyWritten(file)
+		if(!is_directory) // //&& isCompletelyWritten(file)
 		{
 			// Get file path and add to FileFactory list.
-			byte[] path = handleNewFile(potential_media_file, isDeepSearchDir);
+			final MediaPath path = handleNewFile(potential_media_file, modified_time, store_workers);
 			if(path != null)
 			{
 				// Add new path for validation checking.
 				validationPaths.add(path);
-				// Increase scan count.
-				scan_count = scan_count + 1;
 				// Flag to signal that the playlist needs updated.
 				return true;
 			}
@@ -288,61 +377,87 @@ public final class DirectoryScanner implements Runnable
 		return false;
 	}
 	
-	private byte[] handleNewFile(File potential_media_file, boolean deep_search)
+	/**
+	 * Encodes the path of a media file once, and adds the media file to the batch if it is not a duplicate. The name
+	 * is taken from the encoded path rather than encoded again. Duplicates are looked up before any delay and cost a
+	 * single read of their modification time, the file size is only read again if it has changed, in which case the
+	 * duplicate is updated within the {@link FileFactory}.
+	 * @param File potential_media_file - Media file found.
+	 * @param long last_modified - Modification time of the media file, as just read.
+	 * @param FileStoreWorkers store_workers - Workers of the store, timing the read of the file size.
+	 * @return MediaPath - Path of the media file, null if a duplicate.
+	 */
+	private MediaPath handleNewFile(File potential_media_file, long last_modified, FileStoreWorkers store_workers)
 	{
-		final String encoding = ApplicationGlobals.getEncoding();
-		byte[] path = null;
-		try
-		{
-			path = potential_media_file.getAbsolutePath().getBytes(encoding);
-			//System.out.println(new String(path));
-			// Create a new media file and add to list.
-			foundMediaFiles.add(new MediaFile(potential_media_file.getName().getBytes(encoding), path, Static.byteCalculator(potential_media_file.length()).getBytes(encoding)));
-			fileLengths.add(Static.longToBytes(potential_media_file.length()));
-			//FileFactory.addMediaFile(potential_media_file.getName().getBytes(encoding), path, Static.byteCalculator(potential_media_file.length()).getBytes(encoding), deep_search);
-		} 
-		catch (UnsupportedEncodingException e) 
+		final MediaPath path = MediaPath.of(potential_media_file);
+		final byte[] modified_time = Static.longToBytes(last_modified);
+		final byte[] held_modified_time = FileFactory.getModifiedTime(path.getBytes());
+		// If the file is a duplicate...
+		if(held_modified_time != null)
 		{
-			// Note in log that no files can be found.
-			Logger.append(new StringBuffer("UnsupportedEncodingException exception"));
+			// Update the file if changed, else ignore it.
+			if(!Arrays.equals(held_modified_time, modified_time))
+				FileFactory.updateMediaFile(path.getBytes(), Static.longToBytes(readLength(potential_media_file, store_workers)), modified_time);
+			job.addSkipped();
+			return null;
 		}
+		
+		// Delay only before new media files.
+		delay();
+		// Create a new media file and add to list. The size is derived from the file length when needed.
+		final long length = readLength(potential_media_file, store_workers);
+		foundMediaFiles.add(new MediaFile(path.getNameBytes(), path.getBytes(), null));
+		fileLengths.add(Static.longToBytes(length));
+		fileModifiedTimes.add(modified_time);
+		job.addMatched(length);
 		return path;
 	}
 	
-	private static void handleNewDirectory(File directory)
+	private static long readLength(File file, FileStoreWorkers store_workers)
+	{
+		store_workers.beginOperation();
+		final long length = file.length();
+		store_workers.endOperation(true);
+		return length;
+	}
+	
+	private void handleNewDirectory(File directory)
 	{ 
+		// Delay before listing each directory.
+		delay();
 		String dir_path = directory.getAbsolutePath();
 		List<File> passed_files = retrieveFilesAsList(dir_path, VALID_EXTENSION_LIST); 
 		int size = passed_files.size();
 		if(size > 0)
 			// Add new Directory scanner if new directory.
-			DirectoryFactory.addNewScanner(dir_path, passed_files);
-	}
-	
-	private static void handleScanCount(int scan_count)
-	{
-		if(scan_count == 25)
-		{
-			DirectoryFactory.signalPlaylistChanged();
-			scan_count = 0;
-		}
+			DirectoryFactory.addNewScanner(dir_path, passed_files, job);
 	}
 	
-	private static List<File> retrieveFilesAsList(final String location,final String extension_list_filter)
+	private List<File> retrieveFilesAsList(final String location,final String extension_list_filter)
 	{
 		List<File> list = new ArrayList<File>();
 		Path dir = FileSystems.getDefault().getPath( location );
+		// Time the listing against the store, slow or failed listings count towards parking it.
+		final FileStoreWorkers store_workers = FileStoreWorkers.get(getFileStore());
+		boolean success = false;
 		
 	    DirectoryStream<Path> stream = null;
+		store_workers.beginOperation();
 		try 
 		{
-			stream = Files.newDirectoryStream(dir, DIRECTORY_FILTER);
+			stream = Files.newDirectoryStream(dir, directoryFilter);
 			for (Path path : stream) 
 				list.add(path.toFile());
+			success = true;
 		}
-		catch (FileSystemException e)
+		catch (NoSuchFileException e)
 		{
 			// Ignore monitored directory not found.
+			success = true;
+		}
+		catch (FileSystemException e)
+		{
+			// Ignore monitored directory not accessible.
 		}
 		catch (IOException e) 
 		{
@@ -351,9 +466,11 @@ public final class DirectoryScanner implements Runnable
 		}
 	    finally 
 	    {
+	    	store_workers.endOperation(success);
 	    	try 
 	    	{
-				stream.close();
+	    		if(stream != null)
+	    			stream.close();
 			} 
 	    	catch (IOException e) 
 	    	{
@@ -364,28 +481,19 @@ public final class DirectoryScanner implements Runnable
 		return list;
 	}
 	
-	private static void delay()
+	private void delay()
 	{
-		final int search_delay = ApplicationGlobals.getSearchDelay();
+		// Heavily throttle scanning while media is being played from the same disk.
+		final int search_delay = (DirectoryFactory.isPlaybackStore(getFileStore())) ? Math.max(PLAYBACK_SEARCH_DELAY, ApplicationGlobals.getSearchDelay()) : ApplicationGlobals.getSearchDelay();
 		if(search_delay > 0)
-			synchronized (Thread.currentThread())
-			{
-				try 
-				{
-					Thread.currentThread().wait(search_delay);
-				}
-				catch (InterruptedException e) 
-				{
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-			}
+			// Wait on the job so cancelling wakes the scanner straight away.
+			job.delay(search_delay);
 	}
 	
 	/**
 	 * Responsible for removing files that no longer exist from the play-list.
 	 */
-	private static boolean verifyExistanceOfFiles(ArrayList<byte[]> paths)
+	private static boolean verifyExistanceOfFiles(ArrayList<MediaPath> paths)
 	{
 		final int playlist_size = paths.size();
 		// If the media play-list has files...
@@ -393,13 +501,13 @@ public final class DirectoryScanner implements Runnable
 		{
 			// Create a list to store the references that need to be removed.
 			//ArrayList<Integer> files_that_no_longer_exist = new ArrayList<Integer>();
-			ArrayList<byte[]> file_paths_that_no_longer_exist = new ArrayList<byte[]>();
+			ArrayList<MediaPath> file_paths_that_no_longer_exist = new ArrayList<MediaPath>();
 			// Iterate through each media file within the play-list...
 			for(int index = 0; index < playlist_size; index++ )
 			{
-				byte[] media_file_path = paths.get(index);
+				final MediaPath media_file_path = paths.get(index);
 				// If file doesn't not exist anymore...
-				if(!doesFileExist(media_file_path))
+				if(!media_file_path.exists())
 					// Add media file to list for removal.
 					file_paths_that_no_longer_exist.add(media_file_path);
 			}
@@ -419,18 +527,11 @@ public final class DirectoryScanner implements Runnable
 	
 	/**
 	 * Verifies if the file exists.
-	 * @param File file - File path to verify.
+	 * @param byte[] file - Encoded file path to verify.
 	 * @return Boolean - True if exists, false otherwise.
 	 */
 	public static boolean doesFileExist(byte[] file)
 	{
-		try 
-		{
-			return new File(new String(file, "UTF-8")).exists();
-		}
-		catch (UnsupportedEncodingException e) 
-		{
-			return false;
-		}
+		return MediaPath.wrap(file).exists();
 	}
 }
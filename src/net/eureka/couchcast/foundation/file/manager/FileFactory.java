@@ -1,26 +1,85 @@
 package net.eureka.couchcast.foundation.file.manager;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
+import net.eureka.couchcast.foundation.file.manager.event.CatalogEvent;
+import net.eureka.couchcast.foundation.file.manager.event.CatalogEvents;
+import net.eureka.couchcast.foundation.file.manager.query.PlaylistChunk;
+import net.eureka.couchcast.foundation.file.manager.query.PlaylistPage;
+import net.eureka.couchcast.foundation.file.manager.query.PlaylistQuery;
+import net.eureka.couchcast.foundation.file.manager.search.TrigramIndex;
+import net.eureka.couchcast.foundation.file.manager.sorting.AddedSort;
+import net.eureka.couchcast.foundation.file.manager.sorting.AlphaSort;
+import net.eureka.couchcast.foundation.file.manager.sorting.ExtensionSort;
+import net.eureka.couchcast.foundation.file.manager.sorting.FolderSort;
+import net.eureka.couchcast.foundation.file.manager.sorting.ModifiedSort;
+import net.eureka.couchcast.foundation.file.manager.sorting.SizeSort;
+import net.eureka.couchcast.foundation.file.manager.sorting.SortImpl;
+import net.eureka.couchcast.foundation.file.manager.sorting.SortKey;
+import net.eureka.couchcast.foundation.file.manager.sorting.SortOrder;
+import net.eureka.couchcast.foundation.file.manager.sorting.SortRegistry;
+import net.eureka.couchcast.foundation.file.media.DisplayFields;
 import net.eureka.couchcast.foundation.file.media.MediaFile;
+import net.eureka.couchcast.foundation.file.media.MediaPath;
+import net.eureka.couchcast.foundation.init.ApplicationGlobals;
 import net.eureka.couchcast.gui.playlist.PlaylistViewer;
 import net.eureka.couchcast.mediaserver.NetworkHandler;
 
 /**
  * A factory pattern for media files. The media file data is split between lists that go as follows:
- * name, path, size, file size, alphabetically sorted and size descending sorted. Another list called
+ * name, sort key, file size, modification time and media ID. Paths are held apart within a {@link PathArena},
+ * which shares the directories between media files and the name as the last segment of each path. Display only
+ * fields such as the formatted size are not held, {@link DisplayFields} derives them when a media file is sent. Alphabetical and size descending orders
+ * are kept by {@link AlphaSort} and {@link SizeSort}, which take in each added media file instead of sorting every
+ * media file again. Every other {@link SortOrder} is held by the {@link SortRegistry}, which sorts it when first asked
+ * for and keeps it until the catalog generation moves on. A {@link PlaylistQuery} pages through any of those orders
+ * without copying them, and {@link PlaylistChunk} streams them without creating media files. Another list called
  * {@link DeepSearchIndex} is managed by another class for efficiency and to help prevent bloating.
  * <br>
  * <br>
+ * Media files found by deep search are kept whether or not deep search is enabled. While it is disabled the
+ * {@link DeepSearchIndex} is applied as a filter over the view, so they are left out of the play-list, orders and
+ * lookups but are still held, verified and written to disk. Switching deep search back on shows them again without
+ * scanning.
+ * <br>
+ * <br>
  * Here new lists are created and used to be displayed in the play-list via the GUI using {@link PlaylistViewer}
  * or to be sent to each connected client via {@link NetworkHandler}.
  * <br>
  * <br>
- * Each list handles the data as byte[] in order to cut down on Object memory consumption.
+ * Each list handles the data as byte[] in order to cut down on Object memory consumption. Once the catalog goes over
+ * the memory budget set within {@link ApplicationGlobals}, the cold names and modification times are moved to memory
+ * mapped spill files by {@link SpillableColumn}, and only the hot columns used to sort and look up media files are
+ * kept on the heap.
+ * <br>
+ * <br>
+ * Removed media files are only marked with a tombstone, so a removal never shifts the lists. Indexes passed to and
+ * returned from public methods refer to the live media files only, skipping tombstones. Once enough tombstones have
+ * built up, {@link FileFactoryCompactor} rebuilds the lists without them and remaps the orders and the
+ * {@link DeepSearchIndex} in one sweep.
+ * <br>
+ * <br>
+ * The monitored directory each media file was found under is kept by the {@link RootIndex}, so removing a monitored
+ * directory removes its media files in one pass instead of waiting for them to be found missing.
+ * <br>
+ * <br>
+ * Each media file is given a stable ID when it is added. IDs are never reused and do not change on removals or
+ * compaction, so clients can refer to media files by ID instead of by their index within a play-list.
+ * <br>
+ * <br>
+ * Every addition, removal and modification is published through {@link CatalogEvents}.
+ * <br>
+ * <br>
+ * The live media files are written to a {@link CatalogSnapshot} as the catalog changes, and every change in between
+ * is appended to the {@link CatalogJournal}. Both are restored on start up before any directory is scanned.
  * 
  * @author Owen McMonagle.
  * 
@@ -30,185 +89,701 @@ import net.eureka.couchcast.mediaserver.NetworkHandler;
  * @see PlaylistViewer
  * @see NetworkHandler
  * @see MediaFile
+ * @see CatalogEvents
+ * @see FileFactoryCompactor
+ * @see PathArena
+ * @see CatalogSnapshot
+ * @see CatalogJournal
+ * @see SpillableColumn
+ * @see MediaIdIndex
+ * @see RootIndex
  *
- * @version 0.3
+ * @version 0.22
  */
 public final class FileFactory 
 {
-	private static final List<byte[]> MEDIA_NAME_LIST = Collections.synchronizedList(new ArrayList<byte[]>()),
-									  MEDIA_PATH_LIST = Collections.synchronizedList(new ArrayList<byte[]>()),
-									  MEDIA_SIZE_LIST = Collections.synchronizedList(new ArrayList<byte[]>()),
+	/**
+	 * Cold columns, only read when a media file is sent, shown or matched by path. Spilled to disk once the catalog
+	 * goes over its memory budget.
+	 */
+	private static final SpillableColumn NAME_COLUMN = new SpillableColumn(0), MODIFIED_COLUMN = new SpillableColumn(8);
+	
+	private static final List<byte[]> MEDIA_NAME_LIST = Collections.synchronizedList(NAME_COLUMN),
 									  MEDIA_FILE_SIZE_LIST = Collections.synchronizedList(new ArrayList<byte[]>()),
-									  MEDIA_ALPHA_SORT_LIST = Collections.synchronizedList(new ArrayList<byte[]>()),
-									  MEDIA_SIZE_SORT_LIST = Collections.synchronizedList(new ArrayList<byte[]>());
+									  MEDIA_ID_LIST = Collections.synchronizedList(new ArrayList<byte[]>()),
+									  MEDIA_SORT_KEY_LIST = Collections.synchronizedList(new ArrayList<byte[]>()),
+									  MEDIA_MODIFIED_LIST = Collections.synchronizedList(MODIFIED_COLUMN);
+	
+	/**
+	 * Path of each media file, split into its directory and the media file name.
+	 */
+	private static final PathArena MEDIA_PATHS = new PathArena(MEDIA_NAME_LIST);
 	
+	/**
+	 * Monitored directory each media file was found under.
+	 */
+	private static final RootIndex MEDIA_ROOTS = new RootIndex();
+	
+	/**
+	 * Heap taken by the fixed width parts of each media file. Its file size and media ID are each held within an
+	 * array of their own, 32 bytes with the reference, and its place within the orders, the live indexes and the
+	 * monitored directories takes 4 bytes each. Variable width parts are measured as they are added, see
+	 * 'checkMemoryBudget()'.
+	 */
+	private static final int FIXED_ENTRY_BYTES = 96;
+	
+	/**
+	 * Heap taken by the sort keys, kept up to date as they are added and compacted.
+	 */
+	private static long sortKeyBytes = 0L;
+	
+	private static final String NAME_SPILL_FILE = "catalog.names.spill", MODIFIED_SPILL_FILE = "catalog.modified.spill";
+	
+	/**
+	 * True once spilling has failed, so it is not tried again on every addition.
+	 */
+	private static boolean spillFailed = false;
+	
+	/**
+	 * Alphabetical and size descending orders, kept up to date as media files are added.
+	 */
+	private static final SortImpl ALPHA_ORDER = new AlphaSort(MEDIA_SORT_KEY_LIST, MEDIA_NAME_LIST), SIZE_ORDER = new SizeSort(MEDIA_FILE_SIZE_LIST);
+	
+	/**
+	 * Every other order, only sorted when asked for.
+	 */
+	private static final SortRegistry SORT_REGISTRY = new SortRegistry();
+	
+	static
+	{
+		SORT_REGISTRY.register(SortOrder.MODIFIED, new ModifiedSort(MEDIA_MODIFIED_LIST));
+		SORT_REGISTRY.register(SortOrder.ADDED, new AddedSort());
+		SORT_REGISTRY.register(SortOrder.EXTENSION, new ExtensionSort(MEDIA_SORT_KEY_LIST, MEDIA_NAME_LIST));
+		SORT_REGISTRY.register(SortOrder.FOLDER, new FolderSort(MEDIA_SORT_KEY_LIST, MEDIA_NAME_LIST, MEDIA_PATHS));
+	}
+	
+	/**
+	 * Catalog generation, moved on by every addition and removal. Compaction leaves it as is.
+	 */
+	private static long generation = 0L;
+	
+	/**
+	 * Compaction is due once tombstones make up this percentage of the lists, and at least the minimum count.
+	 */
+	private static final int COMPACTION_PERCENT = 10, COMPACTION_MINIMUM = 256;
 	
-	public synchronized static int addMediaFile(byte[] name, byte[] path, byte[] size_str, byte[] file_size, boolean deep_search)
+	/**
+	 * Marks each removed index of the lists.
+	 */
+	private static final BitSet TOMBSTONES = new BitSet();
+	
+	private static int tombstoneCount = 0;
+	
+	/**
+	 * True while media files found by deep search are shown. Switching only changes the view, the media files are
+	 * held either way.
+	 */
+	private static boolean deepSearchShown = true;
+	
+	/**
+	 * Number of held media files found by deep search, not counting tombstones.
+	 */
+	private static int deepSearchCount = 0;
+	
+	/**
+	 * Index within the lists of each live media file. Built when needed, dropped on any change.
+	 */
+	private static int[] liveIndexes = null;
+	
+	/**
+	 * List index of each live media file, by media ID.
+	 */
+	private static final MediaIdIndex ID_INDEXES = new MediaIdIndex();
+	
+	/**
+	 * Next media ID to be given out. Zero is kept to mean unknown.
+	 */
+	private static long nextId = 1L;
+	
+	
+	public static int addMediaFile(byte[] name, byte[] path, byte[] file_size, byte[] modified_time, boolean deep_search, String root)
+	{
+		// Create the sort key before taking the lock.
+		return addMediaFile(name, SortKey.create(name), path, file_size, modified_time, deep_search, root);
+	}
+	
+	private synchronized static int addMediaFile(byte[] name, byte[] sort_key, byte[] path, byte[] file_size, byte[] modified_time, boolean deep_search, 
+												 String root)
 	{	
 		// Add file name to name list.
 		MEDIA_NAME_LIST.add(name);
+		// Add sort key alongside the name.
+		MEDIA_SORT_KEY_LIST.add(sort_key);
+		sortKeyBytes += getArrayBytes(sort_key);
 		
 		// Calculate index for deep search.
 		final int index = (MEDIA_NAME_LIST.size()-1);
 		// Set deep search boolean flag.
 		DeepSearchIndex.add(index, deep_search);
+		if(deep_search)
+			deepSearchCount++;
+		// Note the monitored directory it was found under.
+		MEDIA_ROOTS.add(index, index + 1, MEDIA_ROOTS.getRoot(root));
 		
-		// Add file path to path list.
-		MEDIA_PATH_LIST.add(path);
-		// Add file size string to size list.
-		MEDIA_SIZE_LIST.add(size_str);
-		
+		// Add file path to the path arena, sharing the name.
+		MEDIA_PATHS.add(path, name);
 		// Add file size bytes to file size list for sorting.
 		MEDIA_FILE_SIZE_LIST.add(file_size);
+		// Add modification time bytes to modification time list for sorting.
+		MEDIA_MODIFIED_LIST.add(modified_time);
+		// Give out the next media ID.
+		final long id = addMediaId(index);
+		// Add to each order.
+		ALPHA_ORDER.add(index);
+		SIZE_ORDER.add(index);
+		// Live indexes need to be rebuilt.
+		liveIndexes = null;
+		generation++;
+		// Journal the addition.
+		CatalogJournal.appendAdded(generation, id, name, path, file_size, modified_time, deep_search, root);
+		checkMemoryBudget();
+		
+		// Publish the addition.
+		CatalogEvents.publish(new CatalogEvent(CatalogEvent.Type.ADDED, id, index, path));
 		
 		// Return global index for file; in case needed.
 		return index;
 	}
 	
-	public synchronized static MediaFile getMediaFile(int index) throws FileNotFoundError
+	/**
+	 * Adds a batch of media files, such as the results of a single directory scan, under one lock. Each list is
+	 * grown once, the deep search flags are set as a single range and one batch of changes is published. Sort keys
+	 * are created before the lock is taken. The size of each media file is ignored, as it is derived from the file
+	 * size when needed.
+	 * <br>
+	 * <br>
+	 * The batch is dropped if the {@link ScanJob} it was found by has been cancelled. This is checked under the lock,
+	 * as the monitored directory of a cancelled job may be removed at any point, see 'removeRoot()'.
+	 * @param List of MediaFile media_files - Media files to add.
+	 * @param List of byte[] file_sizes - File size bytes of each media file, in the same order.
+	 * @param List of byte[] modified_times - Modification time bytes of each media file, in the same order.
+	 * @param boolean deep_search - True if the media files are within a deep search directory.
+	 * @param ScanJob job - Scan of the monitored directory the media files were found under, null if none.
+	 * @return int - Global index of the first media file added, -1 if the batch was dropped.
+	 */
+	public static int addMediaFiles(List<MediaFile> media_files, List<byte[]> file_sizes, List<byte[]> modified_times, boolean deep_search, ScanJob job)
 	{
-		final int size = MEDIA_NAME_LIST.size();
-		MediaFile file = null;
+		final int count = media_files.size();
+		final ArrayList<byte[]> names = new ArrayList<byte[]>(count), sort_keys = new ArrayList<byte[]>(count),
+								paths = new ArrayList<byte[]>(count);
 		
-		if(index > size)
-			throw new FileNotFoundError();
-		else
-			file = new MediaFile(MEDIA_NAME_LIST.get(index), MEDIA_PATH_LIST.get(index), MEDIA_SIZE_LIST.get(index));
+		// Split each media file into its columns.
+		for(int i = 0; i < count; i++)
+		{
+			final MediaFile media_file = media_files.get(i);
+			names.add(media_file.getName());
+			sort_keys.add(SortKey.create(media_file.getName()));
+			paths.add(media_file.getLocation());
+		}
 		
-		return file;
+		return addColumns(names, sort_keys, paths, file_sizes.subList(0, count), modified_times.subList(0, count), deep_search, job);
 	}
 	
-	public synchronized static byte[] getMediaName(int index) throws FileNotFoundError
+	private synchronized static int addColumns(List<byte[]> names, List<byte[]> sort_keys, List<byte[]> paths, List<byte[]> file_sizes, 
+											   List<byte[]> modified_times, boolean deep_search, ScanJob job)
+	{
+		// Jobs are cancelled before their monitored directory is removed, so a batch committed after the removal is
+		// always dropped here instead of bringing the directory back.
+		if(job != null && job.isCancelled())
+			return -1;
+		final String root = (job != null) ? job.getRoot() : null;
+		final int count = names.size(), first_index = MEDIA_NAME_LIST.size();
+		final ArrayList<CatalogEvent> events = new ArrayList<CatalogEvent>(count);
+		
+		// Append each column in one go.
+		MEDIA_NAME_LIST.addAll(names);
+		MEDIA_SORT_KEY_LIST.addAll(sort_keys);
+		for(int i = 0; i < count; i++)
+			sortKeyBytes += getArrayBytes(sort_keys.get(i));
+		for(int i = 0; i < count; i++)
+			MEDIA_PATHS.add(paths.get(i), names.get(i));
+		MEDIA_FILE_SIZE_LIST.addAll(file_sizes);
+		MEDIA_MODIFIED_LIST.addAll(modified_times);
+		// Give out a media ID to each.
+		for(int i = 0; i < count; i++)
+			events.add(new CatalogEvent(CatalogEvent.Type.ADDED, addMediaId(first_index + i), first_index + i, paths.get(i)));
+		// Set deep search flags for the whole batch.
+		DeepSearchIndex.add(first_index, first_index + count, deep_search);
+		if(deep_search)
+			deepSearchCount += count;
+		// Note the monitored directory of the whole batch.
+		MEDIA_ROOTS.add(first_index, first_index + count, MEDIA_ROOTS.getRoot(root));
+		// Add the batch to each order.
+		ALPHA_ORDER.add(first_index, first_index + count);
+		SIZE_ORDER.add(first_index, first_index + count);
+		// Live indexes need to be rebuilt.
+		liveIndexes = null;
+		generation++;
+		// Journal the batch, as one generation.
+		for(int i = 0; i < count; i++)
+			CatalogJournal.appendAdded(generation, events.get(i).getId(), names.get(i), paths.get(i), file_sizes.get(i), modified_times.get(i), deep_search, root);
+		checkMemoryBudget();
+		
+		// Publish the batch of additions.
+		CatalogEvents.publish(events);
+		
+		return first_index;
+	}
+	
+	/**
+	 * Gives out the next media ID to the media file at the passed list index.
+	 * @param int index - List index of the media file.
+	 * @return long - Media ID given out.
+	 */
+	private static long addMediaId(int index)
+	{
+		final long id = nextId++;
+		MEDIA_ID_LIST.add(ByteBuffer.allocate(8).putLong(id).array());
+		ID_INDEXES.put(id, index);
+		return id;
+	}
+	
+	public synchronized static MediaFile getMediaFile(int index) throws FileNotFoundError
 	{
-		final int size = MEDIA_NAME_LIST.size();
-		if(index > size)
+		return createMediaFile(toListIndex(index));
+	}
+	
+	/**
+	 * Retrieves a media file by its media ID.
+	 * @param long id - Media ID of the media file.
+	 * @return MediaFile - Media file with the passed ID.
+	 * @throws FileNotFoundError - If no live media file has the passed ID.
+	 */
+	public synchronized static MediaFile getMediaFileById(long id) throws FileNotFoundError
+	{
+		final int list_index = ID_INDEXES.get(id);
+		if(list_index == MediaIdIndex.NOT_FOUND || isHidden(list_index))
 			throw new FileNotFoundError();
-		else
-			return MEDIA_NAME_LIST.get(index);
+		return createMediaFile(list_index);
+	}
+	
+	/**
+	 * Retrieves the media ID of a media file.
+	 * @param int index - Live index of the media file.
+	 * @return long - Media ID of the media file.
+	 * @throws FileNotFoundError - If no live media file has the passed index.
+	 */
+	public synchronized static long getMediaId(int index) throws FileNotFoundError
+	{
+		return getMediaIdAt(toListIndex(index));
+	}
+	
+	/**
+	 * Checks if a media file is within the view, neither removed nor filtered out. Lets indexes that hold every media
+	 * file, such as the trigram index of searches, leave out the rest before ranking them.
+	 * @param long id - Media ID of the media file.
+	 * @return boolean - True if a live media file has the passed ID, false otherwise.
+	 */
+	public synchronized static boolean isLive(long id)
+	{
+		final int list_index = ID_INDEXES.get(id);
+		return list_index != MediaIdIndex.NOT_FOUND && !isHidden(list_index);
+	}
+	
+	/**
+	 * Retrieves the current live index of a media file by its media ID.
+	 * @param long id - Media ID of the media file.
+	 * @return int - Live index of the media file, -1 if no live media file has the passed ID.
+	 */
+	public synchronized static int indexOfId(long id)
+	{
+		final int list_index = ID_INDEXES.get(id);
+		if(list_index == MediaIdIndex.NOT_FOUND || isHidden(list_index))
+			return -1;
+		// Live indexes are in ascending list index order.
+		return (getHiddenCount() == 0) ? list_index : Arrays.binarySearch(getLiveIndexes(), list_index);
+	}
+	
+	private static MediaFile createMediaFile(int list_index)
+	{
+		return new MediaFile(MEDIA_NAME_LIST.get(list_index), MEDIA_PATHS.getPath(list_index), getDisplaySizeAt(list_index), getMediaIdAt(list_index));
+	}
+	
+	/**
+	 * Formats the file size of a media file for display, see {@link DisplayFields}.
+	 */
+	private static byte[] getDisplaySizeAt(int list_index)
+	{
+		return DisplayFields.getSize(ByteBuffer.wrap(MEDIA_FILE_SIZE_LIST.get(list_index)).getLong());
+	}
+	
+	private static long getMediaIdAt(int list_index)
+	{
+		return ByteBuffer.wrap(MEDIA_ID_LIST.get(list_index)).getLong();
+	}
+	
+	public synchronized static byte[] getMediaName(int index) throws FileNotFoundError
+	{
+		return MEDIA_NAME_LIST.get(toListIndex(index));
 	}
 	
 	public synchronized static byte[] getMediaPath(int index) throws FileNotFoundError
 	{
-		final int size = MEDIA_NAME_LIST.size();
-		if(index > size)
-			throw new FileNotFoundError();
-		else
-			return MEDIA_PATH_LIST.get(index);
+		return MEDIA_PATHS.getPath(toListIndex(index));
 	}
 	
 	public synchronized static byte[] getMediaSize(int index) throws FileNotFoundError
 	{
-		final int size = MEDIA_NAME_LIST.size();
-		if(index > size)
-			throw new FileNotFoundError();
-		else
-			return MEDIA_SIZE_LIST.get(index);
+		return getDisplaySizeAt(toListIndex(index));
 	}
 	
+	/**
+	 * Retrieves the number of live media files.
+	 * @return int - Number of media files, not counting tombstones or media files filtered out.
+	 */
 	public synchronized static int getListSize()
 	{
-		return MEDIA_NAME_LIST.size();
+		return MEDIA_NAME_LIST.size() - getHiddenCount();
 	}
 	
 	public synchronized static int indexOf(byte[] info) throws FileNotFoundError
 	{
-		if(MEDIA_NAME_LIST.contains(info))
-			return MEDIA_NAME_LIST.indexOf(info);
-		else if(MEDIA_PATH_LIST.contains(info))
-			return MEDIA_PATH_LIST.indexOf(info);
-		else if(MEDIA_SIZE_LIST.contains(info))
-			return MEDIA_SIZE_LIST.indexOf(info);
-		else
-			throw new FileNotFoundError();
+		final int[] live_indexes = getLiveIndexes();
+		for(int i = 0; i < live_indexes.length; i++)
+		{
+			final int list_index = live_indexes[i];
+			if(Arrays.equals(MEDIA_NAME_LIST.get(list_index), info))
+				return i;
+		}
+		throw new FileNotFoundError();
 	}
 	
-	public synchronized static void removeByPaths(List<byte[]> paths)
+	/**
+	 * Removes each media file with a path matching one of the passed paths. The lists are
+	 * passed over once, no matter the number of paths.
+	 * @param List of MediaPath paths - Paths of the media files to remove.
+	 */
+	public synchronized static void removeByPaths(List<MediaPath> paths)
 	{
-		for(byte[] path : paths)
-			removeByPath(path);
+		if(paths.isEmpty())
+			return;
+		
+		// Paths are compared by content, note the directory of each.
+		final HashSet<MediaPath> paths_to_remove = new HashSet<MediaPath>(paths);
+		final HashSet<Integer> directories = new HashSet<Integer>();
+		for(MediaPath path : paths)
+			directories.add(MEDIA_PATHS.findDirectory(path.getBytes()));
+		
+		final ArrayList<CatalogEvent> events = new ArrayList<CatalogEvent>();
+		for(int i = 0; i < MEDIA_NAME_LIST.size(); i++)
+			// Only build the paths of media files within one of the directories.
+			if(!TOMBSTONES.get(i) && directories.contains(MEDIA_PATHS.getDirectory(i)) && paths_to_remove.contains(MediaPath.wrap(MEDIA_PATHS.getPath(i))))
+				events.add(remove(i));
+		
+		CatalogEvents.publish(events);
 	}
 	
-	private synchronized static void removeByPath(byte[] path)
+	/**
+	 * Removes every media file found under a monitored directory, such as once it is no longer monitored. The list
+	 * indexes are taken straight from the {@link RootIndex}, so no path is built or compared, and one batch of
+	 * removals is published. Media files of the directory found again later, such as under another monitored
+	 * directory, are added back as usual. The {@link ScanJob} of the directory is to be cancelled first, so no batch
+	 * still being scanned adds the directory back.
+	 * @param String root - Path of the monitored directory.
+	 * @return int - Number of media files removed.
+	 */
+	public synchronized static int removeRoot(String root)
 	{
-		int to_remove = 0;
+		final BitSet indexes = MEDIA_ROOTS.remove(root);
+		if(indexes == null)
+			return 0;
 		
-		if(!MEDIA_PATH_LIST.contains(path))
-			for(int i = 0; i < MEDIA_PATH_LIST.size(); i ++ )
-			{
-				byte[] compare_path = MEDIA_PATH_LIST.get(i);
-				if(compare_path.equals(path))
-					to_remove = i;
-			}
-		else
-			to_remove = MEDIA_PATH_LIST.indexOf(path);
+		final ArrayList<CatalogEvent> events = new ArrayList<CatalogEvent>(indexes.cardinality());
+		for(int i = indexes.nextSetBit(0); i >= 0; i = indexes.nextSetBit(i + 1))
+			if(!TOMBSTONES.get(i))
+				events.add(remove(i));
 		
-		remove(to_remove);
+		CatalogEvents.publish(events);
+		return events.size();
+	}
+	
+	/**
+	 * Retrieves each monitored directory media files have been found under, including those no longer monitored
+	 * until their media files are removed.
+	 * @return List of String - Paths of the monitored directories.
+	 */
+	public synchronized static List<String> getRoots()
+	{
+		return MEDIA_ROOTS.getPaths();
+	}
+	
+	/**
+	 * Marks the media file at the passed list index with a tombstone. The lists are left untouched
+	 * until the next compaction.
+	 * @param int index - List index of the media file, tombstones included.
+	 * @return CatalogEvent - Removal to be published.
+	 */
+	private synchronized static CatalogEvent remove(int index)
+	{
+		TOMBSTONES.set(index);
+		tombstoneCount++;
+		if(DeepSearchIndex.get(index))
+			deepSearchCount--;
+		MEDIA_ROOTS.clear(index);
+		liveIndexes = null;
+		generation++;
+		// The media ID is never given out again.
+		final long id = getMediaIdAt(index);
+		ID_INDEXES.remove(id);
+		CatalogJournal.appendRemoved(generation, id);
+		return new CatalogEvent(CatalogEvent.Type.REMOVED, id, index, MEDIA_PATHS.getPath(index));
+	}
+	
+	/**
+	 * Checks if enough tombstones have built up for a compaction to be worthwhile.
+	 * @return boolean - True if compaction is due, false otherwise.
+	 */
+	public synchronized static boolean isCompactionDue()
+	{
+		return tombstoneCount >= Math.max(COMPACTION_MINIMUM, MEDIA_NAME_LIST.size() * COMPACTION_PERCENT / 100);
 	}
 	
-	public synchronized static void removeAll(ArrayList<Integer> files)
+	/**
+	 * Rebuilds each list without the tombstoned media files in a single pass. The sorted lists and the 
+	 * {@link DeepSearchIndex} are remapped to the new list indexes, live indexes are not changed.
+	 */
+	public synchronized static void compact()
 	{
+		if(tombstoneCount == 0)
+			return;
+		
+		final int list_size = MEDIA_NAME_LIST.size();
+		// New list index of each old list index, -1 for tombstones.
+		final int[] remapped_indexes = new int[list_size];
+		final ArrayList<byte[]> sort_keys = new ArrayList<byte[]>(list_size - tombstoneCount),
+								file_sizes = new ArrayList<byte[]>(list_size - tombstoneCount),
+								ids = new ArrayList<byte[]>(list_size - tombstoneCount);
 		
-		int offset = 0;
-		for(int index : files)
+		sortKeyBytes = 0L;
+		for(int i = 0; i < list_size; i++)
+			if(TOMBSTONES.get(i))
+				remapped_indexes[i] = -1;
+			else
+			{
+				remapped_indexes[i] = sort_keys.size();
+				sort_keys.add(MEDIA_SORT_KEY_LIST.get(i));
+				sortKeyBytes += getArrayBytes(sort_keys.get(sort_keys.size() - 1));
+				file_sizes.add(MEDIA_FILE_SIZE_LIST.get(i));
+				ids.add(MEDIA_ID_LIST.get(i));
+				// Media IDs stay the same, only their list index moves.
+				ID_INDEXES.put(getMediaIdAt(i), remapped_indexes[i]);
+			}
+		
+		// Cold columns are compacted in place, so spilled columns stay on disk.
+		synchronized (MEDIA_NAME_LIST)
+		{
+			NAME_COLUMN.compact(TOMBSTONES, list_size);
+		}
+		replace(MEDIA_SORT_KEY_LIST, sort_keys);
+		MEDIA_PATHS.compact(TOMBSTONES, list_size);
+		replace(MEDIA_FILE_SIZE_LIST, file_sizes);
+		synchronized (MEDIA_MODIFIED_LIST)
 		{
-			index = index - offset;
-			remove(index);
-			offset = offset + 1;
+			MODIFIED_COLUMN.compact(TOMBSTONES, list_size);
 		}
+		replace(MEDIA_ID_LIST, ids);
+		DeepSearchIndex.compact(TOMBSTONES, list_size);
 		
+		ALPHA_ORDER.remap(remapped_indexes);
+		SIZE_ORDER.remap(remapped_indexes);
+		SORT_REGISTRY.remap(remapped_indexes);
+		MEDIA_ROOTS.remap(remapped_indexes);
 		
+		TOMBSTONES.clear();
+		tombstoneCount = 0;
+		liveIndexes = null;
 	}
 	
-	private synchronized static void remove(int index)
+	/**
+	 * Spills the cold columns to disk if the catalog has gone over its memory budget. Spilled columns stay spilled
+	 * for the rest of the session. The heap counted is measured rather than guessed per media file, the fixed width
+	 * parts of each along with the sort keys, the path arena, the media ID index, the cold columns and the search
+	 * index. The search index is read without its lock, so is counted as of its last update.
+	 */
+	private static void checkMemoryBudget()
 	{
-		if(index < getListSize())
-			try
-			{
-				MEDIA_NAME_LIST.remove(index);
-				MEDIA_PATH_LIST.remove(index);
-				MEDIA_SIZE_LIST.remove(index);
-				
-				MEDIA_FILE_SIZE_LIST.remove(index);
-			}
-			catch(IndexOutOfBoundsException e)
-			{
-				System.err.println("Cound not remove by index No. "+index);
-			}
+		final long budget = ApplicationGlobals.getMemoryBudget() * 1048576L;
+		if(budget == 0L || spillFailed || NAME_COLUMN.isSpilled())
+			return;
+		
+		final long heap_bytes = (long) MEDIA_NAME_LIST.size() * FIXED_ENTRY_BYTES + sortKeyBytes + MEDIA_PATHS.getHeapBytes() + ID_INDEXES.getHeapBytes()
+								+ NAME_COLUMN.getHeapBytes() + MODIFIED_COLUMN.getHeapBytes() + TrigramIndex.getHeapBytes();
+		if(heap_bytes <= budget)
+			return;
+		
+		try
+		{
+			NAME_COLUMN.spill(new File(ApplicationGlobals.getApplicationDirectory()+NAME_SPILL_FILE));
+			MODIFIED_COLUMN.spill(new File(ApplicationGlobals.getApplicationDirectory()+MODIFIED_SPILL_FILE));
+		}
+		catch (IOException e)
+		{
+			// Carry on from the heap.
+			spillFailed = true;
+			System.err.println("Catalog not spilled to disk.\nReason: "+e.getLocalizedMessage());
+		}
+	}
+	
+	/**
+	 * Retrieves the heap taken by an array held within a column, its header and reference along with its bytes.
+	 */
+	private static long getArrayBytes(byte[] bytes)
+	{
+		return 24L + bytes.length;
+	}
+	
+	/**
+	 * Checks if the media file at a list index is left out of the view, either removed or filtered out.
+	 * @param int list_index - List index of the media file, tombstones included.
+	 * @return boolean - True if left out, false if live.
+	 */
+	private static boolean isHidden(int list_index)
+	{
+		return TOMBSTONES.get(list_index) || (!deepSearchShown && DeepSearchIndex.get(list_index));
+	}
+	
+	/**
+	 * Retrieves the number of media files held but left out of the view.
+	 * @return int - Number of tombstones and media files filtered out.
+	 */
+	private static int getHiddenCount()
+	{
+		return tombstoneCount + ((deepSearchShown) ? 0 : deepSearchCount);
+	}
+	
+	private static void replace(List<byte[]> list, List<byte[]> contents)
+	{
+		list.clear();
+		list.addAll(contents);
+	}
+	
+	/**
+	 * Retrieves the list index of each live media file, building it if any change has been made since.
+	 * @return int[] - List index of each live media file, by live index.
+	 */
+	private static int[] getLiveIndexes()
+	{
+		if(liveIndexes == null)
+		{
+			final int list_size = MEDIA_NAME_LIST.size();
+			liveIndexes = new int[list_size - getHiddenCount()];
+			for(int i = 0, live_index = 0; i < list_size; i++)
+				if(!isHidden(i))
+					liveIndexes[live_index++] = i;
+		}
+		return liveIndexes;
+	}
+	
+	/**
+	 * Converts a live index to its list index.
+	 * @param int index - Live index of a media file.
+	 * @return int - List index of the media file.
+	 * @throws FileNotFoundError - If no live media file has the passed index.
+	 */
+	private static int toListIndex(int index) throws FileNotFoundError
+	{
+		// Skip the conversion while every media file is live.
+		if(getHiddenCount() == 0 && index >= 0 && index < MEDIA_NAME_LIST.size())
+			return index;
+		
+		final int[] live_indexes = getLiveIndexes();
+		if(index < 0 || index >= live_indexes.length)
+			throw new FileNotFoundError();
+		return live_indexes[index];
 	}
 	
 	/**
 	 * Verifies that the passed media file parameter is not a duplicate on the
-	 * media play-list.
+	 * media play-list. Media files filtered out of the view are still held, so are duplicates too.
 	 * @param byte[] possible_duplicate - Media file path to verify. 
 	 * @return Boolean - True if duplicate, false otherwise.
 	 */
 	public synchronized static boolean isDuplicate(byte[] possible_duplicate)
 	{
-		// Iterate through each file on the play-list...
-		for(byte[] paths : MEDIA_PATH_LIST)
-			// Compare media files by using file path....
-			if(compareMediaFiles(paths, possible_duplicate))
-				// Return true if file is matched and thus a duplicate.
-				return true;
-				
+		// Return true if file is matched and thus a duplicate.
+		return indexOfPath(possible_duplicate) != -1;
+	}
 	
-		// Return false if the file was not found on the list.
-		return false;
-		
-		
+	/**
+	 * Retrieves the modification time of the media file held at a path, so a scan can skip a known media file that
+	 * has not changed with a single read.
+	 * @param byte[] path - Encoded path of the media file.
+	 * @return byte[] - Modification time bytes, null if no media file is held at the path.
+	 */
+	public synchronized static byte[] getModifiedTime(byte[] path)
+	{
+		final int list_index = indexOfPath(path);
+		return (list_index != -1) ? MEDIA_MODIFIED_LIST.get(list_index) : null;
 	}
 	
 	/**
-	 * Attempts to compare two passed media files by using their paths. Returns true if both
-	 * files contain the same path.
-	 * @param byte[] compare_0 - First media file path to compare.
-	 * @param byte[] compare_1 - Second media file path to compare.
-	 * @return Boolean - True if paths matched, false otherwise.
+	 * Checks a media file found again by a scan against the one held at its path. If its file size or modification
+	 * time has changed, both are updated, the size order is moved on, and the change is journalled and published as
+	 * a modification.
+	 * @param byte[] path - Encoded path of the media file.
+	 * @param byte[] file_size - File size bytes, as just read.
+	 * @param byte[] modified_time - Modification time bytes, as just read.
+	 * @return boolean - True if a media file is held at the path and so is a duplicate, false otherwise.
 	 */
-	private synchronized static boolean compareMediaFiles(byte[] compare_0, byte[] compare_1)
+	public synchronized static boolean updateMediaFile(byte[] path, byte[] file_size, byte[] modified_time)
 	{
-		// Compare path strings, true if both files matched.
-		return Arrays.equals(compare_0, compare_1);
+		final int list_index = indexOfPath(path);
+		if(list_index == -1)
+			return false;
+		if(!Arrays.equals(MEDIA_FILE_SIZE_LIST.get(list_index), file_size) || !Arrays.equals(MEDIA_MODIFIED_LIST.get(list_index), modified_time))
+			CatalogEvents.publish(modify(list_index, file_size, modified_time));
+		return true;
+	}
+	
+	/**
+	 * Updates the file size and modification time of a media file.
+	 * @param int list_index - List index of the media file.
+	 * @param byte[] file_size - File size bytes.
+	 * @param byte[] modified_time - Modification time bytes.
+	 * @return CatalogEvent - Modification to be published.
+	 */
+	private static CatalogEvent modify(int list_index, byte[] file_size, byte[] modified_time)
+	{
+		MEDIA_FILE_SIZE_LIST.set(list_index, file_size);
+		MEDIA_MODIFIED_LIST.set(list_index, modified_time);
+		// Only the size order is kept, the rest are sorted again for the new generation.
+		SIZE_ORDER.update(list_index);
+		generation++;
+		final long id = getMediaIdAt(list_index);
+		CatalogJournal.appendModified(generation, id, file_size, modified_time);
+		return new CatalogEvent(CatalogEvent.Type.MODIFIED, id, list_index, MEDIA_PATHS.getPath(list_index));
+	}
+	
+	/**
+	 * Finds the live media file at a path. Media files filtered out of the view are still held, so are found too.
+	 * @param byte[] path - Encoded path of the media file.
+	 * @return int - List index of the media file, -1 if none is held at the path.
+	 */
+	private static int indexOfPath(byte[] path)
+	{
+		// Looked up by the hash of its directory and leaf, skipping removed media files.
+		return MEDIA_PATHS.indexOf(path, TOMBSTONES);
+	}
+	
+	/**
+	 * Used to determine the media ID of a media file passed, that is in the play-list.
+	 * @param byte[] compare - Path to compare for media ID. 
+	 * @return long - Media ID of the passed media file, will return zero if no such file exists.
+	 */
+	public synchronized static long compareMediaFilesForId(byte[] compare)
+	{
+		final int index = compareMediaFilesForIndex(compare);
+		return (index != -1) ? getMediaIdAt(getLiveIndexes()[index]) : 0L;
 	}
 	
 	/**
@@ -218,13 +793,15 @@ public final class FileFactory
 	 */
 	public synchronized static int compareMediaFilesForIndex(byte[] compare)
 	{
-		// If file is not null...
-		if(compare != null)
+		// If file is not null and within a known directory...
+		final int directory = (compare != null) ? MEDIA_PATHS.findDirectory(compare) : PathArena.UNKNOWN_DIRECTORY;
+		if(directory != PathArena.UNKNOWN_DIRECTORY)
 		{
-			// Iterate through play-list media files...
-			for(int i = 0; i < MEDIA_NAME_LIST.size(); i ++)
+			// Iterate through live play-list media files...
+			final int[] live_indexes = getLiveIndexes();
+			for(int i = 0; i < live_indexes.length; i ++)
 				// Compare media files for a match.... 
-				if(compareMediaFiles(compare, MEDIA_PATH_LIST.get(i)))
+				if(MEDIA_PATHS.matches(live_indexes[i], directory, compare))
 					// If both files match return index of the matched files on the play-list.
 					return i;
 		}
@@ -240,8 +817,10 @@ public final class FileFactory
 	 */
 	public synchronized static byte[][][] getMediaPlaylistVectors()
 	{
-		// Retrieve the play-list size.s
-		final int list_size = MEDIA_NAME_LIST.size();
+		// Retrieve the live media files.
+		final int[] live_indexes = getLiveIndexes();
+		// Retrieve the play-list size.
+		final int list_size = live_indexes.length;
 		// Create columns and rows.
 		byte[][][] rows = new byte[list_size][][];
 		// Create column data reference.
@@ -253,7 +832,7 @@ public final class FileFactory
 			for(int i = 0; i < list_size; i++)
 			{
 				// Retrieve column data associate with that media file.
-				column_data = parseMediaFileToList( i);
+				column_data = parseMediaFileToList(live_indexes[i]);
 				// Add row to table.
 				rows[i] = column_data;
 			}
@@ -269,14 +848,14 @@ public final class FileFactory
 	/**
 	 * Retrieves the data from a single media file and inserts it into a 1D vector for 
 	 * use in a 2D table. 
-	 * @param MediaFile single_row - Media file to extract data from. 
-	 * @param Integer row_number - Row number to be inserted for use in the table. 
-	 * @return Vector of Strings - Data retrieved from the media file.
+	 * @param Integer list_index - List index of the media file to extract data from. 
+	 * @return Vector of Strings - Data retrieved from the media file, the media ID is used as the row number. The
+	 * file size is left as its long bytes, to be formatted once shown.
 	 */
-	private synchronized static byte[][] parseMediaFileToList(int row_number)
+	private synchronized static byte[][] parseMediaFileToList(int list_index)
 	{
 		// Return table row with populated data.
-		return new byte[][] { MEDIA_NAME_LIST.get(row_number), MEDIA_PATH_LIST.get(row_number), MEDIA_SIZE_LIST.get(row_number), String.valueOf(row_number).getBytes() };
+		return new byte[][] { MEDIA_NAME_LIST.get(list_index), MEDIA_PATHS.getPath(list_index), MEDIA_FILE_SIZE_LIST.get(list_index), String.valueOf(getMediaIdAt(list_index)).getBytes() };
 	}
 	
 	/**
@@ -285,103 +864,396 @@ public final class FileFactory
 	 */
 	public synchronized static ArrayList<MediaFile> getMediaPlaylist() 
 	{
-		ArrayList<MediaFile> list = new ArrayList<MediaFile>();
-		for(int i = 0; i < MEDIA_NAME_LIST.size(); i++)
-			try
-			{
-				list.add(getMediaFile(i));
-			} 
-			catch (FileNotFoundError e)
-			{
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+		return getMediaPlaylist(false);
+	}
+	
+	/**
+	 * Retrieves a copy of the media play-list, optionally with the media files filtered out of the view.
+	 * @param boolean include_hidden - True to include media files filtered out, such as those found by deep search
+	 * while it is disabled.
+	 * @return ArrayList of MediaFiles - Copy of the play-list.
+	 */
+	public synchronized static ArrayList<MediaFile> getMediaPlaylist(boolean include_hidden)
+	{
+		if(!include_hidden)
+		{
+			final int[] live_indexes = getLiveIndexes();
+			ArrayList<MediaFile> list = new ArrayList<MediaFile>(live_indexes.length);
+			for(int list_index : live_indexes)
+				list.add(createMediaFile(list_index));
+			return list;
+		}
 		
+		final int list_size = MEDIA_NAME_LIST.size();
+		final ArrayList<MediaFile> list = new ArrayList<MediaFile>(list_size - tombstoneCount);
+		for(int i = 0; i < list_size; i++)
+			if(!TOMBSTONES.get(i))
+				list.add(createMediaFile(i));
 		return list;
 	}
 	
-	public static ArrayList<byte[]> cloneMediaPaths()
+	/**
+	 * Retrieves a copy of the path of each held media file. Media files filtered out of the view are included, so
+	 * they are still verified while hidden.
+	 * @return ArrayList of MediaPath - Copy of the paths.
+	 */
+	public synchronized static ArrayList<MediaPath> cloneMediaPaths()
+	{
+		final int list_size = MEDIA_NAME_LIST.size();
+		final ArrayList<MediaPath> paths = new ArrayList<MediaPath>(list_size - tombstoneCount);
+		for(int i = 0; i < list_size; i++)
+			if(!TOMBSTONES.get(i))
+				paths.add(MediaPath.wrap(MEDIA_PATHS.getPath(i)));
+		return paths;
+	}
+	
+	/**
+	 * Shows or hides the media files found by deep search. Only the view filter is switched, no media file is added
+	 * or removed, so switching back needs no rescan. The generation is moved on so cached orders and clients catch
+	 * up, and a single view change is published.
+	 * @param boolean shown - True to show media files found by deep search, false to leave them out.
+	 * @return boolean - True if the view changed, false otherwise.
+	 */
+	public synchronized static boolean setDeepSearchShown(boolean shown)
+	{
+		if(deepSearchShown == shown)
+			return false;
+		
+		deepSearchShown = shown;
+		if(deepSearchCount == 0)
+			return false;
+		
+		liveIndexes = null;
+		generation++;
+		CatalogEvents.publish(new CatalogEvent(CatalogEvent.Type.FILTERED, 0L, -1, null));
+		return true;
+	}
+	
+	/**
+	 * Retrieves the alphabetically sorted live indexes.
+	 * @return ArrayList of Integer - Sorted live indexes.
+	 */
+	public synchronized static ArrayList<Integer> getAlphaList()
+	{
+		return toIntegerList(getAlphaOrder());
+	}
+	
+	/**
+	 * Retrieves the size descending sorted live indexes.
+	 * @return ArrayList of Integer - Sorted live indexes.
+	 */
+	public synchronized static ArrayList<Integer> getSortedSizeList()
+	{ 
+		return toIntegerList(getSizeOrder());
+	}
+	
+	/**
+	 * Retrieves the alphabetically sorted live indexes, without boxing.
+	 * @return int[] - Sorted live indexes.
+	 */
+	public synchronized static int[] getAlphaOrder()
+	{
+		return toLiveOrder(ALPHA_ORDER.getOrder());
+	}
+	
+	/**
+	 * Retrieves the size descending sorted live indexes, without boxing.
+	 * @return int[] - Sorted live indexes.
+	 */
+	public synchronized static int[] getSizeOrder()
 	{
-		return new ArrayList<byte[]>(MEDIA_PATH_LIST);
+		return toLiveOrder(SIZE_ORDER.getOrder());
 	}
 	
-	public synchronized static boolean validateInternalFileStructure(boolean is_deep_search)
+	/**
+	 * Retrieves the live indexes in the passed order. Orders other than alphabetical and size are sorted
+	 * on the first request after any change, and cached until the next.
+	 * @param SortOrder order - Order to retrieve.
+	 * @return int[] - Sorted live indexes.
+	 */
+	public synchronized static int[] getOrder(SortOrder order)
+	{
+		return toLiveOrder(getListOrder(order));
+	}
+	
+	/**
+	 * Retrieves the media IDs in the passed order. See 'getOrder()'.
+	 * @param SortOrder order - Order to retrieve.
+	 * @return long[] - Sorted media IDs.
+	 */
+	public synchronized static long[] getIdOrder(SortOrder order)
+	{
+		return toIdOrder(getListOrder(order));
+	}
+	
+	private static int[] getListOrder(SortOrder order)
+	{
+		if(order == SortOrder.ALPHABETICAL)
+			return ALPHA_ORDER.getOrder();
+		else if(order == SortOrder.SIZE)
+			return SIZE_ORDER.getOrder();
+		return SORT_REGISTRY.getOrder(order, generation, getLiveIndexes());
+	}
+	
+	/**
+	 * Answers a query for a single page of the play-list. The order of the query is walked in place, skipping
+	 * tombstones and media files not matching the filter, and only the media files of the page are created.
+	 * Without a filter the walk stops at the end of the page.
+	 * @param PlaylistQuery query - Order, window and filter of the page.
+	 * @return PlaylistPage - Media files of the page, the total matched and the current generation.
+	 */
+	public synchronized static PlaylistPage query(PlaylistQuery query)
 	{
-		boolean needs_update = false;
-		int arrays_size = MEDIA_NAME_LIST.size();
-		if(arrays_size > 0)
+		final int[] order = getListOrder(query.getOrder());
+		final boolean filtered = query.isFiltered();
+		// Find the monitored directory once, nothing is within a directory that is not known.
+		final int root = (query.getRoot() != null) ? MEDIA_PATHS.findDirectoryNode(query.getRoot()) : PathArena.UNKNOWN_DIRECTORY;
+		if(query.getRoot() != null && root == PathArena.UNKNOWN_DIRECTORY)
+			return new PlaylistPage(0, generation, new ArrayList<MediaFile>());
+		final long page_end = (long) query.getOffset() + query.getLimit();
+		final ArrayList<MediaFile> page = new ArrayList<MediaFile>(Math.min(query.getLimit(), 1024));
+		
+		int total = 0;
+		for(int i = 0; i < order.length && (filtered || total < page_end); i++)
 		{
-			ArrayList<Integer> files_to_purge = new ArrayList<Integer>();
-			for(int i = 0; i < arrays_size; i++)
-			{
-				boolean is_file_deep_search_aquired = DeepSearchIndex.get(i);
-				if(!is_deep_search && is_file_deep_search_aquired)
-					files_to_purge.add(i);
-			}
+			final int list_index = order[i];
+			if(isHidden(list_index))
+				continue;
+			if(filtered && !query.matches(MEDIA_NAME_LIST.get(list_index), ByteBuffer.wrap(MEDIA_FILE_SIZE_LIST.get(list_index)).getLong()))
+				continue;
+			if(query.getRoot() != null && !MEDIA_PATHS.isWithin(list_index, root))
+				continue;
 			
-			if(files_to_purge.size() > 0)
-			{
-				removeAll(files_to_purge);
-				needs_update = true;
-			}
+			if(total >= query.getOffset() && total < page_end)
+				page.add(createMediaFile(list_index));
+			total++;
 		}
 		
-		if(!isAlphaSynced() || !isSizeSynced())
+		// Without a filter every live media file matches.
+		return new PlaylistPage((filtered) ? total : getListSize(), generation, page);
+	}
+	
+	/**
+	 * Encodes media files straight from the lists into a chunk of a streamed play-list, stopping once the chunk is
+	 * full or the passed number of media files have been appended. Media IDs removed since the order was taken are
+	 * skipped.
+	 * @param long[] ids - Media IDs in the order streamed.
+	 * @param int from - Position within the media IDs to start from.
+	 * @param int maximum_count - Most media files to append.
+	 * @param PlaylistChunk chunk - Chunk to append to.
+	 * @return int - Position within the media IDs to carry on from.
+	 */
+	public synchronized static int fillChunk(long[] ids, int from, int maximum_count, PlaylistChunk chunk)
+	{
+		int position = from;
+		while(position < ids.length && chunk.getCount() < maximum_count && !chunk.isFull())
 		{
-			DirectoryFactory.handleSortScheduling();
-			needs_update = true;
+			final long id = ids[position++];
+			final int list_index = ID_INDEXES.get(id);
+			if(list_index != MediaIdIndex.NOT_FOUND && !isHidden(list_index))
+				chunk.append(id, MEDIA_NAME_LIST.get(list_index), MEDIA_PATHS, list_index, getDisplaySizeAt(list_index));
 		}
-			
-		return needs_update;
+		return position;
 	}
 	
-	public synchronized static void setAlphaList(ArrayList<byte[]> new_sorted_list)
+	/**
+	 * Captures the held media files for a {@link CatalogSnapshot}, those filtered out of the view included. Only
+	 * references to the encoded fields are taken, the snapshot is written after the lock is let go.
+	 * @return CatalogSnapshot.Entries - Held media files, the next media ID and the current generation.
+	 */
+	synchronized static CatalogSnapshot.Entries captureSnapshot()
 	{
-		MEDIA_ALPHA_SORT_LIST.clear();
-		MEDIA_ALPHA_SORT_LIST.addAll(new_sorted_list);
+		final int list_size = MEDIA_NAME_LIST.size();
+		final CatalogSnapshot.Entries entries = new CatalogSnapshot.Entries(list_size - tombstoneCount, nextId, generation);
+		for(int list_index = 0; list_index < list_size; list_index++)
+			if(!TOMBSTONES.get(list_index))
+				entries.add(getMediaIdAt(list_index), MEDIA_NAME_LIST.get(list_index), MEDIA_SORT_KEY_LIST.get(list_index), MEDIA_PATHS.getPath(list_index), MEDIA_FILE_SIZE_LIST.get(list_index), 
+							MEDIA_MODIFIED_LIST.get(list_index), DeepSearchIndex.get(list_index), MEDIA_ROOTS.getPath(list_index));
+		return entries;
 	}
 	
-	public synchronized static ArrayList<Integer> getAlphaList()
+	/**
+	 * Restores the media files of a {@link CatalogSnapshot}, keeping their media IDs and the catalog generation. Media
+	 * IDs given out from then on carry on from the snapshot, so none are reused. One batch of additions is published.
+	 * @param CatalogSnapshot.Entries entries - Media files of the snapshot.
+	 * @return boolean - True if restored, false if media files had already been added.
+	 */
+	synchronized static boolean restoreSnapshot(CatalogSnapshot.Entries entries)
 	{
-		return convertToIntegerList(MEDIA_ALPHA_SORT_LIST);
+		if(!MEDIA_NAME_LIST.isEmpty())
+			return false;
+		
+		final int count = entries.count;
+		final ArrayList<CatalogEvent> events = new ArrayList<CatalogEvent>(count);
+		for(int i = 0; i < count; i++)
+			events.add(restoreMediaFile(entries.ids[i], entries.names[i], entries.sortKeys[i], entries.paths[i], entries.fileSizes[i], 
+										entries.modifiedTimes[i], entries.deepSearch.get(i), entries.roots[i]));
+		nextId = Math.max(nextId, entries.nextId);
+		// Carry on from the generation of the snapshot.
+		generation = Math.max(generation + 1, entries.generation);
+		checkMemoryBudget();
+		
+		CatalogEvents.publish(events);
+		return true;
 	}
 	
-	public synchronized static boolean isAlphaSynced()
+	/**
+	 * Replays the changes of the {@link CatalogJournal} made after the snapshot was restored, keeping their media IDs
+	 * and moving the catalog generation on to that of the last change. Additions of media IDs already restored and
+	 * removals of media IDs not known are skipped. One batch of changes is published.
+	 * @param List of CatalogJournal.Change changes - Changes in the order they were made.
+	 */
+	synchronized static void replayJournal(List<CatalogJournal.Change> changes)
 	{
-		return (MEDIA_PATH_LIST.size() == MEDIA_ALPHA_SORT_LIST.size());
+		final ArrayList<CatalogEvent> events = new ArrayList<CatalogEvent>(changes.size());
+		for(CatalogJournal.Change change : changes)
+		{
+			if(change.isAddition())
+			{
+				if(!ID_INDEXES.contains(change.id))
+				{
+					events.add(restoreMediaFile(change.id, change.name, change.sortKey, change.path, change.fileSize, change.modifiedTime, change.deepSearch, 
+												 change.root));
+					nextId = Math.max(nextId, change.id + 1);
+				}
+			}
+			else
+			{
+				final int list_index = ID_INDEXES.get(change.id);
+				if(list_index != MediaIdIndex.NOT_FOUND)
+					events.add((change.isModification()) ? modify(list_index, change.fileSize, change.modifiedTime) : remove(list_index));
+			}
+			generation = Math.max(generation, change.generation);
+		}
+		checkMemoryBudget();
+		
+		CatalogEvents.publish(events);
+	}
+	
+	/**
+	 * Adds a media file restored from disk with the media ID it was given before.
+	 * @return CatalogEvent - Addition to be published.
+	 */
+	private static CatalogEvent restoreMediaFile(long id, byte[] name, byte[] sort_key, byte[] path, byte[] file_size, byte[] modified_time, boolean deep_search, 
+												 String root)
+	{
+		final int index = MEDIA_NAME_LIST.size();
+		MEDIA_NAME_LIST.add(name);
+		MEDIA_SORT_KEY_LIST.add(sort_key);
+		sortKeyBytes += getArrayBytes(sort_key);
+		MEDIA_PATHS.add(path, name);
+		MEDIA_FILE_SIZE_LIST.add(file_size);
+		MEDIA_MODIFIED_LIST.add(modified_time);
+		MEDIA_ID_LIST.add(ByteBuffer.allocate(8).putLong(id).array());
+		ID_INDEXES.put(id, index);
+		DeepSearchIndex.add(index, deep_search);
+		if(deep_search)
+			deepSearchCount++;
+		MEDIA_ROOTS.add(index, index + 1, MEDIA_ROOTS.getRoot(root));
+		ALPHA_ORDER.add(index);
+		SIZE_ORDER.add(index);
+		liveIndexes = null;
+		return new CatalogEvent(CatalogEvent.Type.ADDED, id, index, path);
 	}
 	
-	public synchronized static void setSizeList(ArrayList<byte[]> new_sorted_list)
+	/**
+	 * Retrieves the catalog generation. It moves on with every addition and removal, so two equal
+	 * generations mean nothing has changed in between.
+	 * @return long - Catalog generation.
+	 */
+	public synchronized static long getGeneration()
 	{
-		MEDIA_SIZE_SORT_LIST.clear();
-		MEDIA_SIZE_SORT_LIST.addAll(new_sorted_list);
+		return generation;
 	}
 	
-	public synchronized static boolean isSizeSynced()
+	/**
+	 * Retrieves the media IDs in alphabetical order.
+	 * @return long[] - Sorted media IDs.
+	 */
+	public synchronized static long[] getAlphaIds()
 	{
-		return (MEDIA_PATH_LIST.size() == MEDIA_SIZE_SORT_LIST.size());
+		return toIdOrder(ALPHA_ORDER.getOrder());
 	}
 	
-	public synchronized static ArrayList<Integer> getSortedSizeList()
-	{ 
-		return convertToIntegerList(MEDIA_SIZE_SORT_LIST);
+	/**
+	 * Retrieves the media IDs in size descending order.
+	 * @return long[] - Sorted media IDs.
+	 */
+	public synchronized static long[] getSizeIds()
+	{
+		return toIdOrder(SIZE_ORDER.getOrder());
 	}
 	
+	/**
+	 * Retrieves a copy of the name list. Tombstones are included so the indexes match the lists.
+	 * @return ArrayList of byte[] - Copy of the name list.
+	 */
 	public synchronized static ArrayList<byte[]> getNameList()
 	{
 		return new ArrayList<byte[]>(MEDIA_NAME_LIST);
 	}
 	
-	public static ArrayList<byte[]> getMediaFileSizeList()
+	/**
+	 * Retrieves a copy of the file size list. Tombstones are included so the indexes match the lists.
+	 * @return ArrayList of byte[] - Copy of the file size list.
+	 */
+	public synchronized static ArrayList<byte[]> getMediaFileSizeList()
 	{
 		return new ArrayList<byte[]>(MEDIA_FILE_SIZE_LIST);
 	}
 	
-	private static ArrayList<Integer> convertToIntegerList(List<byte[]> to_convert)
+	/**
+	 * Converts an order of list indexes to live indexes, skipping tombstones and media files filtered out.
+	 * @param int[] order - Sorted list indexes.
+	 * @return int[] - Sorted live indexes.
+	 */
+	private static int[] toLiveOrder(int[] order)
+	{
+		// List indexes are live indexes while every media file is live.
+		if(getHiddenCount() == 0)
+			return order.clone();
+		
+		// Live index of each list index, -1 for those left out.
+		final int list_size = MEDIA_NAME_LIST.size();
+		final int[] live_indexes = new int[list_size];
+		for(int i = 0, live_index = 0; i < list_size; i++)
+			live_indexes[i] = isHidden(i) ? -1 : live_index++;
+		
+		final int[] live_order = new int[list_size - getHiddenCount()];
+		int live_order_size = 0;
+		for(int index : order)
+			if(live_indexes[index] != -1)
+				live_order[live_order_size++] = live_indexes[index];
+		
+		return live_order;
+	}
+	
+	/**
+	 * Converts an order of list indexes to media IDs, skipping tombstones and media files filtered out.
+	 * @param int[] order - Sorted list indexes.
+	 * @return long[] - Sorted media IDs.
+	 */
+	private static long[] toIdOrder(int[] order)
+	{
+		final long[] id_order = new long[MEDIA_NAME_LIST.size() - getHiddenCount()];
+		int id_order_size = 0;
+		for(int index : order)
+			if(!isHidden(index))
+				id_order[id_order_size++] = getMediaIdAt(index);
+		
+		return id_order;
+	}
+	
+	/**
+	 * Boxes an order for clients that expect a list of integers.
+	 * @param int[] order - Sorted live indexes.
+	 * @return ArrayList of Integer - Sorted live indexes.
+	 */
+	private static ArrayList<Integer> toIntegerList(int[] order)
 	{
-		ArrayList<Integer> converted_list = new ArrayList<>();
-		for(int i = 0; i < to_convert.size(); i++)
-			converted_list.add(ByteBuffer.wrap(to_convert.get(i)).getInt());
+		final ArrayList<Integer> converted_list = new ArrayList<Integer>(order.length);
+		for(int index : order)
+			converted_list.add(index);
 		
 		return converted_list;
 	}
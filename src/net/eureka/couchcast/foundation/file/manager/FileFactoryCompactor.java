@@ -0,0 +1,23 @@
+package net.eureka.couchcast.foundation.file.manager;
+
+/**
+ * Runs every two seconds from the DirectoryFactory class. Compacts the {@link FileFactory} once enough removed media
+ * files have been marked with tombstones, so the cost of a removal stays constant and the lists are rebuilt in a
+ * single pass instead of being shifted for every removal.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see DirectoryFactory
+ * @see FileFactory
+ *
+ * @version 0.1
+ */
+public class FileFactoryCompactor implements Runnable
+{
+	@Override
+	public void run()
+	{
+		if(FileFactory.isCompactionDue())
+			FileFactory.compact();
+	}
+}
@@ -1,51 +1,310 @@
 package net.eureka.couchcast.foundation.file.manager;
 
 import java.io.File;
+import java.nio.file.FileStore;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+
+import net.eureka.couchcast.foundation.file.manager.event.CatalogEvent;
+import net.eureka.couchcast.foundation.file.manager.event.CatalogEvents;
+import net.eureka.couchcast.foundation.file.manager.event.CatalogListener;
+import net.eureka.couchcast.foundation.file.media.MediaPath;
 
 
 /**
- * Runs every 30 seconds from the DirectoryFactory class. It is used to catch any files that may have been added to
- * the FileFactory after they have already been removed. This is a concurrency race issue that unfortunately has not
- * been solved as of yet. This patch alleviates the issue for now.
- * 
+ * Runs every two seconds from the DirectoryFactory class. It is used to catch any files that may have been added to
+ * the FileFactory after they have already been removed, or that have been removed while not being scanned.
+ * <br>
+ * <br>
+ * Instead of checking every file on each run, the catalog paths are grouped by their parent directory and only a
+ * percentage of those directories are visited per run. The modification time of each visited directory is compared
+ * to the last one seen, as removing a file from a directory changes its modification time. Only changed directories
+ * are listed, once, and every catalog entry under it is checked against that listing. Changed directories that do
+ * not fit within a run are moved to the front of the queue for the next run. This keeps the load of verification
+ * flat and proportional to change instead of the size of the library.
+ * <br>
+ * <br>
+ * The catalog is grouped once, on the first run. From then on the grouping is kept up to date from the additions and
+ * removals published through {@link CatalogEvents}, so it is never rebuilt while a scan is adding media files.
+ * <br>
+ * <br>
+ * The verifier shares its thread with the rest of the {@link DirectoryFactory} schedule, so it never touches a store
+ * itself. Stores are looked up with a bounded wait and every check and listing is run on the operator of the store
+ * through {@link FileStoreWorkers#call(Callable)}. Directories on a store that is busy, parked or hung are skipped
+ * and checked again on a later run.
+ *
  * @author Owen McMonagle.
- * 
+ *
  * @see DirectoryFactory
  * @see FileFactory
- * 
- * @version 0.1
+ * @see FileStoreWorkers
+ * @see CatalogEvents
+ *
+ * @version 0.5
  */
-public class FileFactoryVerifier implements Runnable 
+public class FileFactoryVerifier implements Runnable
 {
+	/**
+	 * Percentage of the known directories that have their modification time checked each run.
+	 */
+	private static final int DIRECTORIES_PER_RUN_PERCENT = 10;
+
+	/**
+	 * Number of changed directories that can be listed for every directory checked, per run.
+	 */
+	private static final int LISTINGS_PER_CHECK = 4;
+
+	/**
+	 * Milliseconds to wait for the store of a directory to be looked up before skipping it.
+	 */
+	private static final long STORE_LOOKUP_WAIT = 2000L;
+
+	/**
+	 * Catalog paths grouped by parent directory.
+	 */
+	private final Map<String, Set<MediaPath>> directories = new HashMap<String, Set<MediaPath>>();
+
+	/**
+	 * Last modification time seen for each directory. Directories not contained are yet to be listed.
+	 */
+	private final Map<String, Long> modifiedTimes = new HashMap<String, Long>();
+
+	/**
+	 * Order in which directories are checked. Checked directories are moved to the back.
+	 */
+	private final ArrayDeque<String> rotation = new ArrayDeque<String>();
+
+	/**
+	 * Changes published since the last run, applied to the grouping in the order they were made.
+	 */
+	private final List<CatalogEvent> pendingEvents = new ArrayList<CatalogEvent>();
+
+	private boolean grouped = false;
+
+	/**
+	 * Catalog listener, queues each change for the next run.
+	 */
+	private final CatalogListener catalogListener = new CatalogListener()
+	{
+		@Override
+		public void catalogChanged(List<CatalogEvent> events)
+		{
+			synchronized (pendingEvents)
+			{
+				pendingEvents.addAll(events);
+			}
+		}
+	};
+
+	public FileFactoryVerifier()
+	{
+		// Subscribe before grouping, changes already grouped are applied again without effect.
+		CatalogEvents.subscribe(catalogListener);
+	}
 
-	private List<byte[]> pathsToVerify = FileFactory.cloneMediaPaths();
-	
 	@Override
-	public void run() 
+	public void run()
 	{
-		//System.out.println("Starting threaded verification process...");
-		if(FileFactory.getListSize() != pathsToVerify.size())
+		if(!grouped)
+			groupPaths();
+		applyChanges();
+
+		final int directory_count = rotation.size();
+		if(directory_count == 0)
+			return;
+
+		// Calculate the number of directories to check this run, rounded up.
+		final int checks = Math.max(1, (directory_count * DIRECTORIES_PER_RUN_PERCENT + 99) / 100), listings = checks * LISTINGS_PER_CHECK;
+
+		final List<String> changed_directories = new ArrayList<String>();
+		final List<FileStoreWorkers> changed_workers = new ArrayList<FileStoreWorkers>();
+		final List<MediaPath> paths_to_remove = new ArrayList<MediaPath>();
+
+		for(int i = 0; i < checks && !rotation.isEmpty(); i++)
 		{
-			pathsToVerify = FileFactory.cloneMediaPaths();
-			//System.out.println("Retrieved new paths...");
+			// Move the directory to the back of the queue.
+			final String directory = rotation.poll();
+			rotation.add(directory);
+
+			// Skip directories on the disk being played from or on a store that cannot be reached, they are checked again later.
+			final FileStore store;
+			try
+			{
+				store = DirectoryFactory.getFileStore(directory, STORE_LOOKUP_WAIT);
+			}
+			catch (TimeoutException e)
+			{
+				continue;
+			}
+			final FileStoreWorkers store_workers = FileStoreWorkers.get(store);
+			if(DirectoryFactory.isPlaybackStore(store) || store_workers.isParked())
+				continue;
+
+			final Long modified = store_workers.call(new Callable<Long>()
+			{
+				@Override
+				public Long call() throws Exception
+				{
+					return new File(directory).lastModified();
+				}
+			});
+			if(modified == null)
+				continue;
+
+			final Long last_modified = modifiedTimes.get(directory);
+			if(last_modified == null || last_modified.longValue() != modified.longValue())
+			{
+				changed_directories.add(directory);
+				changed_workers.add(store_workers);
+			}
 		}
-		
-		List<byte[]> paths_to_remove = new ArrayList<>(pathsToVerify.size());
-		File path_file = null;
-		//System.out.println("Processing...");
-		for(int i = 0; i < pathsToVerify.size(); i++)
+
+		// List changed directories, anything over the limit is given priority on the next run.
+		for(int i = changed_directories.size()-1; i >= 0; i--)
 		{
-			byte[] path_to_verify = pathsToVerify.get(i);
-			path_file = new File(new String(path_to_verify));
-			if(!path_file.exists())
-				paths_to_remove.add(path_to_verify);
+			final String directory = changed_directories.get(i);
+			if(i < listings)
+				verifyDirectory(directory, changed_workers.get(i), paths_to_remove);
+			else
+			{
+				rotation.remove(directory);
+				rotation.addFirst(directory);
+			}
 		}
-		
+
 		if(!paths_to_remove.isEmpty())
 			DirectoryFactory.addPathsForCleanUp(paths_to_remove);
-		//System.out.println("Completed.");
 	}
 
+	/**
+	 * Lists a directory once and checks each catalog entry under it against that listing. Entries that are
+	 * no longer listed are added to the passed removal list.
+	 * Directories that cannot be listed in time are left unchanged and checked again on a later run.
+	 * @param String directory - Directory to list.
+	 * @param FileStoreWorkers store_workers - Workers of the store the directory is located on.
+	 * @param List of MediaPath paths_to_remove - List to add missing paths to.
+	 */
+	private void verifyDirectory(String directory, FileStoreWorkers store_workers, List<MediaPath> paths_to_remove)
+	{
+		final File directory_file = new File(directory);
+		final Listing listing = store_workers.call(new Callable<Listing>()
+		{
+			@Override
+			public Listing call() throws Exception
+			{
+				// Retrieve modification time before listing so any changes during listing are seen next run.
+				final long last_modified = directory_file.lastModified();
+				return new Listing(last_modified, directory_file.list());
+			}
+		});
+		if(listing == null)
+			return;
+		final long last_modified = listing.lastModified;
+		final HashSet<String> names = (listing.names != null) ? new HashSet<String>(Arrays.asList(listing.names)) : new HashSet<String>();
+
+		final Set<MediaPath> paths = directories.get(directory);
+		final Iterator<MediaPath> iterator = paths.iterator();
+		while(iterator.hasNext())
+		{
+			final MediaPath path = iterator.next();
+			if(!names.contains(path.getName()))
+			{
+				paths_to_remove.add(path);
+				iterator.remove();
+			}
+		}
+
+		// Forget directories with nothing left to verify.
+		if(paths.isEmpty())
+		{
+			directories.remove(directory);
+			modifiedTimes.remove(directory);
+			rotation.remove(directory);
+		}
+		else
+			modifiedTimes.put(directory, last_modified);
+	}
+
+	/**
+	 * Groups each path within the catalog by their parent directory, once. Each directory is listed on the first run
+	 * it is checked.
+	 */
+	private void groupPaths()
+	{
+		for(MediaPath path : FileFactory.cloneMediaPaths())
+			addPath(path);
+		grouped = true;
+	}
+
+	/**
+	 * Applies the changes published since the last run to the grouping. Additions already grouped and removals of
+	 * paths not grouped are skipped, so the order they arrive in against the first grouping does not matter.
+	 */
+	private void applyChanges()
+	{
+		final List<CatalogEvent> events;
+		synchronized (pendingEvents)
+		{
+			if(pendingEvents.isEmpty())
+				return;
+			events = new ArrayList<CatalogEvent>(pendingEvents);
+			pendingEvents.clear();
+		}
+
+		for(CatalogEvent event : events)
+			if(event.getType() == CatalogEvent.Type.ADDED)
+				addPath(MediaPath.wrap(event.getPath()));
+			else if(event.getType() == CatalogEvent.Type.REMOVED)
+				removePath(MediaPath.wrap(event.getPath()));
+	}
+
+	private void addPath(MediaPath path)
+	{
+		final String directory = path.getParent();
+		Set<MediaPath> grouped_paths = directories.get(directory);
+		if(grouped_paths == null)
+		{
+			directories.put(directory, (grouped_paths = new HashSet<MediaPath>()));
+			// Queue new directories first.
+			rotation.addFirst(directory);
+		}
+		grouped_paths.add(path);
+	}
+
+	private void removePath(MediaPath path)
+	{
+		final String directory = path.getParent();
+		final Set<MediaPath> grouped_paths = directories.get(directory);
+		if(grouped_paths != null && grouped_paths.remove(path) && grouped_paths.isEmpty())
+		{
+			// Forget directories with nothing left to verify.
+			directories.remove(directory);
+			modifiedTimes.remove(directory);
+			rotation.remove(directory);
+		}
+	}
+
+	/**
+	 * Modification time and names of a directory, as listed on the operator of its store.
+	 */
+	private static final class Listing
+	{
+		private final long lastModified;
+		private final String[] names;
+
+		private Listing(long last_modified, String[] names)
+		{
+			this.lastModified = last_modified;
+			this.names = names;
+		}
+	}
 }
@@ -0,0 +1,283 @@
+package net.eureka.couchcast.foundation.file.manager;
+
+import java.nio.file.FileStore;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Thread pool and circuit breaker for a single {@link FileStore}. Each store the {@link DirectoryFactory} scans has
+ * its own pool with a limited number of workers, so a stalled network mount can only tie up its own workers and
+ * never the scanning of other disks.
+ * <br>
+ * <br>
+ * Each blocking operation on the store is timed. After a number of slow or failed operations in a row the store is
+ * parked, no new scanners are run on it until the backoff has passed. A single scanner is then let through as a probe,
+ * if the probe succeeds the store is restored, if not it is parked again with double the backoff.
+ * <br>
+ * <br>
+ * Threads shared between stores, such as that of the {@link FileFactoryVerifier}, never touch a store themselves.
+ * Their operations are handed to a single operator thread of the store and waited on for at most the timeout. An
+ * operation still running after that is left to finish, and further operations are refused until it has, so a hung
+ * mount holds up at most one operation and never the shared thread.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see DirectoryFactory
+ * @see DirectoryScanner
+ * @see FileFactoryVerifier
+ *
+ * @version 0.3
+ */
+public final class FileStoreWorkers
+{
+	/**
+	 * Number of scanners that can work on a single store at once.
+	 */
+	private static final int STORE_WORKER_SIZE = 2;
+
+	/**
+	 * Milliseconds an operation can take before it is considered failed.
+	 */
+	private static final long OPERATION_TIMEOUT = 10000L;
+
+	/**
+	 * Number of slow or failed operations in a row before the store is parked.
+	 */
+	private static final int FAILURE_LIMIT = 3;
+
+	/**
+	 * First and largest backoff in milliseconds before a parked store is probed again.
+	 */
+	private static final long INITIAL_BACKOFF = 5000L, MAXIMUM_BACKOFF = 300000L;
+
+	/**
+	 * Workers of each store. Scanners of directories that have no store (i.e not found) share the null key.
+	 */
+	private static final Map<FileStore, FileStoreWorkers> STORES = new HashMap<FileStore, FileStoreWorkers>();
+
+	private final ExecutorService workers, operator;
+
+	/**
+	 * Store of these workers, may be null.
+	 */
+	private final FileStore store;
+
+	/**
+	 * Last operation handed to the operator, null if none.
+	 */
+	private Future<?> operation = null;
+
+	/**
+	 * Start time of each operation in progress by thread.
+	 */
+	private final Map<Thread, Long> operations = new HashMap<Thread, Long>();
+
+	private int failures = 0;
+
+	private long backoff = INITIAL_BACKOFF, parkedUntil = 0L, probeStarted = 0L;
+
+	private boolean parked = false, probing = false;
+
+	private FileStoreWorkers(final FileStore store)
+	{
+		this.store = store;
+		final String name = (store != null) ? store.name() : "Unknown";
+		this.workers = Executors.newFixedThreadPool(STORE_WORKER_SIZE, createThreadFactory("File Store Worker: " + name));
+		this.operator = Executors.newSingleThreadExecutor(createThreadFactory("File Store Operator: " + name));
+	}
+
+	private static ThreadFactory createThreadFactory(final String name)
+	{
+		return new ThreadFactory()
+		{
+			private int count = 0;
+
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				count++;
+				Thread thread = new Thread(runnable);
+				thread.setName(name + " " + count);
+				// Never keep the application alive for a hung mount.
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * Retrieves the workers of the passed {@link FileStore}, creating them on first use.
+	 * @param FileStore store - Store to retrieve the workers for, may be null.
+	 * @return FileStoreWorkers - Workers of the store.
+	 */
+	public synchronized static FileStoreWorkers get(FileStore store)
+	{
+		FileStoreWorkers store_workers = STORES.get(store);
+		if(store_workers == null)
+			STORES.put(store, (store_workers = new FileStoreWorkers(store)));
+		return store_workers;
+	}
+
+	/**
+	 * Attempts to run a job on the workers of this store. Jobs are refused while the store is parked.
+	 * @param Runnable job - Job to run.
+	 * @return boolean - True if the job was accepted, false if the store is parked.
+	 */
+	public synchronized boolean execute(Runnable job)
+	{
+		checkOperations();
+		if(parked)
+		{
+			final long now = System.currentTimeMillis();
+			// Let a single probe through once the backoff has passed. Probes that never touched the store are replaced.
+			if(now >= parkedUntil && (!probing || now - probeStarted > OPERATION_TIMEOUT))
+			{
+				probing = true;
+				probeStarted = now;
+			}
+			else
+				return false;
+		}
+
+		workers.execute(job);
+		return true;
+	}
+
+	/**
+	 * Runs a blocking operation on the operator of this store, waiting at most the timeout for its result. The
+	 * operation is timed like any other. Refused while the store is parked or the last operation is still running.
+	 * @param Callable of T store_operation - Operation to run against the store.
+	 * @return T - Result of the operation, null if refused, failed or still running after the timeout.
+	 */
+	public <T> T call(final Callable<T> store_operation)
+	{
+		final Future<T> future;
+		synchronized (this)
+		{
+			checkOperations();
+			if(parked || (operation != null && !operation.isDone()))
+				return null;
+			future = operator.submit(new Callable<T>()
+			{
+				@Override
+				public T call() throws Exception
+				{
+					beginOperation();
+					boolean success = false;
+					try
+					{
+						final T result = store_operation.call();
+						success = true;
+						return result;
+					}
+					finally
+					{
+						endOperation(success);
+					}
+				}
+			});
+			operation = future;
+		}
+
+		try
+		{
+			return future.get(OPERATION_TIMEOUT, TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e)
+		{
+			// Left running, counted as failed once over the timeout.
+			return null;
+		}
+		catch (InterruptedException | ExecutionException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Checks if the store is parked, without probing.
+	 * @return boolean - True if the store is parked, false otherwise.
+	 */
+	public synchronized boolean isParked()
+	{
+		checkOperations();
+		return parked;
+	}
+
+	/**
+	 * Marks the start of a blocking operation on the store by the current thread.
+	 */
+	public synchronized void beginOperation()
+	{
+		operations.put(Thread.currentThread(), System.currentTimeMillis());
+	}
+
+	/**
+	 * Marks the end of a blocking operation on the store by the current thread. Operations that took
+	 * longer than the timeout are counted as failed.
+	 * @param boolean success - True if the operation completed without error.
+	 */
+	public synchronized void endOperation(boolean success)
+	{
+		final Long started = operations.remove(Thread.currentThread());
+		// Already counted as failed by checkOperations().
+		if(started == null)
+			return;
+
+		if(success && System.currentTimeMillis() - started.longValue() <= OPERATION_TIMEOUT)
+			restore();
+		else
+			fail();
+	}
+
+	/**
+	 * Counts any operation that has been running longer than the timeout as failed, so a hung mount
+	 * is parked without waiting for the operation to return.
+	 */
+	private void checkOperations()
+	{
+		final long now = System.currentTimeMillis();
+		final Iterator<Long> iterator = operations.values().iterator();
+		while(iterator.hasNext())
+			if(now - iterator.next().longValue() > OPERATION_TIMEOUT)
+			{
+				iterator.remove();
+				fail();
+			}
+	}
+
+	private void fail()
+	{
+		failures++;
+		if(probing || failures >= FAILURE_LIMIT)
+		{
+			// Back off for longer each time the store is parked in a row.
+			if(parked)
+				backoff = Math.min(backoff * 2, MAXIMUM_BACKOFF);
+			parked = true;
+			probing = false;
+			parkedUntil = System.currentTimeMillis() + backoff;
+			// Directories on the store are looked up again, in case it is remounted.
+			if(store != null)
+				DirectoryFactory.invalidateFileStore(store);
+			System.err.println("File store parked for " + backoff + "ms after " + failures + " failed operations.");
+		}
+	}
+
+	private void restore()
+	{
+		failures = 0;
+		backoff = INITIAL_BACKOFF;
+		parked = false;
+		probing = false;
+	}
+}
@@ -0,0 +1,147 @@
+package net.eureka.couchcast.foundation.file.manager;
+
+/**
+ * Index of the list index of each live media file of the {@link FileFactory}, by media ID. Media IDs and list indexes
+ * are held within two primitive arrays using open addressing, instead of as boxed entries of a map, so each media file
+ * costs a few bytes rather than a few objects. Removed media IDs are marked as deleted and dropped when the table is
+ * next rebuilt.
+ * <br>
+ * <br>
+ * Public so the trigram index of the search package can map media IDs to its own slots the same way.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see FileFactory
+ *
+ * @version 0.3
+ */
+public final class MediaIdIndex
+{
+	/**
+	 * List index returned for media IDs not held.
+	 */
+	public static final int NOT_FOUND = -1;
+
+	/**
+	 * Media IDs are given out from one, so zero marks an empty slot and minus one a deleted slot.
+	 */
+	private static final long EMPTY = 0L, DELETED = -1L;
+
+	private long[] ids = new long[1024];
+	private int[] indexes = new int[1024];
+
+	/**
+	 * Number of media IDs held, and of slots used including those deleted.
+	 */
+	private int size = 0, used = 0;
+
+	/**
+	 * Retrieves the list index of a media ID.
+	 * @param long id - Media ID.
+	 * @return int - List index, 'NOT_FOUND' if the media ID is not held.
+	 */
+	public int get(long id)
+	{
+		final int slot = find(id);
+		return (slot < 0) ? NOT_FOUND : indexes[slot];
+	}
+
+	public boolean contains(long id)
+	{
+		return find(id) >= 0;
+	}
+
+	/**
+	 * Sets the list index of a media ID, replacing any held.
+	 * @param long id - Media ID, greater than zero.
+	 * @param int index - List index.
+	 */
+	public void put(long id, int index)
+	{
+		final int existing = find(id);
+		if(existing >= 0)
+		{
+			indexes[existing] = index;
+			return;
+		}
+
+		// Keep the table at most half used, so probes stay short.
+		if((used + 1) * 2 > ids.length)
+			rebuild((size + 1) * 4 > ids.length ? ids.length * 2 : ids.length);
+
+		int slot = slotOf(id);
+		while(ids[slot] != EMPTY && ids[slot] != DELETED)
+			slot = (slot + 1) & (ids.length - 1);
+		if(ids[slot] == EMPTY)
+			used++;
+		ids[slot] = id;
+		indexes[slot] = index;
+		size++;
+	}
+
+	/**
+	 * Removes a media ID.
+	 * @param long id - Media ID.
+	 */
+	public void remove(long id)
+	{
+		final int slot = find(id);
+		if(slot >= 0)
+		{
+			ids[slot] = DELETED;
+			size--;
+		}
+	}
+
+	/**
+	 * Retrieves the heap taken by the table.
+	 * @return long - Heap taken in bytes.
+	 */
+	public long getHeapBytes()
+	{
+		return (long) ids.length * 12L;
+	}
+
+	private int find(long id)
+	{
+		int slot = slotOf(id);
+		while(ids[slot] != EMPTY)
+		{
+			if(ids[slot] == id)
+				return slot;
+			slot = (slot + 1) & (ids.length - 1);
+		}
+		return -1;
+	}
+
+	private int slotOf(long id)
+	{
+		// Spread sequential media IDs across the table.
+		final long hash = id * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> 32) & (ids.length - 1);
+	}
+
+	/**
+	 * Rebuilds the table at the passed capacity, dropping deleted slots.
+	 */
+	private void rebuild(int capacity)
+	{
+		final long[] old_ids = ids;
+		final int[] old_indexes = indexes;
+		ids = new long[capacity];
+		indexes = new int[capacity];
+		size = 0;
+		used = 0;
+		for(int i = 0; i < old_ids.length; i++)
+			if(old_ids[i] != EMPTY && old_ids[i] != DELETED)
+			{
+				int slot = slotOf(old_ids[i]);
+				while(ids[slot] != EMPTY)
+					slot = (slot + 1) & (ids.length - 1);
+				ids[slot] = old_ids[i];
+				indexes[slot] = old_indexes[i];
+				size++;
+				used++;
+			}
+	}
+}
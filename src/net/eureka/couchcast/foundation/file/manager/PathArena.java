@@ -0,0 +1,514 @@
+package net.eureka.couchcast.foundation.file.manager;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the path of each media file of the {@link FileFactory} split into the directory it is within and its leaf
+ * name. Directories are held as a tree of nodes, each node holding only its own segment of the path and the node of
+ * its parent, so the monitored directories and every sub-directory they share are held once however many media files
+ * are within them. Each media file costs the index of its directory node and a reference to its leaf name. Leaves
+ * matching the media file name are not held at all and are read from the name column of the factory instead, so no
+ * bytes of the path are held twice and a name column spilled to disk takes the leaves with it.
+ * <br>
+ * <br>
+ * Paths are only built in full when asked for. Paths passed in are matched against the tree as they are, so checking
+ * for a path that is not within any known directory costs a few lookups and no scan. Paths within known directories
+ * are found through a table hashed on their directory node and leaf, so checking for any path costs no scan either.
+ * <br>
+ * <br>
+ * Media files are held by list index, and are dropped on compaction the same way as the {@link DeepSearchIndex}.
+ * Directory nodes are never dropped, as they are few and likely to be filled again by the next scan.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see FileFactory
+ * @see DeepSearchIndex
+ *
+ * @version 0.4
+ */
+public final class PathArena
+{
+	private static final byte SEPARATOR = (byte) File.separatorChar;
+
+	/**
+	 * No directory, for paths without a separator.
+	 */
+	private static final int NO_DIRECTORY = -1;
+
+	/**
+	 * Directory that is not held, returned by lookups.
+	 */
+	static final int UNKNOWN_DIRECTORY = -2;
+
+	/**
+	 * Parent node and segment of each directory node, by node index.
+	 */
+	private int[] parents = new int[64];
+	private byte[][] segments = new byte[64][];
+
+	private int directoryCount = 0;
+
+	/**
+	 * Node index of each directory node, by its parent and segment.
+	 */
+	private final Map<DirectoryKey, Integer> directories = new HashMap<DirectoryKey, Integer>();
+
+	/**
+	 * Name column of the {@link FileFactory}, the leaf of each media file unless held apart.
+	 */
+	private final List<byte[]> names;
+
+	/**
+	 * Directory node and leaf name of each media file, by list index. Null leaves are the media file name.
+	 */
+	private int[] entryDirectories = new int[1024];
+	private byte[][] leaves = new byte[1024][];
+
+	/**
+	 * Hash of the directory node and leaf of each media file, by list index.
+	 */
+	private int[] entryHashes = new int[1024];
+
+	/**
+	 * Open addressed table of list indexes plus one by their hash, zero for empty slots. Removed media files are left
+	 * in place until compaction, so lookups are passed the tombstones to skip them.
+	 */
+	private int[] lookup = new int[2048];
+
+	private int size = 0;
+
+	/**
+	 * Heap taken by the segments of the directory nodes along with their keys, and by the leaves held apart.
+	 */
+	private long directoryBytes = 0L, leafBytes = 0L;
+
+	/**
+	 * Rank of each directory node when ordered by path, null if directories have been added since.
+	 */
+	private int[] ranks = null;
+
+	/**
+	 * @param List of byte[] names - Name column of the {@link FileFactory}, by list index.
+	 */
+	PathArena(final List<byte[]> names)
+	{
+		this.names = names;
+	}
+
+	/**
+	 * Adds the path of the next media file.
+	 * @param byte[] path - Encoded path of the media file.
+	 * @param byte[] name - Encoded name of the media file, read from the name column as the leaf name if it matches.
+	 */
+	void add(byte[] path, byte[] name)
+	{
+		final int last_separator = lastSeparator(path, path.length);
+		final int leaf_length = path.length - last_separator - 1;
+
+		if(size == entryDirectories.length)
+		{
+			entryDirectories = Arrays.copyOf(entryDirectories, size * 2);
+			leaves = Arrays.copyOf(leaves, size * 2);
+			entryHashes = Arrays.copyOf(entryHashes, size * 2);
+		}
+		entryDirectories[size] = (last_separator == -1) ? NO_DIRECTORY : intern(path, last_separator);
+		// Leave out the leaf when it is the name, as it is for every scanned media file.
+		leaves[size] = (name.length == leaf_length && regionEquals(path, last_separator + 1, name, 0, leaf_length)) ?
+						null : Arrays.copyOfRange(path, last_separator + 1, path.length);
+		if(leaves[size] != null)
+			leafBytes += leaves[size].length + 24L;
+		entryHashes[size] = hash(entryDirectories[size], path, last_separator + 1, path.length);
+		size++;
+		// Keep the table at most half full.
+		if(size * 2 > lookup.length)
+			rebuildLookup(lookup.length * 2);
+		else
+			insertLookup(size - 1);
+	}
+
+	/**
+	 * Finds the media file held at a path, through the hash of its directory node and leaf.
+	 * @param byte[] path - Encoded path.
+	 * @param BitSet tombstones - List indexes removed, skipped by the lookup.
+	 * @return int - List index of the media file, -1 if none is held at the path.
+	 */
+	int indexOf(byte[] path, BitSet tombstones)
+	{
+		final int directory = findDirectory(path);
+		// A path within no known directory cannot be held.
+		if(directory == UNKNOWN_DIRECTORY)
+			return -1;
+		final int hash = hash(directory, path, lastSeparator(path, path.length) + 1, path.length), mask = lookup.length - 1;
+		for(int slot = hash & mask; lookup[slot] != 0; slot = (slot + 1) & mask)
+		{
+			final int index = lookup[slot] - 1;
+			// Only read the leaf of media files with the same hash.
+			if(entryHashes[index] == hash && !tombstones.get(index) && matches(index, directory, path))
+				return index;
+		}
+		return -1;
+	}
+
+	/**
+	 * Builds the path of a media file.
+	 * @param int index - List index of the media file.
+	 * @return byte[] - Encoded path.
+	 */
+	public byte[] getPath(int index)
+	{
+		final byte[] leaf = getLeaf(index);
+		final byte[] path = new byte[getPathLength(index, leaf)];
+		copyPath(index, leaf, path, 0);
+		return path;
+	}
+
+	/**
+	 * Calculates the length of the path of a media file without building it.
+	 * @param int index - List index of the media file.
+	 * @return int - Length of the encoded path.
+	 */
+	public int getPathLength(int index)
+	{
+		return getPathLength(index, getLeaf(index));
+	}
+
+	/**
+	 * Copies the path of a media file into the passed array, from the leaf back to the first segment.
+	 * @param int index - List index of the media file.
+	 * @param byte[] destination - Array to copy into, with room for 'getPathLength()' bytes from the offset.
+	 * @param int offset - Position within the array the path starts at.
+	 */
+	public void copyPath(int index, byte[] destination, int offset)
+	{
+		copyPath(index, getLeaf(index), destination, offset);
+	}
+
+	private int getPathLength(int index, byte[] leaf)
+	{
+		int length = leaf.length;
+		for(int directory = entryDirectories[index]; directory != NO_DIRECTORY; directory = parents[directory])
+			length += segments[directory].length + 1;
+		return length;
+	}
+
+	private void copyPath(int index, byte[] leaf, byte[] destination, int offset)
+	{
+		int end = offset + getPathLength(index, leaf);
+		end -= leaf.length;
+		System.arraycopy(leaf, 0, destination, end, leaf.length);
+		for(int directory = entryDirectories[index]; directory != NO_DIRECTORY; directory = parents[directory])
+		{
+			destination[--end] = SEPARATOR;
+			end -= segments[directory].length;
+			System.arraycopy(segments[directory], 0, destination, end, segments[directory].length);
+		}
+	}
+
+	/**
+	 * Finds the directory node of the directory a path is within, without adding any.
+	 * @param byte[] path - Encoded path.
+	 * @return int - Directory node, -1 if the path has no separator or 'UNKNOWN_DIRECTORY'.
+	 */
+	int findDirectory(byte[] path)
+	{
+		final int last_separator = lastSeparator(path, path.length);
+		return (last_separator == -1) ? NO_DIRECTORY : find(path, last_separator);
+	}
+
+	/**
+	 * Retrieves the directory node of a media file.
+	 * @param int index - List index of the media file.
+	 * @return int - Directory node, -1 if the path has no separator.
+	 */
+	int getDirectory(int index)
+	{
+		return entryDirectories[index];
+	}
+
+	/**
+	 * Checks whether a media file has the passed path. Compares the directory nodes, then the leaf name, without
+	 * building the path of the media file.
+	 * @param int index - List index of the media file.
+	 * @param int directory - Directory node of the path, from 'findDirectory()'.
+	 * @param byte[] path - Encoded path.
+	 * @return boolean - True if the paths match, false otherwise.
+	 */
+	boolean matches(int index, int directory, byte[] path)
+	{
+		// Only read the leaf of media files within the same directory.
+		if(entryDirectories[index] != directory)
+			return false;
+		final byte[] leaf = getLeaf(index);
+		return leaf.length == path.length - lastSeparator(path, path.length) - 1 && regionEquals(path, path.length - leaf.length, leaf, 0, leaf.length);
+	}
+
+	/**
+	 * Checks whether a media file is within a directory, at any depth.
+	 * @param int index - List index of the media file.
+	 * @param int ancestor - Directory node of the directory.
+	 * @return boolean - True if within the directory, false otherwise.
+	 */
+	boolean isWithin(int index, int ancestor)
+	{
+		for(int directory = entryDirectories[index]; directory != NO_DIRECTORY; directory = parents[directory])
+			if(directory == ancestor)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Finds the directory node of a directory path, without adding any.
+	 * @param byte[] directory_path - Encoded path of the directory, with or without its last separator.
+	 * @return int - Directory node, 'UNKNOWN_DIRECTORY' if the directory is not known.
+	 */
+	int findDirectoryNode(byte[] directory_path)
+	{
+		int end = directory_path.length;
+		if(end > 0 && directory_path[end - 1] == SEPARATOR)
+			end--;
+		return find(directory_path, end);
+	}
+
+	/**
+	 * Retrieves the rank of the directory of a media file when directories are ordered by their path as unsigned
+	 * bytes. Ranks are worked out again on the first call after any directory is added.
+	 * @param int index - List index of the media file.
+	 * @return int - Rank of the directory, zero for paths without a directory.
+	 */
+	public int getDirectoryRank(int index)
+	{
+		if(ranks == null)
+			ranks = rankDirectories();
+		final int directory = entryDirectories[index];
+		return (directory == NO_DIRECTORY) ? 0 : ranks[directory];
+	}
+
+	/**
+	 * Drops each tombstoned media file, shifting the rest down to match the compacted lists.
+	 * @param BitSet tombstones - List indexes removed.
+	 * @param int list_size - Size of the lists before compaction.
+	 */
+	void compact(BitSet tombstones, int list_size)
+	{
+		int compacted_size = 0;
+		for(int i = 0; i < list_size; i++)
+			if(!tombstones.get(i))
+			{
+				entryDirectories[compacted_size] = entryDirectories[i];
+				entryHashes[compacted_size] = entryHashes[i];
+				leaves[compacted_size++] = leaves[i];
+			}
+		Arrays.fill(leaves, compacted_size, size, null);
+		size = compacted_size;
+		leafBytes = 0L;
+		for(int i = 0; i < size; i++)
+			if(leaves[i] != null)
+				leafBytes += leaves[i].length + 24L;
+		// Rebuild from the held hashes, dropping the removed media files, without reading any leaf.
+		int capacity = 2048;
+		while(size * 2 > capacity)
+			capacity *= 2;
+		rebuildLookup(capacity);
+	}
+
+	/**
+	 * Retrieves the heap taken by the arena, the directory nodes, the leaves held apart and each array by list index.
+	 * @return long - Heap taken in bytes.
+	 */
+	long getHeapBytes()
+	{
+		return directoryBytes + leafBytes + (long) parents.length * 12L + (long) entryDirectories.length * 16L + (long) lookup.length * 4L;
+	}
+
+	private void insertLookup(int index)
+	{
+		final int mask = lookup.length - 1;
+		int slot = entryHashes[index] & mask;
+		while(lookup[slot] != 0)
+			slot = (slot + 1) & mask;
+		lookup[slot] = index + 1;
+	}
+
+	private void rebuildLookup(int capacity)
+	{
+		lookup = new int[capacity];
+		for(int i = 0; i < size; i++)
+			insertLookup(i);
+	}
+
+	/**
+	 * Hashes a directory node and a leaf, spreading the high bits down as the table is indexed by the low bits.
+	 */
+	private static int hash(int directory, byte[] bytes, int from, int to)
+	{
+		int hash = directory;
+		for(int i = from; i < to; i++)
+			hash = 31 * hash + bytes[i];
+		return hash ^ (hash >>> 16);
+	}
+
+	private byte[] getLeaf(int index)
+	{
+		final byte[] leaf = leaves[index];
+		return (leaf != null) ? leaf : names.get(index);
+	}
+
+	/**
+	 * Finds or adds the directory node of the path up to the passed end, adding any missing parent on the way.
+	 */
+	private int intern(byte[] path, int end)
+	{
+		int parent = NO_DIRECTORY, start = 0;
+		for(int i = 0; i <= end; i++)
+			if(i == end || path[i] == SEPARATOR)
+			{
+				final DirectoryKey key = new DirectoryKey(parent, path, start, i);
+				final Integer directory = directories.get(key);
+				parent = (directory != null) ? directory : addDirectory(key);
+				start = i + 1;
+			}
+		return parent;
+	}
+
+	/**
+	 * Finds the directory node of the path up to the passed end, 'UNKNOWN_DIRECTORY' if any part of it is not known.
+	 */
+	private int find(byte[] path, int end)
+	{
+		int parent = NO_DIRECTORY, start = 0;
+		for(int i = 0; i <= end; i++)
+			if(i == end || path[i] == SEPARATOR)
+			{
+				final Integer directory = directories.get(new DirectoryKey(parent, path, start, i));
+				if(directory == null)
+					return UNKNOWN_DIRECTORY;
+				parent = directory;
+				start = i + 1;
+			}
+		return parent;
+	}
+
+	private int addDirectory(DirectoryKey key)
+	{
+		if(directoryCount == parents.length)
+		{
+			parents = Arrays.copyOf(parents, directoryCount * 2);
+			segments = Arrays.copyOf(segments, directoryCount * 2);
+		}
+		// Copy the segment, so the key no longer refers to the path passed in.
+		final byte[] segment = Arrays.copyOfRange(key.bytes, key.from, key.to);
+		parents[directoryCount] = key.parent;
+		segments[directoryCount] = segment;
+		directories.put(new DirectoryKey(key.parent, segment, 0, segment.length), directoryCount);
+		// Segment, plus its key and node within the map.
+		directoryBytes += segment.length + 120L;
+		ranks = null;
+		return directoryCount++;
+	}
+
+	/**
+	 * Orders every directory node by its path, ranking from one.
+	 */
+	private int[] rankDirectories()
+	{
+		final byte[][] directory_paths = new byte[directoryCount][];
+		final Integer[] nodes = new Integer[directoryCount];
+		for(int i = 0; i < directoryCount; i++)
+		{
+			// Parents are always added before their children.
+			directory_paths[i] = (parents[i] == NO_DIRECTORY) ? segments[i] : concatenate(directory_paths[parents[i]], segments[i]);
+			nodes[i] = i;
+		}
+
+		Arrays.sort(nodes, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer node_0, Integer node_1)
+			{
+				return compareUnsigned(directory_paths[node_0], directory_paths[node_1]);
+			}
+		});
+
+		final int[] ranked = new int[directoryCount];
+		for(int rank = 0; rank < directoryCount; rank++)
+			ranked[nodes[rank]] = rank + 1;
+		return ranked;
+	}
+
+	private static byte[] concatenate(byte[] directory_path, byte[] segment)
+	{
+		final byte[] path = Arrays.copyOf(directory_path, directory_path.length + 1 + segment.length);
+		path[directory_path.length] = SEPARATOR;
+		System.arraycopy(segment, 0, path, directory_path.length + 1, segment.length);
+		return path;
+	}
+
+	private static int compareUnsigned(byte[] bytes_0, byte[] bytes_1)
+	{
+		final int length = Math.min(bytes_0.length, bytes_1.length);
+		for(int i = 0; i < length; i++)
+			if(bytes_0[i] != bytes_1[i])
+				return (bytes_0[i] & 0xFF) - (bytes_1[i] & 0xFF);
+		return bytes_0.length - bytes_1.length;
+	}
+
+	private static int lastSeparator(byte[] path, int end)
+	{
+		for(int i = end - 1; i >= 0; i--)
+			if(path[i] == SEPARATOR)
+				return i;
+		return -1;
+	}
+
+	private static boolean regionEquals(byte[] bytes_0, int from_0, byte[] bytes_1, int from_1, int length)
+	{
+		for(int i = 0; i < length; i++)
+			if(bytes_0[from_0 + i] != bytes_1[from_1 + i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Parent node and segment of a directory node, the segment being a range of bytes so a path passed in can be
+	 * looked up without copying it.
+	 */
+	private static final class DirectoryKey
+	{
+		private final int parent, from, to, hash;
+
+		private final byte[] bytes;
+
+		private DirectoryKey(int parent, byte[] bytes, int from, int to)
+		{
+			this.parent = parent;
+			this.bytes = bytes;
+			this.from = from;
+			this.to = to;
+			int hash = parent;
+			for(int i = from; i < to; i++)
+				hash = 31 * hash + bytes[i];
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other)
+		{
+			if(!(other instanceof DirectoryKey))
+				return false;
+			final DirectoryKey key = (DirectoryKey) other;
+			return key.parent == parent && key.to - key.from == to - from && regionEquals(bytes, from, key.bytes, key.from, to - from);
+		}
+	}
+}
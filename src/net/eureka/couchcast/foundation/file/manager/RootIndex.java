@@ -0,0 +1,131 @@
+package net.eureka.couchcast.foundation.file.manager;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Provenance of the media files of the {@link FileFactory}, the monitored directory whose scan found each of them.
+ * Each monitored directory holds a {@link BitSet} of the list indexes of its media files, so every media file of a
+ * directory can be found without building a single path, and the directory of a media file by checking each bitmap
+ * in turn. There are only ever a handful of monitored directories.
+ * <br>
+ * <br>
+ * Media files are held by list index, and are remapped on compaction the same way as the orders of the
+ * {@link FileFactory}. Media files added without a monitored directory are held by none.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see FileFactory
+ * @see DirectoryFactory
+ *
+ * @version 0.1
+ */
+final class RootIndex
+{
+	/**
+	 * Root of media files not found under a monitored directory.
+	 */
+	static final int NO_ROOT = -1;
+
+	/**
+	 * Path of each monitored directory and the list indexes of its media files, by root.
+	 */
+	private final ArrayList<String> roots = new ArrayList<String>();
+	private final ArrayList<BitSet> members = new ArrayList<BitSet>();
+
+	/**
+	 * Retrieves the root of a monitored directory, adding it if not held.
+	 * @param String root - Path of the monitored directory, null for none.
+	 * @return int - Root of the directory, 'NO_ROOT' if null was passed.
+	 */
+	int getRoot(String root)
+	{
+		if(root == null)
+			return NO_ROOT;
+		final int existing = roots.indexOf(root);
+		if(existing >= 0)
+			return existing;
+		roots.add(root);
+		members.add(new BitSet());
+		return roots.size() - 1;
+	}
+
+	/**
+	 * Sets the root of a range of list indexes.
+	 * @param int from_index - First list index of the range.
+	 * @param int to_index - List index after the last of the range.
+	 * @param int root - Root of the media files, 'NO_ROOT' for none.
+	 */
+	void add(int from_index, int to_index, int root)
+	{
+		if(root != NO_ROOT)
+			members.get(root).set(from_index, to_index);
+	}
+
+	/**
+	 * Clears the root of a removed media file, so a directory left without media files is no longer held.
+	 * @param int index - List index of the media file.
+	 */
+	void clear(int index)
+	{
+		for(int i = 0; i < members.size(); i++)
+			members.get(i).clear(index);
+	}
+
+	/**
+	 * Retrieves the monitored directory a media file was found under.
+	 * @param int index - List index of the media file.
+	 * @return String - Path of the monitored directory, null if none.
+	 */
+	String getPath(int index)
+	{
+		for(int i = 0; i < members.size(); i++)
+			if(members.get(i).get(index))
+				return roots.get(i);
+		return null;
+	}
+
+	/**
+	 * Retrieves every monitored directory holding a media file.
+	 * @return List of String - Paths of the monitored directories.
+	 */
+	List<String> getPaths()
+	{
+		final ArrayList<String> paths = new ArrayList<String>(roots.size());
+		for(int i = 0; i < roots.size(); i++)
+			if(!members.get(i).isEmpty())
+				paths.add(roots.get(i));
+		return paths;
+	}
+
+	/**
+	 * Drops a monitored directory, handing back the list indexes of its media files for removal.
+	 * @param String root - Path of the monitored directory.
+	 * @return BitSet - List indexes of its media files, null if the directory is not held.
+	 */
+	BitSet remove(String root)
+	{
+		final int existing = roots.indexOf(root);
+		if(existing < 0)
+			return null;
+		roots.remove(existing);
+		return members.remove(existing);
+	}
+
+	/**
+	 * Moves the list indexes of every root to those of the compacted lists.
+	 * @param int[] remapped_indexes - New list index of each old list index, -1 for tombstones.
+	 */
+	void remap(int[] remapped_indexes)
+	{
+		for(int root = 0; root < members.size(); root++)
+		{
+			final BitSet indexes = members.get(root), remapped = new BitSet(remapped_indexes.length);
+			for(int i = indexes.nextSetBit(0); i >= 0 && i < remapped_indexes.length; i = indexes.nextSetBit(i + 1))
+				if(remapped_indexes[i] != -1)
+					remapped.set(remapped_indexes[i]);
+			members.set(root, remapped);
+		}
+	}
+}
@@ -0,0 +1,278 @@
+package net.eureka.couchcast.foundation.file.manager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of the scanning of a single monitored directory. Shared by the {@link DirectoryScanner} of the monitored
+ * directory and each deep search scanner created beneath it. A pass starts when the first of those scanners starts,
+ * the counters are reset at the start of every pass.
+ * <br>
+ * <br>
+ * Deep search scanners created during a pass are registered to it as they are created, so a pass only ends once the
+ * scanner that started it and every scanner created beneath it have stopped, however late they are scheduled. A
+ * scanner that already took part in the current pass is refused until it ends, so no directory is counted twice.
+ * <br>
+ * <br>
+ * A job can be cancelled through the {@link DirectoryFactory}, which wakes any scanner waiting on the search delay
+ * and stops it before the next file.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see DirectoryFactory
+ * @see DirectoryScanner
+ *
+ * @version 0.3
+ */
+public final class ScanJob
+{
+	/**
+	 * Pass of a scanner that has not taken part in or been registered to any.
+	 */
+	static final int NO_PASS = 0;
+
+	/**
+	 * Monitored directory the job belongs to.
+	 */
+	private final String root;
+
+	/**
+	 * Counters of the current or last pass. Files visited, media files matched, files skipped and the
+	 * total size of the matched media files.
+	 */
+	private final AtomicLong visited = new AtomicLong(), matched = new AtomicLong(), skipped = new AtomicLong(),
+							 matchedBytes = new AtomicLong();
+
+	/**
+	 * Number of scanners working on the job, scanners registered to the current pass that have not started and the
+	 * current or last pass.
+	 */
+	private int activeScanners = 0, pendingScanners = 0, passes = 0, pass = NO_PASS;
+
+	private boolean passOpen = false;
+
+	/**
+	 * Start of the current pass, the length of the last pass and the time spent on all passes. In nanoseconds.
+	 */
+	private long passStarted = 0L, lastPassTime = 0L, totalPassTime = 0L;
+
+	private volatile boolean cancelled = false;
+
+	public ScanJob(String root)
+	{
+		this.root = root;
+	}
+
+	/**
+	 * Called when a scanner is created beneath another of the job. Registers it to the current pass, so the pass
+	 * waits for it.
+	 * @return int - Pass the scanner is registered to, 'NO_PASS' if none is running.
+	 */
+	synchronized int register()
+	{
+		if(!passOpen)
+			return NO_PASS;
+		pendingScanners++;
+		return pass;
+	}
+
+	/**
+	 * Called when a registered scanner is dropped without starting. Completes the pass if nothing else is left.
+	 * @param int registered_pass - Pass the scanner was registered to.
+	 */
+	synchronized void release(int registered_pass)
+	{
+		if(passOpen && registered_pass == pass)
+		{
+			pendingScanners--;
+			completePass();
+		}
+	}
+
+	/**
+	 * Called when a scanner of the job starts. Begins a new pass if none is running, otherwise joins the current one.
+	 * @param int last_pass - Last pass the scanner took part in.
+	 * @param int registered_pass - Pass the scanner was registered to.
+	 * @return int - Pass the scanner takes part in, 'NO_PASS' if it already took part in the current pass.
+	 */
+	synchronized int begin(int last_pass, int registered_pass)
+	{
+		if(!passOpen)
+		{
+			visited.set(0L);
+			matched.set(0L);
+			skipped.set(0L);
+			matchedBytes.set(0L);
+			passStarted = System.nanoTime();
+			passOpen = true;
+			pendingScanners = 0;
+			pass++;
+		}
+		else if(registered_pass == pass)
+			pendingScanners--;
+		else if(last_pass == pass)
+			return NO_PASS;
+		activeScanners++;
+		return pass;
+	}
+
+	/**
+	 * Called when a scanner of the job stops. Completes the pass if nothing else is left.
+	 */
+	synchronized void end()
+	{
+		activeScanners--;
+		completePass();
+	}
+
+	/**
+	 * Completes the pass once no scanner is working on it and none registered to it is left to start.
+	 */
+	private void completePass()
+	{
+		if(passOpen && activeScanners == 0 && pendingScanners == 0)
+		{
+			passOpen = false;
+			lastPassTime = System.nanoTime() - passStarted;
+			totalPassTime += lastPassTime;
+			passes++;
+			// Wake anything waiting on the pass.
+			this.notifyAll();
+		}
+	}
+
+	void addVisited()
+	{
+		visited.incrementAndGet();
+	}
+
+	void addSkipped()
+	{
+		skipped.incrementAndGet();
+	}
+
+	void addMatched(long file_size)
+	{
+		matched.incrementAndGet();
+		matchedBytes.addAndGet(file_size);
+	}
+
+	/**
+	 * Waits for the passed number of milliseconds, returns early if the job is cancelled.
+	 * @param int delay - Milliseconds to wait.
+	 */
+	synchronized void delay(int delay)
+	{
+		if(!cancelled)
+			try
+			{
+				this.wait(delay);
+			}
+			catch (InterruptedException e)
+			{
+				e.printStackTrace();
+			}
+	}
+
+	/**
+	 * Cancels the job. Scanners stop before their next file.
+	 */
+	public synchronized void cancel()
+	{
+		cancelled = true;
+		this.notifyAll();
+	}
+
+	/**
+	 * Waits until at least one pass has been completed or the job is cancelled.
+	 * @param long timeout - Most milliseconds to wait.
+	 * @return boolean - True if a pass has been completed, false otherwise.
+	 */
+	public synchronized boolean awaitPass(long timeout)
+	{
+		final long deadline = System.currentTimeMillis() + timeout;
+		long remaining = timeout;
+		while(passes == 0 && !cancelled && remaining > 0)
+		{
+			try
+			{
+				this.wait(remaining);
+			}
+			catch (InterruptedException e)
+			{
+				break;
+			}
+			remaining = deadline - System.currentTimeMillis();
+		}
+		return passes > 0;
+	}
+
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
+	public synchronized boolean isRunning()
+	{
+		return passOpen;
+	}
+
+	public String getRoot()
+	{
+		return root;
+	}
+
+	public long getVisited()
+	{
+		return visited.get();
+	}
+
+	public long getMatched()
+	{
+		return matched.get();
+	}
+
+	public long getSkipped()
+	{
+		return skipped.get();
+	}
+
+	/**
+	 * Retrieves the total file size of the media files matched, not the bytes read from disk to find them.
+	 * @return long - Total size in bytes.
+	 */
+	public long getMatchedBytes()
+	{
+		return matchedBytes.get();
+	}
+
+	public synchronized int getPasses()
+	{
+		return passes;
+	}
+
+	/**
+	 * Retrieves the time spent on the current pass if running, the last pass otherwise.
+	 * @return long - Elapsed time in milliseconds.
+	 */
+	public synchronized long getElapsedTime()
+	{
+		final long elapsed = (passOpen) ? System.nanoTime() - passStarted : lastPassTime;
+		return elapsed / 1000000L;
+	}
+
+	/**
+	 * Retrieves the time spent on all completed passes.
+	 * @return long - Total time in milliseconds.
+	 */
+	public synchronized long getTotalTime()
+	{
+		return totalPassTime / 1000000L;
+	}
+
+	@Override
+	public String toString()
+	{
+		return root + ": visited " + getVisited() + ", matched " + getMatched() + ", skipped " + getSkipped() + ", "
+				+ getMatchedBytes() + " bytes matched, " + getElapsedTime() + "ms" + ((isRunning()) ? " (running)" : "") + ((cancelled) ? " (cancelled)" : "");
+	}
+}
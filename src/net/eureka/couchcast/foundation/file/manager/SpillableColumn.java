@@ -0,0 +1,393 @@
+package net.eureka.couchcast.foundation.file.manager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A column of the {@link FileFactory} that can move its bytes off the heap. Until spilled the column is a plain list
+ * of byte[]. Once spilled, every value is appended to a spill file and only the offset of each value is held, or
+ * nothing at all for a column of fixed width values, and each value is copied out of the file when asked for.
+ * <br>
+ * <br>
+ * The spill file is read and written through memory mapped pages. Only the pages used most recently are kept
+ * mapped, the least recently used page is let go once the cache is full and mapped again when next needed. The
+ * file is a cache of the current session only, it is started afresh when spilled and deleted on exit.
+ * <br>
+ * <br>
+ * Only the cold columns are spilled, those read when a media file is sent or shown rather than on every sort or
+ * lookup. Values are dropped on compaction, which shifts the remaining values down within the spill file so a
+ * spilled column is never copied back onto the heap. Once spilled, only fixed width values can be changed, they are
+ * written over in place.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see FileFactory
+ * @see PathArena
+ *
+ * @version 0.2
+ */
+final class SpillableColumn extends AbstractList<byte[]> implements RandomAccess
+{
+	/**
+	 * Bytes of each mapped page.
+	 */
+	private static final int PAGE_SIZE = 1 << 20;
+
+	/**
+	 * Most pages kept mapped at once.
+	 */
+	private static final int CACHED_PAGES = 32;
+
+	/**
+	 * Rough heap taken by an array beyond its bytes, its header and the reference to it.
+	 */
+	private static final int ARRAY_OVERHEAD = 20;
+
+	/**
+	 * Width of each value, zero if the values differ in length.
+	 */
+	private final int width;
+
+	/**
+	 * Values held on the heap, null once spilled.
+	 */
+	private ArrayList<byte[]> values = new ArrayList<byte[]>();
+
+	/**
+	 * Heap taken by the values held, in bytes.
+	 */
+	private long heapBytes = 0L;
+
+	/**
+	 * Channel of the spill file, null until spilled.
+	 */
+	private FileChannel channel = null;
+
+	/**
+	 * Offset within the spill file of each value, by index. Not used for fixed width values.
+	 */
+	private long[] offsets = null;
+
+	private int size = 0;
+
+	/**
+	 * Bytes written to the spill file.
+	 */
+	private long length = 0L;
+
+	/**
+	 * Recently used pages, by page index, least recently used first.
+	 */
+	private final Map<Long, MappedByteBuffer> pages = new LinkedHashMap<Long, MappedByteBuffer>(CACHED_PAGES, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, MappedByteBuffer> eldest)
+		{
+			// The page is unmapped once no longer referred to.
+			return size() > CACHED_PAGES;
+		}
+	};
+
+	/**
+	 * @param int width - Width of each value, zero if the values differ in length.
+	 */
+	SpillableColumn(final int width)
+	{
+		this.width = width;
+	}
+
+	@Override
+	public byte[] get(int index)
+	{
+		if(values != null)
+			return values.get(index);
+
+		if(index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+		return readValue(index);
+	}
+
+	@Override
+	public boolean add(byte[] value)
+	{
+		if(values != null)
+		{
+			values.add(value);
+			heapBytes += ARRAY_OVERHEAD + value.length;
+			return true;
+		}
+
+		try
+		{
+			append(value);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("Spilled column could not be written.", e);
+		}
+		return true;
+	}
+
+	/**
+	 * Changes a value, such as the modification time of a media file found again. Values of varying length can only
+	 * be changed until spilled, they are never moved within the spill file out of order.
+	 */
+	@Override
+	public byte[] set(int index, byte[] value)
+	{
+		if(values != null)
+		{
+			final byte[] previous = values.set(index, value);
+			heapBytes += value.length - previous.length;
+			return previous;
+		}
+
+		if(width == 0)
+			throw new UnsupportedOperationException("Values of varying length are not changed once spilled.");
+		if(index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+		if(value.length != width)
+			throw new IllegalArgumentException("Value of "+value.length+" bytes within a column of "+width+" byte values.");
+		final byte[] previous = readValue(index);
+		try
+		{
+			write((long) index * width, value);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("Spilled column could not be written.", e);
+		}
+		return previous;
+	}
+
+	@Override
+	public int size()
+	{
+		return (values != null) ? values.size() : size;
+	}
+
+	@Override
+	public void clear()
+	{
+		if(values != null)
+		{
+			values.clear();
+			heapBytes = 0L;
+		}
+		else
+		{
+			// The spill file is written over from the start.
+			size = 0;
+			length = 0L;
+		}
+	}
+
+	/**
+	 * Checks if the values have been moved to the spill file.
+	 * @return boolean - True if spilled, false if held on the heap.
+	 */
+	boolean isSpilled()
+	{
+		return values == null;
+	}
+
+	/**
+	 * Retrieves the rough heap taken by the values of the column.
+	 * @return long - Heap taken in bytes, only the offsets once spilled.
+	 */
+	long getHeapBytes()
+	{
+		return (values != null) ? heapBytes : ((offsets != null) ? offsets.length * 8L : 0L);
+	}
+
+	/**
+	 * Drops the value of each tombstoned index, shifting the remaining values down to match the compacted lists.
+	 * Spilled values are moved within the spill file, each only to an earlier offset than it was read from.
+	 * @param BitSet tombstones - Indexes removed from the lists.
+	 * @param int list_size - Size of the lists before compaction.
+	 */
+	void compact(BitSet tombstones, int list_size)
+	{
+		if(values != null)
+		{
+			final ArrayList<byte[]> compacted = new ArrayList<byte[]>(list_size - tombstones.cardinality());
+			heapBytes = 0L;
+			for(int i = 0; i < list_size; i++)
+				if(!tombstones.get(i))
+				{
+					compacted.add(values.get(i));
+					heapBytes += ARRAY_OVERHEAD + values.get(i).length;
+				}
+			values = compacted;
+			return;
+		}
+
+		int compacted_size = 0;
+		long compacted_length = 0L;
+		try
+		{
+			for(int i = 0; i < list_size; i++)
+				if(!tombstones.get(i))
+				{
+					final byte[] value = readValue(i);
+					// Append from the end of the values kept so far.
+					size = compacted_size;
+					length = compacted_length;
+					append(value);
+					compacted_size = size;
+					compacted_length = length;
+				}
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("Spilled column could not be compacted.", e);
+		}
+		size = compacted_size;
+		length = compacted_length;
+	}
+
+	/**
+	 * Moves every value into a new spill file, so values are no longer held on the heap. The file is deleted on exit.
+	 * @param File spill_file - File to spill to, written over if it exists.
+	 * @throws IOException - If the spill file could not be created or written, the column is then left as it was.
+	 */
+	void spill(File spill_file) throws IOException
+	{
+		if(values == null)
+			return;
+
+		channel = FileChannel.open(spill_file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+								   StandardOpenOption.WRITE);
+		spill_file.deleteOnExit();
+		offsets = (width > 0) ? null : new long[Math.max(16, values.size())];
+		try
+		{
+			for(byte[] value : values)
+				append(value);
+		}
+		catch (IOException e)
+		{
+			// Carry on from the heap.
+			channel.close();
+			channel = null;
+			pages.clear();
+			offsets = null;
+			size = 0;
+			length = 0L;
+			throw e;
+		}
+		values = null;
+		heapBytes = 0L;
+	}
+
+	private byte[] readValue(int index)
+	{
+		try
+		{
+			if(width > 0)
+			{
+				final byte[] value = new byte[width];
+				read((long) index * width, value, 0, width);
+				return value;
+			}
+			// Variable values are written after their length.
+			final byte[] value_length = new byte[4];
+			read(offsets[index], value_length, 0, 4);
+			final byte[] value = new byte[((value_length[0] & 0xFF) << 24) | ((value_length[1] & 0xFF) << 16) | ((value_length[2] & 0xFF) << 8) | (value_length[3] & 0xFF)];
+			read(offsets[index] + 4, value, 0, value.length);
+			return value;
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("Spilled column could not be read.", e);
+		}
+	}
+
+	private void append(byte[] value) throws IOException
+	{
+		if(width > 0)
+		{
+			if(value.length != width)
+				throw new IllegalArgumentException("Value of "+value.length+" bytes within a column of "+width+" byte values.");
+		}
+		else
+		{
+			if(size == offsets.length)
+				offsets = Arrays.copyOf(offsets, size * 2);
+			offsets[size] = length;
+			write(new byte[] { (byte) (value.length >>> 24), (byte) (value.length >>> 16), (byte) (value.length >>> 8), (byte) value.length });
+		}
+		write(value);
+		size++;
+	}
+
+	/**
+	 * Writes bytes at the end of the spill file.
+	 */
+	private void write(byte[] bytes) throws IOException
+	{
+		write(length, bytes);
+		length += bytes.length;
+	}
+
+	/**
+	 * Writes bytes at an offset within the spill file, across as many pages as they span.
+	 */
+	private void write(long offset, byte[] bytes) throws IOException
+	{
+		int written = 0;
+		while(written < bytes.length)
+		{
+			final long position = offset + written;
+			final MappedByteBuffer page = getPage(position / PAGE_SIZE);
+			final int page_offset = (int) (position % PAGE_SIZE), count = Math.min(bytes.length - written, PAGE_SIZE - page_offset);
+			page.position(page_offset);
+			page.put(bytes, written, count);
+			written += count;
+		}
+	}
+
+	/**
+	 * Reads bytes from the spill file, across as many pages as they span.
+	 */
+	private void read(long offset, byte[] destination, int destination_offset, int count) throws IOException
+	{
+		int read = 0;
+		while(read < count)
+		{
+			final long position = offset + read;
+			final MappedByteBuffer page = getPage(position / PAGE_SIZE);
+			final int page_offset = (int) (position % PAGE_SIZE), page_count = Math.min(count - read, PAGE_SIZE - page_offset);
+			page.position(page_offset);
+			page.get(destination, destination_offset + read, page_count);
+			read += page_count;
+		}
+	}
+
+	/**
+	 * Retrieves a page from the cache, mapping it if it is not held. Mapping a page past the end of the file grows
+	 * the file.
+	 */
+	private MappedByteBuffer getPage(long page_index) throws IOException
+	{
+		MappedByteBuffer page = pages.get(page_index);
+		if(page == null)
+		{
+			page = channel.map(FileChannel.MapMode.READ_WRITE, page_index * PAGE_SIZE, PAGE_SIZE);
+			pages.put(page_index, page);
+		}
+		return page;
+	}
+}
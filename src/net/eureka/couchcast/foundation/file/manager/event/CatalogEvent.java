@@ -0,0 +1,90 @@
+package net.eureka.couchcast.foundation.file.manager.event;
+
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+
+/**
+ * A single change to the media files held within the {@link FileFactory}. Published through {@link CatalogEvents}
+ * to each {@link CatalogListener} in batches.
+ * 
+ * @author Owen McMonagle.
+ * 
+ * @see CatalogEvents
+ * @see CatalogListener
+ * @see FileFactory
+ * 
+ * @version 0.4
+ */
+public final class CatalogEvent
+{
+	/**
+	 * Kind of change made to a media file.
+	 */
+	public enum Type
+	{
+		/**
+		 * Media file added to the catalog.
+		 */
+		ADDED,
+		
+		/**
+		 * Media file removed from the catalog.
+		 */
+		REMOVED,
+		
+		/**
+		 * File size or modification time of a media file changed, as found when a scan comes across it again.
+		 */
+		MODIFIED,
+		
+		/**
+		 * Media files shown or left out by a view filter, such as deep search being switched. Refers to no single
+		 * media file, so carries a media ID of zero, an index of -1 and no path.
+		 */
+		FILTERED
+	}
+	
+	private final Type type;
+	
+	/**
+	 * Stable ID of the media file.
+	 */
+	private final long id;
+	
+	/**
+	 * Index of the media file within the {@link FileFactory} at the time of the change.
+	 */
+	private final int index;
+	
+	/**
+	 * Path of the media file.
+	 */
+	private final byte[] path;
+	
+	public CatalogEvent(final Type type, final long id, final int index, final byte[] path)
+	{
+		this.type = type;
+		this.id = id;
+		this.index = index;
+		this.path = path;
+	}
+	
+	public Type getType()
+	{
+		return type;
+	}
+	
+	public long getId()
+	{
+		return id;
+	}
+	
+	public int getIndex()
+	{
+		return index;
+	}
+	
+	public byte[] getPath()
+	{
+		return path;
+	}
+}
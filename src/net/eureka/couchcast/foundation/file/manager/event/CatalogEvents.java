@@ -0,0 +1,177 @@
+package net.eureka.couchcast.foundation.file.manager.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+
+/**
+ * Publishes the changes made to the {@link FileFactory} to each subscribed {@link CatalogListener}. Changes are
+ * queued as they are made and delivered in batches from a dedicated thread, so the catalog never waits on its
+ * listeners.
+ * <br>
+ * <br>
+ * Batches are debounced. A batch is delivered once no change has been made for a short delay, once the oldest
+ * queued change has waited too long, or once the batch is full. A scan adding thousands of files then results
+ * in a handful of deliveries instead of one per file.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see CatalogEvent
+ * @see CatalogListener
+ * @see FileFactory
+ *
+ * @version 0.1
+ */
+public final class CatalogEvents implements Runnable
+{
+	/**
+	 * Milliseconds without a change before a batch is delivered.
+	 */
+	private static final long DEBOUNCE_DELAY = 250L;
+
+	/**
+	 * Most milliseconds a change can be queued before its batch is delivered.
+	 */
+	private static final long MAXIMUM_LATENCY = 1000L;
+
+	/**
+	 * Number of changes that are delivered straight away.
+	 */
+	private static final int MAXIMUM_BATCH_SIZE = 4096;
+
+	private static final List<CatalogListener> LISTENERS = new CopyOnWriteArrayList<CatalogListener>();
+
+	private static final Object LOCK = new Object();
+
+	private static List<CatalogEvent> pending = new ArrayList<CatalogEvent>();
+
+	/**
+	 * Time of the first and last queued change of the pending batch.
+	 */
+	private static long firstQueued = 0L, lastQueued = 0L;
+
+	private static Thread dispatcher = null;
+
+	private CatalogEvents()
+	{
+	}
+
+	/**
+	 * Subscribes a listener to each batch of changes made from now on.
+	 * @param CatalogListener listener - Listener to subscribe.
+	 */
+	public static void subscribe(CatalogListener listener)
+	{
+		LISTENERS.add(listener);
+	}
+
+	/**
+	 * Stops a listener from receiving any further changes.
+	 * @param CatalogListener listener - Listener to unsubscribe.
+	 */
+	public static void unsubscribe(CatalogListener listener)
+	{
+		LISTENERS.remove(listener);
+	}
+
+	/**
+	 * Queues a single change for delivery.
+	 * @param CatalogEvent event - Change to queue.
+	 */
+	public static void publish(CatalogEvent event)
+	{
+		publish(Collections.singletonList(event));
+	}
+
+	/**
+	 * Queues a number of changes for delivery, in order.
+	 * @param List of CatalogEvent events - Changes to queue.
+	 */
+	public static void publish(List<CatalogEvent> events)
+	{
+		if(events.isEmpty())
+			return;
+
+		synchronized (LOCK)
+		{
+			final long now = System.currentTimeMillis();
+			if(pending.isEmpty())
+				firstQueued = now;
+			lastQueued = now;
+			pending.addAll(events);
+			startDispatcher();
+			LOCK.notifyAll();
+		}
+	}
+
+	private static void startDispatcher()
+	{
+		if(dispatcher == null)
+		{
+			dispatcher = new Thread(new CatalogEvents());
+			dispatcher.setName("Catalog Events");
+			dispatcher.setDaemon(true);
+			dispatcher.start();
+		}
+	}
+
+	@Override
+	public void run()
+	{
+		while(true)
+		{
+			final List<CatalogEvent> batch = awaitBatch();
+			for(CatalogListener listener : LISTENERS)
+				try
+				{
+					listener.catalogChanged(batch);
+				}
+				catch(RuntimeException e)
+				{
+					// Never let a listener stop the delivery to others.
+					e.printStackTrace();
+				}
+		}
+	}
+
+	/**
+	 * Waits until the pending batch is due and then takes it.
+	 * @return List of CatalogEvent - Unmodifiable batch of changes.
+	 */
+	private static List<CatalogEvent> awaitBatch()
+	{
+		synchronized (LOCK)
+		{
+			while(true)
+			{
+				// Wait for the first change when nothing is pending.
+				long wait = 0L;
+				if(pending.size() >= MAXIMUM_BATCH_SIZE)
+					break;
+				else if(!pending.isEmpty())
+				{
+					final long now = System.currentTimeMillis();
+					wait = Math.min(lastQueued + DEBOUNCE_DELAY, firstQueued + MAXIMUM_LATENCY) - now;
+					if(wait <= 0L)
+						break;
+				}
+
+				try
+				{
+					LOCK.wait(wait);
+				}
+				catch (InterruptedException e)
+				{
+					e.printStackTrace();
+				}
+			}
+
+			final List<CatalogEvent> batch = Collections.unmodifiableList(pending);
+			pending = new ArrayList<CatalogEvent>();
+			return batch;
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package net.eureka.couchcast.foundation.file.manager.event;
+
+import java.util.List;
+
+/**
+ * Interface to receive changes made to the media files within the catalog. Subscribed through {@link CatalogEvents}.
+ * 
+ * @author Owen McMonagle.
+ * 
+ * @see CatalogEvents
+ * @see CatalogEvent
+ * 
+ * @version 0.1
+ */
+public interface CatalogListener
+{
+	/**
+	 * Called from the {@link CatalogEvents} dispatcher thread with each batch of changes, in the order they were made.
+	 * @param events - Unmodifiable batch of changes.
+	 */
+	public void catalogChanged(List<CatalogEvent> events);
+}
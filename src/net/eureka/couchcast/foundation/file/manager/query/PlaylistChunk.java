@@ -0,0 +1,131 @@
+package net.eureka.couchcast.foundation.file.manager.query;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.file.manager.PathArena;
+
+/**
+ * A reusable buffer holding the encoded media files of one chunk of a streamed play-list. The {@link FileFactory}
+ * encodes media files straight from its lists and {@link PathArena} into the chunk, so no media file objects are created, and the chunk is
+ * then written down stream and reset for the next. Only one chunk is held at a time, so the memory used by a stream
+ * stays the same however large the play-list is.
+ * <br>
+ * <br>
+ * A chunk is written as the number of media files and the number of bytes that follow, both as integers. Each media
+ * file is then written as its media ID as a long, followed by its name, path and size, each as an integer length
+ * followed by that many encoded bytes. A chunk of no media files ends the stream.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see FileFactory
+ * @see PathArena
+ *
+ * @version 0.2
+ */
+public final class PlaylistChunk
+{
+	/**
+	 * Bytes of the count and length written before the media files.
+	 */
+	private static final int HEADER_SIZE = 8;
+
+	/**
+	 * Bytes after which the chunk is treated as full.
+	 */
+	private final int capacity;
+
+	private byte[] buffer;
+
+	/**
+	 * Number of bytes and media files held.
+	 */
+	private int length = HEADER_SIZE, count = 0;
+
+	public PlaylistChunk(final int capacity)
+	{
+		this.capacity = capacity;
+		this.buffer = new byte[HEADER_SIZE + capacity];
+	}
+
+	/**
+	 * Appends a media file, growing the buffer if the media file does not fit.
+	 * @param long id - Media ID.
+	 * @param byte[] name - Encoded name.
+	 * @param PathArena paths - Paths of the catalog, the path is copied straight from it.
+	 * @param int list_index - List index of the media file within the paths.
+	 * @param byte[] size - Encoded size.
+	 */
+	public void append(long id, byte[] name, PathArena paths, int list_index, byte[] size)
+	{
+		final int path_length = paths.getPathLength(list_index);
+		final int needed = length + 20 + name.length + path_length + size.length;
+		if(needed > buffer.length)
+			buffer = Arrays.copyOf(buffer, Math.max(needed, buffer.length * 2));
+
+		putInt((int) (id >>> 32));
+		putInt((int) id);
+		putBytes(name);
+		putInt(path_length);
+		paths.copyPath(list_index, buffer, length);
+		length += path_length;
+		putBytes(size);
+		count++;
+	}
+
+	/**
+	 * Checks if the chunk has reached its capacity.
+	 * @return boolean - True if no more media files should be appended.
+	 */
+	public boolean isFull()
+	{
+		return length - HEADER_SIZE >= capacity;
+	}
+
+	public int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Writes the chunk to the passed stream and resets it. An empty chunk ends the stream.
+	 * @param OutputStream output - Stream to write to.
+	 * @throws IOException - If the stream is closed.
+	 */
+	public void writeTo(OutputStream output) throws IOException
+	{
+		final int media_length = length;
+		// Write the header in front of the media files.
+		length = 0;
+		putInt(count);
+		putInt(media_length - HEADER_SIZE);
+		output.write(buffer, 0, media_length);
+		reset();
+	}
+
+	/**
+	 * Discards the media files held.
+	 */
+	public void reset()
+	{
+		length = HEADER_SIZE;
+		count = 0;
+	}
+
+	private void putBytes(byte[] bytes)
+	{
+		putInt(bytes.length);
+		System.arraycopy(bytes, 0, buffer, length, bytes.length);
+		length += bytes.length;
+	}
+
+	private void putInt(int value)
+	{
+		buffer[length++] = (byte) (value >>> 24);
+		buffer[length++] = (byte) (value >>> 16);
+		buffer[length++] = (byte) (value >>> 8);
+		buffer[length++] = (byte) value;
+	}
+}
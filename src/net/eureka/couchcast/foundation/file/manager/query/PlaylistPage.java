@@ -0,0 +1,49 @@
+package net.eureka.couchcast.foundation.file.manager.query;
+
+import java.util.ArrayList;
+
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.file.media.MediaFile;
+
+/**
+ * A single page of the play-list answering a {@link PlaylistQuery}. Holds the media files of the page in order, the
+ * total number of media files matching the query and the catalog generation of the {@link FileFactory} the page was
+ * taken at.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see PlaylistQuery
+ * @see FileFactory
+ *
+ * @version 0.1
+ */
+public final class PlaylistPage
+{
+	private final int total;
+
+	private final long generation;
+
+	private final ArrayList<MediaFile> mediaFiles;
+
+	public PlaylistPage(final int total, final long generation, final ArrayList<MediaFile> media_files)
+	{
+		this.total = total;
+		this.generation = generation;
+		this.mediaFiles = media_files;
+	}
+
+	public int getTotal()
+	{
+		return total;
+	}
+
+	public long getGeneration()
+	{
+		return generation;
+	}
+
+	public ArrayList<MediaFile> getMediaFiles()
+	{
+		return mediaFiles;
+	}
+}
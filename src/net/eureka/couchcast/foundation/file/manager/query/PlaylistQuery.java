@@ -0,0 +1,196 @@
+package net.eureka.couchcast.foundation.file.manager.query;
+
+import java.io.UnsupportedEncodingException;
+
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.file.manager.sorting.SortOrder;
+import net.eureka.couchcast.foundation.init.ApplicationGlobals;
+
+/**
+ * A request for a single page of the play-list, answered by the {@link FileFactory} straight from its orders. Holds
+ * the {@link SortOrder} to page through, the window of the page and an optional filter. Media files can be filtered
+ * on the start of their name and their extension, both ignoring case, on the monitored directory they were found in
+ * and on a range of file sizes. Filters left unset match every media file.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see PlaylistPage
+ * @see FileFactory
+ * @see SortOrder
+ *
+ * @version 0.2
+ */
+public final class PlaylistQuery
+{
+	private final SortOrder order;
+
+	/**
+	 * Number of matching media files to skip, and the most to return.
+	 */
+	private final int offset, limit;
+
+	/**
+	 * Encoded start of the name and path of the monitored directory, null if unset.
+	 */
+	private byte[] namePrefix = null, root = null;
+
+	/**
+	 * Encoded lower case extensions without the dot, null if unset.
+	 */
+	private byte[][] extensions = null;
+
+	/**
+	 * Smallest and largest file size in bytes, inclusive.
+	 */
+	private long minimumSize = 0L, maximumSize = Long.MAX_VALUE;
+
+	public PlaylistQuery(final SortOrder order, final int offset, final int limit)
+	{
+		this.order = order;
+		this.offset = Math.max(0, offset);
+		this.limit = Math.max(0, limit);
+	}
+
+	/**
+	 * Only matches media files with a name starting with the passed text, ignoring case.
+	 * @param String name_prefix - Start of the name, empty or null to match every name.
+	 */
+	public void setNamePrefix(String name_prefix)
+	{
+		this.namePrefix = (name_prefix == null || name_prefix.isEmpty()) ? null : encode(name_prefix);
+	}
+
+	/**
+	 * Only matches media files with one of the passed extensions, ignoring case.
+	 * @param String[] extensions - Extensions with or without their dot, empty or null to match every extension.
+	 */
+	public void setExtensions(String[] extensions)
+	{
+		if(extensions == null || extensions.length == 0)
+		{
+			this.extensions = null;
+			return;
+		}
+
+		this.extensions = new byte[extensions.length][];
+		for(int i = 0; i < extensions.length; i++)
+		{
+			final String extension = extensions[i].trim().toLowerCase();
+			this.extensions[i] = encode(extension.startsWith(".") ? extension.substring(1) : extension);
+		}
+	}
+
+	/**
+	 * Only matches media files found within the passed monitored directory.
+	 * @param String root - Path of the monitored directory, empty or null to match every directory.
+	 */
+	public void setRoot(String root)
+	{
+		if(root == null || root.isEmpty())
+			this.root = null;
+		else
+			this.root = encode(root);
+	}
+
+	/**
+	 * Only matches media files with a file size within the passed range.
+	 * @param long minimum_size - Smallest file size in bytes, inclusive.
+	 * @param long maximum_size - Largest file size in bytes, inclusive.
+	 */
+	public void setSizeRange(long minimum_size, long maximum_size)
+	{
+		this.minimumSize = minimum_size;
+		this.maximumSize = maximum_size;
+	}
+
+	/**
+	 * Checks if any filter is set.
+	 * @return boolean - True if some media files may not match, false if every media file matches.
+	 */
+	public boolean isFiltered()
+	{
+		return namePrefix != null || extensions != null || root != null || minimumSize > 0L || maximumSize < Long.MAX_VALUE;
+	}
+
+	/**
+	 * Checks a media file against the name, extension and size filters set. The monitored directory is checked by the
+	 * {@link FileFactory} against its directories instead.
+	 * @param byte[] name - Encoded name of the media file.
+	 * @param long file_size - File size in bytes.
+	 * @return boolean - True if the media file matches, false otherwise.
+	 */
+	public boolean matches(byte[] name, long file_size)
+	{
+		if(file_size < minimumSize || file_size > maximumSize)
+			return false;
+		if(namePrefix != null && !regionMatches(name, 0, namePrefix))
+			return false;
+		if(extensions != null)
+		{
+			int dot = name.length - 1;
+			while(dot > 0 && name[dot] != '.')
+				dot--;
+			if(dot <= 0)
+				return false;
+			for(byte[] extension : extensions)
+				if(name.length - dot - 1 == extension.length && regionMatches(name, dot + 1, extension))
+					return true;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Compares the bytes at the passed offset to the passed region, ignoring the case of ASCII letters.
+	 */
+	private static boolean regionMatches(byte[] bytes, int offset, byte[] region)
+	{
+		if(bytes.length - offset < region.length)
+			return false;
+		for(int i = 0; i < region.length; i++)
+			if(toLowerCase(bytes[offset + i]) != toLowerCase(region[i]))
+				return false;
+		return true;
+	}
+
+	private static byte toLowerCase(byte character)
+	{
+		return (character >= 'A' && character <= 'Z') ? (byte) (character + ('a' - 'A')) : character;
+	}
+
+	private static byte[] encode(String text)
+	{
+		try
+		{
+			return text.getBytes(ApplicationGlobals.getEncoding());
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			return text.getBytes();
+		}
+	}
+
+	/**
+	 * Retrieves the monitored directory filter.
+	 * @return byte[] - Encoded path of the monitored directory, null if unset.
+	 */
+	public byte[] getRoot()
+	{
+		return root;
+	}
+
+	public SortOrder getOrder()
+	{
+		return order;
+	}
+
+	public int getOffset()
+	{
+		return offset;
+	}
+
+	public int getLimit()
+	{
+		return limit;
+	}
+}
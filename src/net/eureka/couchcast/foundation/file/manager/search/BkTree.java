@@ -0,0 +1,194 @@
+package net.eureka.couchcast.foundation.file.manager.search;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Burkhard-Keller tree over the terms of the {@link TrigramIndex}, used to find every term within a small edit
+ * distance of a query word. Each child of a term is held by its Levenshtein distance to that term. As the distance
+ * is a metric, a search only has to visit the children whose distance lies within the search distance of the
+ * distance between the query and their parent, which leaves most of the tree unvisited.
+ * <br>
+ * <br>
+ * Typing mistakes are often two neighbouring characters swapped, which Levenshtein counts as two edits. Searches
+ * count a swap as a single edit instead. As that count is not a metric the tree is still held by Levenshtein
+ * distance, searched one edit wider, and each term found is checked again counting swaps.
+ * <br>
+ * <br>
+ * Terms are only ever added, so the tree is built incrementally as media files are added to the catalog.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see TrigramIndex
+ *
+ * @version 0.2
+ */
+final class BkTree
+{
+	private Node root = null;
+
+	/**
+	 * Reused rows of the distance calculations.
+	 */
+	private int[] previousRow = new int[32], currentRow = new int[32], swapRow = new int[32];
+
+	/**
+	 * Adds a term to the tree, if not already held.
+	 * @param char[] term - Term to add.
+	 * @param Postings postings - Slots holding the term.
+	 */
+	void add(char[] term, Postings postings)
+	{
+		if(root == null)
+		{
+			root = new Node(term, postings);
+			return;
+		}
+
+		Node node = root;
+		while(true)
+		{
+			final int distance = distance(node.term, term);
+			if(distance == 0)
+				return;
+			if(distance >= node.children.length)
+				node.children = Arrays.copyOf(node.children, distance + 1);
+			if(node.children[distance] == null)
+			{
+				node.children[distance] = new Node(term, postings);
+				return;
+			}
+			node = node.children[distance];
+		}
+	}
+
+	/**
+	 * Finds every term within the passed number of edits of the query word, a swap counting as one edit. Terms
+	 * needing more than one swap may be missed.
+	 * @param char[] word - Query word.
+	 * @param int maximum_edits - Most edits allowed.
+	 * @param Visitor visitor - Called with each term found.
+	 */
+	void search(char[] word, int maximum_edits, Visitor visitor)
+	{
+		if(root == null)
+			return;
+
+		// One swap is two Levenshtein edits.
+		final int search_distance = maximum_edits + 1;
+		final ArrayDeque<Node> nodes = new ArrayDeque<Node>();
+		nodes.push(root);
+		while(!nodes.isEmpty())
+		{
+			final Node node = nodes.pop();
+			final int distance = distance(node.term, word);
+			if(distance <= search_distance)
+			{
+				final int edits = (distance <= maximum_edits) ? distance : swapDistance(node.term, word);
+				if(edits <= maximum_edits)
+					visitor.visit(node.postings, edits);
+			}
+
+			// Only children within the search distance of this distance can hold a match.
+			final int last_child = Math.min(distance + search_distance, node.children.length - 1);
+			for(int i = Math.max(1, distance - search_distance); i <= last_child; i++)
+				if(node.children[i] != null)
+					nodes.push(node.children[i]);
+		}
+	}
+
+	/**
+	 * Calculates the Levenshtein distance between two terms, the fewest insertions, deletions and substitutions
+	 * that turn one into the other.
+	 */
+	private int distance(char[] term_0, char[] term_1)
+	{
+		if(term_1.length + 1 > previousRow.length)
+		{
+			previousRow = new int[term_1.length + 1];
+			currentRow = new int[term_1.length + 1];
+			swapRow = new int[term_1.length + 1];
+		}
+
+		for(int j = 0; j <= term_1.length; j++)
+			previousRow[j] = j;
+		for(int i = 1; i <= term_0.length; i++)
+		{
+			currentRow[0] = i;
+			for(int j = 1; j <= term_1.length; j++)
+			{
+				final int substitution = previousRow[j-1] + ((term_0[i-1] == term_1[j-1]) ? 0 : 1);
+				currentRow[j] = Math.min(substitution, Math.min(previousRow[j], currentRow[j-1]) + 1);
+			}
+			final int[] row = previousRow;
+			previousRow = currentRow;
+			currentRow = row;
+		}
+		return previousRow[term_1.length];
+	}
+
+	/**
+	 * Calculates the optimal string alignment distance between two terms, the Levenshtein distance with a swap of
+	 * two neighbouring characters counted as a single edit.
+	 */
+	private int swapDistance(char[] term_0, char[] term_1)
+	{
+		if(term_1.length + 1 > swapRow.length)
+			swapRow = new int[term_1.length + 1];
+		// Rows two before, one before and the current row.
+		int[] swap_row = swapRow, previous_row = previousRow, current_row = currentRow;
+
+		for(int j = 0; j <= term_1.length; j++)
+			previous_row[j] = j;
+		for(int i = 1; i <= term_0.length; i++)
+		{
+			current_row[0] = i;
+			for(int j = 1; j <= term_1.length; j++)
+			{
+				final int substitution = previous_row[j-1] + ((term_0[i-1] == term_1[j-1]) ? 0 : 1);
+				current_row[j] = Math.min(substitution, Math.min(previous_row[j], current_row[j-1]) + 1);
+				if(i > 1 && j > 1 && term_0[i-1] == term_1[j-2] && term_0[i-2] == term_1[j-1])
+					current_row[j] = Math.min(current_row[j], swap_row[j-2] + 1);
+			}
+			final int[] row = swap_row;
+			swap_row = previous_row;
+			previous_row = current_row;
+			current_row = row;
+		}
+		final int distance = previous_row[term_1.length];
+		swapRow = swap_row;
+		previousRow = previous_row;
+		currentRow = current_row;
+		return distance;
+	}
+
+	/**
+	 * Receives each term found by a search.
+	 */
+	interface Visitor
+	{
+		/**
+		 * @param Postings postings - Slots holding the term.
+		 * @param int distance - Edit distance from the query word.
+		 */
+		void visit(Postings postings, int distance);
+	}
+
+	private static final class Node
+	{
+		private final char[] term;
+
+		private final Postings postings;
+
+		/**
+		 * Children by their distance to this term.
+		 */
+		private Node[] children = new Node[0];
+
+		private Node(char[] term, Postings postings)
+		{
+			this.term = term;
+			this.postings = postings;
+		}
+	}
+}
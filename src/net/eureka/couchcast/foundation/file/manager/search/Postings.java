@@ -0,0 +1,54 @@
+package net.eureka.couchcast.foundation.file.manager.search;
+
+import java.util.Arrays;
+
+/**
+ * Sorted slots of the media files holding a single trigram or term of the {@link TrigramIndex}.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see TrigramIndex
+ *
+ * @version 0.2
+ */
+final class Postings
+{
+	int[] slots = new int[4];
+
+	int size = 0;
+
+	void add(int slot)
+	{
+		if(size == slots.length)
+			slots = Arrays.copyOf(slots, size * 2);
+
+		// Slots are mostly given out in order, so they almost always go on the end.
+		if(size == 0 || slots[size-1] < slot)
+			slots[size++] = slot;
+		else
+		{
+			final int found = Arrays.binarySearch(slots, 0, size, slot);
+			if(found >= 0)
+				return;
+			final int insertion = -found - 1;
+			System.arraycopy(slots, insertion, slots, insertion + 1, size - insertion);
+			slots[insertion] = slot;
+			size++;
+		}
+	}
+
+	/**
+	 * Drops each slot no longer indexed.
+	 * @param char[][] names - Normalised names by slot, null if not indexed.
+	 */
+	void retainIndexed(char[][] names)
+	{
+		int retained = 0;
+		for(int i = 0; i < size; i++)
+			if(names[slots[i]] != null)
+				slots[retained++] = slots[i];
+		size = retained;
+		if(slots.length > 16 && size < slots.length / 4)
+			slots = Arrays.copyOf(slots, Math.max(4, size * 2));
+	}
+}
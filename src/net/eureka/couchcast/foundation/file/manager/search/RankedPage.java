@@ -0,0 +1,100 @@
+package net.eureka.couchcast.foundation.file.manager.search;
+
+import java.util.Arrays;
+
+/**
+ * Collects the ranks of the matches of a search and keeps the best up to the end of the requested page in a heap,
+ * lowest ranked at the top, so a search never sorts more than a page worth of matches. Each rank holds the inverted
+ * slot of the match in its lowest 31 bits, and a higher rank is a better match.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see TrigramIndex
+ * @see SearchResult
+ *
+ * @version 0.2
+ */
+final class RankedPage
+{
+	private final int offset;
+
+	private final long[] heap;
+
+	private int heapSize = 0, total = 0;
+
+	/**
+	 * @param int offset - Number of ranked matches to skip.
+	 * @param int limit - Most matches to return.
+	 * @param int candidates - Most matches that can be offered.
+	 */
+	RankedPage(int offset, int limit, int candidates)
+	{
+		this.offset = Math.max(0, offset);
+		this.heap = new long[(int) Math.min((long) this.offset + Math.max(0, limit), candidates)];
+	}
+
+	/**
+	 * Packs a slot into the lowest bits of a rank.
+	 * @param long rank - Rank of the match, shifted clear of the lowest 31 bits.
+	 * @param int slot - Slot of the match.
+	 * @return long - Rank to offer.
+	 */
+	static long pack(long rank, int slot)
+	{
+		return rank | (Integer.MAX_VALUE - slot);
+	}
+
+	void offer(long rank)
+	{
+		total++;
+		if(heapSize < heap.length)
+			siftUp(heapSize++, rank);
+		else if(heap.length > 0 && rank > heap[0])
+		{
+			heap[0] = rank;
+			siftDown(0);
+		}
+	}
+
+	/**
+	 * Retrieves the page of matches, best first.
+	 * @param long[] slot_ids - Media ID of each slot.
+	 * @return SearchResult - Page of matches and the total number offered.
+	 */
+	SearchResult toResult(long[] slot_ids)
+	{
+		// Ranks sort with the best last.
+		Arrays.sort(heap, 0, heapSize);
+		final int page_size = Math.max(0, heapSize - offset);
+		final long[] ids = new long[page_size];
+		for(int i = 0; i < page_size; i++)
+			ids[i] = slot_ids[Integer.MAX_VALUE - (int) (heap[heapSize - 1 - offset - i] & Integer.MAX_VALUE)];
+		return new SearchResult(total, ids);
+	}
+
+	private void siftUp(int index, long rank)
+	{
+		while(index > 0 && heap[(index - 1) >>> 1] > rank)
+		{
+			heap[index] = heap[(index - 1) >>> 1];
+			index = (index - 1) >>> 1;
+		}
+		heap[index] = rank;
+	}
+
+	private void siftDown(int index)
+	{
+		final long rank = heap[index];
+		while(index * 2 + 1 < heapSize)
+		{
+			int child = index * 2 + 1;
+			if(child + 1 < heapSize && heap[child + 1] < heap[child])
+				child++;
+			if(heap[child] >= rank)
+				break;
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = rank;
+	}
+}
@@ -0,0 +1,40 @@
+package net.eureka.couchcast.foundation.file.manager.search;
+
+/**
+ * A single page of the media files matching a search of the {@link TrigramIndex}. Holds the media IDs of the page
+ * in ranked order, along with the total number of media files that matched.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see TrigramIndex
+ *
+ * @version 0.1
+ */
+public final class SearchResult
+{
+	/**
+	 * Number of media files matched, across every page.
+	 */
+	private final int total;
+
+	/**
+	 * Media IDs of the page, best match first.
+	 */
+	private final long[] ids;
+
+	public SearchResult(final int total, final long[] ids)
+	{
+		this.total = total;
+		this.ids = ids;
+	}
+
+	public int getTotal()
+	{
+		return total;
+	}
+
+	public long[] getIds()
+	{
+		return ids;
+	}
+}
@@ -0,0 +1,721 @@
+package net.eureka.couchcast.foundation.file.manager.search;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.file.manager.MediaIdIndex;
+import net.eureka.couchcast.foundation.file.manager.event.CatalogEvent;
+import net.eureka.couchcast.foundation.file.manager.event.CatalogEvents;
+import net.eureka.couchcast.foundation.file.manager.event.CatalogListener;
+import net.eureka.couchcast.foundation.file.media.MediaFile;
+import net.eureka.couchcast.foundation.init.ApplicationGlobals;
+
+/**
+ * Trigram index over the names of the media files within the {@link FileFactory}, so clients can search the catalog
+ * without downloading it. Names are normalised to lower case words without accents, punctuation or extension. Each
+ * word is padded with two spaces at its start and split into every run of three characters, each of which holds a
+ * sorted list of the slots of the media files containing it. Each indexed media file is given a dense slot, mapped to
+ * and from its media ID, so the index grows with the number of media files held rather than every media ID given out.
+ * <br>
+ * <br>
+ * A query is normalised the same way. Query words of three characters or more match anywhere within a word, shorter
+ * query words only match the start of a word. The lists of each query trigram are intersected, smallest first, and
+ * each remaining name is checked in full. Matches are ranked on whole words first, then word starts, then the
+ * position of the first match, the shortest name and finally the slot. Only the requested page is ranked in full.
+ * <br>
+ * <br>
+ * Each distinct whole word is also held as a term, within a {@link BkTree}, so a fuzzy search can match words
+ * within an edit or two of what was typed. The tree is built up as terms are first seen.
+ * <br>
+ * <br>
+ * The index is kept up to date through {@link CatalogEvents}. Removed media files are only dropped from their
+ * name, they are swept from the lists once enough have built up. Their slots are given out again after the sweep,
+ * once no list still holds them. Media files filtered out of the view stay indexed,
+ * each match is checked against the view through {@link FileFactory#isLive(long)} before it is ranked, so the total
+ * and the page only ever count live media files.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see SearchResult
+ * @see BkTree
+ * @see FileFactory
+ * @see CatalogEvents
+ *
+ * @version 0.7
+ */
+public final class TrigramIndex
+{
+	/**
+	 * Score of a query word found as a whole word, at the start of a word and anywhere within a word.
+	 */
+	private static final int WHOLE_WORD_SCORE = 3, WORD_PREFIX_SCORE = 2, SUBSTRING_SCORE = 1;
+
+	/**
+	 * Removed media files are swept from the lists once they make up this percentage of the indexed media files,
+	 * and at least the minimum count.
+	 */
+	private static final int SWEEP_PERCENT = 25, SWEEP_MINIMUM = 1024;
+
+	/**
+	 * Slots containing each trigram, by packed trigram.
+	 */
+	private static final Map<Long, Postings> POSTINGS = new HashMap<Long, Postings>();
+
+	/**
+	 * Slots holding each whole word, by word, and the same words held by edit distance for fuzzy searches.
+	 */
+	private static final Map<String, Postings> TERMS = new HashMap<String, Postings>();
+	private static final BkTree TERM_TREE = new BkTree();
+
+	/**
+	 * Query words up to the first length are matched with a single edit, longer words with two edits. Shorter
+	 * words and numbers must match a term exactly.
+	 */
+	private static final int SINGLE_EDIT_LENGTH = 5, MINIMUM_FUZZY_LENGTH = 3;
+
+	/**
+	 * Slot of each indexed media file, by media ID.
+	 */
+	private static final MediaIdIndex SLOTS = new MediaIdIndex();
+
+	/**
+	 * Normalised name and media ID of each slot. Null and zero if free or removed.
+	 */
+	private static char[][] names = new char[1024][];
+	private static long[] slotIds = new long[1024];
+
+	/**
+	 * Slots never given out start from the slot count. Free slots can be given out again, released slots once the
+	 * lists have been swept of them.
+	 */
+	private static int[] freeSlots = new int[16], releasedSlots = new int[16];
+
+	private static int slotCount = 0, freeCount = 0, releasedCount = 0;
+
+	private static int indexedCount = 0, removedCount = 0;
+
+	/**
+	 * Heap taken by a trigram list along with its key and map entry, and by a term list along with its string, map
+	 * entry and tree node, not counting the slots held.
+	 */
+	private static final int POSTINGS_BYTES = 96, TERM_BYTES = 160;
+
+	/**
+	 * Heap taken by the names, and by the lists along with the slots they hold. Counted as they are added, and
+	 * measured again on each sweep.
+	 */
+	private static long nameBytes = 0L, postingsBytes = 0L;
+
+	/**
+	 * Heap taken by the whole index as of its last update, read by the {@link FileFactory} without the lock.
+	 */
+	private static volatile long heapBytes = 0L;
+
+	private static boolean started = false;
+
+	/**
+	 * Catalog listener, keeps the index up to date.
+	 */
+	private static final CatalogListener INDEX_LISTENER = new CatalogListener()
+	{
+		@Override
+		public void catalogChanged(List<CatalogEvent> events)
+		{
+			update(events);
+		}
+	};
+
+	private TrigramIndex()
+	{
+	}
+
+	/**
+	 * Starts keeping the index, indexing every media file already within the catalog. Does nothing if already
+	 * started.
+	 */
+	public synchronized static void start()
+	{
+		if(started)
+			return;
+		started = true;
+
+		// Subscribe before loading so no change is missed, changes already loaded are skipped.
+		CatalogEvents.subscribe(INDEX_LISTENER);
+		// Media files filtered out of the view are indexed too, searches only return those live.
+		for(MediaFile media_file : FileFactory.getMediaPlaylist(true))
+			add(media_file.getId(), decode(media_file.getName()));
+		updateHeapBytes();
+	}
+
+	private synchronized static void update(List<CatalogEvent> events)
+	{
+		for(CatalogEvent event : events)
+			switch(event.getType())
+			{
+				case ADDED:
+					add(event.getId(), getName(event.getPath()));
+					break;
+				case REMOVED:
+					remove(event.getId());
+					break;
+				case MODIFIED:
+					// Only the file size and modification time change, the name stays indexed.
+					break;
+				case FILTERED:
+					// Filtered media files stay indexed.
+					break;
+			}
+
+		if(removedCount >= Math.max(SWEEP_MINIMUM, indexedCount * SWEEP_PERCENT / 100))
+			sweep();
+		updateHeapBytes();
+	}
+
+	/**
+	 * Retrieves the heap taken by the index as of its last update. Does not take the lock, so the {@link FileFactory}
+	 * can count the index within its memory budget while holding its own.
+	 * @return long - Heap taken in bytes.
+	 */
+	public static long getHeapBytes()
+	{
+		return heapBytes;
+	}
+
+	private static void updateHeapBytes()
+	{
+		// Names and media IDs by slot, the slot of each media ID and the slots waiting to be given out again.
+		heapBytes = nameBytes + postingsBytes + (long) names.length * 16L + SLOTS.getHeapBytes() + (long) (freeSlots.length + releasedSlots.length) * 4L;
+	}
+
+	private static void add(long id, String name)
+	{
+		// Already indexed when started.
+		if(id <= 0L || SLOTS.contains(id))
+			return;
+
+		final int slot = nextSlot();
+		final char[] normalised_name = normalise(stripExtension(name));
+		names[slot] = normalised_name;
+		nameBytes += getNameBytes(normalised_name);
+		slotIds[slot] = id;
+		SLOTS.put(id, slot);
+		indexedCount++;
+		for(long trigram : getTrigrams(normalised_name))
+		{
+			Postings postings = POSTINGS.get(trigram);
+			if(postings == null)
+			{
+				POSTINGS.put(trigram, (postings = new Postings()));
+				postingsBytes += POSTINGS_BYTES;
+			}
+			postings.add(slot);
+			postingsBytes += 4L;
+		}
+
+		for(char[] term : split(normalised_name))
+		{
+			final String term_key = new String(term);
+			Postings postings = TERMS.get(term_key);
+			if(postings == null)
+			{
+				TERMS.put(term_key, (postings = new Postings()));
+				postingsBytes += TERM_BYTES + term.length * 2L;
+				// Numbers only match exactly, so are left out of the tree.
+				if(!isNumber(term))
+					TERM_TREE.add(term, postings);
+			}
+			postings.add(slot);
+			postingsBytes += 4L;
+		}
+	}
+
+	private static void remove(long id)
+	{
+		final int slot = SLOTS.get(id);
+		if(slot == MediaIdIndex.NOT_FOUND)
+			return;
+
+		SLOTS.remove(id);
+		nameBytes -= getNameBytes(names[slot]);
+		names[slot] = null;
+		slotIds[slot] = 0L;
+		// Still held by the lists, so only given out again after the next sweep.
+		releasedSlots = push(releasedSlots, releasedCount++, slot);
+		indexedCount--;
+		removedCount++;
+	}
+
+	private static long getNameBytes(char[] name)
+	{
+		return 24L + name.length * 2L;
+	}
+
+	/**
+	 * Gives out a free slot, or the next slot never given out.
+	 */
+	private static int nextSlot()
+	{
+		if(freeCount > 0)
+			return freeSlots[--freeCount];
+		if(slotCount == names.length)
+		{
+			names = Arrays.copyOf(names, slotCount * 2);
+			slotIds = Arrays.copyOf(slotIds, slotCount * 2);
+		}
+		return slotCount++;
+	}
+
+	private static int[] push(int[] slots, int size, int slot)
+	{
+		if(size == slots.length)
+			slots = Arrays.copyOf(slots, size * 2);
+		slots[size] = slot;
+		return slots;
+	}
+
+	/**
+	 * Drops each removed media file from the lists, and any list left empty.
+	 */
+	private static void sweep()
+	{
+		postingsBytes = 0L;
+		final Iterator<Postings> iterator = POSTINGS.values().iterator();
+		while(iterator.hasNext())
+		{
+			final Postings postings = iterator.next();
+			postings.retainIndexed(names);
+			if(postings.size == 0)
+				iterator.remove();
+			else
+				postingsBytes += POSTINGS_BYTES + postings.slots.length * 4L;
+		}
+		// Terms stay within the tree, their lists are only emptied.
+		for(Map.Entry<String, Postings> term : TERMS.entrySet())
+		{
+			term.getValue().retainIndexed(names);
+			postingsBytes += TERM_BYTES + term.getKey().length() * 2L + term.getValue().slots.length * 4L;
+		}
+		removedCount = 0;
+
+		// No list holds the released slots any more, so they can be given out again.
+		for(int i = 0; i < releasedCount; i++)
+			freeSlots = push(freeSlots, freeCount++, releasedSlots[i]);
+		releasedCount = 0;
+		// Lowest slots are given out first, so media files added together keep to the order they were added in.
+		Arrays.sort(freeSlots, 0, freeCount);
+		for(int i = 0, j = freeCount - 1; i < j; i++, j--)
+		{
+			final int slot = freeSlots[i];
+			freeSlots[i] = freeSlots[j];
+			freeSlots[j] = slot;
+		}
+		if(releasedSlots.length > 1024)
+			releasedSlots = new int[16];
+	}
+
+	/**
+	 * Searches the names of the catalog for the passed query.
+	 * @param String query - Words to search for.
+	 * @param int offset - Number of ranked matches to skip.
+	 * @param int limit - Most matches to return.
+	 * @return SearchResult - Page of matches and the total number matched.
+	 */
+	public synchronized static SearchResult search(String query, int offset, int limit)
+	{
+		final char[][] words = split(normalise(query));
+		if(words.length == 0)
+			return new SearchResult(0, new long[0]);
+
+		final int[] candidates = findCandidates(words);
+		final RankedPage page = new RankedPage(offset, limit, candidates.length);
+		for(int slot : candidates)
+		{
+			final char[] name = names[slot];
+			if(name == null || !FileFactory.isLive(slotIds[slot]))
+				continue;
+			final long rank = rank(name, words, slot);
+			if(rank >= 0L)
+				page.offer(rank);
+		}
+		return page.toResult(slotIds);
+	}
+
+	/**
+	 * Searches the names of the catalog for terms close to each query word, to allow for typing mistakes. Each
+	 * query word matches any whole word within one or two edits of it, see 'getMaximumDistance()'. Names holding a
+	 * match for every query word are ranked on the fewest edits in total, then the shortest name.
+	 * @param String query - Words to search for.
+	 * @param int offset - Number of ranked matches to skip.
+	 * @param int limit - Most matches to return.
+	 * @return SearchResult - Page of matches and the total number matched.
+	 */
+	public synchronized static SearchResult fuzzySearch(String query, int offset, int limit)
+	{
+		final char[][] words = split(normalise(query));
+		if(words.length == 0)
+			return new SearchResult(0, new long[0]);
+
+		// Slots and summed distances matching every word so far, by slot.
+		long[] matches = null;
+		for(int i = 0; i < words.length && (matches == null || matches.length > 0); i++)
+			matches = (matches == null) ? findTermMatches(words[i]) : intersectMatches(matches, findTermMatches(words[i]));
+
+		final RankedPage page = new RankedPage(offset, limit, matches.length);
+		for(long match : matches)
+		{
+			final int slot = (int) (match >>> 8), distance = (int) (match & 0xFF);
+			final char[] name = names[slot];
+			if(name != null && FileFactory.isLive(slotIds[slot]))
+				page.offer(RankedPage.pack(((long) (0xFF - distance) << 40) | ((long) (0x1FF - Math.min(name.length, 0x1FF)) << 31), slot));
+		}
+		return page.toResult(slotIds);
+	}
+
+	/**
+	 * Finds each slot holding a term close to the query word, with the fewest edits of any such term.
+	 * @param char[] word - Normalised query word.
+	 * @return long[] - Slots shifted over the edit distance in the lowest byte, ascending.
+	 */
+	private static long[] findTermMatches(char[] word)
+	{
+		final int maximum_distance = getMaximumDistance(word);
+		final Postings exact = TERMS.get(new String(word));
+		if(maximum_distance == 0)
+		{
+			final long[] matches = new long[(exact != null) ? exact.size : 0];
+			toMatches(exact, 0, matches, 0);
+			return matches;
+		}
+
+		// Gather the slots of each term found, each paired with the distance of its term.
+		final long[][] gathered = new long[][]{ new long[16] };
+		final int[] gathered_size = new int[1];
+		TERM_TREE.search(word, maximum_distance, new BkTree.Visitor()
+		{
+			@Override
+			public void visit(Postings postings, int distance)
+			{
+				if(gathered_size[0] + postings.size > gathered[0].length)
+					gathered[0] = Arrays.copyOf(gathered[0], Math.max(gathered[0].length * 2, gathered_size[0] + postings.size));
+				gathered_size[0] = toMatches(postings, distance, gathered[0], gathered_size[0]);
+			}
+		});
+
+		// Sort by slot then distance, keeping the closest term of each.
+		final long[] matches = gathered[0];
+		Arrays.sort(matches, 0, gathered_size[0]);
+		int distinct_size = 0;
+		for(int i = 0; i < gathered_size[0]; i++)
+			if(distinct_size == 0 || (matches[distinct_size-1] >>> 8) != (matches[i] >>> 8))
+				matches[distinct_size++] = matches[i];
+		return Arrays.copyOf(matches, distinct_size);
+	}
+
+	private static int toMatches(Postings postings, int distance, long[] matches, int size)
+	{
+		if(postings != null)
+			for(int i = 0; i < postings.size; i++)
+				matches[size++] = ((long) postings.slots[i] << 8) | distance;
+		return size;
+	}
+
+	/**
+	 * Keeps the slots matched by both, summing their distances.
+	 */
+	private static long[] intersectMatches(long[] matches_0, long[] matches_1)
+	{
+		final long[] intersection = new long[Math.min(matches_0.length, matches_1.length)];
+		int intersection_size = 0;
+		for(int i = 0, j = 0; i < matches_0.length && j < matches_1.length; )
+		{
+			final long id_0 = matches_0[i] >>> 8, id_1 = matches_1[j] >>> 8;
+			if(id_0 < id_1)
+				i++;
+			else if(id_0 > id_1)
+				j++;
+			else
+			{
+				final long distance = Math.min(0xFF, (matches_0[i++] & 0xFF) + (matches_1[j++] & 0xFF));
+				intersection[intersection_size++] = (id_0 << 8) | distance;
+			}
+		}
+		return Arrays.copyOf(intersection, intersection_size);
+	}
+
+	/**
+	 * Retrieves the most edits a term can be from the passed query word and still match it.
+	 * @param char[] word - Normalised query word.
+	 * @return int - Edit distance allowed.
+	 */
+	private static int getMaximumDistance(char[] word)
+	{
+		// Numbers only match exactly, a single edit would match another episode.
+		if(word.length < MINIMUM_FUZZY_LENGTH || isNumber(word))
+			return 0;
+		return (word.length <= SINGLE_EDIT_LENGTH) ? 1 : 2;
+	}
+
+	private static boolean isNumber(char[] word)
+	{
+		for(char character : word)
+			if(!Character.isDigit(character))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Intersects the lists of each query trigram, smallest first.
+	 * @param char[][] words - Normalised query words.
+	 * @return int[] - Slots containing every query trigram, ascending.
+	 */
+	private static int[] findCandidates(char[][] words)
+	{
+		final long[] trigrams = getQueryTrigrams(words);
+		final Postings[] lists = new Postings[trigrams.length];
+		for(int i = 0; i < trigrams.length; i++)
+			if((lists[i] = POSTINGS.get(trigrams[i])) == null)
+				return new int[0];
+
+		Arrays.sort(lists, new Comparator<Postings>()
+		{
+			@Override
+			public int compare(Postings postings_0, Postings postings_1)
+			{
+				return Integer.compare(postings_0.size, postings_1.size);
+			}
+		});
+
+		int[] candidates = Arrays.copyOf(lists[0].slots, lists[0].size);
+		for(int i = 1; i < lists.length && candidates.length > 0; i++)
+			candidates = intersect(candidates, lists[i]);
+		return candidates;
+	}
+
+	/**
+	 * Keeps the candidates found within the passed list, searching the list from the last found position.
+	 */
+	private static int[] intersect(int[] candidates, Postings postings)
+	{
+		final int[] intersection = new int[candidates.length];
+		int intersection_size = 0, from = 0;
+		for(int candidate : candidates)
+		{
+			final int found = Arrays.binarySearch(postings.slots, from, postings.size, candidate);
+			if(found >= 0)
+			{
+				intersection[intersection_size++] = candidate;
+				from = found + 1;
+			}
+			else
+				from = -found - 1;
+			if(from == postings.size)
+				break;
+		}
+		return Arrays.copyOf(intersection, intersection_size);
+	}
+
+	/**
+	 * Checks a name against each query word and ranks it. The rank packs, from the highest bits down, the summed
+	 * word scores, the inverted position of the first match, the inverted name length and the inverted slot,
+	 * so a higher rank is a better match and equal matches come out in slot order.
+	 * @param char[] name - Normalised name.
+	 * @param char[][] words - Normalised query words.
+	 * @param int slot - Slot of the name.
+	 * @return long - Rank of the name, negative if a query word was not found.
+	 */
+	private static long rank(char[] name, char[][] words, int slot)
+	{
+		int score = 0, first_position = Integer.MAX_VALUE;
+		for(char[] word : words)
+		{
+			int best_score = 0, best_position = 0;
+			for(int position = indexOf(name, word, 0); position != -1 && best_score < WHOLE_WORD_SCORE; position = indexOf(name, word, position + 1))
+			{
+				final boolean starts_word = position == 0 || name[position-1] == ' ',
+							  ends_word = position + word.length == name.length || name[position + word.length] == ' ';
+				// Short query words only match the start of a word.
+				final int word_score = (starts_word) ? ((ends_word) ? WHOLE_WORD_SCORE : WORD_PREFIX_SCORE) : ((word.length >= 3) ? SUBSTRING_SCORE : 0);
+				if(word_score > best_score)
+				{
+					best_score = word_score;
+					best_position = position;
+				}
+			}
+			if(best_score == 0)
+				return -1L;
+			score += best_score;
+			first_position = Math.min(first_position, best_position);
+		}
+
+		return RankedPage.pack(((long) Math.min(score, 0xFF) << 55) | ((long) (0x7FFF - Math.min(first_position, 0x7FFF)) << 40)
+							 | ((long) (0x1FF - Math.min(name.length, 0x1FF)) << 31), slot);
+	}
+
+	private static int indexOf(char[] name, char[] word, int from)
+	{
+		for(int i = from; i <= name.length - word.length; i++)
+		{
+			int j = 0;
+			while(j < word.length && name[i + j] == word[j])
+				j++;
+			if(j == word.length)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Retrieves the distinct trigrams of a name. Each word is padded with two spaces at its start, so the first
+	 * one and two characters of each word form trigrams of their own.
+	 * @param char[] name - Normalised name.
+	 * @return long[] - Packed trigrams, ascending.
+	 */
+	private static long[] getTrigrams(char[] name)
+	{
+		long[] trigrams = new long[name.length + 2];
+		int trigram_count = 0;
+		for(char[] word : split(name))
+			for(int i = -2; i <= word.length - 3; i++)
+			{
+				if(trigram_count == trigrams.length)
+					trigrams = Arrays.copyOf(trigrams, trigram_count * 2);
+				trigrams[trigram_count++] = pack(charAt(word, i), charAt(word, i + 1), charAt(word, i + 2));
+			}
+		return distinct(trigrams, trigram_count);
+	}
+
+	/**
+	 * Retrieves the distinct trigrams of a query. Words of three characters or more are split without padding so
+	 * they match anywhere, shorter words give the single padded trigram of the start of a word.
+	 * @param char[][] words - Normalised query words.
+	 * @return long[] - Packed trigrams, ascending.
+	 */
+	private static long[] getQueryTrigrams(char[][] words)
+	{
+		long[] trigrams = new long[16];
+		int trigram_count = 0;
+		for(char[] word : words)
+		{
+			// Short words start at the padding, giving the one trigram that ends with their last character.
+			final int first = (word.length >= 3) ? 0 : word.length - 3;
+			for(int i = first; i <= word.length - 3; i++)
+			{
+				if(trigram_count == trigrams.length)
+					trigrams = Arrays.copyOf(trigrams, trigram_count * 2);
+				trigrams[trigram_count++] = pack(charAt(word, i), charAt(word, i + 1), charAt(word, i + 2));
+			}
+		}
+		return distinct(trigrams, trigram_count);
+	}
+
+	private static char charAt(char[] word, int index)
+	{
+		return (index < 0) ? ' ' : word[index];
+	}
+
+	private static long pack(char character_0, char character_1, char character_2)
+	{
+		return ((long) character_0 << 32) | ((long) character_1 << 16) | character_2;
+	}
+
+	private static long[] distinct(long[] trigrams, int trigram_count)
+	{
+		Arrays.sort(trigrams, 0, trigram_count);
+		int distinct_count = 0;
+		for(int i = 0; i < trigram_count; i++)
+			if(distinct_count == 0 || trigrams[distinct_count-1] != trigrams[i])
+				trigrams[distinct_count++] = trigrams[i];
+		return Arrays.copyOf(trigrams, distinct_count);
+	}
+
+	/**
+	 * Normalises text for indexing and searching. Accents are dropped, letters are lower cased and every run of
+	 * anything other than letters and digits becomes a single space.
+	 * @param String text - Text to normalise.
+	 * @return char[] - Normalised text, words separated by single spaces.
+	 */
+	static char[] normalise(String text)
+	{
+		final String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+		final StringBuilder normalised = new StringBuilder(decomposed.length());
+		boolean separated = true;
+		for(int i = 0; i < decomposed.length(); i++)
+		{
+			final char character = decomposed.charAt(i);
+			if(Character.getType(character) == Character.NON_SPACING_MARK)
+				continue;
+			if(Character.isLetterOrDigit(character))
+			{
+				normalised.append(Character.toLowerCase(character));
+				separated = false;
+			}
+			else if(!separated)
+			{
+				normalised.append(' ');
+				separated = true;
+			}
+		}
+		// Drop the trailing space.
+		if(normalised.length() > 0 && separated)
+			normalised.setLength(normalised.length() - 1);
+
+		final char[] characters = new char[normalised.length()];
+		normalised.getChars(0, characters.length, characters, 0);
+		return characters;
+	}
+
+	/**
+	 * Splits normalised text into its words.
+	 */
+	static char[][] split(char[] text)
+	{
+		if(text.length == 0)
+			return new char[0][];
+
+		int word_count = 0;
+		for(int i = 0; i < text.length; i++)
+			if(i == 0 || text[i-1] == ' ')
+				word_count++;
+
+		final char[][] words = new char[word_count][];
+		for(int i = 0, start = 0, word = 0; i <= text.length; i++)
+			if(i == text.length || text[i] == ' ')
+			{
+				words[word++] = Arrays.copyOfRange(text, start, i);
+				start = i + 1;
+			}
+		return words;
+	}
+
+	private static String stripExtension(String name)
+	{
+		final int extension = name.lastIndexOf('.');
+		return (extension > 0) ? name.substring(0, extension) : name;
+	}
+
+	private static String getName(byte[] path)
+	{
+		final String decoded_path = decode(path);
+		return decoded_path.substring(decoded_path.lastIndexOf(File.separatorChar) + 1);
+	}
+
+	private static String decode(byte[] bytes)
+	{
+		try
+		{
+			return new String(bytes, ApplicationGlobals.getEncoding());
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			return new String(bytes);
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package net.eureka.couchcast.foundation.file.manager.sorting;
+
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+
+/**
+ * Sorts media files by when they were added, most recent first. Media files are appended to the lists of the
+ * {@link FileFactory} and compaction keeps their relative order, so the list index alone gives the order. Computed
+ * on request through the {@link SortRegistry}.
+ * 
+ * @author Owen McMonagle.
+ * 
+ * @see Sorter
+ * @see SortRegistry
+ * @see FileFactory
+ * 
+ * @version 0.1
+ */
+public final class AddedSort extends Sorter
+{
+	@Override
+	protected int getSortPrefix(int index, int depth)
+	{
+		// Invert so the most recent comes first.
+		return Integer.MAX_VALUE - index;
+	}
+	
+	@Override
+	protected int getSortDepth()
+	{
+		return 1;
+	}
+	
+	@Override
+	protected int compare(int index_0, int index_1)
+	{
+		return Integer.compare(index_1, index_0);
+	}
+}
@@ -1,68 +1,59 @@
 package net.eureka.couchcast.foundation.file.manager.sorting;
 
-import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.List;
 
-import net.eureka.couchcast.foundation.file.manager.DirectoryFactory;
 import net.eureka.couchcast.foundation.file.manager.FileFactory;
-import net.eureka.couchcast.mediaserver.NetworkHandler;
 
 /**
- * Sorts media files alphabetically. Creates a sorted list by organizing the indexes of the original list. 
- * The list is then set in the {@link FileFactory} and the {@link NetworkHandler} is used to update the 
- * clients with the new list.
+ * Sorts media files alphabetically in natural order. Each media file is compared on the {@link SortKey} created when
+ * it was added, as unsigned bytes, so no name has to be decoded or collated. Names with equal keys are compared as
+ * unsigned bytes. Each sort prefix is the next three bytes of the key.
  * 
  * @author Owen McMonagle.
  * 
+ * @see SortKey
  * @see Sorter
  * @see SortImpl
  * @see FileFactory
- * @see NetworkHandler
- * @see DirectoryFactory
  * 
- * @version 0.1
+ * @version 0.5
  */
 public final class AlphaSort extends Sorter 
 {
+	/**
+	 * Sort key and name lists of the {@link FileFactory}.
+	 */
+	private final List<byte[]> keys, names;
+	
+	public AlphaSort(List<byte[]> keys, List<byte[]> names)
+	{
+		this.keys = keys;
+		this.names = names;
+	}
 	
 	/**
-	 * Sorts media files alphabetically. Creates a sorted list by organizing the indexes of the original list. 
-	 * The list is then set in the {@link FileFactory} and the {@link NetworkHandler} is used to update the 
-	 * clients with the new list.
+	 * Most prefixes taken before comparing keys in full.
 	 */
+	private static final int SORT_DEPTH = 16;
+	
+	@Override
+	protected int getSortPrefix(int index, int depth)
+	{
+		final byte[] key = keys.get(index);
+		return packPrefix(key, 0, key.length, depth);
+	}
+	
+	@Override
+	protected int getSortDepth()
+	{
+		return SORT_DEPTH;
+	}
+	
 	@Override
-	public void sort()
+	protected int compare(int index_0, int index_1)
 	{
-		ArrayList<byte[]> names = FileFactory.getNameList();
-		ArrayList<String> casted_names = new ArrayList<>(names.size());
-		// Create integer index list.
-		final ArrayList<byte[]> index_list = new ArrayList<>();
-		// Retrieve and store the list lengths.
-		final int length = names.size();
-		// Create name list.
-		ArrayList<String> sorted_name_list = new ArrayList<>(names.size());
-		
-		// Retrieve each media file name...
-		for( int i = 0; i < length; i++)
-		{
-			String casted_name = new String(names.get(i));
-			// Then store the name in the list.
-			sorted_name_list.add(casted_name);
-			casted_names.add(i, casted_name);
-		}
-		// Sort name list alphabetically.
-		Collections.sort(sorted_name_list);
-		// Iterate through the sorted name list...
-		for( int i = 0, index = 0; i < length; i++)
-		{
-			String sorted_name = sorted_name_list.get(i);
-			index = casted_names.indexOf(sorted_name);
-			byte[] casted_integer = ByteBuffer.allocate(4).putInt(index).array();
-			index_list.add(casted_integer);
-		}
-		
-		FileFactory.setAlphaList(index_list);
-		NetworkHandler.signalPlaylistUpdate();
+		final int compared = compareBytes(keys.get(index_0), keys.get(index_1));
+		// Fall back on the names, so names only differing in case or accents keep a fixed order.
+		return (compared != 0) ? compared : compareBytes(names.get(index_0), names.get(index_1));
 	}
 }
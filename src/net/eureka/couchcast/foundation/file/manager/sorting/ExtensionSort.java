@@ -0,0 +1,92 @@
+package net.eureka.couchcast.foundation.file.manager.sorting;
+
+import java.util.List;
+
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+
+/**
+ * Sorts media files by extension, ignoring case, then alphabetically within each extension. Each sort prefix is the
+ * next three bytes of the lower case extension. Computed on request through the {@link SortRegistry}.
+ * 
+ * @author Owen McMonagle.
+ * 
+ * @see Sorter
+ * @see AlphaSort
+ * @see SortRegistry
+ * @see FileFactory
+ * 
+ * @version 0.1
+ */
+public final class ExtensionSort extends Sorter
+{
+	/**
+	 * Name list of the {@link FileFactory}.
+	 */
+	private final List<byte[]> names;
+	
+	/**
+	 * Order within each extension.
+	 */
+	private final AlphaSort alphaSort;
+	
+	public ExtensionSort(List<byte[]> keys, List<byte[]> names)
+	{
+		this.names = names;
+		this.alphaSort = new AlphaSort(keys, names);
+	}
+	
+	/**
+	 * Most prefixes taken before comparing extensions in full.
+	 */
+	private static final int SORT_DEPTH = 2;
+	
+	@Override
+	protected int getSortPrefix(int index, int depth)
+	{
+		final byte[] name = names.get(index);
+		final int from = getExtensionStart(name);
+		int prefix = 0;
+		for(int i = from + depth * 3; i < from + (depth + 1) * 3; i++)
+			prefix = (prefix << 8) | ((i < name.length) ? toLowerCase(name[i]) : 0);
+		return prefix;
+	}
+	
+	@Override
+	protected int getSortDepth()
+	{
+		return SORT_DEPTH;
+	}
+	
+	@Override
+	protected int compare(int index_0, int index_1)
+	{
+		final byte[] name_0 = names.get(index_0), name_1 = names.get(index_1);
+		final int from_0 = getExtensionStart(name_0), from_1 = getExtensionStart(name_1);
+		final int length = Math.min(name_0.length - from_0, name_1.length - from_1);
+		for(int i = 0; i < length; i++)
+		{
+			final int compared = toLowerCase(name_0[from_0 + i]) - toLowerCase(name_1[from_1 + i]);
+			if(compared != 0)
+				return compared;
+		}
+		
+		final int compared = (name_0.length - from_0) - (name_1.length - from_1);
+		return (compared != 0) ? compared : alphaSort.compare(index_0, index_1);
+	}
+	
+	/**
+	 * Finds the start of the extension, after the last dot. Names without an extension start it at their end.
+	 */
+	private static int getExtensionStart(byte[] name)
+	{
+		for(int i = name.length - 1; i > 0; i--)
+			if(name[i] == '.')
+				return i + 1;
+		return name.length;
+	}
+	
+	private static int toLowerCase(byte character)
+	{
+		return (character >= 'A' && character <= 'Z') ? character + ('a' - 'A') : character & 0xFF;
+	}
+}
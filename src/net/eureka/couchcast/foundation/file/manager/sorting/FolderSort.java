@@ -0,0 +1,60 @@
+package net.eureka.couchcast.foundation.file.manager.sorting;
+
+import java.util.List;
+
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.file.manager.PathArena;
+
+/**
+ * Sorts media files by the path of their parent folder, then alphabetically within each folder. Folders are compared
+ * by their rank within the {@link PathArena}, which orders each folder once by its path as unsigned bytes, so no path
+ * is built or compared while sorting. The first sort prefix is the folder rank, the rest are those of
+ * {@link AlphaSort}. Computed on request through the {@link SortRegistry}.
+ * 
+ * @author Owen McMonagle.
+ * 
+ * @see Sorter
+ * @see AlphaSort
+ * @see PathArena
+ * @see SortRegistry
+ * @see FileFactory
+ * 
+ * @version 0.2
+ */
+public final class FolderSort extends Sorter
+{
+	/**
+	 * Paths of the {@link FileFactory}.
+	 */
+	private final PathArena paths;
+	
+	/**
+	 * Order within each folder.
+	 */
+	private final AlphaSort alphaSort;
+	
+	public FolderSort(List<byte[]> keys, List<byte[]> names, PathArena paths)
+	{
+		this.paths = paths;
+		this.alphaSort = new AlphaSort(keys, names);
+	}
+	
+	@Override
+	protected int getSortPrefix(int index, int depth)
+	{
+		return (depth == 0) ? paths.getDirectoryRank(index) : alphaSort.getSortPrefix(index, depth - 1);
+	}
+	
+	@Override
+	protected int getSortDepth()
+	{
+		return 1 + alphaSort.getSortDepth();
+	}
+	
+	@Override
+	protected int compare(int index_0, int index_1)
+	{
+		final int compared = Integer.compare(paths.getDirectoryRank(index_0), paths.getDirectoryRank(index_1));
+		return (compared != 0) ? compared : alphaSort.compare(index_0, index_1);
+	}
+}
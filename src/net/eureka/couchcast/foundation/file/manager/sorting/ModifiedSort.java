@@ -0,0 +1,64 @@
+package net.eureka.couchcast.foundation.file.manager.sorting;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+
+/**
+ * Sorts media files by modification time, most recent first. The sort prefix is the modification time to within
+ * about four seconds, inverted so the most recent comes first. Files sharing a prefix are compared in full. Computed
+ * on request through the {@link SortRegistry}.
+ * 
+ * @author Owen McMonagle.
+ * 
+ * @see Sorter
+ * @see SortRegistry
+ * @see FileFactory
+ * 
+ * @version 0.1
+ */
+public final class ModifiedSort extends Sorter
+{
+	/**
+	 * Modification time list of the {@link FileFactory}.
+	 */
+	private final List<byte[]> modifiedTimes;
+	
+	public ModifiedSort(List<byte[]> modified_times)
+	{
+		this.modifiedTimes = modified_times;
+	}
+	
+	/**
+	 * Low bits of the modification time dropped from the prefix, keeps times up to the year 2248 within 31 bits.
+	 */
+	private static final int PREFIX_SHIFT = 12;
+	
+	@Override
+	protected int getSortPrefix(int index, int depth)
+	{
+		// Unknown times count as the oldest.
+		final long modified = Math.max(0L, getModified(index));
+		return Integer.MAX_VALUE - (int) Math.min(Integer.MAX_VALUE, modified >>> PREFIX_SHIFT);
+	}
+	
+	@Override
+	protected int getSortDepth()
+	{
+		// Times within the same prefix are compared in full.
+		return 1;
+	}
+	
+	@Override
+	protected int compare(int index_0, int index_1)
+	{
+		// Most recent first.
+		return Long.compare(Math.max(0L, getModified(index_1)), Math.max(0L, getModified(index_0)));
+	}
+	
+	private long getModified(int index)
+	{
+		return ByteBuffer.wrap(modifiedTimes.get(index)).getLong();
+	}
+}
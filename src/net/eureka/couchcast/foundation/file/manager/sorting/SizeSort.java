@@ -1,71 +1,71 @@
 package net.eureka.couchcast.foundation.file.manager.sorting;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.List;
 
-import net.eureka.couchcast.Static;
-import net.eureka.couchcast.foundation.file.manager.DirectoryFactory;
 import net.eureka.couchcast.foundation.file.manager.FileFactory;
-import net.eureka.couchcast.mediaserver.NetworkHandler;
 
 
 /**
- * Sorts media files by size. Creates size descending list by organizing the indexes of the original
- * list. The list is then set in the {@link FileFactory} and the {@link NetworkHandler} is used to update
- * the clients with the new list.
+ * Sorts media files by size, descending. The sort prefix is the size packed like a floating point number, exact
+ * up to 32 megabytes and to within one part in 32 million above, inverted so the largest comes first. Files sharing
+ * a prefix are compared in full.
  * 
  * @author Owen McMonagle.
  * 
  * @see Sorter
  * @see SortImpl
  * @see FileFactory
- * @see NetworkHandler
- * @see DirectoryFactory
  * 
- * @version 0.1
+ * @version 0.4
  */
 public final class SizeSort extends Sorter 
 {
-
+	/**
+	 * File size list of the {@link FileFactory}.
+	 */
+	private final List<byte[]> sizes;
+	
+	public SizeSort(List<byte[]> sizes)
+	{
+		this.sizes = sizes;
+	}
 	
 	/**
-	 * Creates size descending list by organizing the indexes of the original list. The list is then set 
-	 * in the {@link FileFactory} and the {@link NetworkHandler} is used to update the clients with the new 
-	 * list.
+	 * Bits of the size kept below its highest set bit, sizes below two to the power of this are exact.
 	 */
+	private static final int MANTISSA_BITS = 25;
+	
 	@Override
-	public void sort()
+	protected int getSortPrefix(int index, int depth)
 	{
-		ArrayList<byte[]> media_sizes = FileFactory.getMediaFileSizeList();
-		
-		final int length = media_sizes.size();
-		
-		ArrayList<Long> casted_sizes = new ArrayList<>(length);
-		ArrayList<Long> sorted_size_list = new ArrayList<>(length);
-		
-		final ArrayList<byte[]> index_list = new ArrayList<>(length);
-		
-		for(int i = 0; i < length; i ++)
-		{
-			long casted_size = Static.bytesToLong(media_sizes.get(i));
-			casted_sizes.add(casted_size);
-			sorted_size_list.add(casted_size);
-		}
-		
-		Collections.sort(sorted_size_list, Collections.reverseOrder());
-		
-		// Iterate through the sorted name list...
-		for( int i = 0; i < length; i++)
+		final long size = Math.max(0L, ByteBuffer.wrap(sizes.get(index)).getLong());
+		final int prefix;
+		// Small sizes are kept as they are.
+		if(size < (1L << MANTISSA_BITS))
+			prefix = (int) size;
+		// Larger sizes keep their magnitude and the bits below it, like a floating point number.
+		else
 		{
-			Long sorted_size = sorted_size_list.get(i);
-			int index = casted_sizes.indexOf(sorted_size);
-			byte[] casted_index = ByteBuffer.allocate(4).putInt(index).array();
-			index_list.add(casted_index);
+			final int magnitude = 63 - Long.numberOfLeadingZeros(size);
+			final long mantissa = (size >>> (magnitude - MANTISSA_BITS)) & ((1L << MANTISSA_BITS) - 1);
+			prefix = ((magnitude - MANTISSA_BITS + 1) << MANTISSA_BITS) | (int) mantissa;
 		}
-		
-		FileFactory.setSizeList(index_list);
-		NetworkHandler.signalPlaylistUpdate();
-		
+		// Invert so the largest comes first.
+		return Integer.MAX_VALUE - prefix;
+	}
+	
+	@Override
+	protected int getSortDepth()
+	{
+		// Sizes within the same prefix are compared in full.
+		return 1;
+	}
+	
+	@Override
+	protected int compare(int index_0, int index_1)
+	{
+		// Largest first.
+		return Long.compare(ByteBuffer.wrap(sizes.get(index_1)).getLong(), ByteBuffer.wrap(sizes.get(index_0)).getLong());
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package net.eureka.couchcast.foundation.file.manager.sorting;
+
+import java.util.Arrays;
+
+/**
+ * Sorts list indexes for a {@link Sorter} without boxing. A 31 bit sort prefix of each media file is packed together
+ * with its list index into a single long, i.e prefix << 32 | index, and the packed array is sorted with
+ * {@link Arrays#parallelSort(long[])} across each available core.
+ * <br>
+ * <br>
+ * Runs of media files sharing a prefix are packed again with the next prefix of the sorter and sorted the same way,
+ * until the sorter has no further prefixes. Only runs still sharing every prefix are then compared in full, through
+ * the sorter. As the list index is held in the lower bits, media files that compare equal come out in list index
+ * order.
+ * 
+ * @author Owen McMonagle.
+ * 
+ * @see Sorter
+ * @see AlphaSort
+ * @see SizeSort
+ * 
+ * @version 0.1
+ */
+public final class SortEngine
+{
+	/**
+	 * Mask of the list index within a packed long.
+	 */
+	private static final long INDEX_MASK = 0xFFFFFFFFL;
+	
+	/**
+	 * Runs up to this length are insertion sorted in full instead of being packed again.
+	 */
+	private static final int INSERTION_SORT_LIMIT = 16;
+	
+	private SortEngine()
+	{
+	}
+	
+	/**
+	 * Sorts the passed list indexes in place.
+	 * @param int[] indexes - List indexes to sort.
+	 * @param int size - Number of list indexes to sort, from the start of the array.
+	 * @param Sorter sorter - Sorter defining the order.
+	 */
+	public static void sort(int[] indexes, int size, Sorter sorter)
+	{
+		sort(indexes, 0, size, 0, sorter);
+	}
+	
+	private static void sort(int[] indexes, int start, int end, int depth, Sorter sorter)
+	{
+		// Pack each prefix and list index together.
+		final int size = end - start;
+		final long[] packed = new long[size];
+		for(int i = 0; i < size; i++)
+			packed[i] = ((long) sorter.getSortPrefix(indexes[start + i], depth) << 32) | indexes[start + i];
+		
+		Arrays.parallelSort(packed);
+		
+		for(int i = 0; i < size; i++)
+			indexes[start + i] = (int) (packed[i] & INDEX_MASK);
+		
+		// Sort each run of equal prefixes on the next prefix, or in full once out of prefixes.
+		for(int run_start = 0, run_end = 1; run_start < size; run_start = run_end, run_end = run_start + 1)
+		{
+			final long prefix = packed[run_start] >>> 32;
+			while(run_end < size && (packed[run_end] >>> 32) == prefix)
+				run_end++;
+			if(run_end - run_start <= 1)
+				continue;
+			else if(run_end - run_start <= INSERTION_SORT_LIMIT)
+				insertionSort(indexes, start + run_start, start + run_end, sorter);
+			else if(depth + 1 < sorter.getSortDepth())
+				sort(indexes, start + run_start, start + run_end, depth + 1, sorter);
+			else
+				comparatorSort(indexes, start + run_start, start + run_end, sorter);
+		}
+	}
+	
+	private static void insertionSort(int[] indexes, int start, int end, Sorter sorter)
+	{
+		for(int i = start + 1; i < end; i++)
+		{
+			final int index = indexes[i];
+			int j = i - 1;
+			for(; j >= start && sorter.compareIndexes(indexes[j], index) > 0; j--)
+				indexes[j + 1] = indexes[j];
+			indexes[j + 1] = index;
+		}
+	}
+	
+	private static void comparatorSort(int[] indexes, int start, int end, Sorter sorter)
+	{
+		final Integer[] run = new Integer[end - start];
+		for(int i = start; i < end; i++)
+			run[i - start] = indexes[i];
+		Arrays.sort(run, sorter.getComparator());
+		for(int i = start; i < end; i++)
+			indexes[i] = run[i - start];
+	}
+}
@@ -1,10 +1,11 @@
 package net.eureka.couchcast.foundation.file.manager.sorting;
 
-import net.eureka.couchcast.foundation.file.manager.DirectoryFactory;
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
 
 /**
  * 
- * Interface to handle a sorting pattern. Implements {@link Runnable} so it can be added to a {@link Thread}.
+ * Interface to handle a sorting pattern. An order of the media files within the {@link FileFactory}, by list index,
+ * that is kept up to date as media files are added instead of being sorted again from scratch.
  * See {@link Sorter} for guidelines.
  * 
  * @author Owen McMonagle.
@@ -12,16 +13,40 @@ import net.eureka.couchcast.foundation.file.manager.DirectoryFactory;
  * @see Sorter
  * @see AlphaSort
  * @see SizeSort
- * @see DirectoryFactory
+ * @see FileFactory
  * 
- * @version 0.1
+ * @version 0.3
  */
-public interface SortImpl extends Runnable
+public interface SortImpl
 {
+	/**
+	 * Adds a media file to the order.
+	 * @param int list_index - List index of the media file.
+	 */
+	public void add(int list_index);
+	
+	/**
+	 * Adds a range of media files to the order.
+	 * @param int from_index - List index of the first media file.
+	 * @param int to_index - List index after the last media file.
+	 */
+	public void add(int from_index, int to_index);
+	
+	/**
+	 * Moves a media file to its new place within the order, once a field it is sorted on has changed.
+	 * @param int list_index - List index of the media file.
+	 */
+	public void update(int list_index);
+	
+	/**
+	 * Retrieves the order.
+	 * @return int[] - List indexes in order, tombstones included.
+	 */
+	public int[] getOrder();
 	
 	/**
-	 * Used to make the sorter thread compatible.
+	 * Moves each list index to its new list index after a compaction.
+	 * @param int[] remapped_indexes - New list index of each old list index, -1 if removed.
 	 */
-	@Override
-	public void run();
+	public void remap(int[] remapped_indexes);
 }
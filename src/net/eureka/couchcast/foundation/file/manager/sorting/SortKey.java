@@ -0,0 +1,151 @@
+package net.eureka.couchcast.foundation.file.manager.sorting;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.text.Collator;
+
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.init.ApplicationGlobals;
+
+/**
+ * Creates the sort key of a media name, computed once when the media file is added to the {@link FileFactory} and
+ * kept alongside it. Comparing two keys as unsigned bytes gives the natural, locale aware order of their names, so
+ * {@link AlphaSort} never has to decode or collate a name again.
+ * <br>
+ * <br>
+ * The extension is dropped and the rest of the name is split into runs of text and runs of digits. Text is collated
+ * with the {@link Collator} of the default locale at primary strength, so case and accents are ignored. Each primary
+ * weight is packed into one to three bytes and the run is ended with a zero byte. Digits are compared by value, the
+ * number of digits without leading zeros comes first so "Episode 2" sorts before "Episode 10". Numbers sort before
+ * text at the same position.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see AlphaSort
+ * @see FileFactory
+ *
+ * @version 0.1
+ */
+public final class SortKey
+{
+	/**
+	 * Marks the start of a number and of a run of text.
+	 */
+	private static final int NUMBER_MARKER = 1, TEXT_MARKER = 2;
+
+	/**
+	 * Collators are not thread safe, scanners create keys concurrently.
+	 */
+	private static final ThreadLocal<Collator> COLLATOR = new ThreadLocal<Collator>()
+	{
+		@Override
+		protected Collator initialValue()
+		{
+			final Collator collator = Collator.getInstance();
+			collator.setStrength(Collator.PRIMARY);
+			collator.setDecomposition(Collator.CANONICAL_DECOMPOSITION);
+			return collator;
+		}
+	};
+
+	private SortKey()
+	{
+	}
+
+	/**
+	 * Creates the sort key of the passed media name.
+	 * @param byte[] name - Encoded name of a media file.
+	 * @return byte[] - Sort key of the name.
+	 */
+	public static byte[] create(byte[] name)
+	{
+		final String title = stripExtension(decode(name));
+		final ByteArrayOutputStream key = new ByteArrayOutputStream(title.length() + 8);
+
+		int start = 0;
+		while(start < title.length())
+		{
+			final boolean number = Character.isDigit(title.charAt(start));
+			// Find the end of the run.
+			int end = start + 1;
+			while(end < title.length() && Character.isDigit(title.charAt(end)) == number)
+				end++;
+
+			if(number)
+				writeNumber(key, title, start, end);
+			else
+				writeText(key, title.substring(start, end));
+			start = end;
+		}
+		return key.toByteArray();
+	}
+
+	/**
+	 * Writes a number as its digit count followed by each digit value, leading zeros are skipped.
+	 */
+	private static void writeNumber(ByteArrayOutputStream key, String title, int start, int end)
+	{
+		// Skip leading zeros, "007" and "7" only differ on the name.
+		while(start < end && Character.digit(title.charAt(start), 10) == 0)
+			start++;
+
+		key.write(NUMBER_MARKER);
+		// Numbers of more than 255 digits are cut short.
+		end = Math.min(end, start + 255);
+		key.write(end - start);
+		for(int i = start; i < end; i++)
+			key.write(Character.digit(title.charAt(i), 10));
+	}
+
+	/**
+	 * Writes the primary weights of a run of text. Java collation keys hold each weight as two bytes and end the
+	 * primary weights with a zero weight, only that part is kept.
+	 */
+	private static void writeText(ByteArrayOutputStream key, String text)
+	{
+		final byte[] collation_key = COLLATOR.get().getCollationKey(text).toByteArray();
+
+		key.write(TEXT_MARKER);
+		for(int i = 0; i + 1 < collation_key.length; i += 2)
+		{
+			final int weight = ((collation_key[i] & 0xFF) << 8) | (collation_key[i+1] & 0xFF);
+			if(weight == 0)
+				break;
+
+			// Pack the weight, smaller weights take fewer bytes. The first byte tells the length so order is kept.
+			if(weight < 0x80)
+				key.write(weight);
+			else if(weight < 0x7F00)
+			{
+				key.write(0x80 + (weight >>> 8));
+				key.write(weight & 0xFF);
+			}
+			else
+			{
+				key.write(0xFF);
+				key.write(weight >>> 8);
+				key.write(weight & 0xFF);
+			}
+		}
+		// End the run below any weight, so shorter text comes first.
+		key.write(0);
+	}
+
+	private static String stripExtension(String name)
+	{
+		final int extension = name.lastIndexOf('.');
+		return (extension > 0) ? name.substring(0, extension) : name;
+	}
+
+	private static String decode(byte[] name)
+	{
+		try
+		{
+			return new String(name, ApplicationGlobals.getEncoding());
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			return new String(name);
+		}
+	}
+}
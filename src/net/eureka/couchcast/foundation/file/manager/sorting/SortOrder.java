@@ -0,0 +1,73 @@
+package net.eureka.couchcast.foundation.file.manager.sorting;
+
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+
+/**
+ * Each order the media files of the {@link FileFactory} can be retrieved in. Alphabetical and size orders are kept
+ * up to date as media files are added, the rest are computed by the {@link SortRegistry} when first asked for.
+ * Each order has a code, used by clients to ask for it.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see SortRegistry
+ * @see FileFactory
+ *
+ * @version 0.1
+ */
+public enum SortOrder
+{
+	/**
+	 * Natural order of the names, see {@link AlphaSort}.
+	 */
+	ALPHABETICAL(0),
+	
+	/**
+	 * Largest file first, see {@link SizeSort}.
+	 */
+	SIZE(1),
+	
+	/**
+	 * Most recently modified file first, see {@link ModifiedSort}.
+	 */
+	MODIFIED(2),
+	
+	/**
+	 * Most recently added media file first, see {@link AddedSort}.
+	 */
+	ADDED(3),
+	
+	/**
+	 * Grouped by extension, see {@link ExtensionSort}.
+	 */
+	EXTENSION(4),
+	
+	/**
+	 * Grouped by parent folder, see {@link FolderSort}.
+	 */
+	FOLDER(5);
+	
+	private final byte code;
+	
+	private SortOrder(int code)
+	{
+		this.code = (byte) code;
+	}
+	
+	public byte getCode()
+	{
+		return code;
+	}
+	
+	/**
+	 * Retrieves the order with the passed code.
+	 * @param byte code - Code of the order.
+	 * @return SortOrder - Order with the code, null if no order has it.
+	 */
+	public static SortOrder fromCode(byte code)
+	{
+		for(SortOrder order : values())
+			if(order.code == code)
+				return order;
+		return null;
+	}
+}
@@ -0,0 +1,86 @@
+package net.eureka.couchcast.foundation.file.manager.sorting;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+
+/**
+ * Registry of the orders that are only computed when asked for. Each {@link SortOrder} is registered along with the
+ * {@link Sorter} that defines it. An order is sorted in full by the {@link SortEngine} the first time it is asked for
+ * and cached along with the catalog generation of the {@link FileFactory}, it is sorted again only if asked for
+ * once the generation has moved on. Orders nobody asks for are never sorted.
+ * <br>
+ * <br>
+ * Cached orders hold list indexes, they are remapped along with the kept orders on each compaction.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see SortOrder
+ * @see Sorter
+ * @see SortEngine
+ * @see FileFactory
+ *
+ * @version 0.1
+ */
+public final class SortRegistry
+{
+	private final Map<SortOrder, Sorter> sorters = new EnumMap<SortOrder, Sorter>(SortOrder.class);
+
+	/**
+	 * Last order sorted of each registered order, and the catalog generation it was sorted at.
+	 */
+	private final Map<SortOrder, int[]> orders = new EnumMap<SortOrder, int[]>(SortOrder.class);
+	private final Map<SortOrder, Long> generations = new EnumMap<SortOrder, Long>(SortOrder.class);
+
+	/**
+	 * Registers the sorter of an order, replacing any cached order.
+	 * @param SortOrder order - Order to register.
+	 * @param Sorter sorter - Sorter defining the order.
+	 */
+	public synchronized void register(SortOrder order, Sorter sorter)
+	{
+		sorters.put(order, sorter);
+		orders.remove(order);
+		generations.remove(order);
+	}
+
+	public synchronized boolean isRegistered(SortOrder order)
+	{
+		return sorters.containsKey(order);
+	}
+
+	/**
+	 * Retrieves an order, sorting it if it has not been sorted at the passed generation.
+	 * @param SortOrder order - Order to retrieve.
+	 * @param long generation - Current catalog generation.
+	 * @param int[] list_indexes - List index of each live media file, only read if the order is sorted.
+	 * @return int[] - List indexes in order, null if the order is not registered.
+	 */
+	public synchronized int[] getOrder(SortOrder order, long generation, int[] list_indexes)
+	{
+		final Sorter sorter = sorters.get(order);
+		if(sorter == null)
+			return null;
+
+		final Long sorted_generation = generations.get(order);
+		if(sorted_generation == null || sorted_generation.longValue() != generation)
+		{
+			final int[] sorted = list_indexes.clone();
+			SortEngine.sort(sorted, sorted.length, sorter);
+			orders.put(order, sorted);
+			generations.put(order, generation);
+		}
+		return orders.get(order);
+	}
+
+	/**
+	 * Moves each cached order to the new list indexes after a compaction.
+	 * @param int[] remapped_indexes - New list index of each old list index, -1 if removed.
+	 */
+	public synchronized void remap(int[] remapped_indexes)
+	{
+		for(Map.Entry<SortOrder, int[]> entry : orders.entrySet())
+			entry.setValue(Sorter.remap(entry.getValue(), entry.getValue().length, remapped_indexes));
+	}
+}
@@ -1,72 +1,292 @@
 package net.eureka.couchcast.foundation.file.manager.sorting;
 
-import net.eureka.couchcast.foundation.file.manager.DirectoryFactory;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
 
 /**
- * Abstract class that provides a protocol for {@link SortImpl} scheduling. The protocol is
- * to provide 'executed' and 'finished' booleans in order for an observer({@link DirectoryFactory})
- * to be able to tell if the sorting algorithm is finished or not.
+ * Abstract class that provides a protocol for {@link SortImpl} orders. The order is kept as a sorted array of list
+ * indexes. Media files added are held back in a pending batch, which is sorted by the {@link SortEngine} and merged
+ * into the order once the order is next retrieved. A media file added then costs a share of one sort and merge, instead of a full sort of
+ * every media file.
+ * <br>
+ * <br>
+ * Removed media files are left in the order, the {@link FileFactory} skips tombstones when reading it and they are
+ * dropped on the next compaction. A media file whose sorted fields have changed is marked as moved and added to the
+ * pending batch again. Its old place can no longer be found by comparison, so every moved media file is taken out of
+ * the order in a single pass on the next merge, and a rescan changing many media files costs one pass and one merge.
  * <br>
  * <br>
- * The abstract 'sort()' method is now called from 'run()', so that any thread working on this 
- * will use this pattern appropriately.
+ * Child classes define how two media files compare through 'compare()', and that comparison split into successive
+ * 31 bit prefixes through 'getSortPrefix()' which the {@link SortEngine} sorts on. Media files that compare equal are ordered by list
+ * index, i.e the order they were added in.
  * 
  * @author Owen McMonagle.
  * 
  * @see SortImpl
  * @see AlphaSort
  * @see SizeSort
- * @see DirectoryFactory
+ * @see SortEngine
+ * @see SortRegistry
+ * @see FileFactory
  * 
- * @version 0.1
+ * @version 0.6
  */
 public abstract class Sorter implements SortImpl 
 {
 	/**
-	 * Used to tell if the sorter has been run yet.
+	 * Sorted list indexes.
 	 */
-	private boolean executed = false;
+	private int[] order = new int[0];
 	
 	/**
-	 * Used to tell if the sorter has finished yet.
+	 * List indexes added since the last merge, unsorted.
 	 */
-	private boolean finished = false;
+	private int[] pending = new int[16];
+	
+	private int pendingSize = 0;
 	
 	/**
-	 * To be ran from a thread or thread pool. Changes 'executed' flag to true,
-	 * then calls the 'sort()' method, after sorting has been completed, the 
-	 * 'finished' flag is set to true.
+	 * List indexes within the pending batch, and those of them still held in the order at their old place.
 	 */
+	private final BitSet pendingIndexes = new BitSet(), moved = new BitSet();
+	
+	/**
+	 * Batches of at least the order size divided by this are sorted along with the order instead of being merged.
+	 */
+	private static final int FULL_SORT_RATIO = 32;
+	
+	/**
+	 * Compares list indexes using 'compare()', then by list index.
+	 */
+	private final Comparator<Integer> comparator = new Comparator<Integer>()
+	{
+		@Override
+		public int compare(Integer index_0, Integer index_1)
+		{
+			return compareIndexes(index_0, index_1);
+		}
+	};
+	
+	@Override
+	public void add(int list_index)
+	{
+		if(pendingSize == pending.length)
+			pending = Arrays.copyOf(pending, pendingSize * 2);
+		pending[pendingSize++] = list_index;
+		pendingIndexes.set(list_index);
+	}
+	
+	@Override
+	public void add(int from_index, int to_index)
+	{
+		for(int i = from_index; i < to_index; i++)
+			add(i);
+	}
+	
 	@Override
-	public final void run() 
-	{	
-		this.executed = true;
-		this.sort();
-		this.finished = true;
+	public void update(int list_index)
+	{
+		// Held back if still pending, it is placed when merged.
+		if(pendingIndexes.get(list_index))
+			return;
+		moved.set(list_index);
+		add(list_index);
+	}
+	
+	@Override
+	public int[] getOrder()
+	{
+		if(pendingSize > 0)
+			merge();
+		return order;
+	}
+	
+	@Override
+	public void remap(int[] remapped_indexes)
+	{
+		dropMoved();
+		order = remap(order, order.length, remapped_indexes);
+		pending = remap(pending, pendingSize, remapped_indexes);
+		pendingSize = pending.length;
+		pendingIndexes.clear();
+		for(int i = 0; i < pendingSize; i++)
+			pendingIndexes.set(pending[i]);
+		if(pendingSize == 0)
+			pending = new int[16];
+	}
+	
+	static int[] remap(int[] indexes, int size, int[] remapped_indexes)
+	{
+		final int[] remapped = new int[size];
+		int remapped_size = 0;
+		for(int i = 0; i < size; i++)
+			if(remapped_indexes[indexes[i]] != -1)
+				remapped[remapped_size++] = remapped_indexes[indexes[i]];
+		return Arrays.copyOf(remapped, remapped_size);
 	}
 	
 	/**
-	 * Abstract sort method. Supposed to be implemented by a child class in order to
-	 * define the type of sorting. 
+	 * Sorts the pending batch and merges it into the order.
+	 */
+	private void merge()
+	{
+		dropMoved();
+		
+		// Large batches are sorted along with the order, as placing each would cost more than sorting the lot.
+		if(pendingSize >= order.length / FULL_SORT_RATIO)
+		{
+			final int[] combined = Arrays.copyOf(order, order.length + pendingSize);
+			System.arraycopy(pending, 0, combined, order.length, pendingSize);
+			SortEngine.sort(combined, combined.length, this);
+			order = combined;
+			clearPending();
+			return;
+		}
+		
+		// Sort the batch on its own.
+		final int[] batch = Arrays.copyOf(pending, pendingSize);
+		SortEngine.sort(batch, batch.length, this);
+		
+		// Merge the sorted batch into the order. Each media file of the batch is placed by binary search, the
+		// runs of the order between them are copied across whole.
+		final int[] merged = new int[order.length + batch.length];
+		int order_index = 0, merged_index = 0;
+		for(int batch_index = 0; batch_index < batch.length; batch_index++)
+		{
+			final int insertion_index = findInsertionIndex(batch[batch_index], order_index);
+			System.arraycopy(order, order_index, merged, merged_index, insertion_index - order_index);
+			merged_index += insertion_index - order_index;
+			order_index = insertion_index;
+			merged[merged_index++] = batch[batch_index];
+		}
+		System.arraycopy(order, order_index, merged, merged_index, order.length - order_index);
+		
+		order = merged;
+		clearPending();
+	}
+	
+	/**
+	 * Takes every moved media file out of the order in a single pass, each is still held within the pending batch.
 	 */
-	public abstract void sort();
+	private void dropMoved()
+	{
+		if(moved.isEmpty())
+			return;
+		final int[] kept = new int[order.length - moved.cardinality()];
+		for(int i = 0, kept_index = 0; i < order.length; i++)
+			if(!moved.get(order[i]))
+				kept[kept_index++] = order[i];
+		order = kept;
+		moved.clear();
+	}
+	
+	private void clearPending()
+	{
+		pendingSize = 0;
+		pendingIndexes.clear();
+		// Let go of the room taken by a large batch.
+		if(pending.length > 1024)
+			pending = new int[16];
+	}
 	
 	/**
-	 * Returns if the sorter has been executed or not yet.
-	 * @return boolean - Returns whether or not the sorter has been run yet.
+	 * Finds where a media file belongs within the order, searching from the passed position onwards.
+	 * @param int index - List index of the media file.
+	 * @param int from_index - Position within the order to search from.
+	 * @return int - Position of the first media file in the order that comes after it.
 	 */
-	public boolean isExecuted()
+	private int findInsertionIndex(int index, int from_index)
 	{
-		return this.executed;
+		int low = from_index, high = order.length;
+		while(low < high)
+		{
+			final int middle = (low + high) >>> 1;
+			if(compareIndexes(order[middle], index) <= 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+	
+	int compareIndexes(int index_0, int index_1)
+	{
+		final int compared = this.compare(index_0, index_1);
+		return (compared != 0) ? compared : Integer.compare(index_0, index_1);
+	}
+	
+	Comparator<Integer> getComparator()
+	{
+		return comparator;
 	}
 	
 	/**
-	 * Returns if the sorter has finished ordering yet. 
-	 * @return boolean - Returns whether or not hte sorter has finished yet.
+	 * Compares two byte ranges as unsigned bytes, a range that is the start of the other comes first.
+	 * @param byte[] bytes_0 - Bytes of the first range.
+	 * @param int from_0 - Start of the first range.
+	 * @param int to_0 - End of the first range.
+	 * @param byte[] bytes_1 - Bytes of the second range.
+	 * @param int from_1 - Start of the second range.
+	 * @param int to_1 - End of the second range.
+	 * @return int - Negative if the first range comes first, positive if the second does, zero if equal.
 	 */
-	public boolean isFinished()
+	static int compareBytes(byte[] bytes_0, int from_0, int to_0, byte[] bytes_1, int from_1, int to_1)
 	{
-		return this.finished;
+		final int length = Math.min(to_0 - from_0, to_1 - from_1);
+		for(int i = 0; i < length; i++)
+			if(bytes_0[from_0 + i] != bytes_1[from_1 + i])
+				return (bytes_0[from_0 + i] & 0xFF) - (bytes_1[from_1 + i] & 0xFF);
+		return (to_0 - from_0) - (to_1 - from_1);
 	}
-
+	
+	static int compareBytes(byte[] bytes_0, byte[] bytes_1)
+	{
+		return compareBytes(bytes_0, 0, bytes_0.length, bytes_1, 0, bytes_1.length);
+	}
+	
+	/**
+	 * Packs three bytes of a range into a sort prefix, the first three at depth zero and each following three at
+	 * each following depth. Bytes past the end of the range count as zero so shorter ranges come first.
+	 * @param byte[] bytes - Bytes of the range.
+	 * @param int from - Start of the range.
+	 * @param int to - End of the range.
+	 * @param int depth - Depth of the prefix.
+	 * @return int - Sort prefix of the range.
+	 */
+	static int packPrefix(byte[] bytes, int from, int to, int depth)
+	{
+		int prefix = 0;
+		for(int i = from + depth * 3; i < from + (depth + 1) * 3; i++)
+			prefix = (prefix << 8) | ((i < to) ? bytes[i] & 0xFF : 0);
+		return prefix;
+	}
+	
+	/**
+	 * Abstract prefix method. Supposed to return a part of what 'compare()' compares as a non-negative 31 bit integer,
+	 * the leading part at depth zero and each following part at each following depth. Of two media files with the same
+	 * prefixes up to a depth, the one with the lower prefix at that depth must compare first.
+	 * @param int index - List index of the media file.
+	 * @param int depth - Depth of the prefix, from zero up to the sort depth.
+	 * @return int - Sort prefix of the media file.
+	 */
+	protected abstract int getSortPrefix(int index, int depth);
+	
+	/**
+	 * Abstract depth method. Supposed to return the number of prefixes the media files can be sorted on before
+	 * they have to be compared in full.
+	 * @return int - Number of prefixes.
+	 */
+	protected abstract int getSortDepth();
+	
+	/**
+	 * Abstract compare method. Supposed to be implemented by a child class in order to
+	 * define the type of sorting. 
+	 * @param int index_0 - List index of the first media file.
+	 * @param int index_1 - List index of the second media file.
+	 * @return int - Negative if the first media file comes first, positive if the second does, zero if equal.
+	 */
+	protected abstract int compare(int index_0, int index_1);
 }
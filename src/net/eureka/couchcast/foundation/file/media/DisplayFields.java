@@ -0,0 +1,114 @@
+package net.eureka.couchcast.foundation.file.media;
+
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.eureka.couchcast.Static;
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.init.ApplicationGlobals;
+import net.eureka.couchcast.gui.playlist.PlaylistViewer;
+
+/**
+ * Derives the display only fields of a media file from the columns the {@link FileFactory} holds, so the catalog
+ * holds only the file size and the full name of each media file. Fields are worked out when a media file is sent or
+ * shown, never when it is scanned.
+ * <br>
+ * <br>
+ * Formatted sizes are cached by the number of whole megabytes they stand for, as every file size within the same
+ * megabyte formats the same. The cache grows with the number of distinct sizes shown rather than with the number of
+ * media files, and is cleared once it reaches its limit.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see FileFactory
+ * @see PlaylistViewer
+ * @see MediaFile
+ *
+ * @version 0.1
+ */
+public final class DisplayFields
+{
+	private static final long METRIC_MB_UNIT = 1000000L, METRIC_GB_UNIT = 1000000000L;
+
+	/**
+	 * Most formatted sizes cached at once.
+	 */
+	private static final int SIZE_CACHE_LIMIT = 4096;
+
+	/**
+	 * Encoded formatted sizes, by whole megabytes.
+	 */
+	private static final Map<Long, byte[]> SIZES = new HashMap<Long, byte[]>();
+
+	private static final String EXTENSION_DELIMITER = ".";
+
+	/**
+	 * Formats a file size into MB or GB, see 'Static.byteCalculator()'.
+	 * @param long file_size - File size in bytes.
+	 * @return byte[] - Encoded formatted size, shared between callers so must not be changed.
+	 */
+	public synchronized static byte[] getSize(long file_size)
+	{
+		// A size of exactly a gigabyte formats apart from the rest of its megabyte.
+		if(file_size == METRIC_GB_UNIT)
+			return encode(Static.byteCalculator(file_size));
+
+		final Long megabytes = file_size / METRIC_MB_UNIT;
+		byte[] size = SIZES.get(megabytes);
+		if(size == null)
+		{
+			if(SIZES.size() >= SIZE_CACHE_LIMIT)
+				SIZES.clear();
+			size = encode(Static.byteCalculator(file_size));
+			SIZES.put(megabytes, size);
+		}
+		return size;
+	}
+
+	/**
+	 * Formats a file size into MB or GB for display.
+	 * @param long file_size - File size in bytes.
+	 * @return String - Formatted size.
+	 */
+	public static String getSizeString(long file_size)
+	{
+		return decode(getSize(file_size));
+	}
+
+	/**
+	 * Strips the extension from the name of a media file.
+	 * @param byte[] name - Encoded name of the media file.
+	 * @return String - Name without its extension, the full name if it has none.
+	 */
+	public static String getTitle(byte[] name)
+	{
+		final String decoded_name = decode(name);
+		final int extension_index = decoded_name.lastIndexOf(EXTENSION_DELIMITER);
+		return (extension_index > 0) ? decoded_name.substring(0, extension_index) : decoded_name;
+	}
+
+	private static byte[] encode(String text)
+	{
+		try
+		{
+			return text.getBytes(ApplicationGlobals.getEncoding());
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			return text.getBytes();
+		}
+	}
+
+	private static String decode(byte[] bytes)
+	{
+		try
+		{
+			return new String(bytes, ApplicationGlobals.getEncoding());
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			return new String(bytes);
+		}
+	}
+}
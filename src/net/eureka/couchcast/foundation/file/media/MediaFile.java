@@ -11,13 +11,18 @@ import net.eureka.couchcast.mediaserver.playlist.PlaylistWorker;
  * as name, path, size and whether the file is downloading or not.  
  * 
  * *** CLASS MUST BE CONSISTENT WITH CLIENTS CLASS VERSION *** 
+ * <br>
+ * <br>
+ * The media ID was added without changing the serialization ID, clients without the field simply ignore it
+ * and media files sent from them arrive with an ID of zero.
  * 
  * @author Owen McMonagle.
  * 
  * @see DirectoryFactory
  * @see PlaylistWorker
+ * @see MediaPath
  * 
- * @version 0.2
+ * @version 0.4
  */
 public class MediaFile implements Serializable
 {
@@ -43,7 +48,17 @@ public class MediaFile implements Serializable
 	private byte[] size = null;
 	
 	/**
-	 * Only constructor. Takes a media name, path, and file size as parameters.
+	 * Stable ID of the media file within the catalog, never reused. Zero if unknown.
+	 */
+	private long id = 0L;
+	
+	/**
+	 * Path wrapping the location, created on first use. Not sent to clients.
+	 */
+	private transient MediaPath mediaPath = null;
+	
+	/**
+	 * Takes a media name, path, and file size as parameters. The media ID is left unknown.
 	 * 
 	 * @param byte[] media_name - Name of media file.
 	 * @param byte[] media_location - Path of the media file.
@@ -58,6 +73,21 @@ public class MediaFile implements Serializable
 		// Store media size.
 		this.size = media_size;
 	}
+	
+	/**
+	 * Takes a media name, path, file size and media ID as parameters.
+	 * 
+	 * @param byte[] media_name - Name of media file.
+	 * @param byte[] media_location - Path of the media file.
+	 * @param byte[] media_size - Size of the media file.
+	 * @param long media_id - Stable ID of the media file.
+	 */
+	public MediaFile(final byte[] media_name, final byte[] media_location, final byte[] media_size, final long media_id)
+	{
+		this(media_name, media_location, media_size);
+		// Store media ID.
+		this.id = media_id;
+	}
 
 	/**
 	 * Getter for media name
@@ -79,6 +109,17 @@ public class MediaFile implements Serializable
 		return location;
 	}
 
+	/**
+	 * Getter for media path as a {@link MediaPath}, sharing the location bytes.
+	 * @return MediaPath - Path of the media file.
+	 */
+	public MediaPath getMediaPath()
+	{
+		if(mediaPath == null)
+			mediaPath = MediaPath.wrap(location);
+		return mediaPath;
+	}
+
 	/**
 	 * Getter for media size. Usually in MB or GB:MB (Imperial).
 	 * @return byte[] - Size of the media file (MB|GB:MB(Imperial)).
@@ -89,4 +130,14 @@ public class MediaFile implements Serializable
 		return size;
 	}
 	
+	/**
+	 * Getter for media ID.
+	 * @return long - Stable ID of the media file, zero if unknown.
+	 */
+	public long getId()
+	{
+		// Returns ID.
+		return id;
+	}
+	
 }
@@ -0,0 +1,199 @@
+package net.eureka.couchcast.foundation.file.media;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import net.eureka.couchcast.foundation.file.manager.DirectoryScanner;
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.file.manager.FileFactoryVerifier;
+import net.eureka.couchcast.foundation.init.ApplicationGlobals;
+
+/**
+ * Immutable path of a media file, held as UTF-8 bytes, the encoding of the catalog as given by
+ * {@link ApplicationGlobals}. The path is encoded once when first seen by the {@link DirectoryScanner} and
+ * the same bytes are then handed to the {@link FileFactory}, the {@link FileFactoryVerifier} and the clients, so
+ * the path is never converted back and forth between String and byte[] on the way.
+ * <br>
+ * <br>
+ * The hash, the decoded String and the {@link Path} are each worked out once on first use and cached, so a path can
+ * be used as a key and checked against the file system as often as needed. Decoding always uses UTF-8 rather than
+ * the platform encoding.
+ * <br>
+ * <br>
+ * The bytes are never copied. Arrays passed to 'wrap()' and returned from 'getBytes()' are shared and must not be
+ * changed.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see DirectoryScanner
+ * @see FileFactory
+ * @see FileFactoryVerifier
+ * @see MediaFile
+ *
+ * @version 0.1
+ */
+public final class MediaPath
+{
+	private static final Charset ENCODING = StandardCharsets.UTF_8;
+
+	private final byte[] bytes;
+
+	/**
+	 * Hash of the bytes, zero until worked out.
+	 */
+	private int hash = 0;
+
+	/**
+	 * Decoded path and file system path, null until first used.
+	 */
+	private String string = null;
+	private Path path = null;
+
+	private MediaPath(final byte[] bytes)
+	{
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Wraps an encoded path without copying it.
+	 * @param byte[] encoded_path - UTF-8 path, which must not be changed afterwards.
+	 * @return MediaPath - Path of the bytes.
+	 */
+	public static MediaPath wrap(byte[] encoded_path)
+	{
+		return new MediaPath(encoded_path);
+	}
+
+	/**
+	 * Encodes a path.
+	 * @param String path - Path to encode.
+	 * @return MediaPath - Encoded path.
+	 */
+	public static MediaPath of(String path)
+	{
+		final MediaPath media_path = new MediaPath(path.getBytes(ENCODING));
+		media_path.string = path;
+		return media_path;
+	}
+
+	/**
+	 * Encodes the absolute path of a file.
+	 * @param File file - File to encode the path of.
+	 * @return MediaPath - Encoded absolute path.
+	 */
+	public static MediaPath of(File file)
+	{
+		return of(file.getAbsolutePath());
+	}
+
+	/**
+	 * Retrieves the encoded path.
+	 * @return byte[] - UTF-8 path, shared so must not be changed.
+	 */
+	public byte[] getBytes()
+	{
+		return bytes;
+	}
+
+	/**
+	 * Copies out the encoded name, the part of the path after the last separator.
+	 * @return byte[] - UTF-8 name.
+	 */
+	public byte[] getNameBytes()
+	{
+		return Arrays.copyOfRange(bytes, lastSeparator() + 1, bytes.length);
+	}
+
+	/**
+	 * Retrieves the name, the part of the path after the last separator.
+	 * @return String - Name of the file.
+	 */
+	public String getName()
+	{
+		final String decoded_path = toString();
+		return decoded_path.substring(decoded_path.lastIndexOf(File.separatorChar) + 1);
+	}
+
+	/**
+	 * Retrieves the parent directory, the part of the path before the last separator.
+	 * @return String - Path of the parent directory, the whole path if it has none.
+	 */
+	public String getParent()
+	{
+		final String decoded_path = toString();
+		final int separator = decoded_path.lastIndexOf(File.separatorChar);
+		return (separator > 0) ? decoded_path.substring(0, separator) : decoded_path;
+	}
+
+	/**
+	 * Converts to a file system path, cached after the first call.
+	 * @return Path - File system path.
+	 * @throws InvalidPathException - If the file system can not represent the path.
+	 */
+	public Path toPath()
+	{
+		if(path == null)
+			path = Paths.get(toString());
+		return path;
+	}
+
+	/**
+	 * Converts to a file, which unlike 'toPath()' never fails on paths the file system can not represent.
+	 * @return File - File of the path.
+	 */
+	public File toFile()
+	{
+		return (path != null) ? path.toFile() : new File(toString());
+	}
+
+	/**
+	 * Checks whether the file still exists.
+	 * @return boolean - True if it exists, false otherwise.
+	 */
+	public boolean exists()
+	{
+		return toFile().exists();
+	}
+
+	@Override
+	public String toString()
+	{
+		if(string == null)
+			string = new String(bytes, ENCODING);
+		return string;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int hash = this.hash;
+		if(hash == 0)
+			this.hash = hash = Arrays.hashCode(bytes);
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		if(this == other)
+			return true;
+		if(!(other instanceof MediaPath))
+			return false;
+		final MediaPath media_path = (MediaPath) other;
+		return media_path.bytes.length == bytes.length && (hash == 0 || media_path.hash == 0 || hash == media_path.hash) &&
+			   Arrays.equals(bytes, media_path.bytes);
+	}
+
+	private int lastSeparator()
+	{
+		for(int i = bytes.length - 1; i >= 0; i--)
+			if(bytes[i] == File.separatorChar)
+				return i;
+		return -1;
+	}
+}
@@ -0,0 +1,319 @@
+package net.eureka.couchcast.foundation.file.media;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.eureka.couchcast.foundation.file.manager.DirectoryScanner;
+import net.eureka.couchcast.foundation.init.ApplicationGlobals;
+
+/**
+ * Used by {@link DirectoryScanner} when content sniffing is enabled within {@link ApplicationGlobals}. Reads the first
+ * bytes of files that have no extension or an extension that {@link MediaVerifier} does not accept, and checks them
+ * for the signature of a known media container such as MP4, Matroska, MP3, Ogg or MPEG-TS.
+ * <br>
+ * <br>
+ * Raw MPEG audio, AAC ADTS and AC-3 streams only start with a short sync word that arbitrary files match by chance.
+ * Their first frame header is checked in full and its length worked out, and the file is only taken as media if the
+ * next frame header is found where the first frame ends.
+ * <br>
+ * <br>
+ * Results are cached by path along with the modification time of the file, so a file is only read again if it has
+ * been changed since it was last sniffed.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see MediaVerifier
+ * @see DirectoryScanner
+ * @see ApplicationGlobals
+ *
+ * @version 0.2
+ */
+public final class MediaSniffer
+{
+	/**
+	 * Number of bytes read from each file. Enough to reach the second MPEG-TS sync byte.
+	 */
+	private static final int HEADER_SIZE = 189;
+
+	/**
+	 * Size of each MPEG-TS packet.
+	 */
+	private static final int TS_PACKET_SIZE = 188;
+
+	/**
+	 * Bitrates in kbps of MPEG audio frames by bitrate index, for MPEG-1 layers I, II and III, then MPEG-2 and 2.5
+	 * layer I and layers II and III. Index zero (free format) and fifteen are not valid.
+	 */
+	private static final int[][] MPEG_BITRATES =
+	{
+		{ 0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448 },
+		{ 0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384 },
+		{ 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 },
+		{ 0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256 },
+		{ 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 }
+	};
+
+	/**
+	 * Sample rates of MPEG audio frames by sample rate index, for MPEG-1, MPEG-2 and MPEG-2.5.
+	 */
+	private static final int[][] MPEG_SAMPLE_RATES = { { 44100, 48000, 32000 }, { 22050, 24000, 16000 }, { 11025, 12000, 8000 } };
+
+	/**
+	 * Bitrates in kbps of AC-3 frames by frame size code halved.
+	 */
+	private static final int[] AC3_BITRATES = { 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384, 448, 512, 576, 640 };
+
+	/**
+	 * Bytes of a frame header needed to work out the length of the frame.
+	 */
+	private static final int FRAME_HEADER_SIZE = 6;
+
+	/**
+	 * Number of sniffed files kept in the cache, least recently used are dropped first.
+	 */
+	private static final int CACHE_LIMIT = 100000;
+
+	/**
+	 * Sniffed results by path. The modification time is stored in the upper bits and the result in the lowest bit.
+	 */
+	private static final Map<String, Long> SNIFFED = new LinkedHashMap<String, Long>(1024, 0.75f, true)
+	{
+		private static final long serialVersionUID = -2436207713904616582L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Long> eldest)
+		{
+			return size() > CACHE_LIMIT;
+		}
+	};
+
+	/**
+	 * Checks if the passed file contains a known media container by reading its first bytes. Cached
+	 * results are used if the file has not been modified since.
+	 * @param File file - File to sniff.
+	 * @return boolean - True if a media container was detected, false otherwise.
+	 */
+	public static boolean isMedia(File file)
+	{
+		final String path = file.getPath();
+		final long modified = file.lastModified();
+
+		synchronized (SNIFFED)
+		{
+			final Long cached = SNIFFED.get(path);
+			if(cached != null && (cached.longValue() >>> 1) == modified)
+				return (cached.longValue() & 1L) == 1L;
+		}
+
+		final byte[] header = readHeader(file);
+		final boolean media = isMediaHeader(header) || isAudioStream(file, header);
+		synchronized (SNIFFED)
+		{
+			SNIFFED.put(path, (modified << 1) | (media ? 1L : 0L));
+		}
+		return media;
+	}
+
+	private static byte[] readHeader(File file)
+	{
+		final byte[] header = new byte[HEADER_SIZE];
+		int read = 0;
+		InputStream input = null;
+		try
+		{
+			input = new FileInputStream(file);
+			for(int count = 0; read < HEADER_SIZE && (count = input.read(header, read, HEADER_SIZE - read)) != -1; )
+				read += count;
+		}
+		catch (IOException e)
+		{
+			// Ignore, treat unreadable files as not media.
+		}
+		finally
+		{
+			try
+			{
+				if(input != null)
+					input.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+
+		if(read == HEADER_SIZE)
+			return header;
+
+		final byte[] partial_header = new byte[read];
+		System.arraycopy(header, 0, partial_header, 0, read);
+		return partial_header;
+	}
+
+	/**
+	 * Compares the passed header against the signatures of each known media container.
+	 * @param byte[] header - First bytes of a file.
+	 * @return boolean - True if a signature matched, false otherwise.
+	 */
+	private static boolean isMediaHeader(byte[] header)
+	{
+		if(header.length < 4)
+			return false;
+
+		return
+			// MP4, QuickTime, 3GP and M4A.
+			matches(header, 4, "ftyp") || matches(header, 4, "moov") || matches(header, 4, "mdat") ||
+			// Matroska and WebM.
+			matches(header, 0, 0x1A, 0x45, 0xDF, 0xA3) ||
+			// MP3 with ID3 tag.
+			matches(header, 0, "ID3") ||
+			// Ogg.
+			matches(header, 0, "OggS") ||
+			// FLAC.
+			matches(header, 0, "fLaC") ||
+			// AVI and WAV.
+			(matches(header, 0, "RIFF") && (matches(header, 8, "AVI ") || matches(header, 8, "WAVE"))) ||
+			// ASF, WMV and WMA.
+			matches(header, 0, 0x30, 0x26, 0xB2, 0x75, 0x8E, 0x66, 0xCF, 0x11) ||
+			// Flash video.
+			matches(header, 0, "FLV") ||
+			// MPEG program stream (VOB) and MPEG video.
+			matches(header, 0, 0x00, 0x00, 0x01, 0xBA) || matches(header, 0, 0x00, 0x00, 0x01, 0xB3) ||
+			// MPEG transport stream.
+			(header.length > TS_PACKET_SIZE && header[0] == 0x47 && header[TS_PACKET_SIZE] == 0x47) ||
+			// DTS.
+			matches(header, 0, 0x7F, 0xFE, 0x80, 0x01);
+	}
+
+	/**
+	 * Checks if the passed file is a raw MPEG audio, AAC ADTS or AC-3 stream. The first frame header must be valid,
+	 * and a frame header of the same kind must follow at the end of the first frame.
+	 * @param File file - File sniffed.
+	 * @param byte[] header - First bytes of the file.
+	 * @return boolean - True if two frames in a row were found, false otherwise.
+	 */
+	private static boolean isAudioStream(File file, byte[] header)
+	{
+		final int frame_length = getFrameLength(header, 0);
+		if(frame_length <= 0)
+			return false;
+
+		// Read the next frame header from the header already read if it reaches that far.
+		final byte[] next_header = (header.length >= frame_length + FRAME_HEADER_SIZE) ? header : readAt(file, frame_length, FRAME_HEADER_SIZE);
+		final int next_offset = (next_header == header) ? frame_length : 0;
+		// The next frame must have the same sync word.
+		return getFrameLength(next_header, next_offset) > 0 && next_header[next_offset] == header[0] && (next_header[next_offset + 1] & 0xFE) == (header[1] & 0xFE);
+	}
+
+	/**
+	 * Works out the length of the MPEG audio, AAC ADTS or AC-3 frame at the passed offset from its header.
+	 * @param byte[] bytes - Bytes holding the frame header.
+	 * @param int offset - Position of the frame header.
+	 * @return int - Length of the frame in bytes, -1 if not a valid frame header.
+	 */
+	private static int getFrameLength(byte[] bytes, int offset)
+	{
+		if(bytes.length < offset + FRAME_HEADER_SIZE)
+			return -1;
+		final int byte_0 = bytes[offset] & 0xFF, byte_1 = bytes[offset + 1] & 0xFF, byte_2 = bytes[offset + 2] & 0xFF,
+				  byte_3 = bytes[offset + 3] & 0xFF, byte_4 = bytes[offset + 4] & 0xFF, byte_5 = bytes[offset + 5] & 0xFF;
+
+		// AC-3, the sample rate code and frame size code must be known and the stream version that of AC-3.
+		if(byte_0 == 0x0B && byte_1 == 0x77)
+		{
+			final int sample_rate_code = byte_4 >> 6, frame_size_code = byte_4 & 0x3F;
+			if(sample_rate_code == 3 || frame_size_code >= AC3_BITRATES.length * 2 || (byte_5 >> 3) > 8)
+				return -1;
+			final int bitrate = AC3_BITRATES[frame_size_code >> 1];
+			// Frame sizes are in 16 bit words, 44.1kHz frames round down and are padded by the lowest bit of the code.
+			final int words = (sample_rate_code == 0) ? bitrate * 2 : ((sample_rate_code == 1) ? bitrate * 96000 / 44100 + (frame_size_code & 1) : bitrate * 3);
+			return words * 2;
+		}
+
+		if(byte_0 != 0xFF || (byte_1 & 0xE0) != 0xE0)
+			return -1;
+
+		// AAC ADTS, the layer is always zero and the frame length includes the header.
+		if((byte_1 & 0xF6) == 0xF0)
+		{
+			final int frame_length = ((byte_3 & 0x03) << 11) | (byte_4 << 3) | (byte_5 >> 5);
+			return (((byte_2 >> 2) & 0x0F) < 13 && frame_length > 7) ? frame_length : -1;
+		}
+
+		// MPEG audio, version 1 is reserved as is layer zero, bitrate index fifteen and sample rate index three.
+		final int version = (byte_1 >> 3) & 0x03, layer = (byte_1 >> 1) & 0x03, bitrate_index = byte_2 >> 4, sample_rate_index = (byte_2 >> 2) & 0x03,
+				  padding = (byte_2 >> 1) & 0x01;
+		if(version == 1 || layer == 0 || bitrate_index == 0 || bitrate_index == 15 || sample_rate_index == 3)
+			return -1;
+
+		final boolean mpeg_1 = version == 3;
+		final int bitrate = MPEG_BITRATES[(mpeg_1) ? 3 - layer : ((layer == 3) ? 3 : 4)][bitrate_index] * 1000,
+				  sample_rate = MPEG_SAMPLE_RATES[(mpeg_1) ? 0 : ((version == 2) ? 1 : 2)][sample_rate_index];
+		// Layer I frames are counted in 4 byte slots, MPEG-2 and 2.5 layer III frames hold half the samples.
+		if(layer == 3)
+			return (12 * bitrate / sample_rate + padding) * 4;
+		return ((layer == 1 && !mpeg_1) ? 72 : 144) * bitrate / sample_rate + padding;
+	}
+
+	/**
+	 * Reads bytes from an offset within a file.
+	 * @param File file - File to read.
+	 * @param long offset - Position to read from.
+	 * @param int length - Number of bytes to read.
+	 * @return byte[] - Bytes read, empty if the file could not be read that far.
+	 */
+	private static byte[] readAt(File file, long offset, int length)
+	{
+		final byte[] bytes = new byte[length];
+		RandomAccessFile input = null;
+		try
+		{
+			input = new RandomAccessFile(file, "r");
+			input.seek(offset);
+			input.readFully(bytes);
+			return bytes;
+		}
+		catch (IOException e)
+		{
+			// Ignore, the file ends before the next frame.
+			return new byte[0];
+		}
+		finally
+		{
+			try
+			{
+				if(input != null)
+					input.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static boolean matches(byte[] header, int offset, String signature)
+	{
+		if(header.length < offset + signature.length())
+			return false;
+		for(int i = 0; i < signature.length(); i++)
+			if(header[offset + i] != signature.charAt(i))
+				return false;
+		return true;
+	}
+
+	private static boolean matches(byte[] header, int offset, int... signature)
+	{
+		if(header.length < offset + signature.length)
+			return false;
+		for(int i = 0; i < signature.length; i++)
+			if((header[offset + i] & 0xFF) != signature[i])
+				return false;
+		return true;
+	}
+}
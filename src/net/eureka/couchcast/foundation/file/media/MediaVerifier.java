@@ -1,16 +1,27 @@
 package net.eureka.couchcast.foundation.file.media;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import net.eureka.couchcast.foundation.config.Configuration;
 import net.eureka.couchcast.foundation.file.manager.DirectoryScanner;
 
 /**
  * Used by {@link DirectoryScanner} to verify a media files extension. Uses a
  * list of valid VLC extensions to determine whether a file can be played or not. 
+ * <br>
+ * <br>
+ * Each extension is packed into a long, one lower case character per byte, and kept in a sorted array. A file name
+ * is verified by packing its extension the same way and searching the array, without allocating. The set of 
+ * extensions can be replaced through the {@link Configuration} file.
  * 
  * @author Owen McMonagle.
  * 
  * @see DirectoryScanner
+ * @see MediaSniffer
+ * @see Configuration
  * 
- * @version 0.1
+ * @version 0.3
  */
 public final class MediaVerifier
 {
@@ -256,65 +267,158 @@ public final class MediaVerifier
 		new String(".M4P"),
 	};
 	
+	/**
+	 * Longest extension that can be packed into a long, one character per byte.
+	 */
+	private static final int MAXIMUM_EXTENSION_LENGTH = 8;
+	
+	/**
+	 * Delimiter of the combined extension list saved to the {@link Configuration} file.
+	 */
+	private static final String EXTENSION_DELIMITER = ",";
+	
+	/**
+	 * Extensions currently in use, defaults to the valid VLC extensions.
+	 */
+	private static volatile String[] extensions = VALID_MEDIA_EXTENSIONS;
+	
+	/**
+	 * Packed extensions currently in use, sorted for searching.
+	 */
+	private static volatile long[] extensionKeys = packExtensions(VALID_MEDIA_EXTENSIONS);
+	
 	public static String getExtensionList()
 	{
+		final String[] current_extensions = extensions;
 		final int offset = 1;
 		String extensions = "*.{";
-		for(int i = 0; i < VALID_MEDIA_EXTENSIONS.length; i++)
-			if(i < VALID_MEDIA_EXTENSIONS.length-offset)
-				extensions = extensions + VALID_MEDIA_EXTENSIONS[i].substring(offset).toLowerCase() +",";
+		for(int i = 0; i < current_extensions.length; i++)
+			if(i < current_extensions.length-offset)
+				extensions = extensions + current_extensions[i].substring(offset).toLowerCase() +",";
 			else
-				extensions = extensions + VALID_MEDIA_EXTENSIONS[i].substring(offset).toLowerCase();
+				extensions = extensions + current_extensions[i].substring(offset).toLowerCase();
 		extensions = extensions + "}";
 		return extensions;
 	}
 	
+	/**
+	 * Retrieves the extensions in use without the '.' separated by commas. Saved to the {@link Configuration} file.
+	 * @return String - Combined extension list.
+	 */
+	public static String getCombinedExtensionList()
+	{
+		final String[] current_extensions = extensions;
+		final StringBuilder combined = new StringBuilder();
+		for(int i = 0; i < current_extensions.length; i++)
+		{
+			if(i > 0)
+				combined.append(EXTENSION_DELIMITER);
+			combined.append(current_extensions[i].substring(1).toLowerCase());
+		}
+		return combined.toString();
+	}
+	
+	/**
+	 * Replaces the extensions in use with a comma separated list, e.g "mkv,mp4,avi". Extensions that are too 
+	 * long or not ASCII are ignored. An empty list restores the valid VLC extensions.
+	 * @param String combined - Comma separated extension list.
+	 */
+	public static void setExtensionList(String combined)
+	{
+		final ArrayList<String> new_extensions = new ArrayList<String>();
+		if(combined != null)
+			for(String extension : combined.split(EXTENSION_DELIMITER))
+			{
+				extension = extension.trim();
+				if(extension.startsWith("."))
+					extension = extension.substring(1);
+				if(!extension.isEmpty() && pack(extension, 0, extension.length()) != -1L)
+					new_extensions.add("." + extension.toUpperCase());
+			}
+		
+		final String[] extension_array = (new_extensions.isEmpty()) ? VALID_MEDIA_EXTENSIONS : new_extensions.toArray(new String[new_extensions.size()]);
+		extensionKeys = packExtensions(extension_array);
+		extensions = extension_array;
+	}
+	
 	public static void main(String[] args)
 	{
 		System.out.println(getExtensionList());
 	}
 	
 	/**
-	 * Takes a file as a parameter. Uses file to verify if it can be
+	 * Takes a file name as a parameter. Uses the name to verify if it can be
 	 * played by this VLC's implementation. Enabled formats are above.
 	 * 
-	 * @param File file_to_verify - Media file to verify.
+	 * @param CharSequence file_name - Name of the media file to verify.
 	 * @return Boolean - True if file can be played, false otherwise.
 	 */
-	public static boolean isFileValid(String file_name)
+	public static boolean isFileValid(CharSequence file_name)
 	{
-		// String to store file extension.
-		String extension = "";
-		
-		// Integer to retrieve the last index of the character '.'.
-		int i = file_name.lastIndexOf('.');
-		// If index is greater than zero and not equal minus one..
-		if (i > 0 || i != -1)
-			// Split string with a beginning index of i ('.' before extension).
-		    extension = file_name.substring(i);
-	
-		// Use extracted extension to validate file.
-		return isExtensionValid(extension);
+		// Find the last '.' within the extension length.
+		final int length = file_name.length(), limit = Math.max(0, length - MAXIMUM_EXTENSION_LENGTH - 1);
+		int i = length - 1;
+		while(i >= limit && file_name.charAt(i) != '.')
+			i--;
+		// No extension found.
+		if(i < limit)
+			return false;
+		
+		// Use packed extension to validate file.
+		return isExtensionValid(pack(file_name, i + 1, length));
 	}
 	
 	/**
-	 * Takes a string file extension as parameter. If the passed string 
-	 * equals any of the above enabled formats. Then the extension is valid.
+	 * Takes a packed extension as parameter. If the packed extension equals any of
+	 * the enabled formats. Then the extension is valid.
 	 * 
-	 * @param String extension - Extension to be verified.
+	 * @param long extension_key - Packed extension to be verified.
 	 * @return Boolean - True if extension is valid, False otherwise.
 	 */
-	private static boolean isExtensionValid(String extension)
+	private static boolean isExtensionValid(long extension_key)
 	{
-		// Iterate through valid extensions...
-		for(String valid : VALID_MEDIA_EXTENSIONS)
-			// If an extension equals a valid extension...
-			if(extension.toUpperCase().equals(valid))
-				// Return true for a valid file.
-				return true;
-		// Return false for a invalid file.
-		return false;
+		return extension_key > 0L && Arrays.binarySearch(extensionKeys, extension_key) >= 0;
 	}
 	
+	/**
+	 * Packs each extension into a sorted array of longs. 
+	 * @param String[] to_pack - Extensions to pack, starting with '.'.
+	 * @return long[] - Sorted packed extensions.
+	 */
+	private static long[] packExtensions(String[] to_pack)
+	{
+		final long[] keys = new long[to_pack.length];
+		for(int i = 0; i < to_pack.length; i++)
+			keys[i] = pack(to_pack[i], 1, to_pack[i].length());
+		Arrays.sort(keys);
+		return keys;
+	}
+	
+	/**
+	 * Packs the lower case characters between start and end into a long, one character per byte. 
+	 * @param CharSequence characters - Characters to pack.
+	 * @param int start - Index of the first character.
+	 * @param int end - Index after the last character.
+	 * @return long - Packed characters, -1 if too long or not ASCII.
+	 */
+	private static long pack(CharSequence characters, int start, int end)
+	{
+		if(end - start > MAXIMUM_EXTENSION_LENGTH)
+			return -1L;
+		
+		long key = 0L;
+		for(int i = start; i < end; i++)
+		{
+			final char character = characters.charAt(i);
+			if(character == 0 || character > Byte.MAX_VALUE)
+				return -1L;
+			key = (key << Byte.SIZE) | toLowerCase(character);
+		}
+		return key;
+	}
 	
+	private static int toLowerCase(int character)
+	{
+		return (character >= 'A' && character <= 'Z') ? character + ('a' - 'A') : character;
+	}
 }
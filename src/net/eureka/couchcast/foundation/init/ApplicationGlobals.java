@@ -49,6 +49,12 @@ import net.eureka.utils.Systems;
  *	play button is pressed.
  *
  *	Music mode* - Flag to signal that the app is in music mode and that the OOP window should be hidden.
+ *
+ *	Content sniffing* - Flag to signal whether or not files without a valid extension should have their content checked
+ *	for a media container. {@link DirectoryScanner}.
+ *
+ *	Memory budget* - Megabytes of heap the catalog may take before its cold columns are spilled to disk, zero for no
+ *	budget. {@link FileFactory}.
  * </pre>
  * 
  * The majority of these variables are saved to the {@link Configuration} file and are marked with * to symbolize such.
@@ -64,7 +70,7 @@ import net.eureka.utils.Systems;
  * @see Bootstrap
  * @see PeerReceiver
  * 
- * @version 0.8
+ * @version 0.9
  */
 public final class ApplicationGlobals 
 {
@@ -128,6 +134,16 @@ public final class ApplicationGlobals
 	
 	private static boolean musicMode = false;
 	
+	/**
+	 * Used by the {@link DirectoryScanner} to decide whether or not to read the first bytes of files without a valid extension.
+	 */
+	private static boolean contentSniffing = false;
+	
+	/**
+	 * Used by the {@link FileFactory} to decide when to spill its cold columns to disk, in megabytes. Zero for no budget.
+	 */
+	private static int memoryBudget = 0;
+	
 	/**
 	 * Retrieves the Monitored directory.
 	 * @return String - Monitored directory.
@@ -316,6 +332,26 @@ public final class ApplicationGlobals
 		ApplicationGlobals.musicMode = musicMode;
 	}
 	
+	public synchronized static boolean isContentSniffing()
+	{
+		return contentSniffing;
+	}
+
+	public synchronized static void setContentSniffing(boolean contentSniffing)
+	{
+		ApplicationGlobals.contentSniffing = contentSniffing;
+	}
+	
+	public synchronized static int getMemoryBudget()
+	{
+		return memoryBudget;
+	}
+	
+	public synchronized static void setMemoryBudget(int memoryBudget)
+	{
+		ApplicationGlobals.memoryBudget = Math.max(0, memoryBudget);
+	}
+	
 	public static byte[][][] getFolderVectors()
 	{
 		// Retrieve the play-list size.
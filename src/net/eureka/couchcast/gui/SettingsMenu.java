@@ -78,7 +78,7 @@ import javafx.stage.Stage;
  * @see PasswordCreation
  * @see Configuration
  * 
- * @version 0.1
+ * @version 0.2
  */
 public final class SettingsMenu extends Scene
 {
@@ -188,7 +188,8 @@ public final class SettingsMenu extends Scene
 				directoryList.load();
 				directoryChanged = true;
 				new Configuration(true);
-				DirectoryFactory.initialise();
+				// Only the new directory is scanned.
+				DirectoryFactory.addNewScanner(lastOpenedDirectory);
 			}
 		}
 	};
@@ -267,7 +268,8 @@ public final class SettingsMenu extends Scene
 		{
 			ApplicationGlobals.getMonitoredList().clear();
 			directoryList.resetAllIndexes();
-			DirectoryFactory.resetScanners();
+			// Cancels every scanner and removes every media file found under a monitored directory.
+			DirectoryFactory.reinitialize();
 		}
 	};
 	
@@ -1,6 +1,8 @@
 package net.eureka.couchcast.gui.playlist;
 
-import javafx.beans.property.SimpleIntegerProperty;
+import java.nio.ByteBuffer;
+
+import javafx.beans.property.SimpleLongProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
@@ -16,6 +18,7 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.VBox;
 import net.eureka.couchcast.foundation.file.manager.DirectoryFactory;
 import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.file.media.DisplayFields;
 import net.eureka.couchcast.gui.MainMenu;
 import net.eureka.couchcast.gui.lang.LanguageDelegator;
 import net.eureka.couchcast.gui.lang.Languages;
@@ -33,14 +36,14 @@ import net.eureka.couchcast.gui.tray.Tray;
  * @see DirectoryFactory
  * @see Tray
  * 
- * @version 0.1
+ * @version 0.3
  */
 public final class PlaylistViewer
 {
 	
 	/**
 	 * {@link JTable} column names.
-	 * Language specific column names. In the order: name, location, size and index number.
+	 * Language specific column names. In the order: name, location, size and media ID.
  	 * Uses the {@link LanguageDelegator} to decide which text to choose. The {@link Languages} 
  	 * enumeration helps retrieve the appropriate stored text. 
 	 */
@@ -139,7 +142,7 @@ public final class PlaylistViewer
 		// Set up name column.
 		playlist_columns[3] = new PercentageTableColumn<Object, Object>(COLUMN_STRINGS[3]);
 		playlist_columns[3].setMinWidth(55);
-		playlist_columns[3].setCellValueFactory(new PropertyValueFactory<PlaylistItem, Integer>("index"));
+		playlist_columns[3].setCellValueFactory(new PropertyValueFactory<PlaylistItem, Long>("index"));
 		playlist.getColumns().addAll(playlist_columns);
 		
 	}
@@ -156,49 +159,54 @@ public final class PlaylistViewer
 		});
 	}
 	
+	/**
+	 * Row of the play-list. Holds the columns as taken from the {@link FileFactory} and only derives the text of
+	 * each cell, the name without its extension and the formatted size, once the table asks for it. The table only
+	 * asks for the rows it shows, so rows scrolled past are never formatted.
+	 */
 	public static class PlaylistItem
 	{
-		private static final String EXTENSION_DELIMITER = "."; 
-		private SimpleStringProperty name;
-		private SimpleStringProperty path;
-		private SimpleStringProperty size;
-		private SimpleIntegerProperty index;
+		private final byte[] nameBytes, pathBytes, sizeBytes;
+		private final long id;
 		
-		public PlaylistItem(byte[] name_bytes, byte[] path_bytes, byte[] size_bytes, byte[] index_bytes, boolean remove_extension)
-		{
-			if(remove_extension)
-				this.setName(new SimpleStringProperty(removeNameExtension(name_bytes)));
-			else
-				this.setName(new SimpleStringProperty(new String(name_bytes)));
-			this.setPath(new SimpleStringProperty(new String(path_bytes)));
-			this.setSize(new SimpleStringProperty(new String(size_bytes)));
-			try
-			{
-				this.setIndex(new SimpleIntegerProperty(Integer.valueOf(new String(index_bytes))));
-			}
-			catch(NumberFormatException e)
-			{
-				this.setIndex(new SimpleIntegerProperty(Integer.valueOf("0")));
-			}
-		}
+		/**
+		 * True if a media file row, with a raw file size to format. False for a placeholder row.
+		 */
+		private final boolean mediaFile;
+		
+		private SimpleStringProperty name = null;
+		private SimpleStringProperty path = null;
+		private SimpleStringProperty size = null;
+		private SimpleLongProperty index = null;
 		
-		private static String removeNameExtension(byte[] name_bytes)
+		/**
+		 * @param byte[] name_bytes - Encoded name.
+		 * @param byte[] path_bytes - Encoded path.
+		 * @param byte[] size_bytes - File size as long bytes for media files, text to show otherwise.
+		 * @param byte[] index_bytes - Media ID as text.
+		 * @param boolean media_file - True if a media file row, false for a placeholder row.
+		 */
+		public PlaylistItem(byte[] name_bytes, byte[] path_bytes, byte[] size_bytes, byte[] index_bytes, boolean media_file)
 		{
-			String name_string = new String(name_bytes);
+			this.nameBytes = name_bytes;
+			this.pathBytes = path_bytes;
+			this.sizeBytes = size_bytes;
+			this.mediaFile = media_file;
+			long id = 0L;
 			try
 			{
-				name_string = name_string.substring(0, name_string.lastIndexOf(EXTENSION_DELIMITER));
+				id = Long.valueOf(new String(index_bytes));
 			}
-			catch(StringIndexOutOfBoundsException e)
+			catch(NumberFormatException e)
 			{
-				// IGNORE, THROWS ERROR WHEN MEDIA FILES ARE MOVED.
+				// Placeholder rows have no media ID.
 			}
-			return name_string;
+			this.id = id;
 		}
 
 		public String getName() 
 		{
-			return name.get();
+			return nameProperty().get();
 		}
 
 		public void setName(SimpleStringProperty name)
@@ -208,12 +216,14 @@ public final class PlaylistViewer
 		
 		public StringProperty nameProperty()
 		{
+			if(name == null)
+				name = new SimpleStringProperty((mediaFile) ? DisplayFields.getTitle(nameBytes) : new String(nameBytes));
 			return this.name;
 		}
 
 		public String getPath() 
 		{
-			return path.get();
+			return pathProperty().get();
 		}
 
 		public void setPath(SimpleStringProperty path) 
@@ -223,12 +233,14 @@ public final class PlaylistViewer
 		
 		public StringProperty pathProperty()
 		{
+			if(path == null)
+				path = new SimpleStringProperty(new String(pathBytes));
 			return this.path;
 		}
 
 		public String getSize()
 		{
-			return size.get();
+			return sizeProperty().get();
 		}
 
 		public void setSize(SimpleStringProperty size) 
@@ -238,21 +250,25 @@ public final class PlaylistViewer
 		
 		public StringProperty sizeProperty()
 		{
+			if(size == null)
+				size = new SimpleStringProperty((mediaFile) ? DisplayFields.getSizeString(ByteBuffer.wrap(sizeBytes).getLong()) : new String(sizeBytes));
 			return this.size;
 		}
 
-		public int getIndex()
+		public long getIndex()
 		{
-			return index.get();
+			return indexProperty().get();
 		}
 
-		public void setIndex(SimpleIntegerProperty index)
+		public void setIndex(SimpleLongProperty index)
 		{
 			this.index = index;
 		}
 		
-		public SimpleIntegerProperty indexProperty()
+		public SimpleLongProperty indexProperty()
 		{
+			if(index == null)
+				index = new SimpleLongProperty(id);
 			return this.index;
 		}
 	}
@@ -5,12 +5,16 @@ import java.awt.TrayIcon;
 import java.awt.TrayIcon.MessageType;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.List;
 
 
 
 import javax.swing.ImageIcon;
 import javax.swing.JOptionPane;
 
+import net.eureka.couchcast.foundation.file.manager.event.CatalogEvent;
+import net.eureka.couchcast.foundation.file.manager.event.CatalogEvents;
+import net.eureka.couchcast.foundation.file.manager.event.CatalogListener;
 import net.eureka.couchcast.foundation.init.ApplicationGlobals;
 import net.eureka.couchcast.foundation.init.NetworkGlobals;
 import net.eureka.couchcast.gui.AppStage;
@@ -27,7 +31,7 @@ import net.eureka.couchcast.gui.lang.Languages;
  * 
  * @see AppStage
  * 
- * @version 0.3
+ * @version 0.4
  */
 public final class Tray
 {
@@ -60,6 +64,18 @@ public final class Tray
 	
 	private static AppStage menu = null;
 	
+	/**
+	 * Catalog listener, updates the play-list window whenever the catalog changes.
+	 */
+	private static final CatalogListener playlistListener = new CatalogListener()
+	{
+		@Override
+		public void catalogChanged(List<CatalogEvent> events)
+		{
+			updatePlaylist();
+		}
+	};
+	
 	/**
 	 * Mouse listener, handles right click events on the TrayIcon. Once the icon has been
 	 * right-clicked, a new ConfigurationManager( i.e Settings window ) is created. 
@@ -94,6 +110,8 @@ public final class Tray
 		if(!initialised && SystemTray.isSupported())
 		{
 			menu = parent;
+			// Keep the play-list window up to date with the catalog.
+			CatalogEvents.subscribe(playlistListener);
 			// Attempt to set up TrayIcon object.
 			setUp();
 			// Attempt to add TrayIcon object to the System.
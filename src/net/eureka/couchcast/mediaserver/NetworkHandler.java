@@ -14,11 +14,16 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import net.eureka.couchcast.foundation.file.manager.DirectoryFactory;
+import net.eureka.couchcast.foundation.file.manager.event.CatalogEvent;
+import net.eureka.couchcast.foundation.file.manager.event.CatalogEvents;
+import net.eureka.couchcast.foundation.file.manager.event.CatalogListener;
+import net.eureka.couchcast.foundation.file.manager.search.TrigramIndex;
 import net.eureka.couchcast.foundation.init.NetworkGlobals;
 import net.eureka.couchcast.mediaserver.authentication.ConnectionValidation;
 import net.eureka.couchcast.mediaserver.player.Broadcaster;
 import net.eureka.couchcast.mediaserver.player.Receiver;
 import net.eureka.couchcast.mediaserver.playlist.PlaylistWorker;
+import net.eureka.couchcast.mediaserver.search.SearchWorker;
 
 /**
  * Acts as a gateway/factory which constantly listens for incoming TCP/IP connections at port 63050. Specific byte codes
@@ -27,8 +32,12 @@ import net.eureka.couchcast.mediaserver.playlist.PlaylistWorker;
  * or added to a persistant connections list for constant monitoring.
  * <br>
  * <br>
- * {@link DirectoryFactory} signals playlist updates to each persistant {@link NetworkWorker} through a method called
- * signalPlaylistUpdate().
+ * Changes published by {@link CatalogEvents} and completed sorts from the {@link DirectoryFactory} signal playlist
+ * updates to each persistant {@link NetworkWorker} through a method called signalPlaylistUpdate().
+ * <br>
+ * <br>
+ * Searches are answered by a {@link SearchWorker} from the {@link TrigramIndex}, which is started along with the
+ * handler.
  * 
  * @author Owen McMonagle.
  * 
@@ -37,10 +46,12 @@ import net.eureka.couchcast.mediaserver.playlist.PlaylistWorker;
  * @see PlaylistWorker
  * @see Broadcaster
  * @see Receiver
+ * @see SearchWorker
  * @see ConnectionValidation
  * @see DirectoryFactory
+ * @see CatalogEvents
  * 
- * @version 0.2
+ * @version 0.5
  */
 public final class NetworkHandler implements Runnable
 {
@@ -53,7 +64,9 @@ public final class NetworkHandler implements Runnable
 	private static final byte AUTHENTICATION_CODE = -127, //0x81
 								FILE_CODE = -126, //0x82 
 								INFO_CODE = -125, //0x83
-								RECEIVER_CODE = -124; // 0x84
+								RECEIVER_CODE = -124, // 0x84
+								SEARCH_CODE = -123, // 0x85
+								FUZZY_SEARCH_CODE = -122; // 0x86
 	
 	
 	/**
@@ -81,6 +94,18 @@ public final class NetworkHandler implements Runnable
 	 */
 	private static Thread handlerThread = null;
 	
+	/**
+	 * Catalog listener, signals a play-list update whenever the catalog changes.
+	 */
+	private static final CatalogListener PLAYLIST_LISTENER = new CatalogListener()
+	{
+		@Override
+		public void catalogChanged(List<CatalogEvent> events)
+		{
+			signalPlaylistUpdate();
+		}
+	};
+	
 	/**
 	 * Initialises the server socket to listen for incoming traffic, then proceeds to start
 	 * a dedicated thread to handle said incoming traffic.
@@ -89,6 +114,9 @@ public final class NetworkHandler implements Runnable
 	{
 		//this.setName("Network Handler");
 		this.initialise();
+		CatalogEvents.subscribe(PLAYLIST_LISTENER);
+		// Index the catalog for searches.
+		TrigramIndex.start();
 		handlerThread = new Thread(this);
 		handlerThread.setName("Network Handler");
 		handlerThread.start();
@@ -249,6 +277,14 @@ public final class NetworkHandler implements Runnable
 				//System.out.println("Receiver code.");
 				WORKERS.execute(new Receiver(incoming_connection));
 				break;
+			case SEARCH_CODE:
+				//System.out.println("Search code.");
+				WORKERS.execute(new SearchWorker(incoming_connection, false));
+				break;
+			case FUZZY_SEARCH_CODE:
+				//System.out.println("Fuzzy search code.");
+				WORKERS.execute(new SearchWorker(incoming_connection, true));
+				break;
 			default:
 				
 				return false;
@@ -283,7 +319,7 @@ public final class NetworkHandler implements Runnable
 	}
 	
 	/**
-	 * Called by the {@link DirectoryFactory} whenever a updated play-list needs to be sent. Informs each
+	 * Called whenever the catalog changes or a sort completes and an updated play-list needs to be sent. Informs each
 	 * {@link PlaylistWorker} currently active, that a new play-list should be sent.
 	 */
 	public synchronized static void signalPlaylistUpdate()
@@ -16,7 +16,7 @@ import java.io.Serializable;
  * @see MediaBroadcaster
  * @see MediaPlayer
  * 
- * @version 0.3
+ * @version 0.4
  */
 public final class NetworkInfo implements Serializable
 {
@@ -61,6 +61,11 @@ public final class NetworkInfo implements Serializable
 	 * the name of the media currently playing on the client side. 
 	 */
 	private int index = 0;
+	/**
+	 * Stable media ID of the playing media file, zero if unknown or not a media file. Unlike the index
+	 * it does not change when other media files are removed.
+	 */
+	private long mediaId = 0L;
 	
 	/**
 	 * Only constructor, requires initial media length and current time. 
@@ -187,6 +192,22 @@ public final class NetworkInfo implements Serializable
 		this.index = index;
 	}
 
+	/**
+	 * Retrieves the media ID of the playing media file.
+	 * @return long - Media ID, zero if unknown.
+	 */
+	public long getMediaId()
+	{
+		return mediaId;
+	}
+	/**
+	 * Sets the media ID of the playing media file.
+	 * @param long media_id - Media ID, zero if unknown.
+	 */
+	public void setMediaId(long media_id)
+	{
+		this.mediaId = media_id;
+	}
 	public boolean isMusic() {
 		return music;
 	}
@@ -4,6 +4,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
 
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
 import net.eureka.couchcast.mediaserver.NetworkInfo;
 import net.eureka.couchcast.mediaserver.NetworkWorker;
 
@@ -75,14 +76,16 @@ public final class Broadcaster extends NetworkWorker
 			output.writeBoolean(info_object.isForward());
 			// Write volume byte to stream. // 3
 			output.writeByte(info_object.getVolume());
-			// Write playing index to stream. // 7
-			output.writeInt(info_object.getIndex());
+			// Write playing index to stream, resolved from the media ID as indexes change on removal. // 7
+			output.writeInt((info_object.getMediaId() != 0L) ? FileFactory.indexOfId(info_object.getMediaId()) : info_object.getIndex());
 			// Write total time to stream. // 15
 			output.writeLong(info_object.getLength());
 			// Write current time to stream. // 23
 			output.writeLong(info_object.getTime());
 			// Write music mode to stream. // 24
 			output.writeBoolean(info_object.isMusic());
+			// Write playing media ID to stream, older clients stop reading before it. // 32
+			output.writeLong(info_object.getMediaId());
 		}
 	}
 	
@@ -102,6 +105,8 @@ public final class Broadcaster extends NetworkWorker
 		output.writeLong(0L);
 		// Write music mode to stream. // 24
 		output.writeBoolean(false);
+		// Write playing media ID to stream. // 32
+		output.writeLong(0L);
 	}
 	
 	
@@ -14,8 +14,11 @@ import java.util.TimerTask;
 
 import net.eureka.couchcast.Static;
 import net.eureka.couchcast.foundation.config.Configuration;
+import net.eureka.couchcast.foundation.file.manager.DirectoryFactory;
 import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.file.manager.FileNotFoundError;
 import net.eureka.couchcast.foundation.file.media.MediaFile;
+import net.eureka.couchcast.foundation.file.media.MediaPath;
 import net.eureka.couchcast.foundation.init.ApplicationGlobals;
 import net.eureka.couchcast.mediaserver.NetworkInfo;
 import net.eureka.couchcast.mediaserver.NetworkWorker;
@@ -120,6 +123,11 @@ public final class Receiver extends NetworkWorker
 	 */
 	private static MediaFile file = null;
 	
+	/**
+	 * Media ID of the playing media file, zero if unknown or playing a stream.
+	 */
+	private static long playingId = 0L;
+	
 	private static boolean startingOOP = false, startedOOP = false;
 	
 	private static boolean isTimerRunning = false;
@@ -306,8 +314,13 @@ public final class Receiver extends NetworkWorker
 			else if((Static.compareBytes(read, PLAY_PAUSE_SEQUENCE) || Static.compareBytes(read, STOP_FILE_SEQUENCE) || Static.compareBytes(read, STOP_FILE_SEQUENCE)
 					|| Static.compareBytes(read, FAST_FORWARD_SEQUENCE) || Static.compareBytes(read, FAST_FORWARD_SEQUENCE) || Static.compareBytes(read, FAST_REWIND_SEQUENCE)
 					|| read[0] == 98 || Static.compareBytes(read, HIDE_FRAME_SEQUENCE) || Static.compareBytes(read, SHOW_FRAME_SEQUENCE)) && startedOOP)
+			{
 				//System.out.println("Sending to bridge.");
 				sendToBridge();
+				// Let scanning on the disk played from resume once the client stops playback.
+				if(Static.compareBytes(read, STOP_FILE_SEQUENCE))
+					DirectoryFactory.signalPlaybackStopped();
+			}
 			else if(read[0] == 99 && startedOOP)
 			{
 				volume = read[1];
@@ -384,6 +397,8 @@ public final class Receiver extends NetworkWorker
 		read = STOP_FILE_SEQUENCE;
 		sendToBridge();
 		bridgeConnection = null;
+		// Let the scanners resume on the disk that was being played from.
+		DirectoryFactory.signalPlaybackStopped();
 	}
 	
 	private void sendToBridge()
@@ -423,13 +438,21 @@ public final class Receiver extends NetworkWorker
 			{
 				if(file != null)
 				{
-					final int file_index = FileFactory.compareMediaFilesForIndex(file.getLocation());
-					final String media_path = new String(file.getLocation());
-					bridgeOutput.writeUTF(media_path);
+					resolveMediaFile();
+					final int file_index = (playingId != 0L) ? FileFactory.indexOfId(playingId) : FileFactory.compareMediaFilesForIndex(file.getLocation());
+					final MediaPath media_path = file.getMediaPath();
+					bridgeOutput.writeUTF(media_path.toString());
 					bridgeOutput.writeInt(file_index);
+					// Hold back scanning on the disk the file is played from.
+					DirectoryFactory.signalPlaybackStarted(media_path);
 				}
 				else
+				{
+					playingId = 0L;
 					bridgeOutput.writeUTF(mrl);
+					// Streams are not played from disk.
+					DirectoryFactory.signalPlaybackStopped();
+				}
 				bridgeOutput.flush();
 			}
 			read = new byte[]{ 99, volume};
@@ -545,6 +568,33 @@ public final class Receiver extends NetworkWorker
         bridgeInput = new ObjectInputStream(bridgeConnection.getInputStream());
 	}
 	
+	/**
+	 * Looks up the received media file by media ID if the client sent one, so a stale path held by the client
+	 * does not matter. Otherwise the media ID is looked up by path.
+	 */
+	private static void resolveMediaFile()
+	{
+		if(file.getId() != 0L)
+			try
+			{
+				file = FileFactory.getMediaFileById(file.getId());
+			}
+			catch (FileNotFoundError e)
+			{
+				// Removed since the client received it, play by path.
+			}
+		playingId = (file.getId() != 0L) ? file.getId() : FileFactory.compareMediaFilesForId(file.getLocation());
+	}
+	
+	/**
+	 * Retrieves the media ID of the playing media file.
+	 * @return long - Media ID, zero if unknown or playing a stream.
+	 */
+	public static long getPlayingId()
+	{
+		return playingId;
+	}
+	
 	private static void startReading()
 	{
 		new Thread(new Runnable()
@@ -562,6 +612,8 @@ public final class Receiver extends NetworkWorker
 						waitForOppositeWrite();
 						if(received_info != null)
 						{
+							// Attach the media ID, the OOP only knows the index.
+							received_info.setMediaId(playingId);
 							info = received_info;
 							startingOOP = false;
 							startedOOP = true;
@@ -576,6 +628,8 @@ public final class Receiver extends NetworkWorker
 						info.setForward(false);
 						connected = false;
 						startedOOP = false;
+						// Playback has ended with the OOP.
+						DirectoryFactory.signalPlaybackStopped();
 					}
 				}
 				resetBridge();
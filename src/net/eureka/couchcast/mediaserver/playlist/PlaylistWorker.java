@@ -8,6 +8,10 @@ import java.util.ArrayList;
 
 import net.eureka.couchcast.Static;
 import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.file.manager.query.PlaylistChunk;
+import net.eureka.couchcast.foundation.file.manager.query.PlaylistPage;
+import net.eureka.couchcast.foundation.file.manager.query.PlaylistQuery;
+import net.eureka.couchcast.foundation.file.manager.sorting.SortOrder;
 import net.eureka.couchcast.foundation.file.media.MediaFile;
 import net.eureka.couchcast.mediaserver.NetworkHandler;
 import net.eureka.couchcast.mediaserver.NetworkImpl;
@@ -17,6 +21,32 @@ import net.eureka.couchcast.mediaserver.NetworkWorker;
 /**
  * Adheres to the {@link NetworkWorker} and {@link NetworkImpl} protocols. Acts as a file server endpoint.
  * Sends playlist updates to a Android Client. Runs as a persistant connection in its own thread.
+ * <br>
+ * <br>
+ * Clients that send the ID Discovery Sequence instead of the File Discovery Sequence receive the sorted lists as
+ * arrays of media IDs instead of lists of play-list indexes. Media IDs never change once given out, so such clients can cache media
+ * files by ID and keep their selection across removals.
+ * <br>
+ * <br>
+ * Clients can also ask for any other {@link SortOrder} by sending the Order Request byte followed by the code of the
+ * order. The request is echoed, followed by the catalog generation and the media IDs in that order. Orders are only
+ * sorted when asked for and then cached until the catalog generation moves on, so a client can compare generations
+ * to tell whether its copy is still current.
+ * <br>
+ * <br>
+ * Rather than the whole play-list, clients can ask for a single page of it with the Query Request byte followed by
+ * the code of the order. The request goes on with the offset and the size of the page as integers, then the start of
+ * the name, the extensions separated by commas and the monitored directory as UTF strings, empty if unfiltered, then
+ * the smallest and largest file size as longs. The request is echoed, followed by the catalog generation, the total
+ * number of media files matched and the media files of the page. See {@link PlaylistQuery}.
+ * <br>
+ * <br>
+ * Clients that send the Stream Discovery Sequence receive the play-list as a stream of {@link PlaylistChunk}s in
+ * alphabetical order, encoded straight from the catalog, instead of as a single list of media files. The sequence is
+ * echoed, followed by the catalog generation and the number of media files as a long and an integer, then the chunks
+ * and finally the media IDs in size order. The first chunk is kept small and flushed on its own, so the client can
+ * show the top of the play-list while the rest is still on its way. Media files removed during the stream are left
+ * out, media files added during it are sent with the next update.
  * 
  * @author Owen McMonagle.
  * 
@@ -24,7 +54,7 @@ import net.eureka.couchcast.mediaserver.NetworkWorker;
  * @see NetworkWorker
  * @see NetworkHandler
  * 
- * @version 0.2
+ * @version 0.7
  */
 public final class PlaylistWorker extends NetworkWorker
 {
@@ -40,11 +70,61 @@ public final class PlaylistWorker extends NetworkWorker
 	 */
 	private static final byte[] FILE_DISCOVERY_SEQUENCE = new byte[]{ 85, 56 };
 	
+	/**
+	 * The ID Discovery Sequence, sent by clients that refer to media files by media ID.
+	 */
+	private static final byte[] ID_DISCOVERY_SEQUENCE = new byte[]{ 85, 57 };
+	
+	/**
+	 * The Stream Discovery Sequence, sent by clients that receive the play-list in chunks.
+	 */
+	private static final byte[] STREAM_DISCOVERY_SEQUENCE = new byte[]{ 85, 58 };
+	
+	/**
+	 * Most media files within the first chunk of a stream, and within every chunk after.
+	 */
+	private static final int FIRST_CHUNK_COUNT = 64, CHUNK_COUNT = 2048;
+	
+	/**
+	 * Bytes after which a chunk is sent.
+	 */
+	private static final int CHUNK_CAPACITY = 64 * 1024;
+	
+	/**
+	 * First byte of an Order Request, the second byte is the code of the {@link SortOrder} asked for.
+	 */
+	private static final byte ORDER_REQUEST = 86;
+	
+	/**
+	 * First byte of a Query Request, the second byte is the code of the {@link SortOrder} to page through.
+	 */
+	private static final byte QUERY_REQUEST = 87;
+	
+	/**
+	 * Most media files sent within a single page.
+	 */
+	private static final int MAXIMUM_PAGE_SIZE = 500;
+	
 	
 	private ObjectOutputStream output = null;
 	private ObjectInputStream input = null;
 	private byte[] read = new byte[2];
-	private boolean valid = false, updated = true;
+	private boolean valid = false, updated = true, ids = false, streamed = false;
+	
+	/**
+	 * Chunk reused by each stream, created on the first.
+	 */
+	private PlaylistChunk chunk = null;
+	
+	/**
+	 * Order asked for by the last read request, null if it was a Discovery Sequence.
+	 */
+	private SortOrder requestedOrder = null;
+	
+	/**
+	 * Query asked for by the last read request, null if it was not a Query Request.
+	 */
+	private PlaylistQuery requestedQuery = null;
 	
 	public PlaylistWorker(Socket connection) 
 	{
@@ -110,6 +190,8 @@ public final class PlaylistWorker extends NetworkWorker
 			if(input == null)
 				input = new ObjectInputStream(getInput());
 			input.read(read, 0, BUFFER_SIZE);
+			// Read the rest of a Query Request.
+			requestedQuery = (read[0] == QUERY_REQUEST) ? readQuery(SortOrder.fromCode(read[1])) : null;
 		} 
 		catch (IOException e)
 		{
@@ -119,6 +201,30 @@ public final class PlaylistWorker extends NetworkWorker
 		}
 	}
 
+	/**
+	 * Reads the window and filter of a Query Request.
+	 * @param SortOrder order - Order asked for, null if unknown.
+	 * @return PlaylistQuery - Query read in, null if the order is unknown.
+	 * @throws IOException - If the client has disconnected.
+	 */
+	private PlaylistQuery readQuery(SortOrder order) throws IOException
+	{
+		// Read the page wanted.
+		final int offset = input.readInt(), limit = Math.min(input.readInt(), MAXIMUM_PAGE_SIZE);
+		// Read the filter.
+		final String name_prefix = input.readUTF(), extensions = input.readUTF(), root = input.readUTF();
+		final long minimum_size = input.readLong(), maximum_size = input.readLong();
+		if(order == null)
+			return null;
+		
+		final PlaylistQuery query = new PlaylistQuery(order, offset, limit);
+		query.setNamePrefix(name_prefix);
+		query.setExtensions((extensions.isEmpty()) ? null : extensions.split(","));
+		query.setRoot(root);
+		query.setSizeRange(minimum_size, maximum_size);
+		return query;
+	}
+
 	@Override
 	public boolean verify() 
 	{
@@ -135,14 +241,26 @@ public final class PlaylistWorker extends NetworkWorker
 	}
 	
 	/**
-	 * Compares the read in sequence to the File Discovery Sequence, if matched true is returned.
+	 * Compares the read in sequence to the File and ID Discovery Sequences, if matched true is returned. An Order
+	 * Request or Query Request for a known order is also accepted.
 	 *  
-	 * @return Boolean - True if read in matches the File Discovery Sequence, False otherwise.
+	 * @return Boolean - True if read in matches either Discovery Sequence, an Order Request or a Query Request, False otherwise.
 	 */
 	private boolean compareDiscoverySequence()
 	{
+		// Check whether the client asks for a page.
+		if(requestedQuery != null)
+			return true;
+		// Check whether the client asks for an order.
+		requestedOrder = (read[0] == ORDER_REQUEST) ? SortOrder.fromCode(read[1]) : null;
+		if(requestedOrder != null)
+			return true;
+		// Check whether the client receives the play-list in chunks.
+		streamed = Static.compareBytes(read, STREAM_DISCOVERY_SEQUENCE);
+		// Check whether the client refers to media files by ID.
+		ids = Static.compareBytes(read, ID_DISCOVERY_SEQUENCE);
 		// Compares byte arrays against each other.
-		return Static.compareBytes(read, FILE_DISCOVERY_SEQUENCE);
+		return streamed || ids || Static.compareBytes(read, FILE_DISCOVERY_SEQUENCE);
 	}
 	
 	@Override
@@ -150,24 +268,58 @@ public final class PlaylistWorker extends NetworkWorker
 	{
 		try
 		{
+			// Answer an Order Request on its own, the play-list update is left for the next Discovery Sequence.
+			if(valid && requestedOrder != null)
+			{
+				writeOrder(requestedOrder);
+				return;
+			}
+			// Answer a Query Request on its own as well.
+			if(valid && requestedQuery != null)
+			{
+				writePage(requestedQuery);
+				return;
+			}
+			// Stream the play-list to clients that asked for chunks.
+			if(valid && streamed)
+			{
+				writeStream();
+				if(updated)
+					updated = false;
+				return;
+			}
+			
 			// Declare file list response.
 			ArrayList<MediaFile> media_file_list = null;
-			// Declare alpha list response.
-			ArrayList<Integer> sorted_alpha_list = null;
-			// Declare size list response.
-			ArrayList<Integer> sorted_size_list = null;
+			// Declare alpha list response, a list of indexes or an array of media IDs.
+			Object sorted_alpha_list = null;
+			// Declare size list response, a list of indexes or an array of media IDs.
+			Object sorted_size_list = null;
 			
 			// Declare byte response
 			byte[] byte_response = null;
 			// If the connection is valid, retrieve and store the media file list. If not create an empty file list.
 			media_file_list = (valid && updated) ? FileFactory.getMediaPlaylist() : new ArrayList<MediaFile>();
 			
-			sorted_alpha_list = (valid && updated) ? FileFactory.getAlphaList() : new ArrayList<Integer>();
-			
-			sorted_size_list = (valid && updated) ? FileFactory.getSortedSizeList() : new ArrayList<Integer>();
+			if(!valid || !updated)
+			{
+				sorted_alpha_list = (ids) ? new long[0] : new ArrayList<Integer>();
+				sorted_size_list = (ids) ? new long[0] : new ArrayList<Integer>();
+			}
+			// If the client refers to media files by ID, send the sorted media IDs.
+			else if(ids)
+			{
+				sorted_alpha_list = FileFactory.getAlphaIds();
+				sorted_size_list = FileFactory.getSizeIds();
+			}
+			else
+			{
+				sorted_alpha_list = FileFactory.getAlphaList();
+				sorted_size_list = FileFactory.getSortedSizeList();
+			}
 			
-			// If the connection is valid, respond with the File Discovery Sequence. If not create a blank byte array.
-			byte_response = (valid) ? FILE_DISCOVERY_SEQUENCE : new byte[]{ 0, 0 };
+			// If the connection is valid, respond with the matched Discovery Sequence. If not create a blank byte array.
+			byte_response = (valid) ? ((ids) ? ID_DISCOVERY_SEQUENCE : FILE_DISCOVERY_SEQUENCE) : new byte[]{ 0, 0 };
 			// Write byte response to client.
 			output.write(byte_response, 0, byte_response.length);
 			// Write object response to client.
@@ -182,6 +334,7 @@ public final class PlaylistWorker extends NetworkWorker
 			output.writeObject(sorted_size_list);
 			// Flush size list down stream.
 			output.flush();
+			endResponse();
 			// If the play-list was just updated...
 			if(updated)
 				// Signal the update was complete.
@@ -195,6 +348,114 @@ public final class PlaylistWorker extends NetworkWorker
 
 	}
 	
+	/**
+	 * Writes the requested order to the client. The request is echoed, followed by the catalog generation
+	 * and the media IDs in order.
+	 * @param SortOrder order - Order asked for.
+	 * @throws IOException - If the client has disconnected.
+	 */
+	private void writeOrder(SortOrder order) throws IOException
+	{
+		final long generation;
+		final long[] id_order;
+		// Hold the catalog so the generation matches the order.
+		synchronized (FileFactory.class)
+		{
+			generation = FileFactory.getGeneration();
+			id_order = FileFactory.getIdOrder(order);
+		}
+		// Echo the request.
+		output.write(new byte[]{ ORDER_REQUEST, order.getCode() }, 0, 2);
+		// Write the generation the order was sorted at.
+		output.writeLong(generation);
+		// Write the media IDs in order.
+		output.writeObject(id_order);
+		// Flush the order down stream.
+		output.flush();
+		endResponse();
+	}
+	
+	/**
+	 * Writes a page of the play-list to the client. The request is echoed, followed by the catalog generation, the
+	 * total number of media files matched and the media files of the page.
+	 * @param PlaylistQuery query - Query asked for.
+	 * @throws IOException - If the client has disconnected.
+	 */
+	private void writePage(PlaylistQuery query) throws IOException
+	{
+		final PlaylistPage page = FileFactory.query(query);
+		// Echo the request.
+		output.write(new byte[]{ QUERY_REQUEST, query.getOrder().getCode() }, 0, 2);
+		// Write the generation the page was taken at.
+		output.writeLong(page.getGeneration());
+		// Write total number of matches.
+		output.writeInt(page.getTotal());
+		// Write media files of the page.
+		output.writeObject(page.getMediaFiles());
+		// Flush the page down stream.
+		output.flush();
+		endResponse();
+	}
+	
+	/**
+	 * Streams the play-list to the client in chunks. The sequence is echoed, followed by the catalog generation, the
+	 * number of media files, the chunks in alphabetical order and the media IDs in size order. Nothing but the
+	 * sequence, generation and an empty chunk is sent if the play-list has not been updated.
+	 * @throws IOException - If the client has disconnected.
+	 */
+	private void writeStream() throws IOException
+	{
+		if(chunk == null)
+			chunk = new PlaylistChunk(CHUNK_CAPACITY);
+		
+		final long generation;
+		final long[] alpha_ids, size_ids;
+		// Hold the catalog so the generation matches the orders.
+		synchronized (FileFactory.class)
+		{
+			generation = FileFactory.getGeneration();
+			alpha_ids = (updated) ? FileFactory.getAlphaIds() : new long[0];
+			size_ids = (updated) ? FileFactory.getSizeIds() : new long[0];
+		}
+		
+		// Echo the sequence.
+		output.write(STREAM_DISCOVERY_SEQUENCE, 0, STREAM_DISCOVERY_SEQUENCE.length);
+		// Write the generation the play-list was taken at.
+		output.writeLong(generation);
+		// Write the number of media files to expect.
+		output.writeInt(alpha_ids.length);
+		
+		int position = 0, maximum_count = FIRST_CHUNK_COUNT;
+		while(position < alpha_ids.length)
+		{
+			// Encode the next chunk, the catalog is only held while encoding.
+			position = FileFactory.fillChunk(alpha_ids, position, maximum_count, chunk);
+			if(chunk.getCount() == 0)
+				continue;
+			chunk.writeTo(output);
+			// Flush each chunk down stream, so the client can show it straight away.
+			output.flush();
+			maximum_count = CHUNK_COUNT;
+		}
+		// Write an empty chunk to end the stream.
+		chunk.writeTo(output);
+		// Write the size order.
+		output.writeObject(size_ids);
+		// Flush the end of the stream down stream.
+		output.flush();
+		endResponse();
+	}
+	
+	/**
+	 * Lets go of every object written by the last response. The stream otherwise keeps each one, every order and
+	 * page sent, for back references for as long as the client stays connected.
+	 * @throws IOException - If the client has disconnected.
+	 */
+	private void endResponse() throws IOException
+	{
+		output.reset();
+	}
+	
 	/**
 	 * Indicates to the handler that a new play-list should be sent on the next information pass.
 	 */
@@ -0,0 +1,154 @@
+package net.eureka.couchcast.mediaserver.search;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.file.manager.FileNotFoundError;
+import net.eureka.couchcast.foundation.file.manager.search.SearchResult;
+import net.eureka.couchcast.foundation.file.manager.search.TrigramIndex;
+import net.eureka.couchcast.foundation.file.media.MediaFile;
+import net.eureka.couchcast.mediaserver.NetworkHandler;
+import net.eureka.couchcast.mediaserver.NetworkImpl;
+import net.eureka.couchcast.mediaserver.NetworkWorker;
+
+/**
+ * Adheres to the {@link NetworkWorker} and {@link NetworkImpl} protocols. Answers a single search of the media file
+ * names through the {@link TrigramIndex}, so clients can offer type-ahead without downloading the play-list. Runs
+ * on the thread pool of the {@link NetworkHandler}.
+ * <br>
+ * <br>
+ * The client sends the query as a UTF string followed by the offset and the size of the page it wants, both as
+ * integers. The total number of matches is sent back as an integer, followed by a list of the media files of the
+ * page, best match first. Each media file carries its media ID.
+ * <br>
+ * <br>
+ * Fuzzy workers match whole words within an edit or two of the query words instead, so titles are still found
+ * when mistyped.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see TrigramIndex
+ * @see NetworkImpl
+ * @see NetworkWorker
+ * @see NetworkHandler
+ *
+ * @version 0.2
+ */
+public final class SearchWorker extends NetworkWorker
+{
+	/**
+	 * Most media files sent within a single page.
+	 */
+	private static final int MAXIMUM_PAGE_SIZE = 200;
+
+	private ObjectOutputStream output = null;
+
+	private String query = null;
+
+	private int offset = 0, limit = 0;
+
+	private boolean valid = false;
+
+	/**
+	 * True if words are matched within a few edits, false if matched as typed.
+	 */
+	private final boolean fuzzy;
+
+	public SearchWorker(Socket connection, boolean fuzzy)
+	{
+		super(connection);
+		this.fuzzy = fuzzy;
+		this.setSocketTimeout(4000);
+	}
+
+	@Override
+	public void run()
+	{
+		try
+		{
+			output = new ObjectOutputStream(getOutput());
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		read();
+		valid = valid && verify();
+		write();
+		close();
+	}
+
+	@Override
+	public void read()
+	{
+		try
+		{
+			final ObjectInputStream input = new ObjectInputStream(getInput());
+			// Read the query, then the page wanted.
+			query = input.readUTF();
+			offset = input.readInt();
+			limit = Math.min(input.readInt(), MAXIMUM_PAGE_SIZE);
+			valid = true;
+		}
+		catch (IOException e)
+		{
+			System.err.println("Search disconnected.\nReason: "+e.getLocalizedMessage());
+		}
+	}
+
+	@Override
+	public boolean verify()
+	{
+		try
+		{
+			return validateAddress();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	@Override
+	public void write()
+	{
+		if(output == null)
+			return;
+
+		final ArrayList<MediaFile> page = new ArrayList<MediaFile>();
+		int total = 0;
+		if(valid)
+		{
+			final SearchResult result = (fuzzy) ? TrigramIndex.fuzzySearch(query, offset, limit) : TrigramIndex.search(query, offset, limit);
+			total = result.getTotal();
+			for(long id : result.getIds())
+				try
+				{
+					page.add(FileFactory.getMediaFileById(id));
+				}
+				catch (FileNotFoundError e)
+				{
+					// Removed or filtered out since it was matched, leave it out.
+				}
+		}
+
+		try
+		{
+			// Write total number of matches.
+			output.writeInt(total);
+			// Write media files of the page.
+			output.writeObject(page);
+			// Flush response down stream.
+			output.flush();
+		}
+		catch (IOException e)
+		{
+			System.err.println("Search disconnected.\nReason: "+e.getLocalizedMessage());
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package net.eureka.couchcast.tests;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.eureka.couchcast.Static;
+import net.eureka.couchcast.foundation.file.manager.CatalogJournal;
+import net.eureka.couchcast.foundation.file.manager.CatalogSnapshot;
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.file.media.MediaFile;
+import net.eureka.couchcast.foundation.file.media.MediaPath;
+import net.eureka.couchcast.foundation.init.ApplicationGlobals;
+
+/**
+ * Tests the {@link CatalogSnapshot} and {@link CatalogJournal} by building a catalog within one process, part of it
+ * written to a snapshot and the rest only journalled, then loading it within a second process. The catalog loaded
+ * must hold the same media files with the same media IDs, file sizes and modification times, in the same size order
+ * and at the same generation.
+ * <br>
+ * <br>
+ * Each process is a run of this class with the phase passed, as the {@link FileFactory} can only be loaded once
+ * within a process.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see Testbase
+ * @see TestManager
+ * @see CatalogSnapshot
+ * @see CatalogJournal
+ *
+ * @version 0.1
+ */
+public final class CatalogReplay extends TestBase
+{
+	private static final String WRITE_PHASE = "write", READ_PHASE = "read", DIGEST_PREFIX = "Catalog: ";
+
+	/**
+	 * Milliseconds given to the journal to write the last changes before the writing process exits.
+	 */
+	private static final int JOURNAL_WAIT = 1000;
+
+	public CatalogReplay()
+	{
+		// Set failed to true so we know it failed if it hasn't gotten to the end.
+		setFailed(true);
+
+		File directory = null;
+		try
+		{
+			// Keep the catalog apart from that of the application.
+			directory = Files.createTempDirectory("couchcast-catalog").toFile();
+			// Build the catalog, then load it again.
+			final String written = runPhase(WRITE_PHASE, directory), read = runPhase(READ_PHASE, directory);
+
+			System.out.println("Catalog written: " + written);
+			System.out.println("Catalog read: " + read);
+
+			// The catalog read must match the one written, which holds the thirteen media files left.
+			setFailed(written == null || !written.equals(read) || !written.contains("files=13"));
+		}
+		catch (IOException | InterruptedException e)
+		{
+			System.err.println("Catalog replay not tested.\nReason: "+e.getLocalizedMessage());
+		}
+		finally
+		{
+			if(directory != null)
+				deleteDirectory(directory);
+		}
+	}
+
+	/**
+	 * Runs a phase of the test within a new process.
+	 * @param String phase - Phase to run.
+	 * @param File directory - Application directory the catalog is kept in.
+	 * @return String - Digest of the catalog printed by the process, null if none was.
+	 */
+	private static String runPhase(String phase, File directory) throws IOException, InterruptedException
+	{
+		final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		final Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), CatalogReplay.class.getName(), phase,
+												   directory.getPath() + File.separator).redirectErrorStream(true).start();
+		String digest = null;
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		try
+		{
+			for(String line = reader.readLine(); line != null; line = reader.readLine())
+				if(line.startsWith(DIGEST_PREFIX))
+					digest = line.substring(DIGEST_PREFIX.length());
+		}
+		finally
+		{
+			reader.close();
+		}
+		process.waitFor();
+		return digest;
+	}
+
+	/**
+	 * Loads the catalog kept in the passed directory and, if writing, changes it. Prints the digest of the catalog.
+	 * @param String phase - Phase to run.
+	 * @param String directory - Application directory the catalog is kept in.
+	 */
+	private static void runProcess(String phase, String directory) throws InterruptedException
+	{
+		ApplicationGlobals.setApplicationDirectory(directory);
+		final long snapshot_generation = CatalogSnapshot.load();
+		final CatalogSnapshot snapshot = new CatalogSnapshot();
+		CatalogJournal.open(snapshot_generation);
+
+		if(phase.equals(WRITE_PHASE))
+		{
+			// Ten media files held by the snapshot.
+			addMediaFiles(0, 10);
+			snapshot.run();
+			// Five more only held by the journal, along with a change to one of each and a removal of one of each.
+			addMediaFiles(10, 15);
+			FileFactory.updateMediaFile(getPath(2), Static.longToBytes(9999L), Static.longToBytes(2L));
+			FileFactory.updateMediaFile(getPath(12), Static.longToBytes(1L), Static.longToBytes(3L));
+			FileFactory.removeByPaths(Arrays.asList(MediaPath.wrap(getPath(4)), MediaPath.wrap(getPath(13))));
+			Thread.sleep(JOURNAL_WAIT);
+		}
+
+		System.out.println(DIGEST_PREFIX + getDigest());
+	}
+
+	private static void addMediaFiles(int from, int to)
+	{
+		final List<MediaFile> media_files = new ArrayList<MediaFile>();
+		final List<byte[]> file_sizes = new ArrayList<byte[]>(), modified_times = new ArrayList<byte[]>();
+		for(int i = from; i < to; i++)
+		{
+			media_files.add(new MediaFile(getName(i), getPath(i), null));
+			// Sizes out of order, so the size order is not the order added.
+			file_sizes.add(Static.longToBytes((i * 37L) % 101L));
+			modified_times.add(Static.longToBytes(1L));
+		}
+		FileFactory.addMediaFiles(media_files, file_sizes, modified_times, false, null);
+	}
+
+	private static byte[] getName(int number)
+	{
+		return ("Episode " + number + ".mkv").getBytes();
+	}
+
+	private static byte[] getPath(int number)
+	{
+		return (File.separator + "media" + File.separator + "Show " + (number % 3) + File.separator + new String(getName(number))).getBytes();
+	}
+
+	/**
+	 * Describes every media file held, along with the generation and size order of the catalog.
+	 */
+	private static String getDigest()
+	{
+		final ArrayList<MediaFile> media_files = FileFactory.getMediaPlaylist(true);
+		final StringBuilder digest = new StringBuilder("generation=" + FileFactory.getGeneration() + " files=" + media_files.size());
+		for(MediaFile media_file : media_files)
+			digest.append(" [").append(media_file.getId()).append(' ').append(new String(media_file.getLocation())).append(' ')
+				  .append(new String(media_file.getSize())).append(' ').append(Static.bytesToLong(FileFactory.getModifiedTime(media_file.getLocation()))).append(']');
+		return digest.append(" size order=").append(Arrays.toString(FileFactory.getSizeIds())).toString();
+	}
+
+	private static void deleteDirectory(File directory)
+	{
+		final File[] files = directory.listFiles();
+		if(files != null)
+			for(File file : files)
+				file.delete();
+		directory.delete();
+	}
+
+	public static void main(String[] args) throws InterruptedException
+	{
+		// Run by the test to write or read the catalog.
+		if(args.length == 2)
+		{
+			runProcess(args[0], args[1]);
+			System.exit(0);
+		}
+
+		System.out.println(new CatalogReplay().hasFailed() ? "Catalog replay has failed." : "Catalog replay has passed.");
+		System.exit(0);
+	}
+}
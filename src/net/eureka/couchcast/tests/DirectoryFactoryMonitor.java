@@ -4,18 +4,20 @@ import java.util.ArrayList;
 
 import net.eureka.couchcast.foundation.file.manager.DirectoryFactory;
 import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.file.manager.ScanJob;
 
 /**
- * Tests the {@link DirectoryFactory} by passing a directory to it for scanning and waits for 15 seconds
- * until displaying the found files.
+ * Tests the {@link DirectoryFactory} by passing a directory to it for scanning and waits for the first 
+ * scan pass of the {@link ScanJob} to complete, until displaying the found files.
  * 
  * @author Owen McMonagle.
  * 
  * @see Testbase
  * @see TestManager
  * @see DirectoryFactory
+ * @see ScanJob
  *
- * @version 0.2
+ * @version 0.3
  */
 public final class DirectoryFactoryMonitor extends TestBase
 {
@@ -32,27 +34,19 @@ public final class DirectoryFactoryMonitor extends TestBase
 		// Create factory.
 		final DirectoryFactory factory = new DirectoryFactory(test_directories);
 		
-		// Main thread for waiting.
-		final Thread main = Thread.currentThread();
+		// Most time to wait for the first scan pass to complete.
+		final int time_to_wait = 60000;
+		// Retrieve scan progress of the directory.
+		final ScanJob job = DirectoryFactory.getScanJob(test_directory);
+		// Wait for the first pass of the directory.
+		final boolean completed = job.awaitPass(time_to_wait);
 		
-		synchronized (main)
-		{
-			// Time to wait until displaying found files.
-			final int time_to_wait = 15000;
-			try 
-			{
-				// Wait for a while.
-				main.wait(time_to_wait);
-			}
-			catch (InterruptedException e) 
-			{
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-		}
-		
-		// Stop the factory.
+		// Stop the factory and scanning.
 		factory.cancel();
+		DirectoryFactory.cancelScans();
+		
+		// Print scan progress.
+		System.out.println(job);
 		
 		// Get list size.
 		final int size = FileFactory.getListSize();
@@ -64,8 +58,8 @@ public final class DirectoryFactoryMonitor extends TestBase
 			// Print each discovery media name.
 			System.out.println(new String(name));
 		
-		// If size greater than zero set test not failed.
-		setFailed(!(size > 0));
+		// If the pass completed and size greater than zero set test not failed.
+		setFailed(!(completed && size > 0));
 		
 		// Check if instructed to exit after...
 		if(exit_after)
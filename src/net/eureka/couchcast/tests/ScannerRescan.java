@@ -0,0 +1,182 @@
+package net.eureka.couchcast.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.eureka.couchcast.Static;
+import net.eureka.couchcast.foundation.file.manager.DirectoryScanner;
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.file.manager.ScanJob;
+import net.eureka.couchcast.foundation.file.manager.event.CatalogEvent;
+import net.eureka.couchcast.foundation.file.manager.event.CatalogEvents;
+import net.eureka.couchcast.foundation.file.manager.event.CatalogListener;
+import net.eureka.couchcast.foundation.file.media.MediaPath;
+import net.eureka.couchcast.foundation.init.ApplicationGlobals;
+
+/**
+ * Tests the {@link DirectoryScanner} by scanning a directory of two media files and a text file three times, each
+ * pass run straight through without the search delay. The first pass must add both media files. The second must
+ * find them as duplicates and add nothing. Before the third one media file is written to and given a later
+ * modification time, which must update it in place within the {@link FileFactory} rather than add it again.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see Testbase
+ * @see TestManager
+ * @see DirectoryScanner
+ * @see ScanJob
+ *
+ * @version 0.1
+ */
+public final class ScannerRescan extends TestBase
+{
+	/**
+	 * Most milliseconds to wait for the catalog events of the scans to be delivered.
+	 */
+	private static final long EVENT_WAIT = 5000L;
+
+	/**
+	 * Catalog events of the media files within the scanned directory, in the order delivered.
+	 */
+	private final List<CatalogEvent> events = new ArrayList<CatalogEvent>();
+
+	private File directory = null;
+
+	/**
+	 * Collects the catalog events of the media files within the scanned directory.
+	 */
+	private final CatalogListener listener = new CatalogListener()
+	{
+		@Override
+		public void catalogChanged(List<CatalogEvent> changes)
+		{
+			synchronized (events)
+			{
+				for(CatalogEvent change : changes)
+					if(new String(change.getPath()).startsWith(directory.getPath()))
+						events.add(change);
+				events.notifyAll();
+			}
+		}
+	};
+
+	public ScannerRescan()
+	{
+		// Set failed to true so we know it failed if it hasn't gotten to the end.
+		setFailed(true);
+
+		final int search_delay = ApplicationGlobals.getSearchDelay();
+		ApplicationGlobals.setSearchDelay(0);
+		try
+		{
+			directory = Files.createTempDirectory("couchcast-scan").toFile();
+			final File first = new File(directory, "Rescan A.mkv"), second = new File(directory, "Rescan B.mp4");
+			write(first, 16);
+			write(second, 32);
+			write(new File(directory, "Rescan C.txt"), 8);
+			CatalogEvents.subscribe(listener);
+
+			final DirectoryScanner scanner = new DirectoryScanner(directory.getPath());
+			final ScanJob job = scanner.getJob();
+
+			// First pass, both media files are new.
+			scanner.run();
+			System.out.println(job);
+			final int size = FileFactory.getListSize();
+			boolean scanned = job.getMatched() == 2L && job.getMatchedBytes() == 48L && awaitEvents(CatalogEvent.Type.ADDED, 2);
+
+			// Second pass, both media files are duplicates.
+			scanner.run();
+			System.out.println(job);
+			scanned &= job.getMatched() == 0L && FileFactory.getListSize() == size;
+
+			// Third pass, the first media file has changed.
+			write(first, 64);
+			final long modified_time = first.lastModified() + 10000L;
+			first.setLastModified(modified_time);
+			scanner.run();
+			System.out.println(job);
+			scanned &= job.getMatched() == 0L && FileFactory.getListSize() == size && awaitEvents(CatalogEvent.Type.MODIFIED, 1)
+					   && Arrays.equals(FileFactory.getModifiedTime(MediaPath.of(first).getBytes()), Static.longToBytes(first.lastModified()));
+
+			// No media file may have been added again.
+			scanned &= countEvents(CatalogEvent.Type.ADDED) == 2;
+
+			FileFactory.removeByPaths(Arrays.asList(MediaPath.of(first), MediaPath.of(second)));
+			setFailed(!scanned);
+		}
+		catch (IOException | InterruptedException e)
+		{
+			System.err.println("Scanner rescan not tested.\nReason: "+e.getLocalizedMessage());
+		}
+		finally
+		{
+			CatalogEvents.unsubscribe(listener);
+			ApplicationGlobals.setSearchDelay(search_delay);
+			if(directory != null)
+				deleteDirectory(directory);
+		}
+	}
+
+	private static void write(File file, int length) throws IOException
+	{
+		final FileOutputStream output = new FileOutputStream(file);
+		try
+		{
+			output.write(new byte[length]);
+		}
+		finally
+		{
+			output.close();
+		}
+	}
+
+	/**
+	 * Waits until the passed number of events of the passed type have been delivered.
+	 * @param CatalogEvent.Type type - Type of event to wait for.
+	 * @param int count - Number of events expected.
+	 * @return boolean - True if the events were delivered within the wait, false otherwise.
+	 */
+	private boolean awaitEvents(CatalogEvent.Type type, int count) throws InterruptedException
+	{
+		final long give_up = System.currentTimeMillis() + EVENT_WAIT;
+		synchronized (events)
+		{
+			for(long wait = EVENT_WAIT; countEvents(type) < count && wait > 0L; wait = give_up - System.currentTimeMillis())
+				events.wait(wait);
+			return countEvents(type) == count;
+		}
+	}
+
+	private int countEvents(CatalogEvent.Type type)
+	{
+		synchronized (events)
+		{
+			int count = 0;
+			for(CatalogEvent event : events)
+				if(event.getType() == type)
+					count++;
+			return count;
+		}
+	}
+
+	private static void deleteDirectory(File directory)
+	{
+		final File[] files = directory.listFiles();
+		if(files != null)
+			for(File file : files)
+				file.delete();
+		directory.delete();
+	}
+
+	public static void main(String[] args)
+	{
+		System.out.println(new ScannerRescan().hasFailed() ? "Scanner rescan has failed." : "Scanner rescan has passed.");
+		System.exit(0);
+	}
+}
@@ -0,0 +1,166 @@
+package net.eureka.couchcast.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import net.eureka.couchcast.Static;
+import net.eureka.couchcast.foundation.file.manager.sorting.SizeSort;
+import net.eureka.couchcast.foundation.file.manager.sorting.SortImpl;
+import net.eureka.couchcast.foundation.file.manager.sorting.Sorter;
+
+/**
+ * Tests the {@link Sorter} through a {@link SizeSort} over a file size list of its own. Media files are added alone
+ * and in batches both small enough to be merged and large enough to be sorted in full, their sizes are changed
+ * while merged and while still pending, and the order is compacted. After each step the order must match a full
+ * sort of the list, largest first and by list index when equal.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see Testbase
+ * @see TestManager
+ * @see Sorter
+ * @see SizeSort
+ *
+ * @version 0.1
+ */
+public final class SorterOrdering extends TestBase
+{
+	/**
+	 * Sizes are drawn from a small range, so many are equal, and from a large one, so they span several prefixes.
+	 */
+	private static final int SMALL_SIZE_RANGE = 50;
+	private static final long LARGE_SIZE_RANGE = 1L << 40;
+
+	private final ArrayList<byte[]> sizes = new ArrayList<byte[]>();
+
+	private final Random random = new Random(35L);
+
+	public SorterOrdering()
+	{
+		// Set failed to true so we know it failed if it hasn't gotten to the end.
+		setFailed(true);
+
+		final SortImpl order = new SizeSort(sizes);
+		boolean ordered = true;
+
+		// Single media files, then a small batch merged into the order and a large batch sorted along with it.
+		for(int i = 0; i < 100; i++)
+			order.add(addSize());
+		ordered &= check(order, "single additions");
+		addBatch(order, 2);
+		ordered &= check(order, "small batch");
+		addBatch(order, 1000);
+		ordered &= check(order, "large batch");
+
+		// Change sizes of merged media files, some twice before the order is next read.
+		for(int i = 0; i < 300; i++)
+			changeSize(order, random.nextInt(sizes.size()));
+		ordered &= check(order, "updates");
+
+		// Change sizes of media files still pending, along with merged ones.
+		final int first_pending = addBatch(order, 10);
+		for(int i = 0; i < 10; i++)
+		{
+			changeSize(order, first_pending + random.nextInt(sizes.size() - first_pending));
+			changeSize(order, random.nextInt(first_pending));
+		}
+		ordered &= check(order, "pending updates");
+
+		// Drop every seventh media file, with updates not yet merged.
+		for(int i = 0; i < 20; i++)
+			changeSize(order, random.nextInt(sizes.size()));
+		compact(order, 7);
+		ordered &= check(order, "compaction");
+
+		setFailed(!ordered);
+	}
+
+	private int addSize()
+	{
+		sizes.add(Static.longToBytes(nextSize()));
+		return sizes.size() - 1;
+	}
+
+	private long nextSize()
+	{
+		return (random.nextBoolean()) ? random.nextInt(SMALL_SIZE_RANGE) : (long) (random.nextDouble() * LARGE_SIZE_RANGE);
+	}
+
+	/**
+	 * Adds a batch of media files to the size list and the order.
+	 * @param SortImpl order - Order to add to.
+	 * @param int count - Number of media files within the batch.
+	 * @return int - List index of the first media file of the batch.
+	 */
+	private int addBatch(SortImpl order, int count)
+	{
+		final int first_index = sizes.size();
+		for(int i = 0; i < count; i++)
+			addSize();
+		order.add(first_index, sizes.size());
+		return first_index;
+	}
+
+	private void changeSize(SortImpl order, int list_index)
+	{
+		sizes.set(list_index, Static.longToBytes(nextSize()));
+		order.update(list_index);
+	}
+
+	/**
+	 * Drops every nth media file from the size list and remaps the order to match.
+	 */
+	private void compact(SortImpl order, int n)
+	{
+		final int[] remapped_indexes = new int[sizes.size()];
+		final ArrayList<byte[]> compacted = new ArrayList<byte[]>();
+		for(int i = 0; i < sizes.size(); i++)
+			if(i % n == 0)
+				remapped_indexes[i] = -1;
+			else
+			{
+				remapped_indexes[i] = compacted.size();
+				compacted.add(sizes.get(i));
+			}
+		sizes.clear();
+		sizes.addAll(compacted);
+		order.remap(remapped_indexes);
+	}
+
+	/**
+	 * Compares the order against a full sort of the size list.
+	 * @param SortImpl order - Order to check.
+	 * @param String step - Step of the test, printed if the order does not match.
+	 * @return boolean - True if the order matches, false otherwise.
+	 */
+	private boolean check(SortImpl order, String step)
+	{
+		final Integer[] expected = new Integer[sizes.size()];
+		for(int i = 0; i < expected.length; i++)
+			expected[i] = i;
+		Arrays.sort(expected, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer index_0, Integer index_1)
+			{
+				final int compared = Long.compare(Static.bytesToLong(sizes.get(index_1)), Static.bytesToLong(sizes.get(index_0)));
+				return (compared != 0) ? compared : Integer.compare(index_0, index_1);
+			}
+		});
+
+		final int[] actual = order.getOrder();
+		boolean matches = actual.length == expected.length;
+		for(int i = 0; matches && i < actual.length; i++)
+			matches = actual[i] == expected[i];
+		if(!matches)
+			System.out.println("Sort order does not match after " + step + ".");
+		return matches;
+	}
+
+	public static void main(String[] args)
+	{
+		System.out.println(new SorterOrdering().hasFailed() ? "Sorter ordering has failed." : "Sorter ordering has passed.");
+	}
+}
@@ -8,9 +8,13 @@ package net.eureka.couchcast.tests;
  * @see TestManager
  * @see OOPinitiator
  * @see DirectoryFactoryMonitor
+ * @see CatalogReplay
+ * @see SorterOrdering
+ * @see TrigramSearch
+ * @see ScannerRescan
  *
  *
- * @version 0.1
+ * @version 0.2
  */
 public abstract class TestBase
 {
@@ -10,8 +10,12 @@ import java.util.ArrayList;
  * @see Testbase
  * @see OOPinitiator
  * @see DirectoryFactoryMonitor
+ * @see CatalogReplay
+ * @see SorterOrdering
+ * @see TrigramSearch
+ * @see ScannerRescan
  * 
- * @version 0.1
+ * @version 0.2
  */
 public final class TestManager 
 {
@@ -24,6 +28,14 @@ public final class TestManager
 		tests.add(new OOPinitiator());
 		// Directory search tester
 		tests.add(new DirectoryFactoryMonitor(false));
+		// Catalog snapshot and journal tester
+		tests.add(new CatalogReplay());
+		// Sort order tester
+		tests.add(new SorterOrdering());
+		// Trigram search tester
+		tests.add(new TrigramSearch());
+		// Directory rescan tester
+		tests.add(new ScannerRescan());
 		
 		// Empty line for neatness.
 		System.out.println();
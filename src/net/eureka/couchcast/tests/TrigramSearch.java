@@ -0,0 +1,136 @@
+package net.eureka.couchcast.tests;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.eureka.couchcast.Static;
+import net.eureka.couchcast.foundation.file.manager.FileFactory;
+import net.eureka.couchcast.foundation.file.manager.FileNotFoundError;
+import net.eureka.couchcast.foundation.file.manager.search.SearchResult;
+import net.eureka.couchcast.foundation.file.manager.search.TrigramIndex;
+import net.eureka.couchcast.foundation.file.media.MediaFile;
+import net.eureka.couchcast.foundation.file.media.MediaPath;
+
+/**
+ * Tests the {@link TrigramIndex} and its tree of terms by adding media files with names not found elsewhere to the
+ * {@link FileFactory}, then searching for them by part of a word, by whole words and with typing mistakes. Two of them
+ * are then removed, which must drop them from each search.
+ * <br>
+ * <br>
+ * The index is kept up to date through catalog events, which are delivered after a short delay, so each search is
+ * retried until it returns the expected total or the wait runs out.
+ *
+ * @author Owen McMonagle.
+ *
+ * @see Testbase
+ * @see TestManager
+ * @see TrigramIndex
+ *
+ * @version 0.1
+ */
+public final class TrigramSearch extends TestBase
+{
+	/**
+	 * Most milliseconds to wait for the index to catch up with the catalog, and the time between each search.
+	 */
+	private static final long INDEX_WAIT = 5000L, RETRY_DELAY = 50L;
+
+	private static final String[] NAMES = new String[]
+	{
+		"Zephyrine Chronicles S01E01.mkv",
+		"Zephyrine Chronicles S01E02.mkv",
+		"Zephyrine Documentary.avi",
+		"Quixotic Harbour (2019).mp4"
+	};
+
+	public TrigramSearch()
+	{
+		// Set failed to true so we know it failed if it hasn't gotten to the end.
+		setFailed(true);
+
+		TrigramIndex.start();
+		addMediaFiles();
+
+		boolean found = true;
+		try
+		{
+			// Part of a word, ranked shortest name first, whole words and an episode.
+			found &= check(false, "zephyr", 3, NAMES[2]);
+			found &= check(false, "chronicles s01e02", 1, NAMES[1]);
+			found &= check(false, "harbour", 1, NAMES[3]);
+			found &= check(false, "zephyrine harbour", 0, null);
+			// Typing mistakes, matched through the tree.
+			found &= check(true, "zephirine chronicals", 2, NAMES[0]);
+			found &= check(true, "quixotik", 1, NAMES[3]);
+			found &= check(true, "documantery zephyrine", 1, NAMES[2]);
+
+			// Remove the first episode and the documentary.
+			FileFactory.removeByPaths(Arrays.asList(MediaPath.wrap(getPath(NAMES[0])), MediaPath.wrap(getPath(NAMES[2]))));
+			found &= check(false, "zephyr", 1, NAMES[1]);
+			found &= check(true, "zephirine", 1, NAMES[1]);
+			found &= check(true, "documantery", 0, null);
+
+			setFailed(!found);
+		}
+		catch (FileNotFoundError | InterruptedException e)
+		{
+			System.err.println("Trigram search not tested.\nReason: "+e.getLocalizedMessage());
+		}
+	}
+
+	private static void addMediaFiles()
+	{
+		final List<MediaFile> media_files = new ArrayList<MediaFile>();
+		final List<byte[]> file_sizes = new ArrayList<byte[]>(), modified_times = new ArrayList<byte[]>();
+		for(String name : NAMES)
+		{
+			media_files.add(new MediaFile(name.getBytes(), getPath(name), null));
+			file_sizes.add(Static.longToBytes(name.length()));
+			modified_times.add(Static.longToBytes(1L));
+		}
+		FileFactory.addMediaFiles(media_files, file_sizes, modified_times, false, null);
+	}
+
+	private static byte[] getPath(String name)
+	{
+		return (File.separator + "search" + File.separator + name).getBytes();
+	}
+
+	/**
+	 * Searches until the expected total is returned, then checks the first match.
+	 * @param boolean fuzzy - True to search with typing mistakes allowed.
+	 * @param String query - Words to search for.
+	 * @param int total - Number of matches expected.
+	 * @param String first_name - Name of the media file expected to rank first, null if none.
+	 * @return boolean - True if the search returned what was expected, false otherwise.
+	 */
+	private static boolean check(boolean fuzzy, String query, int total, String first_name) throws FileNotFoundError, InterruptedException
+	{
+		final long give_up = System.currentTimeMillis() + INDEX_WAIT;
+		SearchResult result = search(fuzzy, query);
+		while(result.getTotal() != total && System.currentTimeMillis() < give_up)
+		{
+			Thread.sleep(RETRY_DELAY);
+			result = search(fuzzy, query);
+		}
+
+		final long[] ids = result.getIds();
+		final boolean matches = result.getTotal() == total && ids.length == total
+								&& (first_name == null || first_name.equals(new String(FileFactory.getMediaFileById(ids[0]).getName())));
+		System.out.println(((fuzzy) ? "Fuzzy search '" : "Search '") + query + "' matched " + result.getTotal() + ((matches) ? "." : ", not as expected."));
+		return matches;
+	}
+
+	private static SearchResult search(boolean fuzzy, String query)
+	{
+		return (fuzzy) ? TrigramIndex.fuzzySearch(query, 0, NAMES.length) : TrigramIndex.search(query, 0, NAMES.length);
+	}
+
+	public static void main(String[] args)
+	{
+		System.out.println(new TrigramSearch().hasFailed() ? "Trigram search has failed." : "Trigram search has passed.");
+		System.exit(0);
+	}
+}